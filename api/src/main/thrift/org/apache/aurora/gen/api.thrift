@@ -508,6 +508,18 @@ struct GetJobsResult {
   1: set<JobConfiguration> configs
 }
 
+/** Keys that paginated task query results may be ordered by. */
+enum TaskSortKey {
+  /** Order by task ID. */
+  TASK_ID = 1,
+
+  /** Order by instance ID. */
+  INSTANCE_ID = 2,
+
+  /** Order by the timestamp of the most recent task event. */
+  LATEST_EVENT_TIME = 3
+}
+
 /**
  * Contains a set of restrictions on matching tasks where all restrictions must be met
  * (terms are AND'ed together).
@@ -523,8 +535,17 @@ struct TaskQuery {
   7: set<i32> instanceIds
   10: set<string> slaveHosts
   11: set<JobKey> jobKeys
+  /** Offset to serve data from. Used by pagination. */
   12: i32 offset
+  /** Number of records to serve. Used by pagination. */
   13: i32 limit
+  /**
+   * Key to order paginated results by, defaults to TASK_ID.  Ties are broken by task ID.  Ignored
+   * unless offset or limit is set.
+   */
+  15: TaskSortKey sortKey
+  /** Whether paginated results are in descending order of sortKey. */
+  16: bool sortDescending
 }
 
 struct HostStatus {
@@ -96,6 +96,26 @@ struct PruneJobUpdateHistory {
   2: i64 historyPruneThresholdMs
 }
 
+// A change to a stored task that leaves its configuration, instance ID and ancestry intact, as
+// happens on every state transition.  This is a compact alternative to saving the whole task.
+struct TaskTransition {
+  1: string taskId
+  // The status of the task after the transition.
+  2: api.ScheduleStatus status
+  // Events to append to the task's event history.
+  3: list<api.TaskEvent> newEvents
+  4: i32 failureCount
+  // Assignment details, only set when changed by the transition.
+  5: optional string slaveId
+  6: optional string slaveHost
+  7: optional map<string, i32> assignedPorts
+}
+
+// Applies transitions to previously-saved tasks, in order.
+struct TransitionTasks {
+  1: list<TaskTransition> transitions
+}
+
 union Op {
   1: SaveFrameworkId saveFrameworkId
   2: SaveCronJob saveCronJob
@@ -112,6 +132,7 @@ union Op {
   15: SaveJobUpdateEvent saveJobUpdateEvent
   16: SaveJobInstanceUpdateEvent saveJobInstanceUpdateEvent
   17: PruneJobUpdateHistory pruneJobUpdateHistory
+  18: TransitionTasks transitionTasks
 }
 
 // The current schema version ID.  This should be incremented each time the
@@ -123,6 +144,10 @@ const i32 CURRENT_SCHEMA_VERSION = 1
 struct Transaction {
   1: list<Op> ops
   2: i32 schemaVersion
+  // Set only on a transaction without ops that marks the position of a local checkpoint, and
+  // matches the ID saved with the checkpoint.  Ignored by older schedulers, to which the
+  // transaction is empty.
+  3: optional i64 checkpointId
 }
 
 struct StoredCronJob {
@@ -221,12 +246,41 @@ struct DeduplicatedSnapshot {
    3: list<api.TaskConfig> taskConfigs
 }
 
+// The changes to scheduler state since the previous snapshot or snapshot delta in the log.
+struct SnapshotDelta {
+  // Entities changed since the previous snapshot, as of when the delta was captured.  Only the
+  // tasks, cronJobs, quotaConfigurations, hostAttributes and schedulerMetadata fields are set.
+  1: Snapshot changed
+  // Entities removed since the previous snapshot.
+  2: set<string> removedTaskIds
+  3: set<api.JobKey> removedCronJobs
+  4: set<string> removedQuotaRoles
+  // Lock and job update operations since the previous snapshot, in log order.
+  5: list<Op> ops
+}
+
+// Compression codecs that may be applied to a serialized LogEntry.
+enum CompressionCodec {
+  // The zlib format.
+  DEFLATE = 1
+  // Independent blocks in the LZ4 block format, each preceded by its 4-byte big-endian
+  // uncompressed length and the 4-byte big-endian length of its stored form.  Blocks that are
+  // stored uncompressed have the high bit of their stored length set.
+  LZ4 = 2
+}
+
+// A LogEntry that is serialized in the thrift binary format, then compressed.
+struct CompressedEntry {
+  1: CompressionCodec codec
+  2: binary data
+}
+
 // A scheduler storage write-ahead log entry consisting of no-ops to skip over or else snapshots or
 // transactions to apply.  Any entry type can also be chopped up into frames if the entry is too big
 // for whatever reason.
 union LogEntry {
   // The full state of the scheduler at some point-in-time. Transactions appearing before this
-  // entry in the log can be ignored.
+  // entry in the log can be ignored, except for those following a preceding snapshotMarker.
   1: Snapshot snapshot
 
   // An incremental update to apply to the scheduler storage.
@@ -247,5 +301,20 @@ union LogEntry {
   // The full state of the scheduler at some point-in-time, in a compact layout. Transactions
   // appearing before this entry in the log can be ignored.
   6: DeduplicatedSnapshot deduplicatedSnapshot
+
+  // Marks the point-in-time at which the state in the next snapshot entry was captured.
+  // Transactions appearing between this entry and that snapshot were captured after the snapshot
+  // state, and must be re-applied on top of it.  The value should be ignored.
+  7: bool snapshotMarker
+
+  // Changes since the previous snapshot or snapshot delta, captured at the preceding
+  // snapshotMarker.  Transactions between the marker of the previous snapshot and the marker of
+  // this delta can be ignored.  Snapshot deltas never truncate the log, which retains the full
+  // snapshot they are based on.
+  8: SnapshotDelta snapshotDelta
+
+  // A LogEntry compressed with the codec it is tagged with.  Like deflated entries, compressed
+  // entries are expected to be un-framed, and their contents should not be a Frame.
+  9: CompressedEntry compressedEntry
 }
 
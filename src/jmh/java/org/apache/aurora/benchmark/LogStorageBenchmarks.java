@@ -0,0 +1,486 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.application.ShutdownRegistry.ShutdownRegistryImpl;
+import com.twitter.common.inject.Bindings;
+import com.twitter.common.inject.Bindings.KeyFactory;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatsProvider;
+import com.twitter.common.util.Clock;
+
+import org.apache.aurora.benchmark.fakes.FakeEventSink;
+import org.apache.aurora.benchmark.fakes.FakeLog;
+import org.apache.aurora.benchmark.fakes.FakeStatsProvider;
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.ResourceAggregate;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskEvent;
+import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.events.EventSink;
+import org.apache.aurora.scheduler.log.Log;
+import org.apache.aurora.scheduler.log.local.LocalLog;
+import org.apache.aurora.scheduler.storage.DistributedSnapshotStore;
+import org.apache.aurora.scheduler.storage.SnapshotStore;
+import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.Storage.MutableStoreProvider;
+import org.apache.aurora.scheduler.storage.Storage.MutateWork;
+import org.apache.aurora.scheduler.storage.Storage.NonVolatileStorage;
+import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IResourceAggregate;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.log.LogStorage;
+import org.apache.aurora.scheduler.storage.log.LogStorageModule;
+import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl;
+import org.apache.aurora.scheduler.storage.mem.InMemStoresModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Performance benchmarks for writes to, and recovery of, log-backed storage.
+ */
+public class LogStorageBenchmarks {
+
+  /**
+   * Measures the throughput of concurrent writers that each change the state of tasks in their
+   * own job, interleaved with occasional writes that are not job scoped.  Compares fully
+   * serialized writes against striped per-job write locks, with and without group commit.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(MixedJobWritesBenchmark.NUM_JOBS)
+  @State(Scope.Benchmark)
+  public static class MixedJobWritesBenchmark {
+    static final int NUM_JOBS = 8;
+    private static final int TASKS_PER_JOB = 100;
+    // One in this many writes is not job scoped, and must run exclusively.
+    private static final int UNSCOPED_WRITE_INTERVAL = 50;
+    private static final Amount<Long, Time> APPEND_LATENCY = Amount.of(200L, Time.MICROSECONDS);
+
+    @Param({"0", "64"})
+    private int jobLockStripes;
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    private ShutdownRegistryImpl shutdownRegistry;
+    private NonVolatileStorage storage;
+    private List<IJobKey> jobs;
+    private Map<IJobKey, List<String>> taskIds;
+    private final AtomicInteger assignedJobs = new AtomicInteger();
+
+    /**
+     * Workload of a single writer thread, which is confined to one job.
+     */
+    @State(Scope.Thread)
+    public static class JobWorkload {
+      private IJobKey job;
+      private Optional<Set<IJobKey>> jobScope;
+      private int writes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      shutdownRegistry = new ShutdownRegistryImpl();
+      storage = startStorage(createInjector(
+          shutdownRegistry,
+          new FakeLog(APPEND_LATENCY),
+          new LogStorageModule(new LogStorage.Settings(
+              Amount.of(1L, Time.SECONDS),
+              Amount.of(1L, Time.HOURS),
+              groupCommit
+                  ? Optional.of(Amount.of(1L, Time.MILLISECONDS))
+                  : Optional.<Amount<Long, Time>>absent(),
+              jobLockStripes))));
+
+      ImmutableList.Builder<IJobKey> jobsBuilder = ImmutableList.builder();
+      ImmutableMap.Builder<IJobKey, List<String>> taskIdsBuilder = ImmutableMap.builder();
+      final ImmutableSet.Builder<IScheduledTask> tasks = ImmutableSet.builder();
+      for (int i = 0; i < NUM_JOBS; i++) {
+        Set<IScheduledTask> jobTasks = new Tasks.Builder()
+            .setJob("job-" + i)
+            .setUuidStart(i * TASKS_PER_JOB)
+            .setScheduleStatus(ScheduleStatus.RUNNING)
+            .build(TASKS_PER_JOB);
+        IJobKey job = org.apache.aurora.scheduler.base.Tasks.SCHEDULED_TO_JOB_KEY.apply(
+            Iterables.getFirst(jobTasks, null));
+        jobsBuilder.add(job);
+        taskIdsBuilder.put(
+            job,
+            ImmutableList.copyOf(org.apache.aurora.scheduler.base.Tasks.ids(jobTasks)));
+        tasks.addAll(jobTasks);
+      }
+      jobs = jobsBuilder.build();
+      taskIds = taskIdsBuilder.build();
+
+      storage.write(new MutateWork.NoResult.Quiet() {
+        @Override
+        protected void execute(MutableStoreProvider storeProvider) {
+          storeProvider.getUnsafeTaskStore().saveTasks(tasks.build());
+        }
+      });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      shutdownRegistry.execute();
+    }
+
+    @Benchmark
+    public void run(JobWorkload workload) {
+      if (workload.job == null) {
+        workload.job = jobs.get(assignedJobs.getAndIncrement() % NUM_JOBS);
+        workload.jobScope = Optional.<Set<IJobKey>>of(ImmutableSet.of(workload.job));
+      }
+
+      final int write = workload.writes++;
+      if (write % UNSCOPED_WRITE_INTERVAL == 0) {
+        final String role = workload.job.getRole();
+        storage.write(new MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            storeProvider.getQuotaStore().saveQuota(
+                role,
+                IResourceAggregate.build(new ResourceAggregate()
+                    .setNumCpus(write)
+                    .setRamMb(write)
+                    .setDiskMb(write)));
+          }
+        });
+      } else {
+        final String taskId = taskIds.get(workload.job).get(write % TASKS_PER_JOB);
+        storage.write(new MutateWork.NoResult.Quiet(workload.jobScope) {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
+            IScheduledTask task =
+                Iterables.getOnlyElement(taskStore.fetchTasks(Query.taskScoped(taskId)));
+            ScheduledTask builder = task.newBuilder()
+                .setTaskEvents(ImmutableList.of(
+                    new TaskEvent().setTimestamp(write).setStatus(ScheduleStatus.RUNNING)));
+            taskStore.saveTasks(ImmutableSet.of(IScheduledTask.build(builder)));
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Measures the throughput of concurrent appends to a local log, with and without waiting for
+   * appended entries to be flushed to disk.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(8)
+  @State(Scope.Benchmark)
+  public static class LocalLogAppendBenchmark {
+    @Param({"false", "true"})
+    private boolean syncAppends;
+
+    @Param({"256", "16384"})
+    private int entrySize;
+
+    private File directory;
+    private Log.Stream stream;
+    private byte[] entry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      directory = Files.createTempDir();
+      stream = new LocalLog(directory, Amount.of(64, Data.MB), syncAppends).open();
+      entry = new byte[entrySize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      deleteLogDirectory(directory);
+    }
+
+    @Benchmark
+    public Log.Position run() {
+      return stream.append(entry);
+    }
+  }
+
+  /**
+   * Measures the throughput of concurrent storage writes to tasks of different jobs when storage
+   * is backed by a local log, which flushes every append to disk.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(LocalLogWritesBenchmark.NUM_JOBS)
+  @State(Scope.Benchmark)
+  public static class LocalLogWritesBenchmark {
+    static final int NUM_JOBS = 8;
+    private static final int TASKS_PER_JOB = 100;
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    private File directory;
+    private ShutdownRegistryImpl shutdownRegistry;
+    private NonVolatileStorage storage;
+    private List<List<String>> taskIds;
+    private final AtomicInteger assignedJobs = new AtomicInteger();
+
+    /**
+     * Workload of a single writer thread, which is confined to one job.
+     */
+    @State(Scope.Thread)
+    public static class JobWorkload {
+      private List<String> taskIds;
+      private int writes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      directory = Files.createTempDir();
+      shutdownRegistry = new ShutdownRegistryImpl();
+      storage = startStorage(createInjector(
+          shutdownRegistry,
+          new LocalLog(directory, Amount.of(64, Data.MB), true),
+          new LogStorageModule(new LogStorage.Settings(
+              Amount.of(1L, Time.SECONDS),
+              Amount.of(1L, Time.HOURS),
+              groupCommit
+                  ? Optional.of(Amount.of(1L, Time.MILLISECONDS))
+                  : Optional.<Amount<Long, Time>>absent()))));
+
+      ImmutableList.Builder<List<String>> taskIdsBuilder = ImmutableList.builder();
+      for (int i = 0; i < NUM_JOBS; i++) {
+        final Set<IScheduledTask> jobTasks = new Tasks.Builder()
+            .setJob("job-" + i)
+            .setUuidStart(i * TASKS_PER_JOB)
+            .setScheduleStatus(ScheduleStatus.RUNNING)
+            .build(TASKS_PER_JOB);
+        taskIdsBuilder.add(
+            ImmutableList.copyOf(org.apache.aurora.scheduler.base.Tasks.ids(jobTasks)));
+        storage.write(new MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            storeProvider.getUnsafeTaskStore().saveTasks(jobTasks);
+          }
+        });
+      }
+      taskIds = taskIdsBuilder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      shutdownRegistry.execute();
+      deleteLogDirectory(directory);
+    }
+
+    @Benchmark
+    public void run(JobWorkload workload) {
+      if (workload.taskIds == null) {
+        workload.taskIds = taskIds.get(assignedJobs.getAndIncrement() % NUM_JOBS);
+      }
+
+      final int write = workload.writes++;
+      final String taskId = workload.taskIds.get(write % TASKS_PER_JOB);
+      storage.write(new MutateWork.NoResult.Quiet() {
+        @Override
+        protected void execute(MutableStoreProvider storeProvider) {
+          storeProvider.getUnsafeTaskStore().mutateTasks(
+              Query.taskScoped(taskId),
+              new Function<IScheduledTask, IScheduledTask>() {
+                @Override
+                public IScheduledTask apply(IScheduledTask task) {
+                  return IScheduledTask.build(task.newBuilder().setTaskEvents(ImmutableList.of(
+                      new TaskEvent().setTimestamp(write).setStatus(ScheduleStatus.RUNNING))));
+                }
+              });
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures the time to recover storage from a log containing a snapshot followed by a tail of
+   * task state changes, with and without decoding log entries in parallel.
+   */
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 10)
+  @Fork(1)
+  @State(Scope.Benchmark)
+  public static class RecoveryBenchmark {
+    private static final int TASKS_PER_JOB = 100;
+    private static final int TAIL_WRITES = 1000;
+
+    @Param({"0", "4"})
+    private int recoveryThreads;
+
+    @Param({"10000", "50000"})
+    private int numTasks;
+
+    private Log log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      log = new FakeLog(Amount.of(0L, Time.MILLISECONDS));
+      ShutdownRegistryImpl shutdownRegistry = new ShutdownRegistryImpl();
+      Injector injector = createInjector(shutdownRegistry, log, createModule());
+      NonVolatileStorage storage = startStorage(injector);
+
+      final List<String> taskIds = Lists.newArrayList();
+      for (int i = 0; i < numTasks / TASKS_PER_JOB; i++) {
+        final Set<IScheduledTask> jobTasks = new Tasks.Builder()
+            .setJob("job-" + i)
+            .setUuidStart(i * TASKS_PER_JOB)
+            .setScheduleStatus(ScheduleStatus.RUNNING)
+            .build(TASKS_PER_JOB);
+        taskIds.addAll(org.apache.aurora.scheduler.base.Tasks.ids(jobTasks));
+        storage.write(new MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            storeProvider.getUnsafeTaskStore().saveTasks(jobTasks);
+          }
+        });
+      }
+
+      injector.getInstance(DistributedSnapshotStore.class).persist(
+          injector.getInstance(new Key<SnapshotStore<Snapshot>>() { }).createSnapshot());
+
+      for (int i = 0; i < TAIL_WRITES; i++) {
+        final String taskId = taskIds.get(i % taskIds.size());
+        final ScheduleStatus status =
+            i % 2 == 0 ? ScheduleStatus.KILLING : ScheduleStatus.RUNNING;
+        storage.write(new MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            storeProvider.getUnsafeTaskStore().mutateTasks(
+                Query.taskScoped(taskId),
+                new Function<IScheduledTask, IScheduledTask>() {
+                  @Override
+                  public IScheduledTask apply(IScheduledTask task) {
+                    return IScheduledTask.build(task.newBuilder().setStatus(status));
+                  }
+                });
+          }
+        });
+      }
+      shutdownRegistry.execute();
+    }
+
+    private LogStorageModule createModule() {
+      return new LogStorageModule(
+          new LogStorage.Settings(Amount.of(1L, Time.SECONDS), Amount.of(1L, Time.HOURS)),
+          recoveryThreads);
+    }
+
+    @Benchmark
+    public NonVolatileStorage run() {
+      ShutdownRegistryImpl shutdownRegistry = new ShutdownRegistryImpl();
+      try {
+        return startStorage(createInjector(shutdownRegistry, log, createModule()));
+      } finally {
+        shutdownRegistry.execute();
+      }
+    }
+  }
+
+  private static Injector createInjector(
+      final ShutdownRegistry shutdownRegistry,
+      final Log log,
+      LogStorageModule logStorageModule) {
+
+    KeyFactory volatileKeys = Bindings.annotatedKeyFactory(Storage.Volatile.class);
+    return Guice.createInjector(
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(StatsProvider.class).toInstance(new FakeStatsProvider());
+            bind(Clock.class).toInstance(Clock.SYSTEM_CLOCK);
+            bind(ShutdownRegistry.class).toInstance(shutdownRegistry);
+            bind(EventSink.class).toInstance(new FakeEventSink());
+            bind(Log.class).toInstance(log);
+            bind(new TypeLiteral<SnapshotStore<Snapshot>>() { }).to(SnapshotStoreImpl.class);
+          }
+        },
+        DbModule.testModule(new InMemStoresModule.TaskStoreModule(volatileKeys), volatileKeys),
+        logStorageModule);
+  }
+
+  private static void deleteLogDirectory(File directory) {
+    // Local log directories are flat.
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private static NonVolatileStorage startStorage(Injector injector) {
+    NonVolatileStorage storage = injector.getInstance(NonVolatileStorage.class);
+    storage.prepare();
+    storage.start(new MutateWork.NoResult.Quiet() {
+      @Override
+      protected void execute(MutableStoreProvider storeProvider) {
+        // no-op
+      }
+    });
+    return storage;
+  }
+}
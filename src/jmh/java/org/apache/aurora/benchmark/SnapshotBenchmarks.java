@@ -29,6 +29,10 @@ import com.twitter.common.stats.StatsProvider;
 import com.twitter.common.util.Clock;
 
 import org.apache.aurora.benchmark.fakes.FakeStatsProvider;
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
+import org.apache.aurora.codec.ThriftBinaryCodec;
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.Lock;
 import org.apache.aurora.gen.LockKey;
 import org.apache.aurora.gen.storage.Snapshot;
@@ -89,6 +93,116 @@ public class SnapshotBenchmarks {
     }
   }
 
+  /**
+   * Compares the cost of compressing a snapshot with each codec.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class CompressSnapshotBenchmark {
+    private Snapshot snapshot;
+
+    @Param({"DEFLATE", "LZ4"})
+    private Compression codec;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      snapshot = createSnapshot(10, 100, 10000);
+    }
+
+    @Benchmark
+    public byte[] run() throws CodingException {
+      return ThriftBinaryCodec.compressNonNull(snapshot, codec);
+    }
+  }
+
+  /**
+   * Compares the cost of decompressing and decoding a snapshot with each codec.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class DecompressSnapshotBenchmark {
+    private byte[] compressed;
+
+    @Param({"DEFLATE", "LZ4"})
+    private Compression codec;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      Snapshot snapshot = createSnapshot(10, 100, 10000);
+      compressed = ThriftBinaryCodec.compressNonNull(snapshot, codec);
+    }
+
+    @Benchmark
+    public Snapshot run() throws CodingException {
+      return ThriftBinaryCodec.decompressNonNull(Snapshot.class, compressed, codec);
+    }
+  }
+
+  /**
+   * Compares the cost of encoding a snapshot with each encoding.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class EncodeSnapshotBenchmark {
+    private Snapshot snapshot;
+
+    @Param({"BINARY", "COMPACT"})
+    private Encoding encoding;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      snapshot = createSnapshot(10, 100, 10000);
+    }
+
+    @Benchmark
+    public byte[] run() throws CodingException {
+      return ThriftBinaryCodec.encodeNonNull(snapshot, encoding);
+    }
+  }
+
+  /**
+   * Compares the cost of decoding a snapshot written with each encoding.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class DecodeSnapshotBenchmark {
+    private byte[] encoded;
+
+    @Param({"BINARY", "COMPACT"})
+    private Encoding encoding;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      Snapshot snapshot = createSnapshot(10, 100, 10000);
+      encoded = ThriftBinaryCodec.encodeNonNull(snapshot, encoding);
+    }
+
+    @Benchmark
+    public Snapshot run() throws CodingException {
+      return ThriftBinaryCodec.decodeNonNull(Snapshot.class, encoded);
+    }
+  }
+
   private static SnapshotStoreImpl getSnapshotStore() {
     Bindings.KeyFactory keyFactory = Bindings.annotatedKeyFactory(Storage.Volatile.class);
     Injector injector = Guice.createInjector(
@@ -0,0 +1,289 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.twitter.common.inject.Bindings.KeyFactory;
+import com.twitter.common.stats.StatsProvider;
+import com.twitter.common.util.Clock;
+
+import org.apache.aurora.benchmark.fakes.FakeStatsProvider;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.mem.InMemStoresModule;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Performance and footprint benchmarks comparing the task store implementations.
+ */
+public class TaskStoreBenchmarks {
+
+  /**
+   * In-memory task store implementations under comparison.
+   */
+  public enum StoreType {
+    MEM,
+    COLUMNAR;
+
+    Module module() {
+      return this == MEM
+          ? new InMemStoresModule.TaskStoreModule(KeyFactory.PLAIN)
+          : InMemStoresModule.TaskStoreModule.columnar(KeyFactory.PLAIN);
+    }
+  }
+
+  /**
+   * Measures the time to populate a store.
+   */
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class PopulateBenchmark {
+    private Storage storage;
+    private Set<IScheduledTask> tasks;
+
+    @Param({"MEM", "COLUMNAR"})
+    private StoreType storeType;
+
+    @Param({"10000", "50000"})
+    private int numTasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      tasks = createTasks(numTasks);
+      storage = createStorage(storeType);
+    }
+
+    @Benchmark
+    public Storage run() {
+      saveTasks(storage, tasks);
+      return storage;
+    }
+  }
+
+  /**
+   * Measures the heap retained by a populated store, reported by the {@code retainedBytes}
+   * counter.  The retained size is found by walking the object graph of the populated store, so it
+   * counts what the store keeps reachable rather than what it allocated while being populated.
+   * The primary score only times fetching a single task, which keeps the counter reported.
+   */
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1, time = 1, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class HeapFootprintBenchmark {
+    private TaskStore taskStore;
+    private Query.Builder query;
+    private long retainedBytes;
+
+    @Param({"MEM", "COLUMNAR"})
+    private StoreType storeType;
+
+    @Param({"10000", "50000"})
+    private int numTasks;
+
+    /**
+     * Counters reported alongside the primary score.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+      public long retainedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      Storage storage = createStorage(storeType);
+      Set<IScheduledTask> tasks = createTasks(numTasks);
+      saveTasks(storage, tasks);
+      taskStore = storage.read(new Storage.Work.Quiet<TaskStore>() {
+        @Override
+        public TaskStore apply(Storage.StoreProvider storeProvider) {
+          return storeProvider.getTaskStore();
+        }
+      });
+      query = Query.taskScoped(Iterables.getFirst(tasks, null).getAssignedTask().getTaskId());
+      retainedBytes = GraphLayout.parseInstance(taskStore).totalSize();
+    }
+
+    @Benchmark
+    public int run(Footprint footprint) {
+      footprint.retainedBytes = retainedBytes;
+      return Iterables.size(taskStore.fetchTasks(query));
+    }
+  }
+
+  /**
+   * Measures query throughput against a populated store.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class FetchTasksBenchmark {
+    private Storage storage;
+    private Query.Builder query;
+
+    @Param({"MEM", "COLUMNAR"})
+    private StoreType storeType;
+
+    @Param({"10000", "50000"})
+    private int numTasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      storage = createStorage(storeType);
+      saveTasks(storage, createTasks(numTasks));
+      query = Query.roleScoped("jmh").byStatus(ScheduleStatus.RUNNING);
+    }
+
+    @Benchmark
+    public int run() {
+      return storage.read(new Storage.Work.Quiet<Integer>() {
+        @Override
+        public Integer apply(Storage.StoreProvider storeProvider) {
+          return Iterables.size(storeProvider.getTaskStore().fetchTasks(query));
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures the time to populate the database-backed task store.  An insert batch size of one
+   * issues separate statements for each task, as the store did before inserts were batched.
+   */
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class DbSaveTasksBenchmark {
+    private Storage storage;
+    private Set<IScheduledTask> tasks;
+
+    @Param({"1", "1000"})
+    private int insertBatchSize;
+
+    @Param({"false", "true"})
+    private boolean bulkLoad;
+
+    @Param({"1000", "10000"})
+    private int numTasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      tasks = createTasks(numTasks);
+      storage = createStorage(DbModule.testModule(
+          new DbModule.TaskStoreModule(KeyFactory.PLAIN),
+          KeyFactory.PLAIN,
+          insertBatchSize));
+    }
+
+    @Benchmark
+    public Storage run() {
+      if (bulkLoad) {
+        storage.bulkLoad(new Storage.MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(Storage.MutableStoreProvider storeProvider) {
+            storeProvider.getUnsafeTaskStore().saveTasks(tasks);
+          }
+        });
+      } else {
+        saveTasks(storage, tasks);
+      }
+      return storage;
+    }
+  }
+
+  private static Set<IScheduledTask> createTasks(int numTasks) {
+    // A mix of active and terminal tasks across a handful of jobs, resembling a retained history.
+    ImmutableSet.Builder<IScheduledTask> tasks = ImmutableSet.builder();
+    int perJob = numTasks / 10;
+    for (int i = 0; i < 10; i++) {
+      tasks.addAll(new Tasks.Builder()
+          .setJob("job-" + i)
+          .setUuidStart(i * perJob)
+          .setScheduleStatus(i % 2 == 0 ? ScheduleStatus.RUNNING : ScheduleStatus.FINISHED)
+          .build(perJob));
+    }
+    return tasks.build();
+  }
+
+  private static Storage createStorage(StoreType storeType) {
+    return createStorage(DbModule.testModule(storeType.module()));
+  }
+
+  private static Storage createStorage(Module dbModule) {
+    Injector injector = Guice.createInjector(
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(StatsProvider.class).toInstance(new FakeStatsProvider());
+            bind(Clock.class).toInstance(Clock.SYSTEM_CLOCK);
+          }
+        },
+        dbModule);
+
+    Storage storage = injector.getInstance(Storage.class);
+    storage.prepare();
+    return storage;
+  }
+
+  private static void saveTasks(Storage storage, final Set<IScheduledTask> tasks) {
+    storage.write(new Storage.MutateWork.NoResult.Quiet() {
+      @Override
+      protected void execute(Storage.MutableStoreProvider storeProvider) {
+        storeProvider.getUnsafeTaskStore().saveTasks(tasks);
+      }
+    });
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.benchmark.fakes;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+
+import org.apache.aurora.scheduler.log.Log;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory log that retains appended entries, and delays appends by a fixed amount of time to
+ * simulate the latency of appending to a replicated log.  Entries are shared by all streams
+ * opened from the log, so that a log written by one storage instance may be recovered by another.
+ */
+public class FakeLog implements Log {
+  private final Amount<Long, Time> appendLatency;
+  private final AtomicLong appended = new AtomicLong();
+  private final ConcurrentNavigableMap<Long, byte[]> entries = new ConcurrentSkipListMap<>();
+
+  public FakeLog(Amount<Long, Time> appendLatency) {
+    this.appendLatency = requireNonNull(appendLatency);
+  }
+
+  @Override
+  public Stream open() {
+    return new Stream() {
+      @Override
+      public Position append(byte[] contents) {
+        if (appendLatency.getValue() > 0) {
+          Uninterruptibles.sleepUninterruptibly(
+              appendLatency.getValue(),
+              appendLatency.getUnit().getTimeUnit());
+        }
+        long index = appended.incrementAndGet();
+        entries.put(index, contents);
+        return new FakePosition(index);
+      }
+
+      @Override
+      public Iterator<Entry> readAll() {
+        return toEntries(entries);
+      }
+
+      @Override
+      public Iterator<Entry> readFrom(Position position) {
+        long index = ((FakePosition) position).index;
+        if (!entries.containsKey(index)) {
+          throw new InvalidPositionException("Position " + index + " is not in the log.");
+        }
+        return toEntries(entries.tailMap(index));
+      }
+
+      @Override
+      public Iterator<Entry> tail(Optional<Position> position) {
+        if (!position.isPresent()) {
+          return toEntries(entries);
+        }
+        long index = ((FakePosition) position.get()).index;
+        if (!entries.isEmpty() && entries.firstKey() > index + 1) {
+          throw new InvalidPositionException("Entries following " + index + " were truncated.");
+        }
+        return toEntries(entries.tailMap(index, false));
+      }
+
+      @Override
+      public Position position(byte[] identity) {
+        return new FakePosition(Longs.fromByteArray(identity));
+      }
+
+      @Override
+      public void truncateBefore(Position position) {
+        entries.headMap(((FakePosition) position).index).clear();
+      }
+    };
+  }
+
+  private static Iterator<Entry> toEntries(Map<Long, byte[]> contents) {
+    return Iterables.transform(
+        ImmutableList.copyOf(contents.entrySet()),
+        new Function<Map.Entry<Long, byte[]>, Entry>() {
+          @Override
+          public Entry apply(final Map.Entry<Long, byte[]> entry) {
+            return new Entry() {
+              @Override
+              public byte[] contents() {
+                return entry.getValue();
+              }
+
+              @Override
+              public Position position() {
+                return new FakePosition(entry.getKey());
+              }
+            };
+          }
+        }).iterator();
+  }
+
+  private static final class FakePosition implements Position {
+    private final long index;
+
+    FakePosition(long index) {
+      this.index = index;
+    }
+
+    @Override
+    public byte[] identity() {
+      return Longs.toByteArray(index);
+    }
+
+    @Override
+    public int compareTo(Position other) {
+      return Long.compare(index, ((FakePosition) other).index);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+
+/**
+ * Compression codecs for encoded thrift objects.
+ */
+public enum Compression {
+  /**
+   * The zlib format, compressed with {@link Deflater}.  Compresses well, but is comparatively
+   * slow to compress and decompress.
+   */
+  DEFLATE {
+    @Override
+    public OutputStream compress(OutputStream out) {
+      return new DeflaterOutputStream(out, new Deflater(DEFLATE_LEVEL), DEFLATER_BUFFER_SIZE);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+      return new InflaterInputStream(in);
+    }
+  },
+
+  /**
+   * Independent blocks in the LZ4 block format.  Compresses and decompresses several times faster
+   * than {@link #DEFLATE}, at a lower compression ratio.
+   */
+  LZ4 {
+    @Override
+    public OutputStream compress(OutputStream out) {
+      return new Lz4OutputStream(out);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+      return new Lz4InputStream(in);
+    }
+  };
+
+  // See http://www.zlib.net/zlib_how.html
+  // "If the memory is available, buffers sizes on the order of 128K or 256K bytes should be used."
+  static final int DEFLATER_BUFFER_SIZE = Amount.of(256, Data.KB).as(Data.BYTES);
+
+  // Empirical from microbenchmarks (assuming 20MiB/s writes to the replicated log and a large
+  // de-duplicated Snapshot from a production environment).
+  // TODO(ksweeney): Consider making this configurable.
+  static final int DEFLATE_LEVEL = 3;
+
+  /**
+   * Wraps a stream to compress the data written to it.  Closing the returned stream writes any
+   * buffered data and closes {@code out}.
+   *
+   * @param out Stream to write compressed data to.
+   * @return A stream that compresses data written to it.
+   */
+  public abstract OutputStream compress(OutputStream out);
+
+  /**
+   * Wraps a stream to decompress the data read from it.
+   *
+   * @param in Stream to read compressed data from.
+   * @return A stream that decompresses data read from {@code in}.
+   */
+  public abstract InputStream decompress(InputStream in);
+}
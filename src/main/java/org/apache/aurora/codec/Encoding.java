@@ -0,0 +1,129 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+
+/**
+ * Wire encodings for thrift objects.
+ * <p>
+ * Objects encoded with {@link #BINARY} carry no header, so that they remain readable by code that
+ * predates other encodings.  Every other encoding is prefixed with a header that can not begin a
+ * binary-encoded struct, whose first byte is always a field type.  This allows the encoding of an
+ * object to be detected when it is read.
+ */
+public enum Encoding {
+  /**
+   * The thrift binary protocol, which writes fixed-width integers and full field headers.
+   */
+  BINARY(new TBinaryProtocol.Factory(), new byte[0]),
+
+  /**
+   * The thrift compact protocol, which writes variable-length integers and delta-encoded field
+   * headers.  Produces smaller output that is faster to decode than {@link #BINARY}.  The header
+   * is the compact protocol's message protocol ID, followed by a format version.
+   */
+  COMPACT(new TCompactProtocol.Factory(), new byte[] {(byte) 0x82, 1});
+
+  // The longest header of any encoding.
+  static final int MAX_HEADER_SIZE = 2;
+
+  private final TProtocolFactory protocolFactory;
+  private final byte[] header;
+
+  Encoding(TProtocolFactory protocolFactory, byte[] header) {
+    this.protocolFactory = protocolFactory;
+    this.header = header;
+  }
+
+  TProtocolFactory getProtocolFactory() {
+    return protocolFactory;
+  }
+
+  int getHeaderSize() {
+    return header.length;
+  }
+
+  void writeHeader(OutputStream out) throws IOException {
+    out.write(header);
+  }
+
+  private boolean matches(byte[] buffer, int length) {
+    if (header.length == 0 || length < header.length) {
+      return false;
+    }
+    for (int i = 0; i < header.length; i++) {
+      if (buffer[i] != header[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int read(InputStream in, byte[] buffer, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      int read = in.read(buffer, total, length - total);
+      if (read == -1) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  /**
+   * Detects the encoding of an encoded object.
+   *
+   * @param buffer Encoded object.
+   * @return The encoding of {@code buffer}.
+   */
+  static Encoding detect(byte[] buffer) {
+    for (Encoding encoding : values()) {
+      if (encoding.matches(buffer, buffer.length)) {
+        return encoding;
+      }
+    }
+    return BINARY;
+  }
+
+  /**
+   * Detects the encoding of an encoded object being read from a stream, and consumes its header.
+   *
+   * @param in Stream to read the encoded object from, which must support
+   *     {@link InputStream#mark(int)}.
+   * @return The encoding of the object being read from {@code in}.
+   * @throws IOException If the stream could not be read.
+   */
+  static Encoding detect(InputStream in) throws IOException {
+    byte[] prefix = new byte[MAX_HEADER_SIZE];
+    in.mark(prefix.length);
+    int length = read(in, prefix, prefix.length);
+    in.reset();
+
+    for (Encoding encoding : values()) {
+      if (encoding.matches(prefix, length)) {
+        read(in, prefix, encoding.header.length);
+        return encoding;
+      }
+    }
+    return BINARY;
+  }
+}
@@ -0,0 +1,274 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format.
+ * <p>
+ * The compressor trades compression ratio for speed, finding matches through a single-entry hash
+ * table of 4-byte sequences.  The decompressor validates all lengths and offsets against the
+ * bounds of its input and output, so malformed input fails with an exception rather than reading
+ * or writing out of bounds.
+ *
+ * @see <a href="https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md">LZ4 block format</a>
+ */
+final class Lz4 {
+
+  private static final int MIN_MATCH = 4;
+  // The last match must start at least this many bytes before the end of the block.
+  private static final int MF_LIMIT = 12;
+  // The last sequence must contain at least this many literals.
+  private static final int LAST_LITERALS = 5;
+  private static final int MAX_DISTANCE = 65535;
+
+  private static final int RUN_MASK = 0x0F;
+  private static final int HASH_LOG = 14;
+  // Misses before the compressor starts skipping ahead through incompressible input.
+  private static final int SKIP_TRIGGER = 6;
+
+  private final int[] hashTable = new int[1 << HASH_LOG];
+
+  /**
+   * Gets the maximum size of the compressed form of {@code length} bytes.
+   *
+   * @param length Uncompressed length.
+   * @return Maximum compressed length.
+   */
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses a block of data.  Instances are not thread-safe, since the compressor's hash table
+   * is reused between blocks.
+   *
+   * @param src Buffer holding the data to compress.
+   * @param srcOff Offset of the data in {@code src}.
+   * @param srcLen Length of the data.
+   * @param dest Buffer to write the compressed block to, which must have at least
+   *     {@link #maxCompressedLength(int)} bytes available at {@code destOff}.
+   * @param destOff Offset in {@code dest} to write the compressed block at.
+   * @return The compressed length.
+   */
+  int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+    int srcEnd = srcOff + srcLen;
+    int matchLimit = srcEnd - LAST_LITERALS;
+    int mfLimit = srcEnd - MF_LIMIT;
+    int anchor = srcOff;
+    int dp = destOff;
+
+    if (srcLen > MF_LIMIT) {
+      Arrays.fill(hashTable, -1);
+      int sp = srcOff;
+      int misses = 0;
+      while (sp < mfLimit) {
+        int sequence = readInt(src, sp);
+        int hash = hash(sequence);
+        int ref = hashTable[hash];
+        hashTable[hash] = sp;
+        if (ref < 0 || sp - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          sp += 1 + (misses++ >>> SKIP_TRIGGER);
+          continue;
+        }
+        misses = 0;
+
+        int matchStart = sp;
+        int refStart = ref;
+        while (matchStart > anchor
+            && refStart > srcOff
+            && src[matchStart - 1] == src[refStart - 1]) {
+
+          matchStart--;
+          refStart--;
+        }
+        int matchEnd = sp + MIN_MATCH;
+        int refEnd = ref + MIN_MATCH;
+        while (matchEnd < matchLimit && src[matchEnd] == src[refEnd]) {
+          matchEnd++;
+          refEnd++;
+        }
+
+        dp = writeSequence(
+            src,
+            anchor,
+            matchStart - anchor,
+            sp - ref,
+            matchEnd - matchStart,
+            dest,
+            dp);
+        sp = matchEnd;
+        anchor = matchEnd;
+      }
+    }
+
+    dp = writeLiterals(src, anchor, srcEnd - anchor, dest, dp, 0);
+    return dp - destOff;
+  }
+
+  private static int writeSequence(
+      byte[] src,
+      int literalOff,
+      int literalLen,
+      int offset,
+      int matchLen,
+      byte[] dest,
+      int dp) {
+
+    int matchCode = matchLen - MIN_MATCH;
+    dp = writeLiterals(src, literalOff, literalLen, dest, dp, Math.min(matchCode, RUN_MASK));
+    dest[dp++] = (byte) offset;
+    dest[dp++] = (byte) (offset >>> 8);
+    if (matchCode >= RUN_MASK) {
+      dp = writeLengthExtension(matchCode - RUN_MASK, dest, dp);
+    }
+    return dp;
+  }
+
+  private static int writeLiterals(
+      byte[] src,
+      int literalOff,
+      int literalLen,
+      byte[] dest,
+      int dp,
+      int matchToken) {
+
+    int literalToken = Math.min(literalLen, RUN_MASK);
+    dest[dp++] = (byte) ((literalToken << 4) | matchToken);
+    if (literalLen >= RUN_MASK) {
+      dp = writeLengthExtension(literalLen - RUN_MASK, dest, dp);
+    }
+    System.arraycopy(src, literalOff, dest, dp, literalLen);
+    return dp + literalLen;
+  }
+
+  private static int writeLengthExtension(int length, byte[] dest, int dp) {
+    while (length >= 0xFF) {
+      dest[dp++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dest[dp++] = (byte) length;
+    return dp;
+  }
+
+  /**
+   * Decompresses a block of data.
+   *
+   * @param src Buffer holding the compressed block.
+   * @param srcOff Offset of the compressed block in {@code src}.
+   * @param srcLen Length of the compressed block.
+   * @param dest Buffer to write the decompressed data to.
+   * @param destOff Offset in {@code dest} to write the decompressed data at.
+   * @param destLen Expected length of the decompressed data.
+   * @throws IOException If the block is malformed, or does not decompress to {@code destLen}
+   *     bytes.
+   */
+  static void decompress(
+      byte[] src,
+      int srcOff,
+      int srcLen,
+      byte[] dest,
+      int destOff,
+      int destLen) throws IOException {
+
+    int sp = srcOff;
+    int srcEnd = srcOff + srcLen;
+    int dp = destOff;
+    int destEnd = destOff + destLen;
+
+    while (true) {
+      if (sp >= srcEnd) {
+        throw new IOException("Truncated LZ4 block.");
+      }
+      int token = src[sp++] & 0xFF;
+
+      int literalLen = token >>> 4;
+      if (literalLen == RUN_MASK) {
+        int b;
+        do {
+          if (sp >= srcEnd) {
+            throw new IOException("Truncated LZ4 literal length.");
+          }
+          b = src[sp++] & 0xFF;
+          literalLen += b;
+        } while (b == 0xFF);
+      }
+      if (literalLen > srcEnd - sp || literalLen > destEnd - dp) {
+        throw new IOException("LZ4 literals exceed block bounds.");
+      }
+      System.arraycopy(src, sp, dest, dp, literalLen);
+      sp += literalLen;
+      dp += literalLen;
+
+      if (sp == srcEnd) {
+        // The last sequence only contains literals.
+        break;
+      }
+
+      if (srcEnd - sp < 2) {
+        throw new IOException("Truncated LZ4 match offset.");
+      }
+      int offset = (src[sp] & 0xFF) | ((src[sp + 1] & 0xFF) << 8);
+      sp += 2;
+      if (offset == 0 || offset > dp - destOff) {
+        throw new IOException("Invalid LZ4 match offset " + offset);
+      }
+
+      int matchLen = token & RUN_MASK;
+      if (matchLen == RUN_MASK) {
+        int b;
+        do {
+          if (sp >= srcEnd) {
+            throw new IOException("Truncated LZ4 match length.");
+          }
+          b = src[sp++] & 0xFF;
+          matchLen += b;
+        } while (b == 0xFF);
+      }
+      matchLen += MIN_MATCH;
+      if (matchLen > destEnd - dp) {
+        throw new IOException("LZ4 match exceeds block bounds.");
+      }
+
+      int ref = dp - offset;
+      if (offset >= matchLen) {
+        System.arraycopy(dest, ref, dest, dp, matchLen);
+      } else {
+        // Overlapping matches repeat the bytes they are copying.
+        for (int i = 0; i < matchLen; i++) {
+          dest[dp + i] = dest[ref + i];
+        }
+      }
+      dp += matchLen;
+    }
+
+    if (dp != destEnd) {
+      throw new IOException("LZ4 block decompressed to " + (dp - destOff)
+          + " bytes, expected " + destLen);
+    }
+  }
+
+  private static int readInt(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xFF)
+        | ((buffer[offset + 1] & 0xFF) << 8)
+        | ((buffer[offset + 2] & 0xFF) << 16)
+        | ((buffer[offset + 3] & 0xFF) << 24);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.util.Objects.requireNonNull;
+
+import static org.apache.aurora.codec.Lz4OutputStream.BLOCK_SIZE;
+import static org.apache.aurora.codec.Lz4OutputStream.HEADER_SIZE;
+import static org.apache.aurora.codec.Lz4OutputStream.UNCOMPRESSED_FLAG;
+
+/**
+ * An input stream that decompresses data written by {@link Lz4OutputStream}.  This stream is not
+ * thread-safe.
+ */
+final class Lz4InputStream extends InputStream {
+
+  private final InputStream in;
+  private final byte[] header = new byte[HEADER_SIZE];
+  private final byte[] block = new byte[BLOCK_SIZE];
+  private final byte[] compressed = new byte[Lz4.maxCompressedLength(BLOCK_SIZE)];
+  private int position = 0;
+  private int limit = 0;
+  private boolean eof = false;
+
+  /**
+   * Creates a stream that reads compressed data from {@code in}.
+   *
+   * @param in Stream to read compressed data from.
+   */
+  Lz4InputStream(InputStream in) {
+    this.in = requireNonNull(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return block[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureAvailable()) {
+      return -1;
+    }
+
+    int read = Math.min(len, limit - position);
+    System.arraycopy(block, position, b, off, read);
+    position += read;
+    return read;
+  }
+
+  @Override
+  public int available() {
+    return limit - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private boolean ensureAvailable() throws IOException {
+    while (position == limit) {
+      if (eof || !readBlock()) {
+        eof = true;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean readBlock() throws IOException {
+    int headerRead = readFully(header, HEADER_SIZE);
+    if (headerRead == 0) {
+      return false;
+    } else if (headerRead < HEADER_SIZE) {
+      throw new EOFException("Truncated LZ4 block header.");
+    }
+
+    int uncompressedLength = readInt(header, 0);
+    int storedLength = readInt(header, 4);
+    if (uncompressedLength <= 0 || uncompressedLength > BLOCK_SIZE) {
+      throw new IOException("Invalid LZ4 block length " + uncompressedLength);
+    }
+
+    if ((storedLength & UNCOMPRESSED_FLAG) != 0) {
+      if ((storedLength & ~UNCOMPRESSED_FLAG) != uncompressedLength) {
+        throw new IOException("Invalid uncompressed LZ4 block length " + storedLength);
+      }
+      readBlockData(block, uncompressedLength);
+    } else {
+      if (storedLength <= 0 || storedLength > compressed.length) {
+        throw new IOException("Invalid compressed LZ4 block length " + storedLength);
+      }
+      readBlockData(compressed, storedLength);
+      Lz4.decompress(compressed, 0, storedLength, block, 0, uncompressedLength);
+    }
+    position = 0;
+    limit = uncompressedLength;
+    return true;
+  }
+
+  private void readBlockData(byte[] buffer, int length) throws IOException {
+    if (readFully(buffer, length) < length) {
+      throw new EOFException("Truncated LZ4 block.");
+    }
+  }
+
+  private int readFully(byte[] buffer, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      int read = in.read(buffer, total, length - total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static int readInt(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xFF) << 24)
+        | ((buffer[offset + 1] & 0xFF) << 16)
+        | ((buffer[offset + 2] & 0xFF) << 8)
+        | (buffer[offset + 3] & 0xFF);
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An output stream that compresses data into a sequence of independent LZ4 blocks, which may be
+ * read with {@link Lz4InputStream}.
+ * <p>
+ * Each block is written as its 4-byte big-endian uncompressed length, followed by the 4-byte
+ * big-endian length of its stored form and the stored data.  When compression does not reduce the
+ * size of a block, the block is stored uncompressed, which is indicated by setting the high bit of
+ * the stored length.  This stream is not thread-safe.
+ */
+final class Lz4OutputStream extends OutputStream {
+
+  /**
+   * Maximum number of uncompressed bytes in a block.
+   */
+  static final int BLOCK_SIZE = 256 * 1024;
+
+  static final int HEADER_SIZE = 8;
+  static final int UNCOMPRESSED_FLAG = 0x80000000;
+
+  private final OutputStream out;
+  private final Lz4 compressor = new Lz4();
+  private final byte[] block = new byte[BLOCK_SIZE];
+  private final byte[] compressed = new byte[HEADER_SIZE + Lz4.maxCompressedLength(BLOCK_SIZE)];
+  private int blockLength = 0;
+  private boolean closed = false;
+
+  /**
+   * Creates a stream that writes compressed data to {@code out}.
+   *
+   * @param out Stream to write compressed data to.
+   */
+  Lz4OutputStream(OutputStream out) {
+    this.out = requireNonNull(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (blockLength == BLOCK_SIZE) {
+      writeBlock();
+    }
+    block[blockLength++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    while (len > 0) {
+      if (blockLength == BLOCK_SIZE) {
+        writeBlock();
+      }
+      int copied = Math.min(len, BLOCK_SIZE - blockLength);
+      System.arraycopy(b, off, block, blockLength, copied);
+      blockLength += copied;
+      off += copied;
+      len -= copied;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    writeBlock();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      writeBlock();
+    } finally {
+      closed = true;
+      out.close();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed.");
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (blockLength == 0) {
+      return;
+    }
+
+    int compressedLength = compressor.compress(block, 0, blockLength, compressed, HEADER_SIZE);
+    writeInt(compressed, 0, blockLength);
+    if (compressedLength < blockLength) {
+      writeInt(compressed, 4, compressedLength);
+      out.write(compressed, 0, HEADER_SIZE + compressedLength);
+    } else {
+      writeInt(compressed, 4, blockLength | UNCOMPRESSED_FLAG);
+      out.write(compressed, 0, HEADER_SIZE);
+      out.write(block, 0, blockLength);
+    }
+    blockLength = 0;
+  }
+
+  private static void writeInt(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) (value >>> 24);
+    buffer[offset + 1] = (byte) (value >>> 16);
+    buffer[offset + 2] = (byte) (value >>> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+}
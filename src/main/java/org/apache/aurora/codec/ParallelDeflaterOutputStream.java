@@ -0,0 +1,238 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An output stream that compresses data in the zlib format, compressing fixed-size blocks of the
+ * input concurrently.
+ * <p>
+ * Each block is compressed independently as raw deflate data, primed with the tail of the
+ * preceding block as a dictionary so that the compression ratio is close to that of compressing
+ * the input as a whole.  All blocks but the last end on a byte boundary, allowing the compressed
+ * blocks to be concatenated into a single deflate stream.  The output may therefore be read with
+ * a standard {@link java.util.zip.InflaterInputStream}.
+ * <p>
+ * At most {@code maxPendingBlocks} blocks are buffered while awaiting compression, which bounds
+ * the memory used by the stream.  Compressed blocks are written to the underlying stream in order,
+ * on the thread writing to this stream.  This stream is not thread-safe.
+ */
+public final class ParallelDeflaterOutputStream extends OutputStream {
+
+  /**
+   * Size of the uncompressed blocks that are compressed concurrently.
+   */
+  public static final int BLOCK_SIZE = 1024 * 1024;
+
+  // Maximum back-reference distance of the deflate format.
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream out;
+  private final int level;
+  private final Executor executor;
+  private final int maxPendingBlocks;
+  private final Adler32 checksum = new Adler32();
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] block = new byte[BLOCK_SIZE];
+  private int blockLength = 0;
+  @Nullable private byte[] dictionary = null;
+  private boolean closed = false;
+
+  /**
+   * Creates a stream that writes compressed data to {@code out}.
+   *
+   * @param out Stream to write compressed data to.
+   * @param level Deflate compression level.
+   * @param executor Executor to compress blocks with.
+   * @param maxPendingBlocks Maximum number of blocks to buffer while awaiting compression.
+   * @throws IOException If the zlib header could not be written.
+   */
+  public ParallelDeflaterOutputStream(
+      OutputStream out,
+      int level,
+      Executor executor,
+      int maxPendingBlocks) throws IOException {
+
+    Preconditions.checkArgument(
+        level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+        "Invalid compression level.");
+    Preconditions.checkArgument(maxPendingBlocks > 0, "Must allow at least one pending block.");
+
+    this.out = requireNonNull(out);
+    this.level = level;
+    this.executor = requireNonNull(executor);
+    this.maxPendingBlocks = maxPendingBlocks;
+    writeHeader();
+  }
+
+  private void writeHeader() throws IOException {
+    // See RFC 1950: a 32K window deflate stream, with the level hint in the flag byte.
+    int levelHint;
+    if (level < 2) {
+      levelHint = 0;
+    } else if (level < 6) {
+      levelHint = 1;
+    } else if (level == 6) {
+      levelHint = 2;
+    } else {
+      levelHint = 3;
+    }
+    int header = (0x78 << 8) | (levelHint << 6);
+    header += 31 - (header % 31);
+    out.write(header >> 8);
+    out.write(header & 0xFF);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    Preconditions.checkState(!closed, "Stream is closed.");
+    Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+
+    int remaining = length;
+    int position = offset;
+    while (remaining > 0) {
+      int copied = Math.min(remaining, BLOCK_SIZE - blockLength);
+      System.arraycopy(bytes, position, block, blockLength, copied);
+      blockLength += copied;
+      position += copied;
+      remaining -= copied;
+      if (blockLength == BLOCK_SIZE) {
+        submitBlock(false);
+      }
+    }
+  }
+
+  private void submitBlock(boolean last) throws IOException {
+    final byte[] input = block;
+    final int inputLength = blockLength;
+    final byte[] inputDictionary = dictionary;
+    final boolean finish = last;
+    checksum.update(input, 0, inputLength);
+
+    FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        return compress(input, inputLength, inputDictionary, finish);
+      }
+    });
+    pending.addLast(task);
+    executor.execute(task);
+
+    if (!last) {
+      dictionary = Arrays.copyOfRange(input, inputLength - DICTIONARY_SIZE, inputLength);
+      block = new byte[BLOCK_SIZE];
+      blockLength = 0;
+    }
+
+    while (pending.size() > (last ? 0 : maxPendingBlocks - 1)) {
+      writeCompleted(pending.removeFirst());
+    }
+  }
+
+  private byte[] compress(byte[] input, int length, @Nullable byte[] dict, boolean finish) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dict != null) {
+        deflater.setDictionary(dict);
+      }
+      deflater.setInput(input, 0, length);
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(length / 4, 64));
+      byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+      if (finish) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+      } else {
+        // A sync flush ends the output on a byte boundary, so the next block may be appended.
+        int written;
+        do {
+          written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          compressed.write(buffer, 0, written);
+        } while (written == buffer.length);
+      }
+      return compressed.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private void writeCompleted(Future<byte[]> compressed) throws IOException {
+    try {
+      out.write(compressed.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing.");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to compress block.", e.getCause());
+    }
+  }
+
+  /**
+   * Compresses all remaining data, writes the zlib trailer, and closes the underlying stream.
+   *
+   * @throws IOException If the compressed data could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      submitBlock(true);
+      long adler = checksum.getValue();
+      out.write((int) (adler >>> 24) & 0xFF);
+      out.write((int) (adler >>> 16) & 0xFF);
+      out.write((int) (adler >>> 8) & 0xFF);
+      out.write((int) adler & 0xFF);
+    } finally {
+      for (Future<byte[]> abandoned : pending) {
+        abandoned.cancel(true);
+      }
+      pending.clear();
+      block = null;
+      out.close();
+    }
+  }
+}
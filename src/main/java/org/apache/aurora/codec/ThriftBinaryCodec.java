@@ -13,27 +13,24 @@
  */
 package org.apache.aurora.codec;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
-import com.twitter.common.quantity.Amount;
-import com.twitter.common.quantity.Data;
-
 import org.apache.thrift.TBase;
-import org.apache.thrift.TDeserializer;
 import org.apache.thrift.TException;
-import org.apache.thrift.TSerializer;
-import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
 import org.apache.thrift.transport.TTransport;
 
 import static java.util.Objects.requireNonNull;
@@ -44,9 +41,9 @@ import static java.util.Objects.requireNonNull;
 public final class ThriftBinaryCodec {
 
   /**
-   * Protocol factory used for all thrift encoding and decoding.
+   * Protocol factory used for {@link Encoding#BINARY binary} thrift encoding and decoding.
    */
-  public static final TProtocolFactory PROTOCOL_FACTORY = new TBinaryProtocol.Factory();
+  public static final TProtocolFactory PROTOCOL_FACTORY = Encoding.BINARY.getProtocolFactory();
 
   private ThriftBinaryCodec() {
     // Utility class.
@@ -72,7 +69,8 @@ public final class ThriftBinaryCodec {
   }
 
   /**
-   * Decodes a binary-encoded byte array into a target type.
+   * Decodes a byte array into a target type.  The buffer may be encoded with any
+   * {@link Encoding}, which is detected from the buffer.
    *
    * @param clazz Class to instantiate and deserialize to.
    * @param buffer Buffer to decode.
@@ -86,9 +84,14 @@ public final class ThriftBinaryCodec {
     requireNonNull(clazz);
     requireNonNull(buffer);
 
+    Encoding encoding = Encoding.detect(buffer);
     try {
       T t = newInstance(clazz);
-      new TDeserializer(PROTOCOL_FACTORY).deserialize(t, buffer);
+      TTransport transport = new TMemoryInputTransport(
+          buffer,
+          encoding.getHeaderSize(),
+          buffer.length - encoding.getHeaderSize());
+      t.read(encoding.getProtocolFactory().getProtocol(transport));
       return t;
     } catch (TException e) {
       throw new CodingException("Failed to deserialize thrift object.", e);
@@ -111,30 +114,59 @@ public final class ThriftBinaryCodec {
   }
 
   /**
-   * Encodes a thrift object into a binary array.
+   * Encodes a thrift object into a binary array with the {@link Encoding#BINARY binary}
+   * encoding.
    *
    * @param tBase Object to encode.
    * @return Encoded object.
    * @throws CodingException If the object could not be encoded.
    */
   public static byte[] encodeNonNull(TBase<?, ?> tBase) throws CodingException {
+    return encodeNonNull(tBase, Encoding.BINARY);
+  }
+
+  /**
+   * Encodes a thrift object into a binary array.
+   *
+   * @param tBase Object to encode.
+   * @param encoding Encoding to write the object with.
+   * @return Encoded object.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static byte[] encodeNonNull(TBase<?, ?> tBase, Encoding encoding)
+      throws CodingException {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encodeNonNull(tBase, out, encoding);
+    return out.toByteArray();
+  }
+
+  /**
+   * Encodes a thrift object into a stream.  The stream is not closed.
+   *
+   * @param tBase Object to encode.
+   * @param out Stream to write the encoded object to.
+   * @param encoding Encoding to write the object with.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static void encodeNonNull(TBase<?, ?> tBase, OutputStream out, Encoding encoding)
+      throws CodingException {
+
     requireNonNull(tBase);
+    requireNonNull(out);
+    requireNonNull(encoding);
 
     try {
-      return new TSerializer(PROTOCOL_FACTORY).serialize(tBase);
-    } catch (TException e) {
+      encoding.writeHeader(out);
+      tBase.write(encoding.getProtocolFactory().getProtocol(new TIOStreamTransport(out)));
+    } catch (TException | IOException e) {
       throw new CodingException("Failed to serialize: " + tBase, e);
     }
   }
 
-  // See http://www.zlib.net/zlib_how.html
-  // "If the memory is available, buffers sizes on the order of 128K or 256K bytes should be used."
-  private static final int DEFLATER_BUFFER_SIZE = Amount.of(256, Data.KB).as(Data.BYTES);
-
-  // Empirical from microbenchmarks (assuming 20MiB/s writes to the replicated log and a large
-  // de-duplicated Snapshot from a production environment).
-  // TODO(ksweeney): Consider making this configurable.
-  private static final int DEFLATE_LEVEL = 3;
+  // Size of the buffer between thrift and compression, which prevents thrift from passing each
+  // encoded primitive to the compressor.
+  private static final int COMPRESSION_BUFFER_SIZE = Compression.DEFLATER_BUFFER_SIZE;
 
   /**
    * Encodes a thrift object into a DEFLATE-compressed binary array.
@@ -144,25 +176,138 @@ public final class ThriftBinaryCodec {
    * @throws CodingException If the object could not be encoded.
    */
   public static byte[] deflateNonNull(TBase<?, ?> tBase) throws CodingException {
-    requireNonNull(tBase);
+    return compressNonNull(tBase, Compression.DEFLATE);
+  }
+
+  /**
+   * Encodes a thrift object into a compressed binary array.
+   *
+   * @param tBase Object to encode.
+   * @param compression Codec to compress the encoded object with.
+   * @return Compressed, encoded object.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static byte[] compressNonNull(TBase<?, ?> tBase, Compression compression)
+      throws CodingException {
 
     ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+    compressNonNull(tBase, outBytes, compression);
+    return outBytes.toByteArray();
+  }
+
+  /**
+   * Encodes a thrift object into a compressed stream.  The result may be decoded with
+   * {@link #decompressNonNull(Class, byte[], Compression)}.
+   *
+   * @param tBase Object to encode.
+   * @param out Stream to write the compressed, encoded object to.  The stream is closed when the
+   *     object has been written.
+   * @param compression Codec to compress the encoded object with.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static void compressNonNull(TBase<?, ?> tBase, OutputStream out, Compression compression)
+      throws CodingException {
+
+    compressNonNull(tBase, out, compression, Encoding.BINARY);
+  }
+
+  /**
+   * Encodes a thrift object into a compressed stream.  The result may be decoded with
+   * {@link #decompressNonNull(Class, byte[], Compression)}.
+   *
+   * @param tBase Object to encode.
+   * @param out Stream to write the compressed, encoded object to.  The stream is closed when the
+   *     object has been written.
+   * @param compression Codec to compress the encoded object with.
+   * @param encoding Encoding to write the object with.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static void compressNonNull(
+      TBase<?, ?> tBase,
+      OutputStream out,
+      Compression compression,
+      Encoding encoding) throws CodingException {
+
+    requireNonNull(tBase);
+    requireNonNull(compression);
+    requireNonNull(encoding);
+
     try {
       // NOTE: Buffering is needed here for performance.
       // There are actually 2 buffers in play here - the BufferedOutputStream prevents thrift from
-      // causing a call to deflate() on every encoded primitive. The DeflaterOutputStream buffer
-      // allows the underlying Deflater to operate on a larger chunk at a time without stopping to
-      // copy the intermediate compressed output to outBytes.
+      // causing a call to the compressor on every encoded primitive. The compressor's own buffer
+      // allows it to operate on a larger chunk at a time without stopping to copy the
+      // intermediate compressed output to out.
       // See http://bugs.java.com/bugdatabase/view_bug.do?bug_id=4986239
-      TTransport transport = new TIOStreamTransport(
-          new BufferedOutputStream(
-              new DeflaterOutputStream(outBytes, new Deflater(DEFLATE_LEVEL), DEFLATER_BUFFER_SIZE),
-              DEFLATER_BUFFER_SIZE));
-      TProtocol protocol = PROTOCOL_FACTORY.getProtocol(transport);
-      tBase.write(protocol);
-      transport.close();
-      return outBytes.toByteArray();
-    } catch (TException e) {
+      OutputStream buffered =
+          new BufferedOutputStream(compression.compress(out), COMPRESSION_BUFFER_SIZE);
+      encoding.writeHeader(buffered);
+      tBase.write(encoding.getProtocolFactory().getProtocol(new TIOStreamTransport(buffered)));
+      // Closed directly rather than through the transport, which ignores failures to close.
+      buffered.close();
+    } catch (TException | IOException e) {
+      throw new CodingException("Failed to serialize: " + tBase, e);
+    }
+  }
+
+  /**
+   * Encodes a thrift object into a DEFLATE-compressed stream, compressing blocks of the encoded
+   * object concurrently.  The result may be decoded with {@link #inflateNonNull(Class, byte[])}.
+   *
+   * @param tBase Object to encode.
+   * @param out Stream to write the deflated, encoded object to.  The stream is closed when the
+   *     object has been written.
+   * @param executor Executor to compress blocks of the encoded object with.
+   * @param maxPendingBlocks Maximum number of blocks of
+   *     {@link ParallelDeflaterOutputStream#BLOCK_SIZE} bytes to buffer while awaiting compression.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static void deflateNonNull(
+      TBase<?, ?> tBase,
+      OutputStream out,
+      Executor executor,
+      int maxPendingBlocks) throws CodingException {
+
+    deflateNonNull(tBase, out, executor, maxPendingBlocks, Encoding.BINARY);
+  }
+
+  /**
+   * Encodes a thrift object into a DEFLATE-compressed stream, compressing blocks of the encoded
+   * object concurrently.  The result may be decoded with {@link #inflateNonNull(Class, byte[])}.
+   *
+   * @param tBase Object to encode.
+   * @param out Stream to write the deflated, encoded object to.  The stream is closed when the
+   *     object has been written.
+   * @param executor Executor to compress blocks of the encoded object with.
+   * @param maxPendingBlocks Maximum number of blocks of
+   *     {@link ParallelDeflaterOutputStream#BLOCK_SIZE} bytes to buffer while awaiting compression.
+   * @param encoding Encoding to write the object with.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static void deflateNonNull(
+      TBase<?, ?> tBase,
+      OutputStream out,
+      Executor executor,
+      int maxPendingBlocks,
+      Encoding encoding) throws CodingException {
+
+    requireNonNull(tBase);
+    requireNonNull(encoding);
+
+    try {
+      // As above, buffering prevents thrift from writing each encoded primitive to the deflater.
+      OutputStream buffered = new BufferedOutputStream(
+          new ParallelDeflaterOutputStream(
+              out,
+              Compression.DEFLATE_LEVEL,
+              executor,
+              maxPendingBlocks),
+          COMPRESSION_BUFFER_SIZE);
+      encoding.writeHeader(buffered);
+      tBase.write(encoding.getProtocolFactory().getProtocol(new TIOStreamTransport(buffered)));
+      // Closed directly rather than through the transport, which ignores failures to close.
+      buffered.close();
+    } catch (TException | IOException e) {
       throw new CodingException("Failed to serialize: " + tBase, e);
     }
   }
@@ -178,17 +323,61 @@ public final class ThriftBinaryCodec {
   public static <T extends TBase<T, ?>> T inflateNonNull(Class<T> clazz, byte[] buffer)
       throws CodingException {
 
-    requireNonNull(clazz);
+    return decompressNonNull(clazz, buffer, Compression.DEFLATE);
+  }
+
+  /**
+   * Decodes a thrift object from a compressed byte array into a target type.  The compressed
+   * object may be encoded with any {@link Encoding}, which is detected when it is read.
+   *
+   * @param clazz Class to instantiate and deserialize to.
+   * @param buffer Compressed buffer to decode.
+   * @param compression Codec the buffer was compressed with.
+   * @return A populated message.
+   * @throws CodingException If the message could not be decoded.
+   */
+  public static <T extends TBase<T, ?>> T decompressNonNull(
+      Class<T> clazz,
+      byte[] buffer,
+      Compression compression) throws CodingException {
+
     requireNonNull(buffer);
+    return decompressNonNull(clazz, new ByteArrayInputStream(buffer), compression);
+  }
+
+  /**
+   * Decodes a thrift object from a compressed stream into a target type.  The compressed object
+   * may be encoded with any {@link Encoding}, which is detected when it is read.  The stream is
+   * not closed.
+   *
+   * @param clazz Class to instantiate and deserialize to.
+   * @param compressed Stream to read the compressed object from.
+   * @param compression Codec the object was compressed with.
+   * @return A populated message.
+   * @throws CodingException If the message could not be decoded.
+   */
+  public static <T extends TBase<T, ?>> T decompressNonNull(
+      Class<T> clazz,
+      InputStream compressed,
+      Compression compression) throws CodingException {
+
+    requireNonNull(clazz);
+    requireNonNull(compressed);
+    requireNonNull(compression);
 
     T tBase = newInstance(clazz);
     try {
-      TTransport transport = new TIOStreamTransport(
-          new InflaterInputStream(new ByteArrayInputStream(buffer)));
-      TProtocol protocol = PROTOCOL_FACTORY.getProtocol(transport);
+      // Buffering allows the encoding to be detected, and prevents thrift from reading each
+      // encoded primitive from the decompressor.
+      InputStream in = new BufferedInputStream(
+          compression.decompress(compressed),
+          COMPRESSION_BUFFER_SIZE);
+      Encoding encoding = Encoding.detect(in);
+      TProtocol protocol =
+          encoding.getProtocolFactory().getProtocol(new TIOStreamTransport(in));
       tBase.read(protocol);
       return tBase;
-    } catch (TException e) {
+    } catch (TException | IOException e) {
       throw new CodingException("Failed to deserialize: " + e, e);
     }
   }
@@ -51,6 +51,7 @@ import org.apache.aurora.scheduler.SchedulerLifecycle;
 import org.apache.aurora.scheduler.configuration.Resources;
 import org.apache.aurora.scheduler.cron.quartz.CronModule;
 import org.apache.aurora.scheduler.http.HttpService;
+import org.apache.aurora.scheduler.log.local.LocalLogStreamModule;
 import org.apache.aurora.scheduler.log.mesos.MesosLogStreamModule;
 import org.apache.aurora.scheduler.mesos.CommandLineDriverSettingsModule;
 import org.apache.aurora.scheduler.mesos.ExecutorSettings;
@@ -127,6 +128,11 @@ public class SchedulerMain extends AbstractApplication {
   private static final Arg<List<Volume>> GLOBAL_CONTAINER_MOUNTS =
       Arg.<List<Volume>>create(ImmutableList.<Volume>of());
 
+  @CmdLine(name = "use_local_log",
+      help = "Store the scheduler's log in local segment files (see -local_log_dir) rather than "
+          + "the mesos replicated log.  Only suitable for clusters with a single scheduler.")
+  private static final Arg<Boolean> USE_LOCAL_LOG = Arg.create(false);
+
   @Inject private SingletonService schedulerService;
   @Inject private HttpService httpService;
   @Inject private SchedulerLifecycle schedulerLifecycle;
@@ -175,7 +181,11 @@ public class SchedulerMain extends AbstractApplication {
       protected void configure() {
         install(new CommandLineDriverSettingsModule());
         install(new LibMesosLoadingModule());
-        install(new MesosLogStreamModule(zkClientConfig));
+        if (USE_LOCAL_LOG.get()) {
+          install(new LocalLogStreamModule());
+        } else {
+          install(new MesosLogStreamModule(zkClientConfig));
+        }
       }
     };
   }
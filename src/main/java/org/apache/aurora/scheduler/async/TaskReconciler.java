@@ -30,7 +30,6 @@ import com.twitter.common.stats.StatsProvider;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.mesos.Driver;
 import org.apache.aurora.scheduler.storage.Storage;
-import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.mesos.Protos;
 
 import static java.util.Objects.requireNonNull;
@@ -101,8 +100,8 @@ public class TaskReconciler extends AbstractIdleService {
           @Override
           public void run() {
             ImmutableSet<Protos.TaskStatus> active = FluentIterable
-                .from(Storage.Util.fetchTasks(storage, Query.unscoped().active()))
-                .transform(TASK_TO_PROTO)
+                .from(Storage.Util.fetchTaskIds(storage, Query.unscoped().active()))
+                .transform(TASK_ID_TO_PROTO)
                 .toSet();
 
             driver.reconcileTasks(active);
@@ -133,13 +132,13 @@ public class TaskReconciler extends AbstractIdleService {
   }
 
   @VisibleForTesting
-  static final Function<IScheduledTask, Protos.TaskStatus> TASK_TO_PROTO =
-      t -> Protos.TaskStatus.newBuilder()
+  static final Function<String, Protos.TaskStatus> TASK_ID_TO_PROTO =
+      taskId -> Protos.TaskStatus.newBuilder()
           // TODO(maxim): State is required by protobuf but ignored by Mesos for reconciliation
           // purposes. This is the artifact of the native API. The new HTTP Mesos API will be
           // accepting task IDs instead. AURORA-1326 tracks solution on the scheduler side.
           // Setting TASK_RUNNING as a safe dummy value here.
           .setState(Protos.TaskState.TASK_RUNNING)
-          .setTaskId(Protos.TaskID.newBuilder().setValue(t.getAssignedTask().getTaskId()).build())
+          .setTaskId(Protos.TaskID.newBuilder().setValue(taskId).build())
           .build();
 }
@@ -13,12 +13,14 @@
  */
 package org.apache.aurora.scheduler.async;
 
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.Subscribe;
 import com.twitter.common.stats.SlidingStats;
 import com.twitter.common.util.Clock;
@@ -28,6 +30,7 @@ import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.state.StateManager;
 import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 
 import static java.util.Objects.requireNonNull;
 
@@ -72,11 +75,13 @@ class TaskThrottler implements EventSubscriber {
           + rescheduleCalculator.getFlappingPenaltyMs(stateChange.getTask());
       long delayMs = Math.max(0, readyAtMs - clock.nowMillis());
       throttleStats.accumulate(delayMs);
+      final Optional<Set<IJobKey>> jobScope = Optional.<Set<IJobKey>>of(
+          ImmutableSet.of(Tasks.SCHEDULED_TO_JOB_KEY.apply(stateChange.getTask())));
       executor.schedule(
           new Runnable() {
             @Override
             public void run() {
-              storage.write(new Storage.MutateWork.NoResult.Quiet() {
+              storage.write(new Storage.MutateWork.NoResult.Quiet(jobScope) {
                 @Override
                 protected void execute(Storage.MutableStoreProvider storeProvider) {
                   stateManager.changeState(
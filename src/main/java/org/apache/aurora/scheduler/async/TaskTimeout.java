@@ -23,6 +23,7 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.twitter.common.quantity.Amount;
@@ -30,11 +31,13 @@ import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.StatsProvider;
 
 import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.state.StateChangeResult;
 import org.apache.aurora.scheduler.state.StateManager;
 import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 
 import static java.util.Objects.requireNonNull;
 
@@ -102,10 +105,12 @@ class TaskTimeout extends AbstractIdleService implements EventSubscriber {
 
   private class TimedOutTaskHandler implements Runnable {
     private final String taskId;
+    private final IJobKey job;
     private final ScheduleStatus newState;
 
-    TimedOutTaskHandler(String taskId, ScheduleStatus newState) {
+    TimedOutTaskHandler(String taskId, IJobKey job, ScheduleStatus newState) {
       this.taskId = taskId;
+      this.job = job;
       this.newState = newState;
     }
 
@@ -117,7 +122,9 @@ class TaskTimeout extends AbstractIdleService implements EventSubscriber {
         // canceled, but in the event of a state transition race, including transientState
         // prevents an unintended task timeout.
         // Note: This requires LOST transitions trigger Driver.killTask.
-        StateChangeResult result = storage.write(new MutateWork.Quiet<StateChangeResult>() {
+        StateChangeResult result = storage.write(new MutateWork.Quiet<StateChangeResult>(
+            Optional.<Set<IJobKey>>of(ImmutableSet.of(job))) {
+
           @Override
           public StateChangeResult apply(Storage.MutableStoreProvider storeProvider) {
             return stateManager.changeState(
@@ -149,7 +156,10 @@ class TaskTimeout extends AbstractIdleService implements EventSubscriber {
   public void recordStateChange(TaskStateChange change) {
     if (isTransient(change.getNewState())) {
       executor.schedule(
-          new TimedOutTaskHandler(change.getTaskId(), change.getNewState()),
+          new TimedOutTaskHandler(
+              change.getTaskId(),
+              Tasks.SCHEDULED_TO_JOB_KEY.apply(change.getTask()),
+              change.getNewState()),
           timeout.getValue(),
           timeout.getUnit().getTimeUnit());
     }
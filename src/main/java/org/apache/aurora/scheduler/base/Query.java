@@ -14,10 +14,12 @@
 package org.apache.aurora.scheduler.base;
 
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Objects;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
 
 import org.apache.aurora.gen.ScheduleStatus;
@@ -53,6 +55,39 @@ public final class Query {
     return q.isSetRole() && q.isSetEnvironment() && q.isSetJobName() || q.isSetJobKeys();
   }
 
+  /**
+   * Checks whether a query requests a page of results, by specifying an offset or a limit.
+   *
+   * @param taskQuery Query to test.
+   * @return {@code true} if the query specifies an offset or a limit, otherwise {@code false}.
+   */
+  public static boolean isPaginated(Builder taskQuery) {
+    return taskQuery.get().getOffset() > 0 || taskQuery.get().getLimit() > 0;
+  }
+
+  /**
+   * Selects the page of results requested by a paginated query.  When the query specifies a limit,
+   * a bounded selection of the first {@code offset + limit} results is used rather than a sort of
+   * all results.
+   *
+   * @param taskQuery Query specifying the offset and limit of the page.
+   * @param results All results matching the query.
+   * @param ordering Ordering of the results.
+   * @param <T> Result type.
+   * @return The requested page of results, in order.
+   */
+  public static <T> List<T> page(
+      Builder taskQuery,
+      Iterable<T> results,
+      Ordering<? super T> ordering) {
+
+    int offset = Math.max(taskQuery.get().getOffset(), 0);
+    List<T> sorted = taskQuery.get().getLimit() > 0
+        ? ordering.leastOf(results, Ints.saturatedCast((long) offset + taskQuery.get().getLimit()))
+        : ordering.sortedCopy(results);
+    return sorted.subList(Math.min(offset, sorted.size()), sorted.size());
+  }
+
   public static Builder arbitrary(TaskQuery query) {
     return new Builder(query.deepCopy());
   }
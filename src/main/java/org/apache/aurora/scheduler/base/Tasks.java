@@ -33,6 +33,8 @@ import com.google.common.collect.Ordering;
 
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskQuery;
+import org.apache.aurora.gen.TaskSortKey;
 import org.apache.aurora.gen.apiConstants;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
@@ -229,4 +231,46 @@ public final class Tasks {
           return getLatestEvent(task).getTimestamp();
         }
       });
+
+  private static final Ordering<IScheduledTask> BY_ID = Ordering.natural()
+      .onResultOf(SCHEDULED_TO_ID);
+
+  private static final Ordering<IScheduledTask> BY_INSTANCE_ID = Ordering.natural()
+      .onResultOf(SCHEDULED_TO_INSTANCE_ID)
+      .compound(BY_ID);
+
+  private static final Ordering<IScheduledTask> BY_LATEST_EVENT_TIME = Ordering.natural()
+      .nullsFirst()
+      .onResultOf(new Function<IScheduledTask, Long>() {
+        @Override
+        public Long apply(IScheduledTask task) {
+          return task.getTaskEvents().isEmpty() ? null : getLatestEvent(task).getTimestamp();
+        }
+      })
+      .compound(BY_ID);
+
+  /**
+   * Gets the ordering of the results of a paginated query, as specified by the query's sort key and
+   * direction.  Ties are broken by task ID.
+   *
+   * @param query Query to get the result ordering of.
+   * @return Ordering of the query's results.
+   */
+  public static Ordering<IScheduledTask> pageOrdering(TaskQuery query) {
+    Ordering<IScheduledTask> ordering;
+    switch (query.isSetSortKey() ? query.getSortKey() : TaskSortKey.TASK_ID) {
+      case INSTANCE_ID:
+        ordering = BY_INSTANCE_ID;
+        break;
+
+      case LATEST_EVENT_TIME:
+        ordering = BY_LATEST_EVENT_TIME;
+        break;
+
+      default:
+        ordering = BY_ID;
+    }
+
+    return query.isSortDescending() ? ordering.reverse() : ordering;
+  }
 }
@@ -23,7 +23,6 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
 import com.twitter.common.base.Supplier;
 import com.twitter.common.stats.Stats;
 import com.twitter.common.util.BackoffHelper;
@@ -32,7 +31,6 @@ import org.apache.aurora.gen.CronCollisionPolicy;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
-import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.configuration.ConfigurationManager;
 import org.apache.aurora.scheduler.cron.CronException;
 import org.apache.aurora.scheduler.cron.SanitizedCronJob;
@@ -142,8 +140,7 @@ class AuroraCronJob implements Job {
             CRON_JOB_TRIGGERS.incrementAndGet();
 
             final Query.Builder activeQuery = Query.jobScoped(key).active();
-            Set<String> activeTasks =
-                Tasks.ids(storeProvider.getTaskStore().fetchTasks(activeQuery));
+            Set<String> activeTasks = storeProvider.getTaskStore().fetchTaskIds(activeQuery);
 
             ITaskConfig task = cronJob.getSanitizedConfig().getJobConfig().getTaskConfig();
             Set<Integer> instanceIds = cronJob.getSanitizedConfig().getInstanceIds();
@@ -201,7 +198,7 @@ class AuroraCronJob implements Job {
       delayedStartBackoff.doUntilSuccess(new Supplier<Boolean>() {
         @Override
         public Boolean get() {
-          if (Iterables.isEmpty(Storage.Util.fetchTasks(storage, query))) {
+          if (Storage.Util.fetchTaskIds(storage, query).isEmpty()) {
             LOG.info("Initiating delayed launch of cron " + path);
             storage.write(new Storage.MutateWork.NoResult.Quiet() {
               @Override
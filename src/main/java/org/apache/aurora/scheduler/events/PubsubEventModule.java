@@ -49,6 +49,7 @@ import org.apache.aurora.scheduler.base.AsyncUtil;
 import org.apache.aurora.scheduler.events.NotifyingSchedulingFilter.NotifyDelegate;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import org.apache.aurora.scheduler.filter.SchedulingFilter;
+import org.apache.aurora.scheduler.storage.PostCommitExecutor;
 
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
@@ -114,13 +115,8 @@ public final class PubsubEventModule extends AbstractModule {
     eventBus.register(new DeadEventHandler());
     bind(EventBus.class).toInstance(eventBus);
 
-    EventSink eventSink = new EventSink() {
-      @Override
-      public void post(PubsubEvent event) {
-        eventBus.post(event);
-      }
-    };
-    bind(EventSink.class).toInstance(eventSink);
+    bind(EventSink.class).to(PostCommitEventSink.class);
+    bind(PostCommitEventSink.class).in(Singleton.class);
 
     // Ensure at least an empty binding is present.
     getSubscriberBinder(binder());
@@ -128,6 +124,31 @@ public final class PubsubEventModule extends AbstractModule {
     SchedulerServicesModule.addAppStartupServiceBinding(binder()).to(RegisterSubscribers.class);
   }
 
+  /**
+   * An event sink that posts events once any storage write operation they were posted from has
+   * been durably committed.
+   */
+  static class PostCommitEventSink implements EventSink {
+    private final EventBus eventBus;
+    private final PostCommitExecutor postCommitExecutor;
+
+    @Inject
+    PostCommitEventSink(EventBus eventBus, PostCommitExecutor postCommitExecutor) {
+      this.eventBus = requireNonNull(eventBus);
+      this.postCommitExecutor = requireNonNull(postCommitExecutor);
+    }
+
+    @Override
+    public void post(final PubsubEvent event) {
+      postCommitExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          eventBus.post(event);
+        }
+      });
+    }
+  }
+
   private class DeadEventHandler {
     @Subscribe
     public void logDeadEvent(DeadEvent event) {
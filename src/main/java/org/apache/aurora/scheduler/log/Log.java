@@ -16,6 +16,8 @@ package org.apache.aurora.scheduler.log;
 import java.io.IOException;
 import java.util.Iterator;
 
+import com.google.common.base.Optional;
+
 /**
  * Represents an append only log that can be read after and truncated before a known
  * {@link Position}.
@@ -29,6 +31,14 @@ public interface Log {
    * An opaque ordered handle to a log entry's position in the log stream.
    */
   interface Position extends Comparable<Position> {
+
+    /**
+     * Gets a binary identity for this position, which may be used to look up the position with
+     * {@link Stream#position(byte[])} after the log is re-opened.
+     *
+     * @return the identity of this position
+     */
+    byte[] identity();
   }
 
   /**
@@ -42,6 +52,13 @@ public interface Log {
      * @return the data stored in this log entry
      */
     byte[] contents();
+
+    /**
+     * Gets the position of the log entry in the log stream.
+     *
+     * @return the position of this log entry
+     */
+    Position position();
   }
 
   /**
@@ -98,6 +115,46 @@ public interface Log {
      */
     Iterator<Entry> readAll() throws InvalidPositionException, StreamAccessException;
 
+    /**
+     * Reads the entries from the log stream starting at the given {@code position}.  Iteration
+     * behaves as for {@link #readAll()}.
+     *
+     * @param position the position of the first entry to read
+     * @return an iterator that ranges from the entry at the given {@code position} to the last
+     *     entry in the log.
+     * @throws InvalidPositionException if the specified position does not exist in this log
+     * @throws StreamAccessException if the stream could not be read from
+     */
+    Iterator<Entry> readFrom(Position position)
+        throws InvalidPositionException, StreamAccessException;
+
+    /**
+     * Reads the entries following the given {@code position} that are known to the local log
+     * replica, without writing to the log.  Unlike {@link #readAll()} and
+     * {@link #readFrom(Position)}, this may be used while another process is writing to the log,
+     * such as to follow the log as a standby, but may not observe the most recently appended
+     * entries.  Iteration behaves as for {@link #readAll()}.
+     *
+     * @param position the position of the last entry already read, or absent to read from the
+     *     beginning of the log
+     * @return an iterator that ranges from the entry following the given {@code position} to the
+     *     last entry known to the local log replica.
+     * @throws InvalidPositionException if the entries following the specified position have been
+     *     truncated
+     * @throws StreamAccessException if the stream could not be read from
+     */
+    Iterator<Entry> tail(Optional<Position> position)
+        throws InvalidPositionException, StreamAccessException;
+
+    /**
+     * Looks up a position from its {@link Position#identity() identity}.
+     *
+     * @param identity the identity of a position in this log
+     * @return the position with the given identity
+     * @throws InvalidPositionException if the identity is not a valid position identity
+     */
+    Position position(byte[] identity) throws InvalidPositionException;
+
     /**
      * Removes all log entries preceding the log entry at the given {@code position}.
      *
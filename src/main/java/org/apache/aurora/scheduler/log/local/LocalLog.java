@@ -0,0 +1,528 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.log.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Longs;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
+
+import org.apache.aurora.scheduler.log.Log;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@code Log} implementation backed by append-only, memory-mapped segment files in a local
+ * directory.  Suitable for deployments with a single scheduler, and for benchmarking storage
+ * without a replicated log.
+ *
+ * <p>Appends are written to the newest segment, and a new segment is started when an entry does
+ * not fit in the newest one.  When appends are synced, each append waits until its entry has been
+ * flushed to disk.  Appends that complete while a flush is in progress share the next flush.
+ * Truncation deletes segments that only contain entries before the truncation position, and
+ * records the position so that entries before it in the remaining segments are not read.
+ */
+public class LocalLog implements Log {
+
+  private static final Logger LOG = Logger.getLogger(LocalLog.class.getName());
+
+  /**
+   * Binding annotation for the directory that log segments are stored in.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  public @interface LogDirectory { }
+
+  /**
+   * Binding annotation for the size of log segment files.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  public @interface SegmentSize { }
+
+  /**
+   * Binding annotation for whether appends wait for their entry to be flushed to disk.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  public @interface SyncAppends { }
+
+  @VisibleForTesting
+  static final String TRUNCATION_FILE = "truncated_before";
+
+  private final File directory;
+  private final int segmentSize;
+  private final boolean syncAppends;
+
+  @Nullable private LocalStream stream = null;
+
+  /**
+   * Creates a new local log.
+   *
+   * @param directory Directory to store log segments in, which is created if it does not exist.
+   * @param segmentSize Size of log segment files.  Entries larger than this are stored in a
+   *     segment of their own.
+   * @param syncAppends Whether appends wait for their entry to be flushed to disk.
+   */
+  @Inject
+  public LocalLog(
+      @LogDirectory File directory,
+      @SegmentSize Amount<Integer, Data> segmentSize,
+      @SyncAppends boolean syncAppends) {
+
+    this.directory = requireNonNull(directory);
+    this.segmentSize = segmentSize.as(Data.BYTES);
+    Preconditions.checkArgument(this.segmentSize > 0, "Segment size must be positive.");
+    this.syncAppends = syncAppends;
+  }
+
+  /**
+   * Opens the log stream.  The log is recovered from its segment files the first time it is
+   * opened, and all subsequent calls return the same stream.
+   *
+   * @return The log stream.
+   * @throws IOException If the log could not be recovered.
+   */
+  @Override
+  public synchronized LocalStream open() throws IOException {
+    if (stream == null) {
+      stream = LocalStream.recover(directory, segmentSize, syncAppends);
+    }
+    return stream;
+  }
+
+  /**
+   * A stream over the segments of a local log.
+   */
+  public static final class LocalStream implements Log.Stream {
+    private final SlidingStats appendStats = new SlidingStats("scheduler_log_local_append", "ns");
+    private final SlidingStats syncStats = new SlidingStats("scheduler_log_local_sync", "ns");
+    private final AtomicLong syncs = Stats.exportLong("scheduler_log_local_syncs");
+    private final AtomicLong segmentsCreated = Stats.exportLong("scheduler_log_local_segments");
+
+    private final File directory;
+    private final int segmentSize;
+    private final boolean syncAppends;
+
+    // All fields below are guarded by this.
+    private final List<Segment> segments;
+    private long firstPosition;
+    private long nextPosition;
+
+    private final Object syncMonitor = new Object();
+
+    // All fields below are guarded by syncMonitor.
+    private long synced;
+    private boolean syncing = false;
+
+    private LocalStream(
+        File directory,
+        int segmentSize,
+        boolean syncAppends,
+        List<Segment> segments,
+        long firstPosition,
+        long nextPosition) {
+
+      this.directory = directory;
+      this.segmentSize = segmentSize;
+      this.syncAppends = syncAppends;
+      this.segments = segments;
+      this.firstPosition = firstPosition;
+      this.nextPosition = nextPosition;
+      this.synced = nextPosition - 1;
+    }
+
+    private static LocalStream recover(File directory, int segmentSize, boolean syncAppends)
+        throws IOException {
+
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Failed to create log directory " + directory);
+      }
+
+      List<File> files = Lists.newArrayList();
+      File[] listed = directory.listFiles();
+      if (listed == null) {
+        throw new IOException("Failed to list log directory " + directory);
+      }
+      for (File file : listed) {
+        if (Segment.parseFirstPosition(file).isPresent()) {
+          files.add(file);
+        }
+      }
+      Collections.sort(files, Ordering.<Long>natural().onResultOf(new Function<File, Long>() {
+        @Override
+        public Long apply(File file) {
+          return Segment.parseFirstPosition(file).get();
+        }
+      }));
+
+      List<Segment> segments = Lists.newArrayList();
+      for (File file : files) {
+        Segment segment = Segment.open(file);
+        if (!segments.isEmpty()) {
+          Segment previous = segments.get(segments.size() - 1);
+          if (previous.getEndPosition() != segment.getFirstPosition()) {
+            throw new IOException("Log segment " + file + " does not follow " + previous.getFile());
+          }
+        }
+        segments.add(segment);
+      }
+
+      // A segment may be left empty if the scheduler stopped before appending to it, and would
+      // prevent a segment with the same first position from being created.
+      if (!segments.isEmpty()) {
+        Segment last = segments.get(segments.size() - 1);
+        if (last.getEndPosition() == last.getFirstPosition()) {
+          segments.remove(segments.size() - 1);
+          delete(last);
+        }
+      }
+
+      Optional<Long> truncation = readTruncation(directory);
+      long firstPosition;
+      long nextPosition;
+      if (segments.isEmpty()) {
+        firstPosition = truncation.or(0L);
+        nextPosition = firstPosition;
+      } else {
+        firstPosition = Math.max(segments.get(0).getFirstPosition(), truncation.or(0L));
+        nextPosition = segments.get(segments.size() - 1).getEndPosition();
+      }
+      LOG.info("Recovered local log positions " + firstPosition + " through " + (nextPosition - 1)
+          + " from " + segments.size() + " segments in " + directory);
+
+      return new LocalStream(
+          directory,
+          segmentSize,
+          syncAppends,
+          segments,
+          firstPosition,
+          nextPosition);
+    }
+
+    private static Optional<Long> readTruncation(File directory) throws IOException {
+      File file = new File(directory, TRUNCATION_FILE);
+      if (!file.exists()) {
+        return Optional.absent();
+      }
+      String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      try {
+        return Optional.of(Long.parseLong(contents.trim()));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid log truncation file " + file, e);
+      }
+    }
+
+    private void writeTruncation(long position) throws IOException {
+      File file = new File(directory, TRUNCATION_FILE);
+      File temp = new File(directory, TRUNCATION_FILE + ".tmp");
+      Files.write(temp.toPath(), Long.toString(position).getBytes(StandardCharsets.UTF_8));
+      Files.move(
+          temp.toPath(),
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void delete(Segment segment) throws IOException {
+      if (!segment.getFile().delete()) {
+        throw new IOException("Failed to delete log segment " + segment.getFile());
+      }
+    }
+
+    @Override
+    public Position append(byte[] contents) throws StreamAccessException {
+      requireNonNull(contents);
+
+      long start = System.nanoTime();
+      long position;
+      synchronized (this) {
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        try {
+          if (segment == null || !segment.hasRoom(contents.length)) {
+            if (segment != null) {
+              // Segments are only flushed while they are the newest, so flush it before moving on.
+              segment.force();
+            }
+            segment = Segment.create(
+                directory,
+                nextPosition,
+                Math.max(segmentSize, Segment.recordSize(contents.length)));
+            segments.add(segment);
+            segmentsCreated.incrementAndGet();
+          }
+        } catch (IOException e) {
+          throw new StreamAccessException("Failed to create a log segment.", e);
+        }
+        position = segment.append(contents);
+        nextPosition = position + 1;
+      }
+
+      if (syncAppends) {
+        sync(position);
+      }
+      appendStats.accumulate(System.nanoTime() - start);
+      return new LocalPosition(position);
+    }
+
+    /**
+     * Waits for all entries up to a position to be flushed to disk.  If a flush is in progress,
+     * waits for it to complete and then, if the position is still not flushed, flushes all
+     * entries appended so far.
+     */
+    private void sync(long position) throws StreamAccessException {
+      synchronized (syncMonitor) {
+        while (synced < position) {
+          if (!syncing) {
+            syncing = true;
+            break;
+          }
+          try {
+            syncMonitor.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamAccessException("Interrupted while syncing the log.", e);
+          }
+        }
+        if (synced >= position) {
+          return;
+        }
+      }
+
+      long target;
+      Segment segment;
+      synchronized (this) {
+        target = nextPosition - 1;
+        segment = segments.get(segments.size() - 1);
+      }
+
+      long start = System.nanoTime();
+      boolean flushed = false;
+      try {
+        segment.force();
+        flushed = true;
+      } catch (RuntimeException e) {
+        throw new StreamAccessException("Failed to flush the log.", e);
+      } finally {
+        synchronized (syncMonitor) {
+          if (flushed) {
+            synced = Math.max(synced, target);
+          }
+          syncing = false;
+          syncMonitor.notifyAll();
+        }
+        syncs.incrementAndGet();
+        syncStats.accumulate(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public Iterator<Entry> readAll() throws StreamAccessException {
+      synchronized (this) {
+        return readRange(firstPosition, nextPosition);
+      }
+    }
+
+    @Override
+    public Iterator<Entry> readFrom(Position position) throws InvalidPositionException {
+      long fromPosition = unwrap(position);
+      synchronized (this) {
+        checkContains(fromPosition);
+        return readRange(fromPosition, nextPosition);
+      }
+    }
+
+    @Override
+    public Iterator<Entry> tail(Optional<Position> position) throws InvalidPositionException {
+      synchronized (this) {
+        long fromPosition = firstPosition;
+        if (position.isPresent()) {
+          fromPosition = unwrap(position.get()) + 1;
+          if (fromPosition < firstPosition) {
+            throw new InvalidPositionException("Entries following position " + (fromPosition - 1)
+                + " have been truncated, the log begins at position " + firstPosition);
+          }
+        }
+        return readRange(fromPosition, nextPosition);
+      }
+    }
+
+    @Override
+    public Position position(byte[] identity) throws InvalidPositionException {
+      if (identity.length != Longs.BYTES) {
+        throw new InvalidPositionException(
+            "Invalid position identity of length " + identity.length);
+      }
+      return new LocalPosition(Longs.fromByteArray(identity));
+    }
+
+    /**
+     * Reads a range of entries from the log.
+     *
+     * @param from Position of the first entry to read.
+     * @param to Position of the last entry to read.
+     * @return An iterator over the entries from {@code from} through {@code to}, inclusive.
+     * @throws InvalidPositionException If either position is not contained in the log.
+     */
+    public Iterator<Entry> read(Position from, Position to) throws InvalidPositionException {
+      long fromPosition = unwrap(from);
+      long toPosition = unwrap(to);
+      Preconditions.checkArgument(fromPosition <= toPosition, "Invalid read range.");
+
+      synchronized (this) {
+        checkContains(fromPosition);
+        checkContains(toPosition);
+        return readRange(fromPosition, toPosition + 1);
+      }
+    }
+
+    // Must be called while holding this.
+    private Iterator<Entry> readRange(final long from, final long end) {
+      final List<Segment> readSegments = ImmutableList.copyOf(segments);
+      return new AbstractIterator<Entry>() {
+        private long position = from;
+        private int segmentIndex = 0;
+
+        @Override
+        protected Entry computeNext() {
+          if (position >= end) {
+            return endOfData();
+          }
+          while (readSegments.get(segmentIndex).getEndPosition() <= position) {
+            segmentIndex++;
+          }
+          final LocalPosition entryPosition = new LocalPosition(position);
+          final byte[] contents = readSegments.get(segmentIndex).read(position++);
+          return new Entry() {
+            @Override
+            public byte[] contents() {
+              return contents;
+            }
+
+            @Override
+            public Position position() {
+              return entryPosition;
+            }
+          };
+        }
+      };
+    }
+
+    @Override
+    public synchronized void truncateBefore(Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      long before = unwrap(position);
+      checkContains(before);
+
+      try {
+        writeTruncation(before);
+        firstPosition = before;
+        while (segments.get(0).getEndPosition() <= before) {
+          delete(segments.remove(0));
+        }
+      } catch (IOException e) {
+        throw new StreamAccessException("Failed to truncate the log.", e);
+      }
+    }
+
+    // Must be called while holding this.
+    private void checkContains(long position) throws InvalidPositionException {
+      if (position < firstPosition || position >= nextPosition) {
+        throw new InvalidPositionException("Position " + position + " is not in the log, which "
+            + "contains positions " + firstPosition + " through " + (nextPosition - 1));
+      }
+    }
+
+    private static long unwrap(Position position) {
+      Preconditions.checkArgument(position instanceof LocalPosition);
+      return ((LocalPosition) position).position;
+    }
+  }
+
+  /**
+   * The position of an entry in a local log.
+   */
+  @VisibleForTesting
+  static final class LocalPosition implements Position {
+    private final long position;
+
+    LocalPosition(long position) {
+      this.position = position;
+    }
+
+    @VisibleForTesting
+    long getPosition() {
+      return position;
+    }
+
+    @Override
+    public byte[] identity() {
+      return Longs.toByteArray(position);
+    }
+
+    @Override
+    public int compareTo(Position other) {
+      Preconditions.checkArgument(other instanceof LocalPosition);
+      return Long.compare(position, ((LocalPosition) other).position);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof LocalPosition && position == ((LocalPosition) o).position;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(position);
+    }
+
+    @Override
+    public String toString() {
+      return Long.toString(position);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.log.local;
+
+import java.io.File;
+
+import javax.inject.Singleton;
+
+import com.google.inject.PrivateModule;
+import com.google.inject.TypeLiteral;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+
+import org.apache.aurora.scheduler.log.Log;
+
+/**
+ * Binds a log stored in local segment files.
+ *
+ * <p>Exports the following bindings:
+ * <ul>
+ *   <li>{@link Log} - a log backed by local memory-mapped segment files</li>
+ * </ul>
+ */
+public class LocalLogStreamModule extends PrivateModule {
+  @CmdLine(name = "local_log_dir",
+           help = "Directory to store local log segment files in.  If the directory does not "
+               + "exist it will be created.")
+  private static final Arg<File> LOG_DIR = Arg.create(null);
+
+  @CmdLine(name = "local_log_segment_size",
+           help = "Size of local log segment files.  Truncating the log deletes whole segments.")
+  private static final Arg<Amount<Integer, Data>> SEGMENT_SIZE =
+      Arg.create(Amount.of(64, Data.MB));
+
+  @CmdLine(name = "local_log_sync_appends",
+           help = "Whether appends to the local log wait for their entry to be flushed to disk.  "
+               + "Concurrent appends share flushes.")
+  private static final Arg<Boolean> SYNC_APPENDS = Arg.create(true);
+
+  @Override
+  protected void configure() {
+    if (LOG_DIR.get() == null) {
+      addError("-local_log_dir must be set to use the local log.");
+    } else {
+      bind(File.class).annotatedWith(LocalLog.LogDirectory.class).toInstance(LOG_DIR.get());
+    }
+    bind(new TypeLiteral<Amount<Integer, Data>>() { }).annotatedWith(LocalLog.SegmentSize.class)
+        .toInstance(SEGMENT_SIZE.get());
+    bindConstant().annotatedWith(LocalLog.SyncAppends.class).to(SYNC_APPENDS.get());
+
+    bind(Log.class).to(LocalLog.class);
+    bind(LocalLog.class).in(Singleton.class);
+    expose(Log.class);
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.log.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * An append-only file of log entries, which is memory-mapped in full.  Each entry is stored as a
+ * record of its length and a checksum of its length and contents, followed by its contents.  The
+ * unused remainder of a segment is zero-filled, which can never be a valid record header.
+ * <p>
+ * Entries are addressed by position.  The positions of the entries in a segment are contiguous,
+ * starting from the first position of the segment, which is encoded in its file name.
+ */
+final class Segment {
+  static final int HEADER_SIZE = 8;
+
+  private static final Pattern FILE_NAME = Pattern.compile("(\\d{20})\\.log");
+
+  private final File file;
+  private final long firstPosition;
+  private final MappedByteBuffer buffer;
+
+  // All fields below are guarded by this.
+  private int[] offsets;
+  private int count;
+  private int writeOffset;
+
+  private Segment(File file, long firstPosition, MappedByteBuffer buffer) {
+    this.file = file;
+    this.firstPosition = firstPosition;
+    this.buffer = buffer;
+    this.offsets = new int[16];
+  }
+
+  /**
+   * Gets the size of the record that stores an entry.
+   *
+   * @param length Entry length.
+   * @return The number of segment bytes needed to store the entry.
+   */
+  static int recordSize(int length) {
+    return HEADER_SIZE + length;
+  }
+
+  /**
+   * Gets the first position stored in a segment file.
+   *
+   * @param file Segment file.
+   * @return The first position of the segment, or absent if {@code file} is not a segment file.
+   */
+  static Optional<Long> parseFirstPosition(File file) {
+    Matcher matcher = FILE_NAME.matcher(file.getName());
+    return matcher.matches()
+        ? Optional.of(Long.parseLong(matcher.group(1)))
+        : Optional.<Long>absent();
+  }
+
+  /**
+   * Creates a new empty segment.
+   *
+   * @param directory Directory to create the segment file in.
+   * @param firstPosition Position of the first entry to be appended to the segment.
+   * @param size Size of the segment file.
+   * @return The new segment.
+   * @throws IOException If the segment file could not be created.
+   */
+  static Segment create(File directory, long firstPosition, int size) throws IOException {
+    Preconditions.checkArgument(firstPosition >= 0);
+    File file = new File(directory, String.format("%020d.log", firstPosition));
+    if (file.exists()) {
+      throw new IOException("Segment file already exists: " + file);
+    }
+    return new Segment(file, firstPosition, map(file, size));
+  }
+
+  /**
+   * Opens an existing segment, recovering all entries up to the first record that is incomplete
+   * or corrupt.  Any such record, and all bytes following it, are discarded.
+   *
+   * @param file Segment file to open.
+   * @return The opened segment.
+   * @throws IOException If the segment file could not be opened.
+   */
+  static Segment open(File file) throws IOException {
+    Optional<Long> firstPosition = parseFirstPosition(file);
+    Preconditions.checkArgument(firstPosition.isPresent(), "Not a segment file: " + file);
+
+    Segment segment = new Segment(file, firstPosition.get(), map(file, (int) file.length()));
+    segment.recover();
+    return segment;
+  }
+
+  private static MappedByteBuffer map(File file, int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      if (raf.length() < size) {
+        raf.setLength(size);
+      }
+      // The mapping remains valid after the channel is closed.
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static int checksum(int length, ByteBuffer contents) {
+    CRC32 crc = new CRC32();
+    crc.update(ByteBuffer.allocate(4).putInt(0, length));
+    crc.update(contents);
+    return (int) crc.getValue();
+  }
+
+  private synchronized void recover() {
+    int offset = 0;
+    while (offset + HEADER_SIZE <= buffer.capacity()) {
+      int length = buffer.getInt(offset);
+      if (length < 0 || length > buffer.capacity() - offset - HEADER_SIZE) {
+        break;
+      }
+      ByteBuffer contents = buffer.duplicate();
+      contents.limit(offset + HEADER_SIZE + length).position(offset + HEADER_SIZE);
+      if (checksum(length, contents) != buffer.getInt(offset + Integer.BYTES)) {
+        break;
+      }
+      addOffset(offset);
+      offset += recordSize(length);
+    }
+    writeOffset = offset;
+
+    // Clear any partially written record, so that it can not be mistaken for an entry once it is
+    // overwritten by shorter entries.
+    boolean dirty = false;
+    for (int i = offset; i < Math.min(offset + HEADER_SIZE, buffer.capacity()); i++) {
+      dirty |= buffer.get(i) != 0;
+    }
+    if (dirty) {
+      for (int i = offset; i < buffer.capacity(); i++) {
+        buffer.put(i, (byte) 0);
+      }
+      buffer.force();
+    }
+  }
+
+  private void addOffset(int offset) {
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count * 2);
+    }
+    offsets[count++] = offset;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  long getFirstPosition() {
+    return firstPosition;
+  }
+
+  /**
+   * Gets the position following the last entry in this segment.
+   *
+   * @return The position that the next entry appended to this segment would be stored at.
+   */
+  synchronized long getEndPosition() {
+    return firstPosition + count;
+  }
+
+  /**
+   * Checks whether an entry fits in the remaining space of this segment.
+   *
+   * @param length Entry length.
+   * @return {@code true} if the entry may be appended.
+   */
+  synchronized boolean hasRoom(int length) {
+    return recordSize(length) <= buffer.capacity() - writeOffset;
+  }
+
+  /**
+   * Appends an entry to the segment.  The entry is not durable until the segment is
+   * {@link #force() forced}.
+   *
+   * @param contents Entry contents.
+   * @return The position of the appended entry.
+   */
+  synchronized long append(byte[] contents) {
+    Preconditions.checkState(hasRoom(contents.length), "Segment is full.");
+
+    ByteBuffer record = buffer.duplicate();
+    record.position(writeOffset);
+    record.putInt(contents.length);
+    record.putInt(checksum(contents.length, ByteBuffer.wrap(contents)));
+    record.put(contents);
+    addOffset(writeOffset);
+    writeOffset = record.position();
+    return firstPosition + count - 1;
+  }
+
+  /**
+   * Reads the entry stored at a position.
+   *
+   * @param position Position of the entry, which must be stored in this segment.
+   * @return The contents of the entry.
+   */
+  synchronized byte[] read(long position) {
+    Preconditions.checkArgument(position >= firstPosition && position < firstPosition + count);
+
+    int offset = offsets[(int) (position - firstPosition)];
+    byte[] contents = new byte[buffer.getInt(offset)];
+    ByteBuffer record = buffer.duplicate();
+    record.position(offset + HEADER_SIZE);
+    record.get(contents);
+    return contents;
+  }
+
+  /**
+   * Flushes all appended entries to disk.
+   */
+  void force() {
+    buffer.force();
+  }
+}
@@ -18,6 +18,11 @@ import java.lang.annotation.Target;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -32,7 +37,8 @@ import javax.inject.Qualifier;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.primitives.Longs;
 import com.twitter.common.application.Lifecycle;
@@ -44,6 +50,7 @@ import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.SlidingStats;
 import com.twitter.common.stats.Stats;
 
+import org.apache.aurora.scheduler.base.AsyncUtil;
 import org.apache.aurora.scheduler.log.mesos.LogInterface.ReaderInterface;
 import org.apache.aurora.scheduler.log.mesos.LogInterface.WriterInterface;
 import org.apache.mesos.Log;
@@ -76,6 +83,14 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
   @Target({ PARAMETER, METHOD })
   public @interface ReadTimeout { }
 
+  /**
+   * Binding annotation for the maximum number of log positions to fetch in a single read.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  public @interface ReadBatchSize { }
+
   /**
    * Binding annotation for log write timeouts - used for truncates and appends.
    */
@@ -88,6 +103,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
 
   private final Provider<ReaderInterface> readerFactory;
   private final Amount<Long, Time> readTimeout;
+  private final int readBatchSize;
 
   private final Provider<WriterInterface> writerFactory;
   private final Amount<Long, Time> writeTimeout;
@@ -102,6 +118,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
    * @param logFactory Factory to provide access to log.
    * @param readerFactory Factory to provide access to log readers.
    * @param readTimeout Log read timeout.
+   * @param readBatchSize Maximum number of log positions to fetch in a single read.
    * @param writerFactory Factory to provide access to log writers.
    * @param writeTimeout Log write timeout.
    * @param noopEntry A no-op log entry blob.
@@ -112,6 +129,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
       Provider<LogInterface> logFactory,
       Provider<ReaderInterface> readerFactory,
       @ReadTimeout Amount<Long, Time> readTimeout,
+      @ReadBatchSize int readBatchSize,
       Provider<WriterInterface> writerFactory,
       @WriteTimeout Amount<Long, Time> writeTimeout,
       @NoopEntry byte[] noopEntry,
@@ -121,6 +139,8 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
 
     this.readerFactory = requireNonNull(readerFactory);
     this.readTimeout = requireNonNull(readTimeout);
+    Preconditions.checkArgument(readBatchSize > 0, "Read batch size must be positive.");
+    this.readBatchSize = readBatchSize;
 
     this.writerFactory = requireNonNull(writerFactory);
     this.writeTimeout = requireNonNull(writeTimeout);
@@ -136,6 +156,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
         logFactory.get(),
         readerFactory.get(),
         readTimeout,
+        readBatchSize,
         writerFactory,
         writeTimeout,
         noopEntry,
@@ -182,6 +203,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
     private final ReaderInterface reader;
     private final long readTimeout;
     private final TimeUnit readTimeUnit;
+    private final int readBatchSize;
 
     private final Provider<WriterInterface> writerFactory;
     private final long writeTimeout;
@@ -208,6 +230,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
         LogInterface log,
         ReaderInterface reader,
         Amount<Long, Time> readTimeout,
+        int readBatchSize,
         Provider<WriterInterface> writerFactory,
         Amount<Long, Time> writeTimeout,
         byte[] noopEntry,
@@ -218,6 +241,7 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
       this.reader = reader;
       this.readTimeout = readTimeout.getValue();
       this.readTimeUnit = readTimeout.getUnit().getTimeUnit();
+      this.readBatchSize = readBatchSize;
 
       this.writerFactory = writerFactory;
       this.writeTimeout = writeTimeout.getValue();
@@ -234,78 +258,211 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
       // of log entries expected by the users of the org.apache.aurora.scheduler.log.Log interface.
       // Switch to another method of ensuring this when it becomes available in mesos' log
       // interface.
-      try {
-        append(noopEntry);
-      } catch (StreamAccessException e) {
-        throw new StreamAccessException("Error writing noop prior to a read", e);
-      }
+      appendNoop();
 
       final Log.Position from = reader.beginning();
       final Log.Position to = end().unwrap();
 
       // Reading all the entries at once may cause large garbage collections. Instead, we
-      // lazily read the entries one by one as they are requested.
+      // lazily read the entries in batches as they are requested.
       // TODO(Benjamin Hindman): Eventually replace this functionality with functionality
       // from the Mesos Log.
-      return new UnmodifiableIterator<Entry>() {
-        private long position = Longs.fromByteArray(from.identity());
-        private final long endPosition = Longs.fromByteArray(to.identity());
-        private Entry entry = null;
+      return new BatchReadingIterator(
+          Longs.fromByteArray(from.identity()),
+          Longs.fromByteArray(to.identity()));
+    }
 
-        @Override
-        public boolean hasNext() {
-          if (entry != null) {
-            return true;
+    @Override
+    public Iterator<Entry> readFrom(org.apache.aurora.scheduler.log.Log.Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      Preconditions.checkArgument(position instanceof LogPosition);
+
+      // As with readAll, we must be the coordinator to get a full read.
+      appendNoop();
+
+      long from = Longs.fromByteArray(((LogPosition) position).unwrap().identity());
+      long beginning = Longs.fromByteArray(reader.beginning().identity());
+      long to = Longs.fromByteArray(end().unwrap().identity());
+      if (from < beginning || from > to) {
+        throw new InvalidPositionException("Position " + from + " is not in the log, which "
+            + "contains positions " + beginning + " through " + to);
+      }
+      return new BatchReadingIterator(from, to);
+    }
+
+    @Override
+    public Iterator<Entry> tail(Optional<org.apache.aurora.scheduler.log.Log.Position> position)
+        throws InvalidPositionException, StreamAccessException {
+
+      // Unlike the other reads, this does not append a noop, so that a standby does not contend
+      // with the leader to become the log coordinator.
+      long beginning = Longs.fromByteArray(reader.beginning().identity());
+      long to = Longs.fromByteArray(end().unwrap().identity());
+      long from = beginning;
+      if (position.isPresent()) {
+        Preconditions.checkArgument(position.get() instanceof LogPosition);
+        from = Longs.fromByteArray(((LogPosition) position.get()).unwrap().identity()) + 1;
+        if (from < beginning) {
+          throw new InvalidPositionException("Entries following position " + (from - 1)
+              + " have been truncated, the log begins at position " + beginning);
+        }
+      }
+      return new BatchReadingIterator(from, to);
+    }
+
+    @Override
+    public LogPosition position(byte[] identity) throws InvalidPositionException {
+      if (identity.length != Longs.BYTES) {
+        throw new InvalidPositionException(
+            "Invalid position identity of length " + identity.length);
+      }
+      return LogPosition.wrap(log.position(identity));
+    }
+
+    private void appendNoop() throws StreamAccessException {
+      try {
+        append(noopEntry);
+      } catch (StreamAccessException e) {
+        throw new StreamAccessException("Error writing noop prior to a read", e);
+      }
+    }
+
+    /**
+     * Reads contiguous ranges of log positions in batches.  While a batch is consumed, the next
+     * batch is fetched in the background.  At most one read is outstanding at a time, so no more
+     * than two batches are held in memory.
+     */
+    private final class BatchReadingIterator extends UnmodifiableIterator<Entry> {
+      private final long endPosition;
+      private long position;
+      private Iterator<Entry> batch = Iterators.<Entry>emptyIterator();
+      @Nullable private Future<List<Log.Entry>> prefetch = null;
+      @Nullable private ExecutorService prefetcher = null;
+
+      BatchReadingIterator(long beginPosition, long endPosition) {
+        this.position = beginPosition;
+        this.endPosition = endPosition;
+      }
+
+      @Override
+      public boolean hasNext() {
+        while (!batch.hasNext()) {
+          List<Log.Entry> entries;
+          if (prefetch != null) {
+            entries = awaitPrefetch();
+          } else if (position <= endPosition) {
+            entries = nextRead().call();
+          } else {
+            return false;
           }
 
-          while (position <= endPosition) {
-            long start = System.nanoTime();
-            try {
-              Log.Position p = log.position(Longs.toByteArray(position));
-              if (LOG.isLoggable(Level.FINE)) {
-                LOG.fine("Reading position " + position + " from the log");
-              }
-              List<Log.Entry> entries = reader.read(p, p, readTimeout, readTimeUnit);
-
-              // N.B. HACK! There is currently no way to "increment" a position. Until the Mesos
-              // Log actually provides a way to "stream" the log, we approximate as much by
-              // using longs via Log.Position.identity and Log.position.
-              position++;
-
-              // Reading positions in this way means it's possible that we get an "invalid" entry
-              // (e.g., in the underlying log terminology this would be anything but an append)
-              // which will be removed from the returned entries resulting in an empty list.
-              // We skip these.
-              if (entries.isEmpty()) {
-                entriesSkipped.getAndIncrement();
-              } else {
-                entry = MESOS_ENTRY_TO_ENTRY.apply(Iterables.getOnlyElement(entries));
-                return true;
-              }
-            } catch (TimeoutException e) {
-              readStats.timeouts.getAndIncrement();
-              throw new StreamAccessException("Timeout reading from log.", e);
-            } catch (Log.OperationFailedException e) {
-              readStats.failures.getAndIncrement();
-              throw new StreamAccessException("Problem reading from log", e);
-            } finally {
-              readStats.timing.accumulate(System.nanoTime() - start);
-            }
+          if (position <= endPosition) {
+            prefetch = getPrefetcher().submit(nextRead());
+          } else {
+            shutdownPrefetcher();
           }
-          return false;
+          batch = Iterators.<Log.Entry, Entry>transform(entries.iterator(), MESOS_ENTRY_TO_ENTRY);
         }
+        return true;
+      }
 
-        @Override
-        public Entry next() {
-          if (entry == null && !hasNext()) {
-            throw new NoSuchElementException();
-          }
+      @Override
+      public Entry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return batch.next();
+      }
+
+      private ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+          // No core threads, so that an iterator that is abandoned before reaching the end of
+          // the log does not leave an idle thread behind.
+          prefetcher = AsyncUtil.loggingExecutor(
+              0,
+              1,
+              new LinkedBlockingQueue<Runnable>(),
+              "MesosLogReadPrefetcher-%d",
+              LOG);
+        }
+        return prefetcher;
+      }
+
+      private void shutdownPrefetcher() {
+        if (prefetcher != null) {
+          prefetcher.shutdownNow();
+          prefetcher = null;
+        }
+      }
 
-          Entry result = requireNonNull(entry);
-          entry = null;
-          return result;
+      private List<Log.Entry> awaitPrefetch() {
+        try {
+          return prefetch.get();
+        } catch (InterruptedException e) {
+          shutdownPrefetcher();
+          Thread.currentThread().interrupt();
+          throw new StreamAccessException("Interrupted while reading from log.", e);
+        } catch (ExecutionException e) {
+          shutdownPrefetcher();
+          throw Throwables.propagate(e.getCause());
+        } finally {
+          prefetch = null;
         }
-      };
+      }
+
+      /**
+       * Claims the next range of positions to read, advancing the read position past it.
+       */
+      private ReadRange nextRead() {
+        long from = position;
+        long to = Math.min(endPosition, from + readBatchSize - 1);
+
+        // N.B. HACK! There is currently no way to "increment" a position. Until the Mesos
+        // Log actually provides a way to "stream" the log, we approximate as much by
+        // using longs via Log.Position.identity and Log.position.
+        position = to + 1;
+        return new ReadRange(from, to);
+      }
+    }
+
+    private final class ReadRange implements Callable<List<Log.Entry>> {
+      private final long from;
+      private final long to;
+
+      ReadRange(long from, long to) {
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      public List<Log.Entry> call() throws StreamAccessException {
+        long start = System.nanoTime();
+        try {
+          if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Reading positions " + from + " through " + to + " from the log");
+          }
+          List<Log.Entry> entries = reader.read(
+              log.position(Longs.toByteArray(from)),
+              log.position(Longs.toByteArray(to)),
+              readTimeout,
+              readTimeUnit);
+
+          // Reading positions in this way means it's possible that we get "invalid" entries
+          // (e.g., in the underlying log terminology this would be anything but an append)
+          // which will be removed from the returned entries.  We skip these.
+          entriesSkipped.getAndAdd(to - from + 1 - entries.size());
+          return entries;
+        } catch (TimeoutException e) {
+          readStats.timeouts.getAndIncrement();
+          throw new StreamAccessException("Timeout reading from log.", e);
+        } catch (Log.OperationFailedException e) {
+          readStats.failures.getAndIncrement();
+          throw new StreamAccessException("Problem reading from log", e);
+        } finally {
+          readStats.timing.accumulate(System.nanoTime() - start);
+        }
+      }
     }
 
     @Override
@@ -392,6 +549,11 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
         return underlying;
       }
 
+      @Override
+      public byte[] identity() {
+        return underlying.identity();
+      }
+
       @Override
       public int compareTo(Position o) {
         Preconditions.checkArgument(o instanceof LogPosition);
@@ -410,6 +572,11 @@ public class MesosLog implements org.apache.aurora.scheduler.log.Log {
       public byte[] contents() {
         return underlying.data;
       }
+
+      @Override
+      public LogPosition position() {
+        return LogPosition.wrap(underlying.position);
+      }
     }
   }
 }
@@ -21,22 +21,20 @@ import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
+import com.twitter.common.base.Closure;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.stats.StatsProvider;
 import com.twitter.common.util.Clock;
 
 import org.apache.aurora.scheduler.base.Query;
-import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.sla.SlaAlgorithm.AlgorithmType;
 import org.apache.aurora.scheduler.sla.SlaGroup.GroupType;
 import org.apache.aurora.scheduler.storage.Storage;
@@ -96,14 +94,6 @@ class MetricCalculator implements Runnable {
               RESOURCE_DISK)
           .build();
 
-  private static final Predicate<ITaskConfig> IS_SERVICE =
-      new Predicate<ITaskConfig>() {
-        @Override
-        public boolean apply(ITaskConfig task) {
-          return task.isIsService();
-        }
-      };
-
   private final LoadingCache<String, Counter> metricCache;
   private final Storage storage;
   private final Clock clock;
@@ -167,22 +157,29 @@ class MetricCalculator implements Runnable {
   @Timed("sla_stats_computation")
   @Override
   public void run() {
-    FluentIterable<IScheduledTask> tasks =
-        FluentIterable.from(Storage.Util.fetchTasks(storage, Query.unscoped()));
-
-    List<IScheduledTask> prodTasks = tasks.filter(Predicates.compose(
-        Predicates.and(Tasks.IS_PRODUCTION, IS_SERVICE),
-        Tasks.SCHEDULED_TO_INFO)).toList();
-
-    List<IScheduledTask> nonProdTasks = tasks.filter(Predicates.compose(
-        Predicates.and(Predicates.not(Tasks.IS_PRODUCTION), IS_SERVICE),
-        Tasks.SCHEDULED_TO_INFO)).toList();
+    // Partition service tasks in a single pass over the store, retaining only the tasks that
+    // contribute to metrics.
+    final ImmutableList.Builder<IScheduledTask> prodTasks = ImmutableList.builder();
+    final ImmutableList.Builder<IScheduledTask> nonProdTasks = ImmutableList.builder();
+    Storage.Util.forEachTask(storage, Query.unscoped(), new Closure<IScheduledTask>() {
+      @Override
+      public void execute(IScheduledTask task) {
+        ITaskConfig config = task.getAssignedTask().getTask();
+        if (config.isIsService()) {
+          if (config.isProduction()) {
+            prodTasks.add(task);
+          } else {
+            nonProdTasks.add(task);
+          }
+        }
+      }
+    });
 
     long nowMs = clock.nowMillis();
     Range<Long> timeRange = Range.closedOpen(nowMs - settings.getRefreshRateMs(), nowMs);
 
-    runAlgorithms(prodTasks, PROD_METRICS, timeRange);
-    runAlgorithms(nonProdTasks, NON_PROD_METRICS, timeRange);
+    runAlgorithms(prodTasks.build(), PROD_METRICS, timeRange);
+    runAlgorithms(nonProdTasks.build(), NON_PROD_METRICS, timeRange);
   }
 
   private void runAlgorithms(
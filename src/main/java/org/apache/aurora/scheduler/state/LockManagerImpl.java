@@ -14,11 +14,13 @@
 package org.apache.aurora.scheduler.state;
 
 import java.util.Date;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.twitter.common.util.Clock;
 
 import org.apache.aurora.gen.Lock;
@@ -30,6 +32,7 @@ import org.apache.aurora.scheduler.storage.Storage.MutableStoreProvider;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork;
 import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
 import org.apache.aurora.scheduler.storage.Storage.Work;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.ILock;
 import org.apache.aurora.scheduler.storage.entities.ILockKey;
 
@@ -54,7 +57,7 @@ public class LockManagerImpl implements LockManager {
 
   @Override
   public ILock acquireLock(final ILockKey lockKey, final String user) throws LockException {
-    return storage.write(new MutateWork<ILock, LockException>() {
+    return storage.write(new MutateWork<ILock, LockException>(jobScope(lockKey)) {
       @Override
       public ILock apply(Storage.MutableStoreProvider storeProvider)
           throws LockException {
@@ -84,7 +87,7 @@ public class LockManagerImpl implements LockManager {
 
   @Override
   public void releaseLock(final ILock lock) {
-    storage.write(new MutateWork.NoResult.Quiet() {
+    storage.write(new MutateWork.NoResult.Quiet(jobScope(lock.getKey())) {
       @Override
       public void execute(MutableStoreProvider storeProvider) {
         storeProvider.getLockStore().removeLock(lock.getKey());
@@ -133,6 +136,14 @@ public class LockManagerImpl implements LockManager {
     });
   }
 
+  // Job locks are scoped to their job, which allows them to be acquired and released from within
+  // writes scoped to the job.
+  private static Optional<Set<IJobKey>> jobScope(ILockKey lockKey) {
+    return lockKey.getSetField() == _Fields.JOB
+        ? Optional.<Set<IJobKey>>of(ImmutableSet.of(lockKey.getJob()))
+        : Optional.<Set<IJobKey>>absent();
+  }
+
   private static String formatLockKey(ILockKey lockKey) {
     return lockKey.getSetField() == _Fields.JOB
         ? JobKeys.canonicalString(lockKey.getJob())
@@ -52,12 +52,14 @@ import org.apache.aurora.scheduler.events.EventSink;
 import org.apache.aurora.scheduler.events.PubsubEvent;
 import org.apache.aurora.scheduler.mesos.Driver;
 import org.apache.aurora.scheduler.state.SideEffect.Action;
+import org.apache.aurora.scheduler.storage.PostCommitExecutor;
 import org.apache.aurora.scheduler.storage.Storage.MutableStoreProvider;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.TaskStore.Mutable.TaskMutation;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
 import org.apache.mesos.Protos.SlaveID;
 
 import static java.util.Objects.requireNonNull;
@@ -83,6 +85,7 @@ public class StateManagerImpl implements StateManager {
   private final TaskIdGenerator taskIdGenerator;
   private final EventSink eventSink;
   private final RescheduleCalculator rescheduleCalculator;
+  private final PostCommitExecutor postCommitExecutor;
 
   @Inject
   StateManagerImpl(
@@ -90,23 +93,25 @@ public class StateManagerImpl implements StateManager {
       Driver driver,
       TaskIdGenerator taskIdGenerator,
       EventSink eventSink,
-      RescheduleCalculator rescheduleCalculator) {
+      RescheduleCalculator rescheduleCalculator,
+      PostCommitExecutor postCommitExecutor) {
 
     this.clock = requireNonNull(clock);
     this.driver = requireNonNull(driver);
     this.taskIdGenerator = requireNonNull(taskIdGenerator);
     this.eventSink = requireNonNull(eventSink);
     this.rescheduleCalculator = requireNonNull(rescheduleCalculator);
+    this.postCommitExecutor = requireNonNull(postCommitExecutor);
   }
 
   private IScheduledTask createTask(int instanceId, ITaskConfig template) {
-    AssignedTask assigned = new AssignedTask()
+    // The template is shared rather than copied, since it is immutable.
+    IAssignedTask assigned = IAssignedTask.buildNoCopy(new AssignedTask()
         .setTaskId(taskIdGenerator.generate(template, instanceId))
-        .setInstanceId(instanceId)
-        .setTask(template.newBuilder());
-    return IScheduledTask.build(new ScheduledTask()
-        .setStatus(INIT)
-        .setAssignedTask(assigned));
+        .setInstanceId(instanceId))
+        .withTask(template);
+    return IScheduledTask.buildNoCopy(new ScheduledTask().setStatus(INIT))
+        .withAssignedTask(assigned);
   }
 
   @Override
@@ -185,12 +190,10 @@ public class StateManagerImpl implements StateManager {
         new Function<IScheduledTask, IScheduledTask>() {
           @Override
           public IScheduledTask apply(IScheduledTask task) {
-            ScheduledTask builder = task.newBuilder();
-            builder.getAssignedTask()
-                .setAssignedPorts(assignedPorts)
-                .setSlaveHost(slaveHost)
-                .setSlaveId(slaveId.getValue());
-            return IScheduledTask.build(builder);
+            return task.withAssignedTask(task.getAssignedTask()
+                .withAssignedPorts(assignedPorts)
+                .withSlaveHost(slaveHost)
+                .withSlaveId(slaveId.getValue()));
           }
         });
 
@@ -281,7 +284,7 @@ public class StateManagerImpl implements StateManager {
 
   private StateChangeResult updateTaskAndExternalState(
       TaskStore.Mutable taskStore,
-      String taskId,
+      final String taskId,
       // Note: This argument is deliberately non-final, and should not be made final.
       // This is because using the captured value within the storage operation below is
       // highly-risky, since it doesn't necessarily represent the value in storage.
@@ -312,8 +315,7 @@ public class StateManagerImpl implements StateManager {
           taskStore.mutateTasks(query, new TaskMutation() {
             @Override
             public IScheduledTask apply(IScheduledTask task) {
-              return IScheduledTask.build(
-                  task.newBuilder().setFailureCount(task.getFailureCount() + 1));
+              return task.withFailureCount(task.getFailureCount() + 1);
             }
           });
           break;
@@ -326,14 +328,18 @@ public class StateManagerImpl implements StateManager {
           taskStore.mutateTasks(query, new TaskMutation() {
             @Override
             public IScheduledTask apply(IScheduledTask task) {
-              ScheduledTask mutableTask = task.newBuilder();
-              mutableTask.setStatus(targetState.get());
-              mutableTask.addToTaskEvents(new TaskEvent()
+              // Only the status and event list are replaced, all other fields are shared with
+              // the stored task.
+              ITaskEvent event = ITaskEvent.buildNoCopy(new TaskEvent()
                   .setTimestamp(clock.nowMillis())
                   .setStatus(targetState.get())
                   .setMessage(transitionMessage.orNull())
                   .setScheduler(LOCAL_HOST_SUPPLIER.get()));
-              return IScheduledTask.build(mutableTask);
+              return task.withStatus(targetState.get())
+                  .withTaskEvents(ImmutableList.<ITaskEvent>builder()
+                      .addAll(task.getTaskEvents())
+                      .add(event)
+                      .build());
             }
           });
           events.add(
@@ -360,12 +366,11 @@ public class StateManagerImpl implements StateManager {
             auditMessage = "Rescheduled";
           }
 
-          IScheduledTask newTask = IScheduledTask.build(createTask(
+          IScheduledTask newTask = createTask(
               upToDateTask.get().getAssignedTask().getInstanceId(),
               upToDateTask.get().getAssignedTask().getTask())
-              .newBuilder()
-              .setFailureCount(upToDateTask.get().getFailureCount())
-              .setAncestorId(taskId));
+              .withFailureCount(upToDateTask.get().getFailureCount())
+              .withAncestorId(taskId);
           taskStore.saveTasks(ImmutableSet.of(newTask));
           updateTaskAndExternalState(
               taskStore,
@@ -376,7 +381,12 @@ public class StateManagerImpl implements StateManager {
           break;
 
         case KILL:
-          driver.killTask(taskId);
+          postCommitExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              driver.killTask(taskId);
+            }
+          });
           break;
 
         case DELETE:
@@ -392,11 +402,9 @@ public class StateManagerImpl implements StateManager {
       }
     }
 
-    // Note (AURORA-138): Delaying events until after the write operation is somewhat futile, since
-    // the state may actually not be written to durable store
-    // (e.g. if this is a nested transaction). Ideally, Storage would add a facility to attach
-    // side-effects that are performed after the outer-most transaction completes (meaning state
-    // has been durably persisted).
+    // Note (AURORA-138): This may be within a nested transaction, so the state may not yet be
+    // written to durable store.  Storage systems that acknowledge writes before they are durable
+    // defer events until the outer-most transaction is persisted, via PostCommitExecutor.
     for (PubsubEvent event : events) {
       eventSink.post(event);
     }
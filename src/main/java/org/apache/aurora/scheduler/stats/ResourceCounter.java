@@ -28,16 +28,16 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.Iterables;
+import com.twitter.common.base.Closure;
 
 import org.apache.aurora.scheduler.base.Query;
-import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.configuration.ConfigurationManager;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.StorageException;
 import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
 import org.apache.aurora.scheduler.storage.Storage.Work;
 import org.apache.aurora.scheduler.storage.entities.IResourceAggregate;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 
 /**
@@ -51,10 +51,15 @@ public class ResourceCounter {
     this.storage = Objects.requireNonNull(storage);
   }
 
-  private Iterable<ITaskConfig> getTasks(Query.Builder query) throws StorageException {
-    return Iterables.transform(
-        Storage.Util.fetchTasks(storage, query),
-        Tasks.SCHEDULED_TO_INFO);
+  private void forEachTask(Query.Builder query, final Closure<ITaskConfig> visitor)
+      throws StorageException {
+
+    Storage.Util.forEachTask(storage, query, new Closure<IScheduledTask>() {
+      @Override
+      public void execute(IScheduledTask task) {
+        visitor.execute(task.getAssignedTask().getTask());
+      }
+    });
   }
 
   private static final Function<MetricType, GlobalMetric> TO_GLOBAL_METRIC =
@@ -72,15 +77,18 @@ public class ResourceCounter {
    * @throws StorageException if there was a problem fetching tasks from storage.
    */
   public List<GlobalMetric> computeConsumptionTotals() throws StorageException {
-    List<GlobalMetric> counts = FluentIterable.from(Arrays.asList(MetricType.values()))
+    final List<GlobalMetric> counts = FluentIterable.from(Arrays.asList(MetricType.values()))
         .transform(TO_GLOBAL_METRIC)
         .toList();
 
-    for (ITaskConfig task : getTasks(Query.unscoped().active())) {
-      for (GlobalMetric count : counts) {
-        count.accumulate(task);
+    forEachTask(Query.unscoped().active(), new Closure<ITaskConfig>() {
+      @Override
+      public void execute(ITaskConfig task) {
+        for (GlobalMetric count : counts) {
+          count.accumulate(task);
+        }
       }
-    }
+    });
     return counts;
   }
 
@@ -115,19 +123,24 @@ public class ResourceCounter {
    */
   public <K> Map<K, Metric> computeAggregates(
       Query.Builder query,
-      Predicate<ITaskConfig> filter,
-      Function<ITaskConfig, K> keyFunction) throws StorageException {
+      final Predicate<ITaskConfig> filter,
+      final Function<ITaskConfig, K> keyFunction) throws StorageException {
 
-    LoadingCache<K, Metric> metrics = CacheBuilder.newBuilder()
+    final LoadingCache<K, Metric> metrics = CacheBuilder.newBuilder()
         .build(new CacheLoader<K, Metric>() {
           @Override
           public Metric load(K key) {
             return new Metric();
           }
         });
-    for (ITaskConfig task : Iterables.filter(getTasks(query), filter)) {
-      metrics.getUnchecked(keyFunction.apply(task)).accumulate(task);
-    }
+    forEachTask(query, new Closure<ITaskConfig>() {
+      @Override
+      public void execute(ITaskConfig task) {
+        if (filter.apply(task)) {
+          metrics.getUnchecked(keyFunction.apply(task)).accumulate(task);
+        }
+      }
+    });
     return metrics.asMap();
   }
 
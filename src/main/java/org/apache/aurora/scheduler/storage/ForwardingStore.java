@@ -18,6 +18,9 @@ import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
+import com.twitter.common.base.Closure;
 
 import org.apache.aurora.gen.storage.StoredJobUpdateDetails;
 import org.apache.aurora.scheduler.base.Query;
@@ -108,6 +111,26 @@ public class ForwardingStore implements
     return taskStore.fetchTasks(querySupplier);
   }
 
+  @Override
+  public void forEach(Query.Builder query, Closure<IScheduledTask> visitor) {
+    taskStore.forEach(query, visitor);
+  }
+
+  @Override
+  public ImmutableSet<String> fetchTaskIds(Query.Builder query) {
+    return taskStore.fetchTaskIds(query);
+  }
+
+  @Override
+  public ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query) {
+    return taskStore.fetchJobKeys(query);
+  }
+
+  @Override
+  public Supplier<ImmutableSet<IScheduledTask>> captureTasks() {
+    return taskStore.captureTasks();
+  }
+
   @Override
   public Set<ILock> fetchLocks() {
     return lockStore.fetchLocks();
@@ -0,0 +1,40 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage;
+
+import java.util.concurrent.Executor;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Executes the side-effects of storage write operations, such as event notifications and calls to
+ * external systems.  Storage systems that acknowledge a write before it is durable may defer
+ * side-effects submitted during a write operation until the outermost write operation on the
+ * calling thread has been persisted.  Side-effects submitted outside of a write operation are
+ * executed immediately.
+ */
+@ImplementedBy(PostCommitExecutor.Immediate.class)
+public interface PostCommitExecutor extends Executor {
+
+  /**
+   * A post-commit executor that executes all side-effects immediately, for storage systems where
+   * a write operation is durable once it completes.
+   */
+  class Immediate implements PostCommitExecutor {
+    @Override
+    public void execute(Runnable sideEffect) {
+      sideEffect.run();
+    }
+  }
+}
@@ -13,6 +13,8 @@
  */
 package org.apache.aurora.scheduler.storage;
 
+import com.google.common.base.Supplier;
+
 /**
  * Storage mechanism that is able to create complete snapshots of the local storage system state
  * and apply these to restore local storage from a snapshotted baseline.
@@ -26,6 +28,16 @@ public interface SnapshotStore<T> {
    */
   T createSnapshot();
 
+  /**
+   * Captures a consistent point-in-time view of the local storage system without building a
+   * snapshot from it.  Capturing only retains references to immutable stored state, which is much
+   * cheaper than creating a snapshot.  The returned supplier builds the snapshot, and may be
+   * invoked later without any synchronization against storage writes.
+   *
+   * @return A supplier of a snapshot reflecting storage at the time of this call.
+   */
+  Supplier<T> captureSnapshot();
+
   /**
    * Applies a snapshot blob to the local storage system, wiping out all existing data and
    * resetting with the contents of the snapshot.
@@ -17,12 +17,18 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Set;
 
 import javax.inject.Qualifier;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.twitter.common.base.Closure;
+
 import org.apache.aurora.scheduler.base.Query.Builder;
 import org.apache.aurora.scheduler.base.SchedulerException;
 import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 
 /**
@@ -110,13 +116,50 @@ public interface Storage {
   abstract class MutateWork<T, E extends Exception>
       implements StorageOperation<MutableStoreProvider, T, E> {
 
+    private final Optional<ImmutableSet<IJobKey>> jobScope;
+
+    /**
+     * Creates work that may modify any state.
+     */
+    public MutateWork() {
+      this.jobScope = Optional.absent();
+    }
+
+    /**
+     * Creates work that, if {@code jobScope} is present, only modifies state belonging to the
+     * given jobs.  Storage implementations may run job scoped work concurrently with work scoped
+     * to other jobs.
+     *
+     * @param jobScope Jobs the work is confined to, or absent if the work may modify any state.
+     */
+    public MutateWork(Optional<? extends Set<IJobKey>> jobScope) {
+      this.jobScope = jobScope.isPresent()
+          ? Optional.of(ImmutableSet.copyOf(jobScope.get()))
+          : Optional.<ImmutableSet<IJobKey>>absent();
+    }
+
+    /**
+     * Gets the jobs this work is confined to.
+     *
+     * @return The jobs whose state the work may modify, or absent if it may modify any state.
+     */
+    public final Optional<ImmutableSet<IJobKey>> getJobScope() {
+      return jobScope;
+    }
+
     /**
      * A convenient typedef for Work that throws no checked exceptions - it runs quietly.
      *
      * @param <T> The type of result this unit of work produces.
      */
     public abstract static class Quiet<T> extends MutateWork<T, RuntimeException> {
-      // typedef
+      public Quiet() {
+        super();
+      }
+
+      public Quiet(Optional<? extends Set<IJobKey>> jobScope) {
+        super(jobScope);
+      }
     }
 
     /**
@@ -126,6 +169,14 @@ public interface Storage {
      */
     public abstract static class NoResult<E extends Exception> extends MutateWork<Void, E> {
 
+      public NoResult() {
+        super();
+      }
+
+      public NoResult(Optional<? extends Set<IJobKey>> jobScope) {
+        super(jobScope);
+      }
+
       @Override
       public final Void apply(MutableStoreProvider storeProvider) throws E {
         execute(storeProvider);
@@ -146,7 +197,13 @@ public interface Storage {
        * quitely.
        */
       public abstract static class Quiet extends NoResult<RuntimeException> {
-        // typedef
+        public Quiet() {
+          super();
+        }
+
+        public Quiet(Optional<? extends Set<IJobKey>> jobScope) {
+          super(jobScope);
+        }
       }
     }
   }
@@ -201,6 +258,12 @@ public interface Storage {
    * performed after completion of the outer-most transaction.  As it stands, it's somewhat
    * futile to try to achieve this within a transaction, since the local code does not know
    * if the current transaction is nested.
+   * <p>
+   * Work with a {@link MutateWork#getJobScope() job scope} may be executed concurrently with work
+   * scoped to other jobs, but is never executed concurrently with unscoped work.  Nested work is
+   * executed within the scope of the outermost work, so work nested within job scoped work must
+   * also be scoped to some of the same jobs.  Storage implementations may reject nested work that
+   * is unscoped or names other jobs.
    *
    * @param work The unit of work to execute.
    * @param <T> The type of result this unit of work produces.
@@ -293,6 +356,47 @@ public interface Storage {
       });
     }
 
+    /**
+     * Visits tasks matching the query returned by {@code query} from {@code storage} in a
+     * read operation, without accumulating the matching tasks.
+     *
+     * @see TaskStore#forEach
+     * @param storage Storage instance to query from.
+     * @param query Builder of the query to perform.
+     * @param visitor Visitor to invoke once for each matching task.
+     */
+    public static void forEachTask(
+        Storage storage,
+        final Builder query,
+        final Closure<IScheduledTask> visitor) {
+
+      storage.read(new Work.Quiet<Void>() {
+        @Override
+        public Void apply(StoreProvider storeProvider) {
+          storeProvider.getTaskStore().forEach(query, visitor);
+          return null;
+        }
+      });
+    }
+
+    /**
+     * Fetches the IDs of tasks matching the query returned by {@code query} from {@code storage}
+     * in a read operation.
+     *
+     * @see TaskStore#fetchTaskIds
+     * @param storage Storage instance to query from.
+     * @param query Builder of the query to perform.
+     * @return IDs of tasks returned by the query.
+     */
+    public static ImmutableSet<String> fetchTaskIds(Storage storage, final Builder query) {
+      return storage.read(new Work.Quiet<ImmutableSet<String>>() {
+        @Override
+        public ImmutableSet<String> apply(StoreProvider storeProvider) {
+          return storeProvider.getTaskStore().fetchTaskIds(query);
+        }
+      });
+    }
+
     public static Iterable<IJobConfiguration> fetchCronJobs(Storage storage) {
       return storage.read(new Work.Quiet<Iterable<IJobConfiguration>>() {
         @Override
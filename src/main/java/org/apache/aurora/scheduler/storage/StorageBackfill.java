@@ -20,7 +20,6 @@ import com.twitter.common.stats.Stats;
 
 import org.apache.aurora.gen.JobConfiguration;
 import org.apache.aurora.gen.JobKey;
-import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
@@ -30,6 +29,8 @@ import org.apache.aurora.scheduler.storage.TaskStore.Mutable.TaskMutation;
 import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+
 /**
  * Utility class to contain and perform storage backfill operations.
  */
@@ -55,6 +56,12 @@ public final class StorageBackfill {
     }
   }
 
+  private static IScheduledTask replaceConfig(IScheduledTask task, TaskConfig config) {
+    // Only the task configuration is copied, the remainder of the task is shared.
+    return task.withAssignedTask(
+        task.getAssignedTask().withTask(ITaskConfig.buildNoCopy(config)));
+  }
+
   private static void populateJobKey(TaskConfig config, AtomicLong counter) {
     if (!config.isSetJob() || !JobKeys.isValid(IJobKey.build(config.getJob()))) {
       config.setJob(new JobKey()
@@ -81,9 +88,9 @@ public final class StorageBackfill {
     storeProvider.getUnsafeTaskStore().mutateTasks(Query.unscoped(), new TaskMutation() {
       @Override
       public IScheduledTask apply(final IScheduledTask task) {
-        ScheduledTask builder = task.newBuilder();
-        populateJobKey(builder.getAssignedTask().getTask(), BACKFILLED_TASK_CONFIG_KEYS);
-        return IScheduledTask.build(builder);
+        TaskConfig config = task.getAssignedTask().getTask().newBuilder();
+        populateJobKey(config, BACKFILLED_TASK_CONFIG_KEYS);
+        return replaceConfig(task, config);
       }
     });
 
@@ -91,9 +98,9 @@ public final class StorageBackfill {
     storeProvider.getUnsafeTaskStore().mutateTasks(Query.unscoped(), new TaskMutation() {
       @Override
       public IScheduledTask apply(final IScheduledTask task) {
-        ScheduledTask builder = task.newBuilder();
-        ConfigurationManager.applyDefaultsIfUnset(builder.getAssignedTask().getTask());
-        return IScheduledTask.build(builder);
+        TaskConfig config = task.getAssignedTask().getTask().newBuilder();
+        ConfigurationManager.applyDefaultsIfUnset(config);
+        return replaceConfig(task, config);
       }
     });
   }
@@ -16,9 +16,12 @@ package org.apache.aurora.scheduler.storage;
 import java.util.Set;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableSet;
+import com.twitter.common.base.Closure;
 
 import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 
@@ -36,6 +39,49 @@ public interface TaskStore {
    */
   Iterable<IScheduledTask> fetchTasks(Query.Builder query);
 
+  /**
+   * Visits each task matching a query, without accumulating the matching tasks into a collection.
+   * This should be preferred over {@link #fetchTasks(Query.Builder)} by callers that fold large
+   * numbers of tasks into a summary.
+   * <p>
+   * The visitor must not modify the task store.
+   *
+   * @param query Builder of the query to identify tasks with.
+   * @param visitor Visitor to invoke once for each matching task.
+   */
+  void forEach(Query.Builder query, Closure<IScheduledTask> visitor);
+
+  /**
+   * Fetches the IDs of tasks matching a query.  This is a projection of
+   * {@link #fetchTasks(Query.Builder)}, and allows the store to avoid reading or copying the
+   * remainder of each task.
+   *
+   * @param query Builder of the query to identify tasks with.
+   * @return IDs of matching tasks.
+   */
+  ImmutableSet<String> fetchTaskIds(Query.Builder query);
+
+  /**
+   * Fetches the distinct job keys of tasks matching a query.  This is a projection of
+   * {@link #fetchTasks(Query.Builder)}, and allows the store to avoid reading or copying the
+   * remainder of each task.
+   *
+   * @param query Builder of the query to identify tasks with.
+   * @return Job keys of matching tasks.
+   */
+  ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query);
+
+  /**
+   * Captures all stored tasks as of a single point in time.  The capture is taken while the caller
+   * holds a storage lock, and the returned supplier may be read after the lock is released without
+   * observing subsequent writes.  Stores that keep immutable versions of their contents only
+   * capture a reference to the current version, and defer copying tasks to the supplier; other
+   * stores copy the tasks when capturing.
+   *
+   * @return A supplier of all tasks stored at the time of the capture.
+   */
+  Supplier<ImmutableSet<IScheduledTask>> captureTasks();
+
   interface Mutable extends TaskStore {
 
     /**
@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.backup;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.aurora.codec.ByteBufferInputStream;
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
+import org.apache.aurora.codec.ThriftBinaryCodec;
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.storage.DeduplicatedSnapshot;
+import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+/**
+ * The format of storage backup files.
+ *
+ * <p>A compact backup holds a header followed by the {@link DeduplicatedSnapshot deduplicated}
+ * snapshot, in the compact encoding and compressed with {@link Compression#DEFLATE}.  Backups are
+ * written and read as streams, and are memory-mapped when read, so neither the encoded nor the
+ * compressed backup is ever held on the heap in full.
+ *
+ * <p>A legacy backup holds a {@link Snapshot} in the binary encoding with no header, and is the
+ * only format that earlier versions can read.  Since a binary-encoded struct starts with a field
+ * type, a legacy backup is never mistaken for a header.
+ */
+final class BackupFormat {
+
+  private static final int MAGIC = 0x41424b50;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private BackupFormat() {
+    // Utility class.
+  }
+
+  /**
+   * Writes a compact backup to a stream.
+   *
+   * @param snapshot Snapshot to back up.
+   * @param out Stream to write the backup to.  The stream is closed when the backup has been
+   *     written.
+   * @param deduplicator Deduplicator to convert the snapshot with.
+   * @throws IOException If the backup could not be written.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  static void write(Snapshot snapshot, OutputStream out, SnapshotDeduplicator deduplicator)
+      throws IOException, CodingException {
+
+    DataOutputStream header = new DataOutputStream(out);
+    header.writeInt(MAGIC);
+    header.writeInt(VERSION);
+    ThriftBinaryCodec.compressNonNull(
+        deduplicator.deduplicate(snapshot),
+        out,
+        Compression.DEFLATE,
+        Encoding.COMPACT);
+  }
+
+  /**
+   * Writes a legacy backup to a stream.
+   *
+   * @param snapshot Snapshot to back up.
+   * @param out Stream to write the backup to.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  static void writeLegacy(Snapshot snapshot, OutputStream out) throws CodingException {
+    try {
+      snapshot.write(new TBinaryProtocol(new TIOStreamTransport(out)));
+    } catch (TException e) {
+      throw new CodingException("Failed to encode legacy backup: " + e, e);
+    }
+  }
+
+  /**
+   * Reads a backup from a file, in either the compact or the legacy format.
+   *
+   * @param file Backup file to read.
+   * @param deduplicator Deduplicator to restore the snapshot with.
+   * @return The backed up snapshot.
+   * @throws IOException If the backup could not be read.
+   * @throws CodingException If the backup could not be decoded.
+   */
+  static Snapshot read(File file, SnapshotDeduplicator deduplicator)
+      throws IOException, CodingException {
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // Files too large to map are only expected of legacy backups, which are not compressed.
+      InputStream in = new BufferedInputStream(
+          channel.size() <= Integer.MAX_VALUE
+              ? new ByteBufferInputStream(
+                  channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+              : Channels.newInputStream(channel),
+          BUFFER_SIZE);
+      return read(in, deduplicator);
+    }
+  }
+
+  private static Snapshot read(InputStream in, SnapshotDeduplicator deduplicator)
+      throws IOException, CodingException {
+
+    in.mark(HEADER_SIZE);
+    DataInputStream header = new DataInputStream(in);
+    if (header.readInt() != MAGIC) {
+      in.reset();
+      return readLegacy(in);
+    }
+
+    int version = header.readInt();
+    if (version != VERSION) {
+      throw new CodingException("Unsupported backup version " + version);
+    }
+    return deduplicator.reduplicate(ThriftBinaryCodec.decompressNonNull(
+        DeduplicatedSnapshot.class,
+        in,
+        Compression.DEFLATE));
+  }
+
+  private static Snapshot readLegacy(InputStream in) throws CodingException {
+    Snapshot snapshot = new Snapshot();
+    try {
+      snapshot.read(new TBinaryProtocol(new TIOStreamTransport(in)));
+    } catch (TException e) {
+      throw new CodingException("Failed to decode legacy backup: " + e, e);
+    }
+    return snapshot;
+  }
+}
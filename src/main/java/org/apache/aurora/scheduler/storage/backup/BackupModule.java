@@ -40,6 +40,8 @@ import org.apache.aurora.scheduler.storage.backup.Recovery.RecoveryImpl;
 import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl;
 import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl.BackupConfig;
 import org.apache.aurora.scheduler.storage.backup.TemporaryStorage.TemporaryStorageFactory;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator.SnapshotDeduplicatorImpl;
 
 import static java.util.Objects.requireNonNull;
 
@@ -63,6 +65,11 @@ public class BackupModule extends PrivateModule {
       help = "Directory to store backups under. Will be created if it does not exist.")
   private static final Arg<File> BACKUP_DIR = Arg.create();
 
+  @CmdLine(name = "use_compact_backup_format",
+      help = "Whether to write backups with task configurations deduplicated and compressed.  "
+          + "Backups in this format can only be recovered by schedulers that support it.")
+  private static final Arg<Boolean> USE_COMPACT_BACKUP_FORMAT = Arg.create(false);
+
   private final Class<? extends SnapshotStore<Snapshot>> snapshotStore;
   private final File unvalidatedBackupDir;
 
@@ -108,6 +115,8 @@ public class BackupModule extends PrivateModule {
     bind(Recovery.class).to(RecoveryImpl.class);
     bind(RecoveryImpl.class).in(Singleton.class);
     expose(Recovery.class);
+
+    bind(SnapshotDeduplicator.class).to(SnapshotDeduplicatorImpl.class);
   }
 
   static class LifecycleHook implements Command {
@@ -144,6 +153,10 @@ public class BackupModule extends PrivateModule {
 
   @Provides
   BackupConfig provideBackupConfig(File backupDir) {
-    return new BackupConfig(backupDir, MAX_SAVED_BACKUPS.get(), BACKUP_INTERVAL.get());
+    return new BackupConfig(
+        backupDir,
+        MAX_SAVED_BACKUPS.get(),
+        BACKUP_INTERVAL.get(),
+        USE_COMPACT_BACKUP_FORMAT.get());
   }
 }
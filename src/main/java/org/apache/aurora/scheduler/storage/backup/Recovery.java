@@ -23,11 +23,9 @@ import javax.inject.Inject;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.Files;
 import com.google.common.util.concurrent.Atomics;
 import com.twitter.common.base.Command;
 
-import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.scheduler.base.Query;
@@ -36,6 +34,7 @@ import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.MutableStoreProvider;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -110,6 +109,7 @@ public interface Recovery {
     private final Storage primaryStorage;
     private final DistributedSnapshotStore distributedStore;
     private final Command shutDownNow;
+    private final SnapshotDeduplicator deduplicator;
 
     @Inject
     RecoveryImpl(
@@ -117,7 +117,8 @@ public interface Recovery {
         Function<Snapshot, TemporaryStorage> tempStorageFactory,
         Storage primaryStorage,
         DistributedSnapshotStore distributedStore,
-        Command shutDownNow) {
+        Command shutDownNow,
+        SnapshotDeduplicator deduplicator) {
 
       this.backupDir = requireNonNull(backupDir);
       this.tempStorageFactory = requireNonNull(tempStorageFactory);
@@ -125,6 +126,7 @@ public interface Recovery {
       this.primaryStorage = requireNonNull(primaryStorage);
       this.distributedStore = requireNonNull(distributedStore);
       this.shutDownNow = requireNonNull(shutDownNow);
+      this.deduplicator = requireNonNull(deduplicator);
     }
 
     @Override
@@ -141,7 +143,7 @@ public interface Recovery {
 
       Snapshot snapshot;
       try {
-        snapshot = ThriftBinaryCodec.decode(Snapshot.class, Files.toByteArray(backupFile));
+        snapshot = BackupFormat.read(backupFile, deduplicator);
       } catch (CodingException e) {
         throw new RecoveryException("Failed to decode backup " + e, e);
       } catch (IOException e) {
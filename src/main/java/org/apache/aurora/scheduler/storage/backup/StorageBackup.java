@@ -36,6 +36,7 @@ import javax.inject.Qualifier;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
@@ -44,13 +45,10 @@ import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.Stats;
 import com.twitter.common.util.Clock;
 
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.scheduler.storage.SnapshotStore;
-import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TIOStreamTransport;
-import org.apache.thrift.transport.TTransport;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator;
 
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
@@ -60,7 +58,8 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * A backup routine that layers over a snapshot store and periodically writes snapshots to
- * local disk.
+ * local disk.  Backups are written in the legacy {@link BackupFormat} unless the compact format is
+ * enabled.
  */
 public interface StorageBackup {
 
@@ -79,11 +78,17 @@ public interface StorageBackup {
       private final File dir;
       private final int maxBackups;
       private final Amount<Long, Time> interval;
+      private final boolean compactFormat;
 
       BackupConfig(File dir, int maxBackups, Amount<Long, Time> interval) {
+        this(dir, maxBackups, interval, false);
+      }
+
+      BackupConfig(File dir, int maxBackups, Amount<Long, Time> interval, boolean compactFormat) {
         this.dir = requireNonNull(dir);
         this.maxBackups = maxBackups;
         this.interval = requireNonNull(interval);
+        this.compactFormat = compactFormat;
       }
 
       @VisibleForTesting
@@ -105,6 +110,7 @@ public interface StorageBackup {
     private volatile long lastBackupMs;
     private final DateFormat backupDateFormat;
     private final Executor executor;
+    private final SnapshotDeduplicator deduplicator;
 
     private final AtomicLong successes = Stats.exportLong("scheduler_backup_success");
     @VisibleForTesting
@@ -123,12 +129,14 @@ public interface StorageBackup {
         @SnapshotDelegate SnapshotStore<Snapshot> delegate,
         Clock clock,
         BackupConfig config,
-        Executor executor) {
+        Executor executor,
+        SnapshotDeduplicator deduplicator) {
 
       this.delegate = requireNonNull(delegate);
       this.clock = requireNonNull(clock);
       this.config = requireNonNull(config);
       this.executor = requireNonNull(executor);
+      this.deduplicator = requireNonNull(deduplicator);
       backupDateFormat = new SimpleDateFormat("yyyy-MM-dd-HH-mm", Locale.ENGLISH);
       backupIntervalMs = config.interval.as(Time.MILLISECONDS);
       lastBackupMs = clock.nowMillis();
@@ -136,7 +144,21 @@ public interface StorageBackup {
 
     @Override
     public Snapshot createSnapshot() {
-      final Snapshot snapshot = delegate.createSnapshot();
+      return maybeBackup(delegate.createSnapshot());
+    }
+
+    @Override
+    public Supplier<Snapshot> captureSnapshot() {
+      final Supplier<Snapshot> captured = delegate.captureSnapshot();
+      return new Supplier<Snapshot>() {
+        @Override
+        public Snapshot get() {
+          return maybeBackup(captured.get());
+        }
+      };
+    }
+
+    private Snapshot maybeBackup(final Snapshot snapshot) {
       if (clock.nowMillis() >= (lastBackupMs + backupIntervalMs)) {
         executor.execute(new Runnable() {
           @Override
@@ -165,18 +187,22 @@ public interface StorageBackup {
       String tempBackupName = "temp_" + backupName;
       File tempFile = new File(config.dir, tempBackupName);
       LOG.info("Saving backup to " + tempFile);
-      try (
-          OutputStream tempFileStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+      try {
+        try (OutputStream tempFileStream =
+            new BufferedOutputStream(new FileOutputStream(tempFile))) {
 
-        TTransport transport = new TIOStreamTransport(tempFileStream);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        snapshot.write(protocol);
+          if (config.compactFormat) {
+            BackupFormat.write(snapshot, tempFileStream, deduplicator);
+          } else {
+            BackupFormat.writeLegacy(snapshot, tempFileStream);
+          }
+        }
         Files.move(tempFile, new File(config.dir, backupName));
         successes.incrementAndGet();
       } catch (IOException e) {
         failures.incrementAndGet();
         LOG.log(Level.SEVERE, "Failed to prepare backup " + backupName + ": " + e, e);
-      } catch (TException e) {
+      } catch (CodingException e) {
         LOG.log(Level.SEVERE, "Failed to encode backup " + backupName + ": " + e, e);
         failures.incrementAndGet();
       } finally {
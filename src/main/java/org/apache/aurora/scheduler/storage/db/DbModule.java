@@ -27,6 +27,8 @@ import com.google.inject.PrivateModule;
 import com.google.inject.TypeLiteral;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.NotNegative;
+import com.twitter.common.args.constraints.Positive;
 import com.twitter.common.inject.Bindings.KeyFactory;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
@@ -61,11 +63,28 @@ public final class DbModule extends PrivateModule {
       help = "Whether to use the experimental database-backed task store.")
   private static final Arg<Boolean> USE_DB_TASK_STORE = Arg.create(false);
 
+  @CmdLine(name = "use_columnar_task_store",
+      help = "Whether to use the compact columnar in-memory task store.  Ignored when "
+          + "use_beta_db_task_store is set.")
+  private static final Arg<Boolean> USE_COLUMNAR_TASK_STORE = Arg.create(false);
+
   @CmdLine(name = "slow_query_log_threshold",
       help = "Log all queries that take at least this long to execute.")
   private static final Arg<Amount<Long, Time>> SLOW_QUERY_LOG_THRESHOLD =
       Arg.create(Amount.of(25L, Time.MILLISECONDS));
 
+  @Positive
+  @CmdLine(name = "db_insert_batch_size",
+      help = "Maximum number of rows the database-backed task store inserts with a single "
+          + "statement.")
+  private static final Arg<Integer> INSERT_BATCH_SIZE = Arg.create(1000);
+
+  @NotNegative
+  @CmdLine(name = "db_task_cache_size",
+      help = "Maximum number of materialized tasks, and of task configs, that the database-backed "
+          + "task store caches.  A value of zero disables caching.")
+  private static final Arg<Integer> TASK_CACHE_SIZE = Arg.create(100000);
+
   private static final Set<Class<?>> MAPPER_CLASSES = ImmutableSet.<Class<?>>builder()
       .add(AttributeMapper.class)
       .add(EnumValueMapper.class)
@@ -83,12 +102,19 @@ public final class DbModule extends PrivateModule {
   private final KeyFactory keyFactory;
   private final Module taskStoreModule;
   private final String jdbcSchema;
+  private final int insertBatchSize;
+
+  private DbModule(
+      KeyFactory keyFactory,
+      Module taskStoreModule,
+      String jdbcSchema,
+      int insertBatchSize) {
 
-  private DbModule(KeyFactory keyFactory, Module taskStoreModule, String jdbcSchema) {
     this.keyFactory = requireNonNull(keyFactory);
     this.taskStoreModule = requireNonNull(taskStoreModule);
     // We always disable the MvStore, as it is in beta as of this writing.
     this.jdbcSchema = jdbcSchema + ";MV_STORE=false";
+    this.insertBatchSize = insertBatchSize;
   }
 
   /**
@@ -99,12 +125,19 @@ public final class DbModule extends PrivateModule {
    * @return A new database module for production.
    */
   public static Module productionModule(KeyFactory keyFactory) {
+    Module taskStoreModule;
+    if (USE_DB_TASK_STORE.get()) {
+      taskStoreModule = new TaskStoreModule(keyFactory);
+    } else if (USE_COLUMNAR_TASK_STORE.get()) {
+      taskStoreModule = InMemStoresModule.TaskStoreModule.columnar(keyFactory);
+    } else {
+      taskStoreModule = new InMemStoresModule.TaskStoreModule(keyFactory);
+    }
     return new DbModule(
         keyFactory,
-        USE_DB_TASK_STORE.get()
-            ? new TaskStoreModule(keyFactory)
-            : new InMemStoresModule.TaskStoreModule(keyFactory),
-        "aurora;DB_CLOSE_DELAY=-1");
+        taskStoreModule,
+        "aurora;DB_CLOSE_DELAY=-1",
+        INSERT_BATCH_SIZE.get());
   }
 
   /**
@@ -117,6 +150,25 @@ public final class DbModule extends PrivateModule {
    */
   @VisibleForTesting
   public static Module testModule(Module taskStoreModule, KeyFactory keyFactory) {
+    return testModule(taskStoreModule, keyFactory, INSERT_BATCH_SIZE.get());
+  }
+
+  /**
+   * Creates a module that will prepare a private in-memory database, using a specific task store
+   * implementation bound within the provided module, a key factory, and a maximum number of rows
+   * to insert with a single statement.
+   *
+   * @param taskStoreModule Module providing task store bindings.
+   * @param keyFactory Key factory to use.
+   * @param insertBatchSize Maximum number of rows to insert with a single statement.
+   * @return A new database module for testing.
+   */
+  @VisibleForTesting
+  public static Module testModule(
+      Module taskStoreModule,
+      KeyFactory keyFactory,
+      int insertBatchSize) {
+
     return new DbModule(
         keyFactory,
         taskStoreModule,
@@ -124,7 +176,8 @@ public final class DbModule extends PrivateModule {
         // make use of multiple threads.  Since all test databases are separately scoped by the
         // included UUID, multiple DB instances will overlap in time but they should be distinct
         // in content.
-        "testdb-" + UUID.randomUUID().toString() + ";DB_CLOSE_DELAY=5;");
+        "testdb-" + UUID.randomUUID().toString() + ";DB_CLOSE_DELAY=5;",
+        insertBatchSize);
   }
 
   /**
@@ -181,6 +234,8 @@ public final class DbModule extends PrivateModule {
         addTypeHandlersClasses(TypeHandlers.getAll());
 
         bind(new TypeLiteral<Amount<Long, Time>>() { }).toInstance(SLOW_QUERY_LOG_THRESHOLD.get());
+        bindConstant().annotatedWith(DbTaskStore.InsertBatchSize.class).to(insertBatchSize);
+        bindConstant().annotatedWith(DbTaskStore.CacheSize.class).to(TASK_CACHE_SIZE.get());
 
         // Exposed for unit tests.
         bind(TaskConfigManager.class);
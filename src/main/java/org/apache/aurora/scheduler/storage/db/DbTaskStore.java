@@ -13,16 +13,24 @@
  */
 package org.apache.aurora.scheduler.storage.db;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.inject.Qualifier;
+
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -33,11 +41,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.twitter.common.base.Closure;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.util.Clock;
 
+import org.apache.aurora.gen.AssignedTask;
 import org.apache.aurora.gen.Constraint;
 import org.apache.aurora.gen.Container;
 import org.apache.aurora.gen.ScheduledTask;
@@ -50,10 +60,18 @@ import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.db.views.AssignedPort;
 import org.apache.aurora.scheduler.storage.db.views.ScheduledTaskWrapper;
 import org.apache.aurora.scheduler.storage.db.views.TaskConfigRow;
+import org.apache.aurora.scheduler.storage.db.views.TaskEventRow;
+import org.apache.aurora.scheduler.storage.db.views.TaskPortRow;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static java.util.Objects.requireNonNull;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -61,6 +79,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * A task store implementation based on a relational database.
  * <p>
+ * Task and task config rows are never updated in place, every mutation replaces the rows of the
+ * affected tasks.  Materialized tasks and configs are therefore cached by row ID, which avoids
+ * re-reading and copying their associations for each query.  Row IDs are never reused, so a
+ * cached entry can not become stale for its row.  The only exception is the slave of a task, which
+ * is joined from the host attributes and is checked against the row on each cache hit.
+ * <p>
  * TODO(wfarner): Consider modifying code generator to support directly producing ITaskConfig, etc
  * from myBatis (it will set private final fields just fine).  This would reduce memory and time
  * spent translating and copying objects.
@@ -74,6 +98,26 @@ class DbTaskStore implements TaskStore.Mutable {
   private final JobKeyMapper jobKeyMapper;
   private final Clock clock;
   private final long slowQueryThresholdNanos;
+  private final int insertBatchSize;
+  private final LoadingCache<Long, ITaskConfig> configCache;
+  private final Cache<Long, IScheduledTask> taskCache;
+
+  /**
+   * Binding annotation for the maximum number of rows to insert with a single statement.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  @interface InsertBatchSize { }
+
+  /**
+   * Binding annotation for the maximum number of materialized tasks, and of materialized task
+   * configs, to cache.
+   */
+  @Qualifier
+  @Retention(RUNTIME)
+  @Target({ PARAMETER, METHOD })
+  @interface CacheSize { }
 
   @Inject
   DbTaskStore(
@@ -81,7 +125,9 @@ class DbTaskStore implements TaskStore.Mutable {
       TaskConfigManager configManager,
       JobKeyMapper jobKeyMapper,
       Clock clock,
-      Amount<Long, Time> slowQueryThreshold) {
+      Amount<Long, Time> slowQueryThreshold,
+      @InsertBatchSize int insertBatchSize,
+      @CacheSize int cacheSize) {
 
     LOG.warning("DbTaskStore is experimental, and should not be used in production clusters!");
     this.taskMapper = requireNonNull(taskMapper);
@@ -89,6 +135,19 @@ class DbTaskStore implements TaskStore.Mutable {
     this.jobKeyMapper = requireNonNull(jobKeyMapper);
     this.clock = requireNonNull(clock);
     this.slowQueryThresholdNanos =  slowQueryThreshold.as(Time.NANOSECONDS);
+    Preconditions.checkArgument(insertBatchSize > 0, "Insert batch size must be positive.");
+    this.insertBatchSize = insertBatchSize;
+    Preconditions.checkArgument(cacheSize >= 0, "Cache size may not be negative.");
+    this.configCache = CacheBuilder.newBuilder()
+        .maximumSize(cacheSize)
+        .build(new CacheLoader<Long, ITaskConfig>() {
+          @Override
+          public ITaskConfig load(Long configRowId) {
+            return ITaskConfig.build(
+                REPLACE_UNION_TYPES.apply(configManager.getConfig(configRowId)));
+          }
+        });
+    this.taskCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
   }
 
   @Timed("db_storage_fetch_tasks")
@@ -110,6 +169,43 @@ class DbTaskStore implements TaskStore.Mutable {
     return result;
   }
 
+  @Timed("db_storage_for_each_task")
+  @Override
+  public void forEach(Query.Builder query, final Closure<IScheduledTask> visitor) {
+    requireNonNull(query);
+    requireNonNull(visitor);
+
+    taskMapper.select(query.get(), new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        visitor.execute(materialize((ScheduledTaskWrapper) context.getResultObject()));
+      }
+    });
+  }
+
+  @Timed("db_storage_fetch_task_ids")
+  @Override
+  public ImmutableSet<String> fetchTaskIds(Query.Builder query) {
+    requireNonNull(query);
+
+    return ImmutableSet.copyOf(taskMapper.selectTaskIds(query.get()));
+  }
+
+  @Timed("db_storage_fetch_job_keys")
+  @Override
+  public ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query) {
+    requireNonNull(query);
+
+    return IJobKey.setFromBuilders(taskMapper.selectJobKeys(query.get()));
+  }
+
+  @Override
+  public Supplier<ImmutableSet<IScheduledTask>> captureTasks() {
+    // Tasks are not stored as immutable versions, so they are copied while the caller holds the
+    // storage lock.
+    return Suppliers.ofInstance(fetchTasks(Query.unscoped()));
+  }
+
   private static final Function<TaskConfigRow, Long> CONFIG_ID =
       new Function<TaskConfigRow, Long>() {
         @Override
@@ -164,40 +260,62 @@ class DbTaskStore implements TaskStore.Mutable {
         });
 
     // Seed the cache with known configs in the jobs being updated.
-    configCache.putAll(getTaskConfigRows(
-        FluentIterable.from(tasks)
-            .transform(Tasks.SCHEDULED_TO_JOB_KEY)
-            .toSet()));
+    Set<IJobKey> jobs = FluentIterable.from(tasks).transform(Tasks.SCHEDULED_TO_JOB_KEY).toSet();
+    configCache.putAll(getTaskConfigRows(jobs));
+
+    for (IJobKey job : jobs) {
+      jobKeyMapper.merge(job.newBuilder());
+    }
 
+    // Rows are inserted with multi-row statements, in groups of at most insertBatchSize.  Event and
+    // port rows reference their task by task ID, so generated task row IDs need not be retrieved.
+    ImmutableList.Builder<ScheduledTaskWrapper> taskRows = ImmutableList.builder();
+    ImmutableList.Builder<TaskEventRow> eventRows = ImmutableList.builder();
+    ImmutableList.Builder<TaskPortRow> portRows = ImmutableList.builder();
     for (IScheduledTask task : tasks) {
-      jobKeyMapper.merge(task.getAssignedTask().getTask().getJob().newBuilder());
       long configId = configCache.getUnchecked(task.getAssignedTask().getTask());
+      taskRows.add(new ScheduledTaskWrapper(-1, configId, task.newBuilder()));
+      eventRows.addAll(toEventRows(task));
+      portRows.addAll(toPortRows(task));
+    }
 
-      ScheduledTaskWrapper wrappedTask = new ScheduledTaskWrapper(-1, configId, task.newBuilder());
-      taskMapper.insertScheduledTask(wrappedTask);
-      Preconditions.checkState(
-          wrappedTask.getTaskRowId() != -1,
-          "Row ID should have been populated during insert.");
-      if (!task.getTaskEvents().isEmpty()) {
-        taskMapper.insertTaskEvents(wrappedTask.getTaskRowId(), task.getTaskEvents());
-      }
-      if (!task.getAssignedTask().getAssignedPorts().isEmpty()) {
-        taskMapper.insertPorts(
-            wrappedTask.getTaskRowId(),
-            toAssignedPorts(task.getAssignedTask().getAssignedPorts()));
-      }
+    for (List<ScheduledTaskWrapper> rows : partition(taskRows.build())) {
+      taskMapper.insertScheduledTasks(rows);
+    }
+    for (List<TaskEventRow> rows : partition(eventRows.build())) {
+      taskMapper.insertTaskEvents(rows);
+    }
+    for (List<TaskPortRow> rows : partition(portRows.build())) {
+      taskMapper.insertPorts(rows);
+    }
+  }
+
+  private <T> Iterable<List<T>> partition(List<T> rows) {
+    return Iterables.partition(rows, insertBatchSize);
+  }
+
+  private static List<TaskEventRow> toEventRows(IScheduledTask task) {
+    ImmutableList.Builder<TaskEventRow> list = ImmutableList.builder();
+    for (ITaskEvent event : task.getTaskEvents()) {
+      list.add(new TaskEventRow(
+          Tasks.id(task),
+          event.getTimestamp(),
+          event.getStatus(),
+          event.getMessage(),
+          event.getScheduler()));
     }
+    return list.build();
   }
 
-  private static List<AssignedPort> toAssignedPorts(Map<String, Integer> ports) {
+  private static List<TaskPortRow> toPortRows(IScheduledTask task) {
     // Mybatis does not seem to support inserting maps where the keys are not known in advance (it
     // treats them as bags of properties, presumably like a cheap bean object).
     // See https://github.com/mybatis/mybatis-3/pull/208, and seemingly-relevant code in
     // https://github.com/mybatis/mybatis-3/blob/4cfc129938fd6b5cb20c4b741392e8b3fa41b529/src
     // main/java/org/apache/ibatis/scripting/xmltags/ForEachSqlNode.java#L73-L77.
-    ImmutableList.Builder<AssignedPort> list = ImmutableList.builder();
-    for (Map.Entry<String, Integer> entry : ports.entrySet()) {
-      list.add(new AssignedPort(entry.getKey(), entry.getValue()));
+    ImmutableList.Builder<TaskPortRow> list = ImmutableList.builder();
+    for (Map.Entry<String, Integer> entry : task.getAssignedTask().getAssignedPorts().entrySet()) {
+      list.add(new TaskPortRow(Tasks.id(task), entry.getKey(), entry.getValue()));
     }
     return list.build();
   }
@@ -207,6 +325,9 @@ class DbTaskStore implements TaskStore.Mutable {
   public void deleteAllTasks() {
     // TODO(wfarner): Need to re-evaluate all task configs after deleting tasks.
     taskMapper.truncate();
+    // Row IDs are not reused, this only releases the memory held by entries for deleted rows.
+    taskCache.invalidateAll();
+    configCache.invalidateAll();
   }
 
   @Timed("db_storage_delete_tasks")
@@ -285,49 +406,48 @@ class DbTaskStore implements TaskStore.Mutable {
     return Functions.compose(REPLACE_UNION_TYPES, linkPopulator);
   }
 
-  private FluentIterable<ScheduledTaskWrapper> fetchRows(Query.Builder query) {
-    final Function<TaskConfigRow, TaskConfig> configSaturator = getConfigSaturator();
+  /**
+   * Materializes a task from its row, populating the associations that are not read by the task
+   * query.  Results are cached by task row ID.
+   *
+   * @param row Task row.
+   * @return The materialized task.
+   */
+  private IScheduledTask materialize(ScheduledTaskWrapper row) {
+    AssignedTask assignedTask = row.getTask().getAssignedTask();
+    IScheduledTask cached = taskCache.getIfPresent(row.getTaskRowId());
+    if (cached != null
+        && Objects.equals(cached.getAssignedTask().getSlaveId(), assignedTask.getSlaveId())
+        && Objects.equals(cached.getAssignedTask().getSlaveHost(), assignedTask.getSlaveHost())) {
+
+      return cached;
+    }
+
+    ImmutableMap.Builder<String, Integer> ports = ImmutableMap.builder();
+    for (AssignedPort port : taskMapper.selectPorts(row.getTaskRowId())) {
+      ports.put(port.getName(), port.getPort());
+    }
+    assignedTask.setAssignedPorts(ports.build());
+    IScheduledTask partial = IScheduledTask.build(
+        row.getTask().setTaskEvents(taskMapper.selectTaskEvents(row.getTaskRowId())));
+
+    // The cached config is shared by reference rather than copied into each task.
+    IScheduledTask materialized = partial.withAssignedTask(partial.getAssignedTask()
+        .withTask(configCache.getUnchecked(row.getTaskConfigRowId())));
+    taskCache.put(row.getTaskRowId(), materialized);
+    return materialized;
+  }
+
+  private FluentIterable<IScheduledTask> matches(Query.Builder query) {
     return FluentIterable.from(taskMapper.select(query.get()))
-        .transform(populateAssignedPorts)
-        .transform(new Function<ScheduledTaskWrapper, ScheduledTaskWrapper>() {
+        .transform(new Function<ScheduledTaskWrapper, IScheduledTask>() {
           @Override
-          public ScheduledTaskWrapper apply(ScheduledTaskWrapper task) {
-            configSaturator.apply(
-                new TaskConfigRow(
-                    task.getTaskConfigRowId(),
-                    task.getTask().getAssignedTask().getTask()));
-            return task;
+          public IScheduledTask apply(ScheduledTaskWrapper row) {
+            return materialize(row);
           }
         });
   }
 
-  private final Function<ScheduledTaskWrapper, ScheduledTaskWrapper> populateAssignedPorts =
-      new Function<ScheduledTaskWrapper, ScheduledTaskWrapper>() {
-        @Override
-        public ScheduledTaskWrapper apply(ScheduledTaskWrapper task) {
-          ImmutableMap.Builder<String, Integer> ports = ImmutableMap.builder();
-          for (AssignedPort port : taskMapper.selectPorts(task.getTaskRowId())) {
-            ports.put(port.getName(), port.getPort());
-          }
-          task.getTask().getAssignedTask().setAssignedPorts(ports.build());
-          return task;
-        }
-      };
-
-  private FluentIterable<IScheduledTask> matches(Query.Builder query) {
-    return fetchRows(query)
-        .transform(UNWRAP)
-        .transform(IScheduledTask.FROM_BUILDER);
-  }
-
-  private static final Function<ScheduledTaskWrapper, ScheduledTask> UNWRAP =
-      new Function<ScheduledTaskWrapper, ScheduledTask>() {
-        @Override
-        public ScheduledTask apply(ScheduledTaskWrapper task) {
-          return task.getTask();
-        }
-      };
-
   /**
    * Replaces the shimmed {@link org.apache.thrift.TUnion} instances with the base thrift types.
    * This is necessary because TUnion, as of thrift 0.9.1, restricts subclassing.  The copy
@@ -22,16 +22,19 @@ import javax.inject.Inject;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 
+import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.storage.db.views.TaskConfigRow;
 import org.apache.aurora.scheduler.storage.db.views.TaskLink;
 import org.apache.aurora.scheduler.storage.entities.IConstraint;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
-import org.apache.aurora.scheduler.storage.entities.IValueConstraint;
 
 import static java.util.Objects.requireNonNull;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 class TaskConfigManager {
   private final TaskConfigMapper configMapper;
 
@@ -43,32 +46,8 @@ class TaskConfigManager {
   long insert(ITaskConfig config) {
     InsertResult configInsert = new InsertResult();
     configMapper.insert(config, configInsert);
-    for (IConstraint constraint : config.getConstraints()) {
-      InsertResult constraintResult = new InsertResult();
-      configMapper.insertConstraint(configInsert.getId(), constraint, constraintResult);
-      switch (constraint.getConstraint().getSetField()) {
-        case VALUE:
-          IValueConstraint valueConstraint = constraint.getConstraint().getValue();
-          InsertResult valueResult = new InsertResult();
-          configMapper.insertValueConstraint(
-              constraintResult.getId(),
-              valueConstraint,
-              valueResult);
-          configMapper.insertValueConstraintValues(
-              valueResult.getId(),
-              valueConstraint.getValues());
-          break;
-
-        case LIMIT:
-          configMapper.insertLimitConstraint(
-              constraintResult.getId(),
-              constraint.getConstraint().getLimit());
-          break;
-
-        default:
-          throw new IllegalStateException(
-              "Unhandled constraint type " + constraint.getConstraint().getSetField());
-      }
+    if (!config.getConstraints().isEmpty()) {
+      insertConstraints(configInsert.getId(), config.getConstraints());
     }
 
     if (!config.getRequestedPorts().isEmpty()) {
@@ -95,6 +74,56 @@ class TaskConfigManager {
     return configInsert.getId();
   }
 
+  private void insertConstraints(long configId, Set<IConstraint> constraints) {
+    // Each table is populated with a single statement.  Rows reference their parent constraint by
+    // its (config, name) unique key, so generated constraint IDs need not be retrieved.
+    List<IConstraint> limitConstraints = Lists.newArrayList();
+    List<IConstraint> valueConstraints = Lists.newArrayList();
+    List<IConstraint> valueConstraintsWithValues = Lists.newArrayList();
+    for (IConstraint constraint : constraints) {
+      switch (constraint.getConstraint().getSetField()) {
+        case VALUE:
+          valueConstraints.add(constraint);
+          if (!constraint.getConstraint().getValue().getValues().isEmpty()) {
+            valueConstraintsWithValues.add(constraint);
+          }
+          break;
+
+        case LIMIT:
+          limitConstraints.add(constraint);
+          break;
+
+        default:
+          throw new IllegalStateException(
+              "Unhandled constraint type " + constraint.getConstraint().getSetField());
+      }
+    }
+
+    configMapper.insertConstraints(configId, constraints);
+    if (!limitConstraints.isEmpty()) {
+      configMapper.insertLimitConstraints(configId, limitConstraints);
+    }
+    if (!valueConstraints.isEmpty()) {
+      configMapper.insertValueConstraints(configId, valueConstraints);
+    }
+    if (!valueConstraintsWithValues.isEmpty()) {
+      configMapper.insertValueConstraintValues(configId, valueConstraintsWithValues);
+    }
+  }
+
+  /**
+   * Gets a task config, including its task links.
+   *
+   * @param configId Task config row ID.
+   * @return The task config.
+   * @throws IllegalArgumentException If there is no config with the ID.
+   */
+  TaskConfig getConfig(long configId) {
+    TaskConfig config = configMapper.selectConfig(configId);
+    checkArgument(config != null, "No task config with ID " + configId);
+    return config.setTaskLinks(getTaskLinks(configId));
+  }
+
   Map<String, String> getTaskLinks(long configId) {
     ImmutableMap.Builder<String, String> links = ImmutableMap.builder();
     for (TaskLink link : configMapper.selectTaskLinks(configId)) {
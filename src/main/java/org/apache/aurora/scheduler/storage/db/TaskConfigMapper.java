@@ -16,15 +16,16 @@ package org.apache.aurora.scheduler.storage.db;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
+import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.storage.db.views.TaskConfigRow;
 import org.apache.aurora.scheduler.storage.db.views.TaskLink;
 import org.apache.aurora.scheduler.storage.entities.IConstraint;
 import org.apache.aurora.scheduler.storage.entities.IDockerContainer;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
-import org.apache.aurora.scheduler.storage.entities.ILimitConstraint;
 import org.apache.aurora.scheduler.storage.entities.IMetadata;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
-import org.apache.aurora.scheduler.storage.entities.IValueConstraint;
 import org.apache.ibatis.annotations.Param;
 
 /**
@@ -42,6 +43,15 @@ interface TaskConfigMapper {
       @Param("config") ITaskConfig config,
       @Param("result") InsertResult result);
 
+  /**
+   * Gets a task config by its row ID.  Task links are not populated.
+   *
+   * @param configId Task config row ID.
+   * @return The task config, or {@code null} if there is no config with the ID.
+   */
+  @Nullable
+  TaskConfig selectConfig(@Param("id") long configId);
+
   /**
    * Gets all task config rows referenced by a job.
    *
@@ -67,48 +77,47 @@ interface TaskConfigMapper {
   List<Long> selectTasksByConfigId(@Param("configIds") Set<Long> configIds);
 
   /**
-   * Inserts the constraint association within an {@link ITaskConfig}.
+   * Inserts the constraint associations within an {@link ITaskConfig}.
    *
    * @param configId Task config ID.
-   * @param constraint Constraint to insert.
-   * @param result Container for auto-generated ID of the inserted row.
+   * @param constraints Constraints to insert.
    */
-  void insertConstraint(
+  void insertConstraints(
       @Param("configId") long configId,
-      @Param("constraint") IConstraint constraint,
-      @Param("result") InsertResult result);
+      @Param("constraints") Set<IConstraint> constraints);
 
   /**
-   * Inserts the limit constraint association within an {@link IConstraint}.
+   * Inserts the limit constraint associations within {@link IConstraint}s.  The constraints must
+   * already be inserted.
    *
-   * @param constraintId Constraint ID.
-   * @param constraint Constraint to insert.
+   * @param configId Task config ID.
+   * @param constraints Limit constraints to insert.
    */
-  void insertLimitConstraint(
-      @Param("constraintId") long constraintId,
-      @Param("constraint") ILimitConstraint constraint);
+  void insertLimitConstraints(
+      @Param("configId") long configId,
+      @Param("constraints") List<IConstraint> constraints);
 
   /**
-   * Inserts the value constraint association within an {@link IConstraint}.
+   * Inserts the value constraint associations within {@link IConstraint}s.  The constraints must
+   * already be inserted.
    *
-   * @param constraintId Constraint ID.
-   * @param constraint Constraint to insert.
-   * @param result Container for auto-generated ID of the inserted row.
+   * @param configId Task config ID.
+   * @param constraints Value constraints to insert.
    */
-  void insertValueConstraint(
-      @Param("constraintId") long constraintId,
-      @Param("constraint") IValueConstraint constraint,
-      @Param("result") InsertResult result);
+  void insertValueConstraints(
+      @Param("configId") long configId,
+      @Param("constraints") List<IConstraint> constraints);
 
   /**
-   * Inserts the values association within an {@link IValueConstraint}.
+   * Inserts the values associations within the value constraints of {@link IConstraint}s.  The
+   * value constraints must already be inserted, and each must have at least one value.
    *
-   * @param valueConstraintId Value constraint ID.
-   * @param values Values to insert.
+   * @param configId Task config ID.
+   * @param constraints Value constraints whose values should be inserted.
    */
   void insertValueConstraintValues(
-      @Param("valueConstraintId") long valueConstraintId,
-      @Param("values") Set<String> values);
+      @Param("configId") long configId,
+      @Param("constraints") List<IConstraint> constraints);
 
   /**
    * Inserts the requested ports association within an {@link ITaskConfig}.
@@ -16,11 +16,16 @@ package org.apache.aurora.scheduler.storage.db;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.gen.TaskQuery;
 import org.apache.aurora.scheduler.storage.db.views.AssignedPort;
 import org.apache.aurora.scheduler.storage.db.views.ScheduledTaskWrapper;
-import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+import org.apache.aurora.scheduler.storage.db.views.TaskEventRow;
+import org.apache.aurora.scheduler.storage.db.views.TaskPortRow;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
  * MyBatis mapper for scheduled tasks.
@@ -28,11 +33,11 @@ import org.apache.ibatis.annotations.Param;
 interface TaskMapper {
 
   /**
-   * Inserts a scheduled task.
+   * Inserts scheduled tasks with a single statement.  Generated row IDs are not populated.
    *
-   * @param task Task to insert.
+   * @param tasks Tasks to insert.
    */
-  void insertScheduledTask(ScheduledTaskWrapper task);
+  void insertScheduledTasks(@Param("tasks") List<ScheduledTaskWrapper> tasks);
 
   /**
    * Gets tasks based on a query.
@@ -43,24 +48,54 @@ interface TaskMapper {
   List<ScheduledTaskWrapper> select(TaskQuery query);
 
   /**
-   * Inserts the task events association within an
-   * {@link org.apache.aurora.scheduler.storage.entities.IScheduledTask}.
+   * Gets tasks based on a query, passing each to a handler as it is read rather than accumulating
+   * a result list.
    *
-   * @param taskRowId Task row ID.
-   * @param events Events to insert.
+   * @param query Query to use as a filter for tasks.
+   * @param handler Handler to receive each matching {@link ScheduledTaskWrapper}.
+   */
+  void select(TaskQuery query, ResultHandler handler);
+
+  /**
+   * Gets the IDs of tasks matching a query.
+   *
+   * @param query Query to use as a filter for tasks.
+   * @return IDs of tasks matching the query.
    */
-  void insertTaskEvents(
-      @Param("taskRowId") long taskRowId,
-      @Param("events") List<ITaskEvent> events);
+  List<String> selectTaskIds(TaskQuery query);
 
   /**
-   * Inserts the assigned ports association within an
+   * Gets the distinct job keys of tasks matching a query.
+   *
+   * @param query Query to use as a filter for tasks.
+   * @return Job keys of tasks matching the query.
+   */
+  List<JobKey> selectJobKeys(TaskQuery query);
+
+  /**
+   * Inserts the task events association within {@link IScheduledTask}s with a single statement.
+   * The tasks must already be stored.
+   *
+   * @param events Task events to insert.
+   */
+  void insertTaskEvents(@Param("events") List<TaskEventRow> events);
+
+  /**
+   * Inserts the assigned ports association within {@link IScheduledTask}s with a single
+   * statement.  The tasks must already be stored.
+   *
+   * @param ports Assigned ports to insert.
+   */
+  void insertPorts(@Param("ports") List<TaskPortRow> ports);
+
+  /**
+   * Selects the task events association within an
    * {@link org.apache.aurora.scheduler.storage.entities.IScheduledTask}.
    *
    * @param taskRowId Task row ID.
-   * @param ports Assigned ports to insert.
+   * @return Events associated with the task, in timestamp order.
    */
-  void insertPorts(@Param("taskRowId") long taskRowId, @Param("ports") List<AssignedPort> ports);
+  List<TaskEvent> selectTaskEvents(@Param("taskRowId") long taskRowId);
 
   /**
    * Selects the assigned ports association within an
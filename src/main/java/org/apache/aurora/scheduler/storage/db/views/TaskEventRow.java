@@ -0,0 +1,62 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.db.views;
+
+import org.apache.aurora.gen.ScheduleStatus;
+
+/**
+ * Representation of a row in the task_events table, identifying the owning task by its task ID
+ * rather than its row ID.  Used to insert the events of many tasks with a single statement.
+ */
+public class TaskEventRow {
+  private final String taskId;
+  private final long timestamp;
+  private final ScheduleStatus status;
+  private final String message;
+  private final String scheduler;
+
+  public TaskEventRow(
+      String taskId,
+      long timestamp,
+      ScheduleStatus status,
+      String message,
+      String scheduler) {
+
+    this.taskId = taskId;
+    this.timestamp = timestamp;
+    this.status = status;
+    this.message = message;
+    this.scheduler = scheduler;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public ScheduleStatus getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public String getScheduler() {
+    return scheduler;
+  }
+}
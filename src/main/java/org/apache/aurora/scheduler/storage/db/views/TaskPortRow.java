@@ -0,0 +1,42 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.db.views;
+
+/**
+ * Representation of a row in the task_ports table, identifying the owning task by its task ID
+ * rather than its row ID.  Used to insert the ports of many tasks with a single statement.
+ */
+public class TaskPortRow {
+  private final String taskId;
+  private final String name;
+  private final int port;
+
+  public TaskPortRow(String taskId, String name, int port) {
+    this.taskId = taskId;
+    this.name = name;
+    this.port = port;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getPort() {
+    return port;
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.google.common.base.Optional;
+import com.google.common.primitives.Longs;
+
+import org.apache.aurora.codec.ByteBufferInputStream;
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
+import org.apache.aurora.codec.ThriftBinaryCodec;
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.storage.Snapshot;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A checkpoint of stored state kept in a local file, along with the identity of the log position
+ * that the state reflects and the ID of the checkpoint entry at that position.  A scheduler
+ * restarting from a checkpoint only needs to read the log entries following that position.
+ *
+ * <p>The file holds a header with the position identity and checkpoint ID, the snapshot compressed
+ * with {@link Compression#LZ4}, and a trailing CRC32 of the header fields and the compressed
+ * snapshot.  Checkpoints are replaced atomically, and are memory-mapped when loaded so the
+ * snapshot may be checksummed and decoded without first copying the file onto the heap.
+ */
+class CheckpointFile {
+  private static final Logger LOG = Logger.getLogger(CheckpointFile.class.getName());
+
+  private static final int MAGIC = 0x41434b50;
+  private static final int VERSION = 2;
+  private static final int TRAILER_SIZE = 8;
+
+  private final File file;
+
+  /**
+   * Creates a checkpoint file.  The file does not need to exist until the first checkpoint is
+   * saved.
+   *
+   * @param file The file to store checkpoints in.
+   */
+  CheckpointFile(File file) {
+    this.file = requireNonNull(file);
+  }
+
+  /**
+   * A checkpoint read from the file.
+   */
+  static final class Checkpoint {
+    private final byte[] position;
+    private final long id;
+    private final Snapshot snapshot;
+
+    Checkpoint(byte[] position, long id, Snapshot snapshot) {
+      this.position = requireNonNull(position);
+      this.id = id;
+      this.snapshot = requireNonNull(snapshot);
+    }
+
+    /**
+     * Gets the identity of the log position that the checkpoint reflects.
+     *
+     * @return The log position identity.
+     */
+    byte[] getPosition() {
+      return position;
+    }
+
+    /**
+     * Gets the ID carried by the checkpoint entry at the log position.
+     *
+     * @return The checkpoint ID.
+     */
+    long getId() {
+      return id;
+    }
+
+    Snapshot getSnapshot() {
+      return snapshot;
+    }
+  }
+
+  /**
+   * Replaces the checkpoint in the file.  If writing the checkpoint fails, the previous
+   * checkpoint is left in place.
+   *
+   * @param position Identity of the log position that the snapshot reflects.
+   * @param id ID carried by the checkpoint entry at the log position.
+   * @param snapshot Snapshot of stored state.
+   * @throws IOException If the checkpoint could not be written.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  void save(byte[] position, long id, Snapshot snapshot) throws IOException, CodingException {
+    File temp = new File(file.getPath() + ".tmp");
+    CRC32 crc = new CRC32();
+    crc.update(position);
+    crc.update(Longs.toByteArray(id));
+    try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(position.length);
+      out.write(position);
+      out.writeLong(id);
+      ThriftBinaryCodec.compressNonNull(
+          snapshot,
+          new CheckedOutputStream(new NonClosingOutputStream(out), crc),
+          Compression.LZ4,
+          Encoding.COMPACT);
+      out.writeLong(crc.getValue());
+      out.flush();
+      fileOut.getFD().sync();
+    }
+    Files.move(
+        temp.toPath(),
+        file.toPath(),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Loads the checkpoint from the file.  A checkpoint that is missing, corrupt or otherwise
+   * unreadable is treated as absent, since the log can always be read in full instead.
+   *
+   * @return The checkpoint, or absent if there is no readable checkpoint.
+   */
+  Optional<Checkpoint> load() {
+    if (!file.exists()) {
+      return Optional.absent();
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        LOG.warning("Ignoring checkpoint " + file + ", which is too large to map.");
+        return Optional.absent();
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        LOG.warning("Ignoring checkpoint " + file + ", which has an unknown format.");
+        return Optional.absent();
+      }
+      byte[] position = new byte[buffer.getInt()];
+      buffer.get(position);
+      long id = buffer.getLong();
+
+      ByteBuffer compressed = buffer.slice();
+      compressed.limit(compressed.limit() - TRAILER_SIZE);
+      long checksum = buffer.getLong(buffer.limit() - TRAILER_SIZE);
+      CRC32 crc = new CRC32();
+      crc.update(position);
+      crc.update(Longs.toByteArray(id));
+      crc.update(compressed.duplicate());
+      if (crc.getValue() != checksum) {
+        LOG.warning("Ignoring checkpoint " + file + ", which failed its checksum.");
+        return Optional.absent();
+      }
+
+      Snapshot snapshot = ThriftBinaryCodec.decompressNonNull(
+          Snapshot.class,
+          new ByteBufferInputStream(compressed),
+          Compression.LZ4);
+      return Optional.of(new Checkpoint(position, id, snapshot));
+    } catch (IOException | CodingException | BufferUnderflowException
+        | IllegalArgumentException | NegativeArraySizeException e) {
+
+      LOG.log(Level.WARNING, "Ignoring unreadable checkpoint " + file, e);
+      return Optional.absent();
+    }
+  }
+
+  /**
+   * Passes writes through to a stream that remains open after this stream is closed.
+   */
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+    NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * An output stream that collects written data into chunks of a fixed maximum size, so that large
+ * entries can be framed without first being copied into a single contiguous array.
+ */
+final class ChunkingOutputStream extends OutputStream {
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final int chunkSize;
+  private final List<byte[]> fullChunks = Lists.newLinkedList();
+  private byte[] current;
+  private int currentLength = 0;
+  private long size = 0;
+
+  /**
+   * Creates a stream with no data.
+   *
+   * @param chunkSize Maximum size of each chunk, in bytes.
+   */
+  ChunkingOutputStream(int chunkSize) {
+    Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive.");
+    this.chunkSize = chunkSize;
+    this.current = new byte[Math.min(INITIAL_CAPACITY, chunkSize)];
+  }
+
+  @Override
+  public void write(int b) {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+
+    int position = offset;
+    int remaining = length;
+    while (remaining > 0) {
+      if (currentLength == chunkSize) {
+        fullChunks.add(current);
+        // More data has followed a full chunk, so assume more full chunks follow.
+        current = new byte[chunkSize];
+        currentLength = 0;
+      } else if (currentLength == current.length) {
+        int capacity = Math.max(current.length * 2, currentLength + remaining);
+        current = Arrays.copyOf(current, Math.min(chunkSize, capacity));
+      }
+
+      int copied = Math.min(remaining, current.length - currentLength);
+      System.arraycopy(bytes, position, current, currentLength, copied);
+      currentLength += copied;
+      position += copied;
+      remaining -= copied;
+    }
+    size += length;
+  }
+
+  /**
+   * Gets the total number of bytes written to the stream.
+   *
+   * @return Number of bytes written.
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Gets the chunks of data written to the stream.  All chunks but the last are exactly the chunk
+   * size.  No further data may be written after calling this method.
+   *
+   * @return Written data, split into chunks.
+   */
+  List<byte[]> toChunks() {
+    ImmutableList.Builder<byte[]> chunks = ImmutableList.builder();
+    chunks.addAll(fullChunks);
+    if (currentLength > 0) {
+      chunks.add(
+          currentLength == current.length ? current : Arrays.copyOf(current, currentLength));
+    }
+    fullChunks.clear();
+    current = null;
+    return chunks.build();
+  }
+
+  /**
+   * Writes all data in this stream to another stream, releasing each chunk once it has been
+   * written.  No further data may be written after calling this method.
+   *
+   * @param out Stream to write to.
+   * @throws IOException If {@code out} could not be written to.
+   */
+  void drainTo(OutputStream out) throws IOException {
+    Iterator<byte[]> chunks = fullChunks.iterator();
+    while (chunks.hasNext()) {
+      out.write(chunks.next());
+      chunks.remove();
+    }
+    out.write(current, 0, currentLength);
+    current = null;
+  }
+}
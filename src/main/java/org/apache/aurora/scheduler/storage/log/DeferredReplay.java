@@ -0,0 +1,223 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.twitter.common.base.Closure;
+
+import org.apache.aurora.gen.storage.LogEntry;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Orders the application of transactions and snapshots replayed from the log, deferring
+ * transactions that may be covered by a later snapshot or snapshot delta.
+ *
+ * <p>Every snapshot is preceded by a marker, and reflects the stored state at the marker.  A
+ * snapshot delta holds the changes between the marker of the previous snapshot and its own
+ * marker, and may only be applied to the state at the previous marker.  Transactions are
+ * therefore held back until it is known whether a snapshot covers them, and transactions logged
+ * after a marker are applied on top of its snapshot.
+ *
+ * <p>When too many transactions are deferred, they are applied immediately and snapshot deltas
+ * are skipped until the next full snapshot.  This is safe because the log retains all transactions
+ * since the full snapshot that a delta is based on.
+ */
+class DeferredReplay {
+  private static final Logger LOG = Logger.getLogger(DeferredReplay.class.getName());
+
+  private final Closure<LogEntry> applyTransaction;
+  private final int maxDeferredOps;
+
+  // Transactions between the marker of the last applied snapshot and the latest marker.  These
+  // are always deferred, and covered by the snapshot following the latest marker.
+  private final List<LogEntry> beforeMarker = Lists.newArrayList();
+  // Transactions since the latest marker, or since the last applied snapshot if no marker is
+  // open.  These are deferred unless deferral was abandoned, in which case they are only recorded
+  // while a marker is open.
+  private final List<LogEntry> sinceMarker = Lists.newArrayList();
+  private boolean markerOpen = false;
+  private boolean deferring = true;
+  private boolean snapshotApplied = false;
+  private int deferredOps = 0;
+
+  /**
+   * Creates a replay that applies transactions with {@code applyTransaction}.
+   *
+   * @param applyTransaction Closure to apply a transaction entry to storage.
+   * @param maxDeferredOps Maximum number of deferred ops to hold before applying them.
+   */
+  DeferredReplay(Closure<LogEntry> applyTransaction, int maxDeferredOps) {
+    this.applyTransaction = requireNonNull(applyTransaction);
+    this.maxDeferredOps = maxDeferredOps;
+  }
+
+  /**
+   * Replays a transaction entry.
+   *
+   * @param entry Transaction entry.
+   */
+  void transaction(LogEntry entry) {
+    if (deferring) {
+      sinceMarker.add(entry);
+      deferredOps += entry.getTransaction().getOpsSize();
+      if (deferredOps > maxDeferredOps) {
+        stopDeferring();
+      }
+    } else {
+      applyTransaction.execute(entry);
+      if (markerOpen) {
+        sinceMarker.add(entry);
+      }
+    }
+  }
+
+  /**
+   * Replays a snapshot marker.  A marker may be left without a snapshot by a failed snapshot
+   * attempt, in which case it is superseded by the next one.
+   */
+  void marker() {
+    if (deferring) {
+      beforeMarker.addAll(sinceMarker);
+    }
+    sinceMarker.clear();
+    markerOpen = true;
+  }
+
+  /**
+   * Replays a full snapshot.
+   *
+   * @param applySnapshot Action that replaces stored state with the snapshot.
+   */
+  void snapshot(Runnable applySnapshot) {
+    applySnapshot.run();
+    snapshotApplied = true;
+    beforeMarker.clear();
+    if (!markerOpen) {
+      // Snapshots written before markers were introduced cover all transactions preceding them.
+      sinceMarker.clear();
+    }
+    markerOpen = false;
+
+    // Storage now reflects the marker, whether or not transactions since the marker had already
+    // been applied.
+    deferring = true;
+    deferredOps = countOps(sinceMarker);
+    if (deferredOps > maxDeferredOps) {
+      stopDeferring();
+    }
+  }
+
+  /**
+   * Replays a checkpoint of stored state taken at a position outside of any snapshot marker and
+   * its snapshot, which must be the first entry replayed.  Since stored state at a checkpoint may
+   * be ahead of the latest marker, transactions following the checkpoint are applied immediately
+   * and snapshot deltas are skipped until the next full snapshot.
+   *
+   * @param applyCheckpoint Action that replaces stored state with the checkpoint.
+   * @throws IllegalStateException If entries have already been replayed.
+   */
+  void checkpoint(Runnable applyCheckpoint) {
+    Preconditions.checkState(
+        !snapshotApplied && !markerOpen && sinceMarker.isEmpty() && beforeMarker.isEmpty(),
+        "A checkpoint must be replayed before any other entries.");
+
+    applyCheckpoint.run();
+    snapshotApplied = true;
+    deferring = false;
+    deferredOps = 0;
+  }
+
+  /**
+   * Replays a snapshot delta.
+   *
+   * @param applyDelta Action that applies the delta to stored state.
+   * @throws IllegalStateException If the delta is not preceded by a marker and a full snapshot.
+   */
+  void delta(Runnable applyDelta) {
+    if (!markerOpen || !snapshotApplied) {
+      throw new IllegalStateException("Snapshot delta is not preceded by a marker and snapshot.");
+    }
+    markerOpen = false;
+
+    if (deferring) {
+      applyDelta.run();
+      beforeMarker.clear();
+      deferredOps = countOps(sinceMarker);
+    } else {
+      // All transactions have already been applied, so the delta has nothing to add.
+      LOG.info("Skipping snapshot delta, transactions were already replayed.");
+      sinceMarker.clear();
+    }
+  }
+
+  /**
+   * Applies all transactions that are still deferred.  Must be called after reading the last
+   * entry in the log.
+   */
+  void finish() {
+    if (deferring) {
+      applyDeferred();
+    }
+    sinceMarker.clear();
+  }
+
+  /**
+   * Applies all transactions that are still deferred, and applies transactions immediately until
+   * the next full snapshot.  Unlike {@link #finish()}, more entries may be replayed afterwards,
+   * which allows stored state to be kept up to date while following the log.
+   */
+  void catchUp() {
+    if (deferring) {
+      applyAll();
+    }
+  }
+
+  private void stopDeferring() {
+    LOG.info("Applying " + deferredOps + " deferred ops, snapshot deltas will be skipped until "
+        + "the next snapshot.");
+    applyAll();
+  }
+
+  private void applyAll() {
+    applyDeferred();
+    if (!markerOpen) {
+      sinceMarker.clear();
+    }
+    deferring = false;
+    deferredOps = 0;
+  }
+
+  private void applyDeferred() {
+    for (LogEntry entry : beforeMarker) {
+      applyTransaction.execute(entry);
+    }
+    beforeMarker.clear();
+    for (LogEntry entry : sinceMarker) {
+      applyTransaction.execute(entry);
+    }
+  }
+
+  private static int countOps(List<LogEntry> entries) {
+    int ops = 0;
+    for (LogEntry entry : entries) {
+      ops += entry.getTransaction().getOpsSize();
+    }
+    return ops;
+  }
+}
@@ -16,9 +16,13 @@ package org.apache.aurora.scheduler.storage.log;
 import java.util.logging.Logger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableBiMap;
 
+import org.apache.aurora.codec.Compression;
 import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.storage.CompressedEntry;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.LogEntry._Fields;
 
@@ -29,6 +33,10 @@ final class Entries {
 
   private static final Logger LOG = Logger.getLogger(Entries.class.getName());
 
+  private static final ImmutableBiMap<Compression, CompressionCodec> CODECS = ImmutableBiMap.of(
+      Compression.DEFLATE, CompressionCodec.DEFLATE,
+      Compression.LZ4, CompressionCodec.LZ4);
+
   private Entries() {
     // Utility class.
   }
@@ -68,6 +76,71 @@ final class Entries {
     return ThriftBinaryCodec.inflateNonNull(LogEntry.class, entry.getDeflatedEntry());
   }
 
+  /**
+   * Compresses a log entry and wraps it in a compressed entry tagged with its codec.  Entries
+   * compressed with {@link Compression#DEFLATE} are wrapped in a deflated entry instead, which
+   * all scheduler versions can read.
+   * <p>
+   * This operation is symmetric with {@link #decompress(LogEntry)}.
+   *
+   * @param entry Entry to compress.
+   * @param compression Codec to compress the entry with.
+   * @return An entry with the {@code compressedEntry} or {@code deflatedEntry} field set with the
+   *         compressed serialized value of the original entry.
+   * @throws CodingException If the value could not be encoded or compressed.
+   */
+  static LogEntry compress(LogEntry entry, Compression compression) throws CodingException {
+    if (compression == Compression.DEFLATE) {
+      return deflate(entry);
+    }
+    return LogEntry.compressedEntry(new CompressedEntry()
+        .setCodec(codecTag(compression))
+        .setData(ThriftBinaryCodec.compressNonNull(entry, compression)));
+  }
+
+  /**
+   * Decompresses and deserializes a compressed or deflated log entry.
+   *
+   * @param entry Entry to decompress, which must be a compressed or deflated entry.
+   * @return The decompressed entry.
+   * @throws CodingException If the value could not be decompressed or decoded, or was compressed
+   *     with an unknown codec.
+   */
+  static LogEntry decompress(LogEntry entry) throws CodingException {
+    if (entry.isSet(_Fields.DEFLATED_ENTRY)) {
+      return inflate(entry);
+    }
+    Preconditions.checkArgument(entry.isSet(_Fields.COMPRESSED_ENTRY));
+
+    CompressedEntry compressed = entry.getCompressedEntry();
+    Compression compression = CODECS.inverse().get(compressed.getCodec());
+    if (compression == null) {
+      throw new CodingException("Unknown compression codec " + compressed.getCodec());
+    }
+    return ThriftBinaryCodec.decompressNonNull(LogEntry.class, compressed.getData(), compression);
+  }
+
+  /**
+   * Checks whether a log entry is compressed, and must be {@link #decompress(LogEntry)
+   * decompressed} to be read.
+   *
+   * @param entry Entry to check.
+   * @return {@code true} if the entry is a compressed or deflated entry.
+   */
+  static boolean isCompressed(LogEntry entry) {
+    return entry.isSet(_Fields.DEFLATED_ENTRY) || entry.isSet(_Fields.COMPRESSED_ENTRY);
+  }
+
+  /**
+   * Gets the codec tag that identifies a compression codec in the log.
+   *
+   * @param compression Compression codec.
+   * @return The tag of {@code compression}.
+   */
+  static CompressionCodec codecTag(Compression compression) {
+    return CODECS.get(compression);
+  }
+
   /**
    * Thrift binary-encodes a log entry.
    *
@@ -80,7 +153,8 @@ final class Entries {
   }
 
   /**
-   * Decodes a byte array containing thrift binary-encoded data.
+   * Decodes a byte array containing a thrift-encoded log entry.  The entry may be written with
+   * any {@link org.apache.aurora.codec.Encoding}, which is detected from its contents.
    *
    * @param contents The data to decode.
    * @return The deserialized entry.
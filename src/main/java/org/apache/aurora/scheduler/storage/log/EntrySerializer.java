@@ -13,30 +13,52 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
 
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
+import org.apache.aurora.codec.ThriftBinaryCodec;
+import org.apache.aurora.gen.storage.CompressedEntry;
 import org.apache.aurora.gen.storage.Frame;
 import org.apache.aurora.gen.storage.FrameChunk;
 import org.apache.aurora.gen.storage.FrameHeader;
 import org.apache.aurora.gen.storage.LogEntry;
+import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
 
 import static java.util.Objects.requireNonNull;
 
 import static org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import static org.apache.aurora.scheduler.storage.log.LogManager.DeflateThreads;
+import static org.apache.aurora.scheduler.storage.log.LogManager.LogEntryEncoding;
 import static org.apache.aurora.scheduler.storage.log.LogManager.LogEntryHashFunction;
 import static org.apache.aurora.scheduler.storage.log.LogManager.MaxEntrySize;
+import static org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCompression;
 
 /**
  * Logic for serializing distributed log entries.
@@ -52,43 +74,209 @@ public interface EntrySerializer {
    */
   Iterable<byte[]> serialize(LogEntry logEntry) throws CodingException;
 
+  /**
+   * Serializes a log entry wrapped in a deflated entry, and splits it into chunks no larger than
+   * {@code maxEntrySizeBytes}.  This is equivalent to serializing
+   * {@link Entries#deflate(LogEntry)}, but streams the entry through compression rather than
+   * materializing its encoded and compressed forms in full.  The returned iterable's iterator is
+   * not thread-safe.
+   *
+   * @param logEntry The log entry to deflate and serialize.
+   * @return Serialized and chunked deflated log entry.
+   * @throws CodingException If the entry could not be serialized.
+   */
+  Iterable<byte[]> serializeDeflated(LogEntry logEntry) throws CodingException;
+
+  /**
+   * Serializes a log entry compressed with the configured snapshot compression codec, and splits
+   * it into chunks no larger than {@code maxEntrySizeBytes}.  This is equivalent to serializing
+   * {@link Entries#compress(LogEntry, Compression)}, but streams the entry through compression
+   * rather than materializing its encoded and compressed forms in full.  The returned iterable's
+   * iterator is not thread-safe.
+   *
+   * @param logEntry The log entry to compress and serialize.
+   * @return Serialized and chunked compressed log entry.
+   * @throws CodingException If the entry could not be serialized.
+   */
+  Iterable<byte[]> serializeCompressed(LogEntry logEntry) throws CodingException;
+
   @VisibleForTesting
   class EntrySerializerImpl implements EntrySerializer {
+    private static final Logger LOG = Logger.getLogger(EntrySerializerImpl.class.getName());
+
+    private static final TStruct LOG_ENTRY_STRUCT = new TStruct("LogEntry");
+    private static final TField DEFLATED_ENTRY_FIELD = new TField(
+        "deflatedEntry",
+        TType.STRING,
+        LogEntry._Fields.DEFLATED_ENTRY.getThriftFieldId());
+    private static final TField COMPRESSED_ENTRY_FIELD = new TField(
+        "compressedEntry",
+        TType.STRUCT,
+        LogEntry._Fields.COMPRESSED_ENTRY.getThriftFieldId());
+    private static final TStruct COMPRESSED_ENTRY_STRUCT = new TStruct("CompressedEntry");
+    private static final TField CODEC_FIELD = new TField(
+        "codec",
+        TType.I32,
+        CompressedEntry._Fields.CODEC.getThriftFieldId());
+    private static final TField DATA_FIELD = new TField(
+        "data",
+        TType.STRING,
+        CompressedEntry._Fields.DATA.getThriftFieldId());
+
     private final HashFunction hashFunction;
     private final int maxEntrySizeBytes;
+    private final int deflateThreads;
+    private final Compression compression;
+    private final Encoding encoding;
+
+    @VisibleForTesting
+    public EntrySerializerImpl(Amount<Integer, Data> maxEntrySize, HashFunction hashFunction) {
+      this(maxEntrySize, hashFunction, 0);
+    }
+
+    @VisibleForTesting
+    public EntrySerializerImpl(
+        Amount<Integer, Data> maxEntrySize,
+        HashFunction hashFunction,
+        int deflateThreads) {
+
+      this(maxEntrySize, hashFunction, deflateThreads, Compression.DEFLATE);
+    }
+
+    @VisibleForTesting
+    public EntrySerializerImpl(
+        Amount<Integer, Data> maxEntrySize,
+        HashFunction hashFunction,
+        int deflateThreads,
+        Compression compression) {
+
+      this(maxEntrySize, hashFunction, deflateThreads, compression, Encoding.BINARY);
+    }
 
     @Inject
     @VisibleForTesting
     public EntrySerializerImpl(
         @MaxEntrySize Amount<Integer, Data> maxEntrySize,
-        @LogEntryHashFunction HashFunction hashFunction) {
+        @LogEntryHashFunction HashFunction hashFunction,
+        @DeflateThreads int deflateThreads,
+        @SnapshotCompression Compression compression,
+        @LogEntryEncoding Encoding encoding) {
 
       this.hashFunction = requireNonNull(hashFunction);
       maxEntrySizeBytes = maxEntrySize.as(Data.BYTES);
+      Preconditions.checkArgument(deflateThreads >= 0, "Deflate threads may not be negative.");
+      this.deflateThreads = deflateThreads;
+      this.compression = requireNonNull(compression);
+      this.encoding = requireNonNull(encoding);
     }
 
     @Override
     @Timed("log_entry_serialize")
     public Iterable<byte[]> serialize(LogEntry logEntry) throws CodingException {
-      final byte[] entry = Entries.thriftBinaryEncode(logEntry);
-      if (entry.length <= maxEntrySizeBytes) {
-        return ImmutableList.of(entry);
+      ChunkingOutputStream entry = new ChunkingOutputStream(maxEntrySizeBytes);
+      ThriftBinaryCodec.encodeNonNull(logEntry, entry, encoding);
+      return frame(entry.toChunks());
+    }
+
+    @Override
+    @Timed("log_entry_serialize_deflated")
+    public Iterable<byte[]> serializeDeflated(LogEntry logEntry) throws CodingException {
+      ChunkingOutputStream deflated = new ChunkingOutputStream(maxEntrySizeBytes);
+      ExecutorService executor = deflateThreads == 0
+          ? MoreExecutors.sameThreadExecutor()
+          : AsyncUtil.loggingExecutor(
+              deflateThreads,
+              deflateThreads,
+              new LinkedBlockingQueue<Runnable>(),
+              "LogEntryDeflater-%d",
+              LOG);
+      try {
+        // Allow each thread one block in progress and one awaiting a thread.
+        ThriftBinaryCodec.deflateNonNull(
+            logEntry,
+            deflated,
+            executor,
+            Math.max(1, deflateThreads * 2),
+            encoding);
+      } finally {
+        executor.shutdownNow();
+      }
+
+      // Wrap the deflated data in a LogEntry, encoded exactly as LogEntry.deflatedEntry(data).
+      // The wrapper is always binary-encoded, only the wrapped entry uses the configured encoding.
+      ChunkingOutputStream entry = new ChunkingOutputStream(maxEntrySizeBytes);
+      try {
+        TProtocol protocol =
+            ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(entry));
+        protocol.writeStructBegin(LOG_ENTRY_STRUCT);
+        protocol.writeFieldBegin(DEFLATED_ENTRY_FIELD);
+        protocol.writeI32((int) deflated.size());
+        deflated.drainTo(entry);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+      } catch (TException | IOException e) {
+        throw new CodingException("Failed to serialize deflated entry.", e);
       }
+      return frame(entry.toChunks());
+    }
+
+    @Override
+    @Timed("log_entry_serialize_compressed")
+    public Iterable<byte[]> serializeCompressed(LogEntry logEntry) throws CodingException {
+      if (compression == Compression.DEFLATE) {
+        // Written as a deflated entry, which is readable by all scheduler versions.
+        return serializeDeflated(logEntry);
+      }
+
+      ChunkingOutputStream compressed = new ChunkingOutputStream(maxEntrySizeBytes);
+      ThriftBinaryCodec.compressNonNull(logEntry, compressed, compression, encoding);
 
-      final int chunks = (int) Math.ceil(entry.length / (double) maxEntrySizeBytes);
+      // Wrap the compressed data in a LogEntry, encoded exactly as
+      // LogEntry.compressedEntry(new CompressedEntry(codec, data)).  As above, the wrapper is
+      // always binary-encoded.
+      ChunkingOutputStream entry = new ChunkingOutputStream(maxEntrySizeBytes);
+      try {
+        TProtocol protocol =
+            ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(entry));
+        protocol.writeStructBegin(LOG_ENTRY_STRUCT);
+        protocol.writeFieldBegin(COMPRESSED_ENTRY_FIELD);
+        protocol.writeStructBegin(COMPRESSED_ENTRY_STRUCT);
+        protocol.writeFieldBegin(CODEC_FIELD);
+        protocol.writeI32(Entries.codecTag(compression).getValue());
+        protocol.writeFieldEnd();
+        protocol.writeFieldBegin(DATA_FIELD);
+        protocol.writeI32((int) compressed.size());
+        compressed.drainTo(entry);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+      } catch (TException | IOException e) {
+        throw new CodingException("Failed to serialize compressed entry.", e);
+      }
+      return frame(entry.toChunks());
+    }
+
+    private Iterable<byte[]> frame(final List<byte[]> chunks) throws CodingException {
+      if (chunks.size() == 1) {
+        return chunks;
+      }
 
       final byte[] header = encode(
-          Frame.header(new FrameHeader(chunks, ByteBuffer.wrap(checksum(entry)))));
+          Frame.header(new FrameHeader(chunks.size(), ByteBuffer.wrap(checksum(chunks)))));
 
       return new Iterable<byte[]>() {
         @Override
         public Iterator<byte[]> iterator() {
-          return streamFrames(header, chunks, entry);
+          return streamFrames(header, chunks);
         }
       };
     }
 
-    Iterator<byte[]> streamFrames(final byte[] header, final int chunks, final byte[] entry) {
+    Iterator<byte[]> streamFrames(final byte[] header, final List<byte[]> chunks) {
       return new AbstractIterator<byte[]>() {
         private int i = -1;
 
@@ -97,12 +285,9 @@ public interface EntrySerializer {
           byte[] result;
           if (i == -1) {
             result = header;
-          } else if (i < chunks) {
-            int offset = i * maxEntrySizeBytes;
-            ByteBuffer chunk =
-                ByteBuffer.wrap(entry, offset, Math.min(maxEntrySizeBytes, entry.length - offset));
+          } else if (i < chunks.size()) {
             try {
-              result = encode(Frame.chunk(new FrameChunk(chunk)));
+              result = encode(Frame.chunk(new FrameChunk(ByteBuffer.wrap(chunks.get(i)))));
             } catch (CodingException e) {
               throw Throwables.propagate(e);
             }
@@ -117,14 +302,17 @@ public interface EntrySerializer {
     }
 
     @Timed("log_entry_checksum")
-    protected byte[] checksum(byte[] data) {
-      // TODO(ksweeney): Use the streaming API here.
-      return hashFunction.hashBytes(data).asBytes();
+    protected byte[] checksum(List<byte[]> chunks) {
+      Hasher hasher = hashFunction.newHasher();
+      for (byte[] chunk : chunks) {
+        hasher.putBytes(chunk);
+      }
+      return hasher.hash().asBytes();
     }
 
     @Timed("log_entry_encode")
     protected byte[] encode(Frame frame) throws CodingException {
-      return Entries.thriftBinaryEncode(LogEntry.frame(frame));
+      return ThriftBinaryCodec.encodeNonNull(LogEntry.frame(frame), encoding);
     }
   }
 }
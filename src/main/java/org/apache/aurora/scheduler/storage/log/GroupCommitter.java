@@ -0,0 +1,259 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.SlidingStats;
+
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.scheduler.log.Log;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
+import org.apache.aurora.scheduler.storage.Storage.StorageException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Coalesces the log transactions of many storage write operations into a single log entry.
+ *
+ * <p>Writers commit their transactions to an open group while holding the storage write lock,
+ * which preserves the order in which operations were applied to local storage.  After releasing
+ * the lock, writers wait for their group to become durable.  The first writer to wait becomes the
+ * leader, which waits briefly for more transactions to join the group and then appends the group
+ * to the log as a single transaction entry.  Writers that commit while the leader is appending
+ * form the next group.
+ *
+ * <p>Since local storage is modified before the group is appended, a failure to append leaves
+ * local storage ahead of the log.  When that happens the committer fails all waiting writers and
+ * rejects all further commits, and the scheduler must fail over to recover from the log.
+ */
+class GroupCommitter {
+  private static final Logger LOG = Logger.getLogger(GroupCommitter.class.getName());
+
+  private final StreamManager streamManager;
+  private final long windowNanos;
+
+  private final Object monitor = new Object();
+
+  // All fields below are guarded by monitor.
+  private StreamTransaction openGroup = null;
+  private int openGroupSize = 0;
+  private long enqueued = 0;
+  private long durable = 0;
+  private boolean appending = false;
+  private RuntimeException failure = null;
+
+  private final SlidingStats groupSize = new SlidingStats("log_storage_group_size", "txns");
+  private final SlidingStats appendLatency =
+      new SlidingStats("log_storage_group_append", "ns");
+  private final SlidingStats commitLatency =
+      new SlidingStats("log_storage_group_commit_wait", "ns");
+
+  /**
+   * Creates a group committer.
+   *
+   * @param streamManager Stream manager to append groups with.
+   * @param window Amount of time a leader waits for more transactions to join its group.
+   */
+  GroupCommitter(StreamManager streamManager, Amount<Long, Time> window) {
+    this.streamManager = requireNonNull(streamManager);
+    this.windowNanos = window.as(Time.NANOSECONDS);
+    Preconditions.checkArgument(windowNanos >= 0, "Group commit window may not be negative.");
+  }
+
+  /**
+   * Starts a transaction that buffers ops until it is committed.  Committing the returned
+   * transaction adds its ops to the open group rather than appending them to the log, and
+   * always returns a {@code null} position.  Must be committed while holding the storage write
+   * lock.
+   *
+   * @return A new transaction.
+   */
+  StreamTransaction startTransaction() {
+    return new StreamTransaction() {
+      private final List<Op> ops = Lists.newArrayList();
+
+      @Override
+      public Log.Position commit() {
+        enqueue(ops);
+        return null;
+      }
+
+      @Override
+      public void add(Op op) {
+        ops.add(op);
+      }
+    };
+  }
+
+  private void enqueue(List<Op> ops) {
+    synchronized (monitor) {
+      checkNotFailed();
+      if (ops.isEmpty()) {
+        return;
+      }
+
+      if (openGroup == null) {
+        openGroup = streamManager.startTransaction();
+      }
+      for (Op op : ops) {
+        openGroup.add(op);
+      }
+      openGroupSize++;
+      enqueued++;
+    }
+  }
+
+  /**
+   * Gets the sequence number of the most recently committed transaction.  A caller holding the
+   * storage write lock may use this to later wait for all local storage changes it has observed
+   * to become durable.
+   *
+   * @return The sequence of the most recently committed transaction.
+   */
+  long lastCommitted() {
+    synchronized (monitor) {
+      return enqueued;
+    }
+  }
+
+  /**
+   * Waits until a transaction, and all transactions committed before it, have been appended to
+   * the log.  Must not be called while holding the storage write lock.
+   *
+   * @param sequence Transaction sequence number to wait for, as returned by
+   *     {@link #lastCommitted()}.
+   * @throws StorageException If the transaction could not be appended to the log.
+   */
+  void awaitDurable(long sequence) throws StorageException {
+    long start = System.nanoTime();
+    synchronized (monitor) {
+      while (durable < sequence) {
+        checkNotFailed();
+        if (!appending) {
+          appending = true;
+          break;
+        }
+        waitForAppend();
+      }
+      if (durable >= sequence) {
+        commitLatency.accumulate(System.nanoTime() - start);
+        return;
+      }
+    }
+
+    // This thread is now the leader, allow time for other transactions to join the group.
+    if (windowNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(windowNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    appendOpenGroup();
+    synchronized (monitor) {
+      checkNotFailed();
+    }
+    commitLatency.accumulate(System.nanoTime() - start);
+  }
+
+  /**
+   * Appends all committed transactions to the log.  This is intended to be called while holding
+   * the storage write lock exclusively, to guarantee that no transactions are pending.
+   *
+   * @throws StorageException If the pending transactions could not be appended to the log.
+   */
+  void flush() throws StorageException {
+    synchronized (monitor) {
+      while (appending) {
+        waitForAppend();
+      }
+      checkNotFailed();
+      appending = true;
+    }
+    appendOpenGroup();
+    synchronized (monitor) {
+      checkNotFailed();
+    }
+  }
+
+  // Must be called while holding monitor.
+  private void waitForAppend() {
+    try {
+      monitor.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while waiting for a log commit.", e);
+    }
+  }
+
+  // Must be called while holding monitor.
+  private void checkNotFailed() {
+    if (failure != null) {
+      throw new StorageException("A prior log commit failed, storage is unusable.", failure);
+    }
+  }
+
+  // Must only be called by the thread that set appending.
+  private void appendOpenGroup() {
+    StreamTransaction group;
+    int size;
+    long sequence;
+    synchronized (monitor) {
+      group = openGroup;
+      size = openGroupSize;
+      sequence = enqueued;
+      openGroup = null;
+      openGroupSize = 0;
+    }
+
+    boolean appended = false;
+    RuntimeException error = null;
+    try {
+      if (group != null) {
+        long start = System.nanoTime();
+        group.commit();
+        appendLatency.accumulate(System.nanoTime() - start);
+        groupSize.accumulate(size);
+      }
+      appended = true;
+    } catch (CodingException e) {
+      error = new IllegalStateException(
+          "Problem encoding transaction operations to the log stream", e);
+    } catch (StreamAccessException e) {
+      error = new StorageException("There was a problem committing the transaction to the log.", e);
+    } catch (RuntimeException e) {
+      error = e;
+    } finally {
+      synchronized (monitor) {
+        if (appended) {
+          durable = sequence;
+        } else {
+          failure = error == null ? new IllegalStateException("Log append aborted.") : error;
+          LOG.log(Level.SEVERE, "Failed to append a group of " + size + " transactions.", failure);
+        }
+        appending = false;
+        monitor.notifyAll();
+      }
+    }
+  }
+}
@@ -46,6 +46,22 @@ public class LogManager {
   @Qualifier
   public @interface DeflateSnapshots { }
 
+  /**
+   * Codec used to compress snapshots when snapshot deflation is enabled.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface SnapshotCompression { }
+
+  /**
+   * Encoding used to write log entries.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface LogEntryEncoding { }
+
   /**
    * When true, enable snapshot deduplication.
    */
@@ -54,6 +70,24 @@ public class LogManager {
   @Qualifier
   public @interface DeduplicateSnapshots { }
 
+  /**
+   * Number of threads used to decode log entries when reading the log, or zero to decode them on
+   * the reading thread.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface RecoveryThreads { }
+
+  /**
+   * Number of threads used to compress snapshots when writing them to the log, or zero to compress
+   * them on the writing thread.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface DeflateThreads { }
+
   /**
    * Hash function used to verify log entries.
    */
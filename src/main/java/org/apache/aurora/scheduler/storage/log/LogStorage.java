@@ -14,10 +14,14 @@
 package org.apache.aurora.scheduler.storage.log;
 
 import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -27,7 +31,12 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.base.Closure;
 import com.twitter.common.inject.TimedInterceptor.Timed;
@@ -39,19 +48,27 @@ import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
 
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.HostAttributes;
+import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.JobUpdate;
 import org.apache.aurora.gen.JobUpdateKey;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.QuotaConfiguration;
 import org.apache.aurora.gen.storage.RewriteTask;
 import org.apache.aurora.gen.storage.SaveCronJob;
 import org.apache.aurora.gen.storage.SaveJobInstanceUpdateEvent;
 import org.apache.aurora.gen.storage.SaveJobUpdateEvent;
 import org.apache.aurora.gen.storage.SaveQuota;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
+import org.apache.aurora.gen.storage.StoredCronJob;
+import org.apache.aurora.gen.storage.TaskTransition;
 import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.SchedulerException;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.EventSink;
+import org.apache.aurora.scheduler.log.Log;
 import org.apache.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import org.apache.aurora.scheduler.storage.AttributeStore;
@@ -117,6 +134,32 @@ import static java.util.Objects.requireNonNull;
  *
  * <p>If the op fails to apply to local storage we will never write the op to the log and if the op
  * fails to apply to the log, it'll throw and abort the local storage transaction as well.
+ *
+ * <p>Writes are serialized by a {@link StorageWriteLock}, which may be configured to allow
+ * writes scoped to different jobs to proceed concurrently.  Ops of concurrent writes are only
+ * ordered in the log relative to writes to the same jobs and to unscoped writes, which is
+ * sufficient for replay since writes to different jobs modify disjoint state.
+ *
+ * <p>Snapshots only hold the write lock while appending a snapshot marker to the log and capturing
+ * the stored state, and are built and appended to the log while writes proceed.  Transactions
+ * that land between the marker and the snapshot are re-applied on top of the snapshot when
+ * replaying the log.  Snapshots are taken when due according to a {@link SnapshotPolicy}, either
+ * at a fixed interval or based on the volume of the log written since the last snapshot.
+ *
+ * <p>Optionally, only every Nth snapshot is a full snapshot, and the snapshots in between are
+ * deltas holding the entities changed since the previous snapshot.  The log is only truncated by
+ * full snapshots.  See {@link DeferredReplay} for how transactions and snapshots are ordered when
+ * replaying the log.
+ *
+ * <p>Optionally, a {@link CheckpointFile checkpoint} of the stored state is saved to local disk
+ * after each full snapshot, along with the position of a checkpoint entry appended to the log and
+ * a random ID carried by both.  When starting, the checkpoint is restored and only the entries
+ * following its position are read from the log.  If the checkpoint is missing, unreadable, or its
+ * position no longer holds an entry with the same ID, the whole log is read instead.
+ *
+ * <p>Optionally, a scheduler that is not the leader stands by warm, periodically replaying the
+ * entries appended to the log by the leader into local storage without writing to the log.  When
+ * elected, only the entries following the last entry replayed are read, rather than the whole log.
  */
 public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore {
 
@@ -179,10 +222,21 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
 
   private static final Logger LOG = Logger.getLogger(LogStorage.class.getName());
 
+  // Maximum number of transaction ops held back while replaying the log, see DeferredReplay.
+  @VisibleForTesting
+  static final int MAX_DEFERRED_REPLAY_OPS = 100000;
+
+  // Time between checks of an adaptive snapshot policy.
+  @VisibleForTesting
+  static final Amount<Long, Time> SNAPSHOT_POLICY_CHECK_INTERVAL = Amount.of(10L, Time.SECONDS);
+
   private final LogManager logManager;
   private final SchedulingService schedulingService;
   private final SnapshotStore<Snapshot> snapshotStore;
-  private final Amount<Long, Time> snapshotInterval;
+  private final SnapshotPolicy snapshotPolicy;
+  private final int fullSnapshotInterval;
+  private final Optional<Amount<Long, Time>> groupCommitWindow;
+  private final Optional<Amount<Long, Time>> standbyPollInterval;
   private final Storage writeBehindStorage;
   private final SchedulerStore.Mutable writeBehindSchedulerStore;
   private final CronJobStore.Mutable writeBehindJobStore;
@@ -191,9 +245,14 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
   private final QuotaStore.Mutable writeBehindQuotaStore;
   private final AttributeStore.Mutable writeBehindAttributeStore;
   private final JobUpdateStore.Mutable writeBehindJobUpdateStore;
-  private final ReentrantLock writeLock;
+  private final StorageWriteLock writeLock;
+  private final PostCommitQueue postCommitQueue;
+  private final Optional<CheckpointFile> checkpointFile;
+  // Generates the IDs that match checkpoints to their entries in the log.
+  private final Random checkpointIds = new SecureRandom();
 
   private StreamManager streamManager;
+  private GroupCommitter groupCommitter = null;
   private final WriteAheadStorage writeAheadStorage;
 
   // TODO(wfarner): It should be possible to remove this flag now, since all call stacks when
@@ -201,11 +260,35 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
   // The more involved change is changing SnapshotStore to accept a Mutable store provider to
   // avoid a call to Storage.write() when we replay a Snapshot.
   private boolean recovered = false;
-  private StreamTransaction transaction = null;
+  private final ThreadLocal<StreamTransaction> transaction = new ThreadLocal<>();
+
+  // Serializes appending snapshots to the log, to ensure that a snapshot is always appended before
+  // the marker of the next one.  Must only be acquired while holding the write lock, but may be
+  // held after releasing it.
+  private final ReentrantLock snapshotLock = new ReentrantLock();
+
+  // Tracks changes for snapshot deltas, absent if every snapshot is a full snapshot.
+  private final Optional<SnapshotDeltaTracker> deltaTracker;
+  // Guarded by snapshotLock.
+  private boolean deltaBaseAppended = false;
+  private int deltasSinceFullSnapshot = 0;
+  // Time at which the last snapshot or snapshot delta was appended, from System.nanoTime().
+  private volatile long lastSnapshotNanos;
+
+  // Guarded by this.  Only accessed by the recovering thread, or while standing by, in which case
+  // it is retained between replays of the log.
+  private DeferredReplay deferredReplay = null;
+  // Guarded by this.  Position of the last log entry replayed while standing by.
+  private Optional<Log.Position> standbyPosition = Optional.absent();
+  // Guarded by this.  Whether local storage may hold state replayed while standing by.
+  private boolean standbyStateApplied = false;
 
   private final SlidingStats writerWaitStats =
       new SlidingStats("log_storage_write_lock_wait", "ns");
   private final AtomicLong droppedUpdateEvents = Stats.exportLong("dropped_update_events");
+  private final AtomicLong checkpointFallbacks =
+      Stats.exportLong("scheduler_log_checkpoint_fallbacks");
+  private final AtomicLong standbyResets = Stats.exportLong("scheduler_log_standby_resets");
 
   private final Map<LogEntry._Fields, Closure<LogEntry>> logEntryReplayActions;
   private final Map<Op._Fields, Closure<Op>> transactionReplayActions;
@@ -225,12 +308,16 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
       @Volatile AttributeStore.Mutable attributeStore,
       @Volatile JobUpdateStore.Mutable jobUpdateStore,
       EventSink eventSink,
-      ReentrantLock writeLock) {
+      PostCommitQueue postCommitQueue,
+      Optional<CheckpointFile> checkpointFile) {
 
     this(logManager,
         new ScheduledExecutorSchedulingService(shutdownRegistry, settings.getShutdownGracePeriod()),
         snapshotStore,
-        settings.getSnapshotInterval(),
+        settings.getSnapshotPolicy(),
+        settings.getFullSnapshotInterval(),
+        settings.getGroupCommitWindow(),
+        settings.getStandbyPollInterval(),
         storage,
         schedulerStore,
         jobStore,
@@ -240,7 +327,10 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
         attributeStore,
         jobUpdateStore,
         eventSink,
-        writeLock);
+        new StorageWriteLock(settings.getJobLockStripes()),
+        postCommitQueue,
+        checkpointFile,
+        settings.isTaskTransitionOpsEnabled());
   }
 
   @VisibleForTesting
@@ -248,7 +338,10 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
       LogManager logManager,
       SchedulingService schedulingService,
       SnapshotStore<Snapshot> snapshotStore,
-      Amount<Long, Time> snapshotInterval,
+      SnapshotPolicy snapshotPolicy,
+      int fullSnapshotInterval,
+      Optional<Amount<Long, Time>> groupCommitWindow,
+      Optional<Amount<Long, Time>> standbyPollInterval,
       Storage delegateStorage,
       SchedulerStore.Mutable schedulerStore,
       CronJobStore.Mutable jobStore,
@@ -258,12 +351,24 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
       AttributeStore.Mutable attributeStore,
       JobUpdateStore.Mutable jobUpdateStore,
       EventSink eventSink,
-      ReentrantLock writeLock) {
+      StorageWriteLock writeLock,
+      PostCommitQueue postCommitQueue,
+      Optional<CheckpointFile> checkpointFile,
+      boolean taskTransitionOps) {
 
     this.logManager = requireNonNull(logManager);
     this.schedulingService = requireNonNull(schedulingService);
     this.snapshotStore = requireNonNull(snapshotStore);
-    this.snapshotInterval = requireNonNull(snapshotInterval);
+    this.snapshotPolicy = requireNonNull(snapshotPolicy);
+    this.groupCommitWindow = requireNonNull(groupCommitWindow);
+    this.standbyPollInterval = requireNonNull(standbyPollInterval);
+    Preconditions.checkArgument(
+        fullSnapshotInterval > 0,
+        "Full snapshot interval must be positive.");
+    this.fullSnapshotInterval = fullSnapshotInterval;
+    this.deltaTracker = fullSnapshotInterval > 1
+        ? Optional.of(new SnapshotDeltaTracker())
+        : Optional.<SnapshotDeltaTracker>absent();
 
     // Log storage has two distinct operating modes: pre- and post-recovery.  When recovering,
     // we write directly to the writeBehind stores since we are replaying what's already persisted.
@@ -278,15 +383,17 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
     this.writeBehindAttributeStore = requireNonNull(attributeStore);
     this.writeBehindJobUpdateStore = requireNonNull(jobUpdateStore);
     this.writeLock = requireNonNull(writeLock);
+    this.postCommitQueue = requireNonNull(postCommitQueue);
+    this.checkpointFile = requireNonNull(checkpointFile);
     TransactionManager transactionManager = new TransactionManager() {
       @Override
       public boolean hasActiveTransaction() {
-        return transaction != null;
+        return transaction.get() != null;
       }
 
       @Override
       public void log(Op op) {
-        transaction.add(op);
+        transaction.get().add(op);
       }
     };
     this.writeAheadStorage = new WriteAheadStorage(
@@ -299,7 +406,8 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
         attributeStore,
         jobUpdateStore,
         Logger.getLogger(WriteAheadStorage.class.getName()),
-        eventSink);
+        eventSink,
+        taskTransitionOps);
 
     this.logEntryReplayActions = buildLogEntryReplayActions();
     this.transactionReplayActions = buildTransactionReplayActions();
@@ -311,22 +419,20 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
         .put(LogEntry._Fields.SNAPSHOT, new Closure<LogEntry>() {
           @Override
           public void execute(LogEntry logEntry) {
-            Snapshot snapshot = logEntry.getSnapshot();
-            LOG.info("Applying snapshot taken on " + new Date(snapshot.getTimestamp()));
-            snapshotStore.applySnapshot(snapshot);
+            final Snapshot snapshot = logEntry.getSnapshot();
+            deferredReplay.snapshot(new Runnable() {
+              @Override
+              public void run() {
+                LOG.info("Applying snapshot taken on " + new Date(snapshot.getTimestamp()));
+                snapshotStore.applySnapshot(snapshot);
+              }
+            });
           }
         })
         .put(LogEntry._Fields.TRANSACTION, new Closure<LogEntry>() {
           @Override
-          public void execute(final LogEntry logEntry) {
-            write(new MutateWork.NoResult.Quiet() {
-              @Override
-              protected void execute(MutableStoreProvider unused) {
-                for (Op op : logEntry.getTransaction().getOps()) {
-                  replayOp(op);
-                }
-              }
-            });
+          public void execute(LogEntry logEntry) {
+            deferredReplay.transaction(logEntry);
           }
         })
         .put(LogEntry._Fields.NOOP, new Closure<LogEntry>() {
@@ -335,9 +441,99 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
             // Nothing to do here
           }
         })
+        .put(LogEntry._Fields.SNAPSHOT_MARKER, new Closure<LogEntry>() {
+          @Override
+          public void execute(LogEntry item) {
+            deferredReplay.marker();
+          }
+        })
+        .put(LogEntry._Fields.SNAPSHOT_DELTA, new Closure<LogEntry>() {
+          @Override
+          public void execute(LogEntry logEntry) {
+            final SnapshotDelta delta = logEntry.getSnapshotDelta();
+            deferredReplay.delta(new Runnable() {
+              @Override
+              public void run() {
+                LOG.info("Applying snapshot delta with " + delta.getChanged().getTasksSize()
+                    + " changed and " + delta.getRemovedTaskIdsSize() + " removed tasks.");
+                applySnapshotDelta(delta);
+              }
+            });
+          }
+        })
         .build();
   }
 
+  private void applySnapshotDelta(final SnapshotDelta delta) {
+    write(new MutateWork.NoResult.Quiet() {
+      @Override
+      protected void execute(MutableStoreProvider unused) {
+        Snapshot changed = delta.getChanged();
+
+        if (delta.isSetRemovedTaskIds()) {
+          writeBehindTaskStore.deleteTasks(delta.getRemovedTaskIds());
+        }
+        if (changed.isSetTasks()) {
+          writeBehindTaskStore.saveTasks(IScheduledTask.setFromBuilders(changed.getTasks()));
+        }
+
+        if (delta.isSetRemovedCronJobs()) {
+          for (JobKey jobKey : delta.getRemovedCronJobs()) {
+            writeBehindJobStore.removeJob(IJobKey.build(jobKey));
+          }
+        }
+        if (changed.isSetCronJobs()) {
+          for (StoredCronJob job : changed.getCronJobs()) {
+            writeBehindJobStore.saveAcceptedJob(
+                IJobConfiguration.build(job.getJobConfiguration()));
+          }
+        }
+
+        if (delta.isSetRemovedQuotaRoles()) {
+          for (String role : delta.getRemovedQuotaRoles()) {
+            writeBehindQuotaStore.removeQuota(role);
+          }
+        }
+        if (changed.isSetQuotaConfigurations()) {
+          for (QuotaConfiguration quota : changed.getQuotaConfigurations()) {
+            writeBehindQuotaStore.saveQuota(
+                quota.getRole(),
+                IResourceAggregate.build(quota.getQuota()));
+          }
+        }
+
+        if (changed.isSetHostAttributes()) {
+          for (HostAttributes attributes : changed.getHostAttributes()) {
+            writeBehindAttributeStore.saveHostAttributes(IHostAttributes.build(attributes));
+          }
+        }
+
+        if (changed.isSetSchedulerMetadata()
+            && changed.getSchedulerMetadata().isSetFrameworkId()) {
+
+          writeBehindSchedulerStore.saveFrameworkId(
+              changed.getSchedulerMetadata().getFrameworkId());
+        }
+
+        // Lock and job update ops are replayed in their original order.
+        for (Op op : delta.getOps()) {
+          replayOp(op);
+        }
+      }
+    });
+  }
+
+  private void replayTransaction(final LogEntry logEntry) {
+    write(new MutateWork.NoResult.Quiet() {
+      @Override
+      protected void execute(MutableStoreProvider unused) {
+        for (Op op : logEntry.getTransaction().getOps()) {
+          replayOp(op);
+        }
+      }
+    });
+  }
+
   @VisibleForTesting
   final Map<Op._Fields, Closure<Op>> buildTransactionReplayActions() {
     return ImmutableMap.<Op._Fields, Closure<Op>>builder()
@@ -479,6 +675,29 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
                 op.getPruneJobUpdateHistory().getPerJobRetainCount(),
                 op.getPruneJobUpdateHistory().getHistoryPruneThresholdMs());
           }
+        })
+        .put(Op._Fields.TRANSITION_TASKS, new Closure<Op>() {
+          @Override
+          public void execute(Op op) {
+            List<TaskTransition> transitions = op.getTransitionTasks().getTransitions();
+            ImmutableSet.Builder<String> taskIds = ImmutableSet.builder();
+            for (TaskTransition transition : transitions) {
+              taskIds.add(transition.getTaskId());
+            }
+
+            // Transitions are applied in order, and a task may be transitioned more than once.
+            Map<String, IScheduledTask> tasks = Maps.newHashMap(Tasks.mapById(
+                writeBehindTaskStore.fetchTasks(Query.taskScoped(taskIds.build()))));
+            for (TaskTransition transition : transitions) {
+              IScheduledTask task = tasks.get(transition.getTaskId());
+              if (task == null) {
+                LOG.severe("Dropping transition of unknown task: " + transition);
+              } else {
+                tasks.put(transition.getTaskId(), TaskTransitions.apply(task, transition));
+              }
+            }
+            writeBehindTaskStore.saveTasks(ImmutableSet.copyOf(tasks.values()));
+          }
         }).build();
   }
 
@@ -495,6 +714,59 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
     } catch (IOException e) {
       throw new IllegalStateException("Failed to open the log, cannot continue", e);
     }
+    if (groupCommitWindow.isPresent()) {
+      groupCommitter = new GroupCommitter(streamManager, groupCommitWindow.get());
+    }
+    if (standbyPollInterval.isPresent()) {
+      schedulingService.doEvery(standbyPollInterval.get(), new Runnable() {
+        @Override
+        public void run() {
+          replayAsStandby();
+        }
+      });
+    }
+  }
+
+  /**
+   * Replays the entries appended to the log since the previous call into local storage, while this
+   * scheduler stands by to become the leader.  Does nothing once storage is started.  A failure
+   * discards the replayed state, which is then replayed from the beginning of the log by the next
+   * call.
+   */
+  @Timed("scheduler_log_standby_replay")
+  synchronized void replayAsStandby() {
+    if (recovered) {
+      return;
+    }
+
+    try {
+      if (deferredReplay == null) {
+        discardStandbyState();
+        deferredReplay = newDeferredReplay();
+        standbyPosition = Optional.absent();
+      }
+      standbyStateApplied = true;
+      standbyPosition = streamManager.tail(standbyPosition, new Closure<LogEntry>() {
+        @Override
+        public void execute(LogEntry logEntry) {
+          replay(logEntry);
+        }
+      });
+      deferredReplay.catchUp();
+    } catch (CodingException | RuntimeException e) {
+      LOG.log(Level.WARNING, "Failed to replay the log while standing by.", e);
+      standbyResets.incrementAndGet();
+      deferredReplay = null;
+    }
+  }
+
+  // Must be called while holding this.
+  private void discardStandbyState() {
+    if (standbyStateApplied) {
+      LOG.info("Discarding stored state replayed while standing by.");
+      snapshotStore.applySnapshot(new Snapshot());
+      standbyStateApplied = false;
+    }
   }
 
   @Override
@@ -528,12 +800,19 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
       @Override
       protected void execute(MutableStoreProvider storeProvider) {
         try {
-          streamManager.readFromBeginning(new Closure<LogEntry>() {
-            @Override
-            public void execute(LogEntry logEntry) {
-              replay(logEntry);
+          if (replayFromStandby()) {
+            return;
+          }
+
+          Optional<CheckpointFile.Checkpoint> checkpoint = checkpointFile.isPresent()
+              ? checkpointFile.get().load()
+              : Optional.<CheckpointFile.Checkpoint>absent();
+          if (!checkpoint.isPresent() || !replayFromCheckpoint(checkpoint.get())) {
+            if (checkpoint.isPresent()) {
+              checkpointFallbacks.incrementAndGet();
             }
-          });
+            replayFromBeginning();
+          }
         } catch (CodingException | InvalidPositionException | StreamAccessException e) {
           throw new RecoveryFailedException(e);
         }
@@ -541,12 +820,141 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
     });
   }
 
+  private DeferredReplay newDeferredReplay() {
+    return new DeferredReplay(
+        new Closure<LogEntry>() {
+          @Override
+          public void execute(LogEntry logEntry) {
+            replayTransaction(logEntry);
+          }
+        },
+        MAX_DEFERRED_REPLAY_OPS);
+  }
+
+  /**
+   * Replays the log entries following those replayed while standing by.
+   *
+   * @return {@code true} if the log was replayed, or {@code false} if there is no usable state
+   *     from standing by, in which case any such state has been discarded and the log must be
+   *     read from the beginning instead.
+   */
+  private boolean replayFromStandby() throws CodingException {
+    if (deferredReplay == null || !standbyPosition.isPresent()) {
+      deferredReplay = null;
+      discardStandbyState();
+      return false;
+    }
+
+    LOG.info("Replaying the log entries following those replayed while standing by.");
+    try {
+      streamManager.readAfter(standbyPosition.get(), new Closure<LogEntry>() {
+        @Override
+        public void execute(LogEntry logEntry) {
+          replay(logEntry);
+        }
+      });
+      deferredReplay.finish();
+      return true;
+    } catch (InvalidPositionException e) {
+      LOG.warning("Entries replayed while standing by are no longer in the log, reading the whole "
+          + "log: " + e.getMessage());
+      discardStandbyState();
+      return false;
+    } finally {
+      deferredReplay = null;
+    }
+  }
+
+  private void replayFromBeginning() throws CodingException {
+    deferredReplay = newDeferredReplay();
+    try {
+      streamManager.readFromBeginning(new Closure<LogEntry>() {
+        @Override
+        public void execute(LogEntry logEntry) {
+          replay(logEntry);
+        }
+      });
+      deferredReplay.finish();
+    } finally {
+      deferredReplay = null;
+    }
+  }
+
+  /**
+   * Restores a checkpoint and replays the log entries following it.  Nothing is applied to
+   * storage unless the entry at the checkpoint position is found in the log, and carries the ID
+   * saved with the checkpoint.
+   *
+   * @param checkpoint Checkpoint to restore.
+   * @return {@code true} if the checkpoint was restored, or {@code false} if the log does not
+   *     contain the checkpoint position and must be read from the beginning instead.
+   */
+  private boolean replayFromCheckpoint(final CheckpointFile.Checkpoint checkpoint)
+      throws CodingException {
+
+    final AtomicBoolean restored = new AtomicBoolean(false);
+    deferredReplay = newDeferredReplay();
+    try {
+      streamManager.readFrom(
+          streamManager.position(checkpoint.getPosition()),
+          new Closure<LogEntry>() {
+            @Override
+            public void execute(LogEntry logEntry) {
+              if (restored.get()) {
+                replay(logEntry);
+                return;
+              }
+
+              if (!logEntry.isSetTransaction()
+                  || !logEntry.getTransaction().isSetCheckpointId()) {
+
+                throw new CheckpointMismatchException(
+                    "Found a " + logEntry.getSetField() + " entry at the checkpoint position.");
+              }
+              if (logEntry.getTransaction().getCheckpointId() != checkpoint.getId()) {
+                throw new CheckpointMismatchException(
+                    "Found the entry of another checkpoint at the checkpoint position.");
+              }
+              deferredReplay.checkpoint(new Runnable() {
+                @Override
+                public void run() {
+                  LOG.info("Applying checkpoint taken on "
+                      + new Date(checkpoint.getSnapshot().getTimestamp()));
+                  snapshotStore.applySnapshot(checkpoint.getSnapshot());
+                }
+              });
+              restored.set(true);
+            }
+          });
+      if (!restored.get()) {
+        LOG.warning("The checkpoint position was not found in the log, reading the whole log.");
+        return false;
+      }
+      deferredReplay.finish();
+      return true;
+    } catch (InvalidPositionException | CheckpointMismatchException e) {
+      if (restored.get()) {
+        throw e;
+      }
+      LOG.warning("Unable to recover from checkpoint, reading the whole log: " + e.getMessage());
+      return false;
+    } finally {
+      deferredReplay = null;
+    }
+  }
+
   private static final class RecoveryFailedException extends SchedulerException {
     RecoveryFailedException(Throwable cause) {
       super(cause);
     }
   }
 
+  private static final class CheckpointMismatchException extends RuntimeException {
+    CheckpointMismatchException(String message) {
+      super(message);
+    }
+  }
+
   private void replay(final LogEntry logEntry) {
     LogEntry._Fields entryField = logEntry.getSetField();
     if (!logEntryReplayActions.containsKey(entryField)) {
@@ -566,21 +974,47 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
   }
 
   private void scheduleSnapshots() {
-    if (snapshotInterval.getValue() > 0) {
-      schedulingService.doEvery(snapshotInterval, new Runnable() {
+    if (!snapshotPolicy.isEnabled()) {
+      return;
+    }
+
+    lastSnapshotNanos = System.nanoTime();
+    if (snapshotPolicy.isAdaptive()) {
+      schedulingService.doEvery(SNAPSHOT_POLICY_CHECK_INTERVAL, new Runnable() {
         @Override
         public void run() {
-          try {
-            snapshot();
-          } catch (StorageException e) {
-            if (e.getCause() == null) {
-              LOG.log(Level.WARNING, "StorageException when attempting to snapshot.", e);
-            } else {
-              LOG.log(Level.WARNING, e.getMessage(), e.getCause());
-            }
+          if (isSnapshotDue()) {
+            trySnapshot();
           }
         }
       });
+    } else {
+      schedulingService.doEvery(snapshotPolicy.getMaxInterval(), new Runnable() {
+        @Override
+        public void run() {
+          trySnapshot();
+        }
+      });
+    }
+  }
+
+  private boolean isSnapshotDue() {
+    return snapshotPolicy.isDue(
+        System.nanoTime() - lastSnapshotNanos,
+        streamManager.getUnSnapshottedBytes(),
+        streamManager.getUnSnapshottedTransactions(),
+        streamManager.getReplayNanosPerByte());
+  }
+
+  private void trySnapshot() {
+    try {
+      snapshot();
+    } catch (StorageException e) {
+      if (e.getCause() == null) {
+        LOG.log(Level.WARNING, "StorageException when attempting to snapshot.", e);
+      } else {
+        LOG.log(Level.WARNING, e.getMessage(), e.getCause());
+      }
     }
   }
 
@@ -593,22 +1027,151 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
    */
   @Timed("scheduler_log_snapshot")
   void doSnapshot() throws CodingException, InvalidPositionException, StreamAccessException {
-    write(new MutateWork.NoResult<CodingException>() {
-      @Override
-      protected void execute(MutableStoreProvider unused)
-          throws CodingException, InvalidPositionException, StreamAccessException {
+    boolean checkpoint = false;
+    try {
+      CapturedSnapshot captured = write(new MutateWork<CapturedSnapshot, CodingException>() {
+        @Override
+        public CapturedSnapshot apply(MutableStoreProvider storeProvider)
+            throws CodingException, StreamAccessException {
+
+          // Pending transaction groups have already been applied to local storage, so they must
+          // precede the snapshot marker in the log.
+          if (groupCommitter != null) {
+            groupCommitter.flush();
+          }
+
+          snapshotLock.lock();
+          // A delta may only be taken against a snapshot that was appended successfully.
+          boolean full = !deltaTracker.isPresent()
+              || !deltaBaseAppended
+              || deltasSinceFullSnapshot + 1 >= fullSnapshotInterval;
+          deltaBaseAppended = false;
 
-        LOG.info("Creating snapshot.");
-        Snapshot snapshot = snapshotStore.createSnapshot();
-        persist(snapshot);
+          LOG.info(full ? "Capturing snapshot." : "Capturing snapshot delta.");
+          Log.Position marker = streamManager.markSnapshot();
+          if (full) {
+            if (deltaTracker.isPresent()) {
+              deltaTracker.get().reset();
+            }
+            return new CapturedSnapshot(
+                marker,
+                Optional.of(snapshotStore.captureSnapshot()),
+                Optional.<Supplier<SnapshotDelta>>absent());
+          } else {
+            return new CapturedSnapshot(
+                marker,
+                Optional.<Supplier<Snapshot>>absent(),
+                Optional.of(deltaTracker.get().capture(storeProvider)));
+          }
+        }
+      });
+
+      // Writes may proceed while the captured state is built into a snapshot and appended.
+      if (captured.snapshot.isPresent()) {
+        Snapshot snapshot = captured.snapshot.get().get();
+        streamManager.snapshot(snapshot, captured.marker);
+        deltasSinceFullSnapshot = 0;
+        checkpoint = checkpointFile.isPresent();
         LOG.info("Snapshot complete."
             + " host attrs: " + snapshot.getHostAttributesSize()
             + ", cron jobs: " + snapshot.getCronJobsSize()
             + ", locks: " + snapshot.getLocksSize()
             + ", quota confs: " + snapshot.getQuotaConfigurationsSize()
             + ", tasks: " + snapshot.getTasksSize());
+      } else {
+        SnapshotDelta delta = captured.delta.get().get();
+        streamManager.snapshotDelta(delta);
+        deltasSinceFullSnapshot++;
+        LOG.info("Snapshot delta complete."
+            + " host attrs: " + delta.getChanged().getHostAttributesSize()
+            + ", cron jobs: " + delta.getChanged().getCronJobsSize()
+            + ", quota confs: " + delta.getChanged().getQuotaConfigurationsSize()
+            + ", tasks: " + delta.getChanged().getTasksSize()
+            + ", removed tasks: " + delta.getRemovedTaskIdsSize()
+            + ", ops: " + delta.getOpsSize());
+      }
+      deltaBaseAppended = true;
+      lastSnapshotNanos = System.nanoTime();
+    } finally {
+      if (snapshotLock.isHeldByCurrentThread()) {
+        snapshotLock.unlock();
+      }
+    }
+
+    if (checkpoint) {
+      writeCheckpoint();
+    }
+  }
+
+  /**
+   * Saves a checkpoint of the storage state to local disk.  A failure to save the checkpoint is
+   * logged, and leaves the previous checkpoint in place.
+   *
+   * @throws CodingException If there is a problem encoding the checkpoint entry.
+   * @throws StreamAccessException If there is a problem appending the checkpoint entry to the log.
+   */
+  @Timed("scheduler_log_checkpoint")
+  void writeCheckpoint() throws CodingException, StreamAccessException {
+    final long checkpointId = checkpointIds.nextLong();
+    CapturedCheckpoint captured = write(new MutateWork<CapturedCheckpoint, CodingException>() {
+      @Override
+      public CapturedCheckpoint apply(MutableStoreProvider storeProvider)
+          throws CodingException, StreamAccessException {
+
+        // As with snapshots, the checkpoint entry must follow all transactions applied to local
+        // storage.
+        if (groupCommitter != null) {
+          groupCommitter.flush();
+        }
+
+        // The checkpoint entry must not land between a snapshot marker and its snapshot, since
+        // reading from the checkpoint would then encounter the snapshot without its marker.
+        snapshotLock.lock();
+        try {
+          return new CapturedCheckpoint(
+              streamManager.markCheckpoint(checkpointId),
+              snapshotStore.captureSnapshot());
+        } finally {
+          snapshotLock.unlock();
+        }
       }
     });
+
+    try {
+      checkpointFile.get().save(
+          captured.position.identity(),
+          checkpointId,
+          captured.snapshot.get());
+      LOG.info("Checkpoint saved.");
+    } catch (IOException | CodingException e) {
+      LOG.log(Level.WARNING, "Failed to save a checkpoint.", e);
+    }
+  }
+
+  private static final class CapturedCheckpoint {
+    private final Log.Position position;
+    private final Supplier<Snapshot> snapshot;
+
+    CapturedCheckpoint(Log.Position position, Supplier<Snapshot> snapshot) {
+      this.position = position;
+      this.snapshot = snapshot;
+    }
+  }
+
+  private static final class CapturedSnapshot {
+    private final Log.Position marker;
+    private final Optional<Supplier<Snapshot>> snapshot;
+    private final Optional<Supplier<SnapshotDelta>> delta;
+
+    CapturedSnapshot(
+        Log.Position marker,
+        Optional<Supplier<Snapshot>> snapshot,
+        Optional<Supplier<SnapshotDelta>> delta) {
+
+      this.marker = marker;
+      this.snapshot = snapshot;
+      this.delta = delta;
+    }
   }
 
   @Timed("scheduler_log_snapshot_persist")
@@ -616,7 +1179,17 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
   public void persist(Snapshot snapshot)
       throws CodingException, InvalidPositionException, StreamAccessException {
 
-    streamManager.snapshot(snapshot);
+    // The snapshot is marked to discard transactions following any marker left behind by a failed
+    // snapshot attempt, which would otherwise be re-applied on top of it.
+    snapshotLock.lock();
+    try {
+      // Local storage is not changed through transactions when restoring a snapshot, so the next
+      // snapshot must be a full snapshot.
+      deltaBaseAppended = false;
+      streamManager.snapshot(snapshot, streamManager.markSnapshot());
+    } finally {
+      snapshotLock.unlock();
+    }
   }
 
   private <T, E extends Exception> T doInTransaction(final MutateWork<T, E> work)
@@ -624,18 +1197,24 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
 
     // The log stream transaction has already been set up so we just need to delegate with our
     // store provider so any mutations performed by work get logged.
-    if (transaction != null) {
+    if (transaction.get() != null) {
       return work.apply(writeAheadStorage);
     }
 
-    transaction = streamManager.startTransaction();
+    StreamTransaction logTransaction = groupCommitter == null
+        ? streamManager.startTransaction()
+        : groupCommitter.startTransaction();
+    final StreamTransaction newTransaction = deltaTracker.isPresent()
+        ? deltaTracker.get().track(logTransaction)
+        : logTransaction;
+    transaction.set(newTransaction);
     try {
       return writeBehindStorage.write(new MutateWork<T, E>() {
         @Override
         public T apply(MutableStoreProvider unused) throws E {
           T result = work.apply(writeAheadStorage);
           try {
-            transaction.commit();
+            newTransaction.commit();
           } catch (CodingException e) {
             throw new IllegalStateException(
                 "Problem encoding transaction operations to the log stream", e);
@@ -647,26 +1226,49 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
         }
       });
     } finally {
-      transaction = null;
+      transaction.remove();
     }
   }
 
   @Override
   public <T, E extends Exception> T write(final MutateWork<T, E> work) throws StorageException, E {
     long waitStart = System.nanoTime();
-    writeLock.lock();
+    boolean outermost = writeLock.lock(work.getJobScope());
+    // When group committing, the outermost write waits for everything it may have observed in
+    // local storage to reach the log, but does so without blocking other writers.  Side-effects of
+    // the write are held until then.
+    boolean deferCommit = groupCommitter != null && outermost;
+    T result;
+    long awaitCommitted = 0;
+    List<Runnable> sideEffects = ImmutableList.of();
     try {
+      if (deferCommit) {
+        postCommitQueue.begin();
+      }
       writerWaitStats.accumulate(System.nanoTime() - waitStart);
       // We don't want to use the log when recovering from it, we just want to update the underlying
       // store - so pass mutations straight through to the underlying storage.
-      if (!recovered) {
-        return writeBehindStorage.write(work);
+      if (recovered) {
+        result = doInTransaction(work);
+      } else {
+        result = writeBehindStorage.write(work);
       }
-
-      return doInTransaction(work);
     } finally {
+      if (deferCommit) {
+        awaitCommitted = groupCommitter.lastCommitted();
+        sideEffects = postCommitQueue.end();
+      }
       writeLock.unlock();
     }
+
+    // Side-effects are discarded if the write fails or does not become durable.
+    if (awaitCommitted > 0) {
+      groupCommitter.awaitDurable(awaitCommitted);
+    }
+    for (Runnable sideEffect : sideEffects) {
+      sideEffect.run();
+    }
+    return result;
   }
 
   @Override
@@ -699,11 +1301,101 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
    */
   public static class Settings {
     private final Amount<Long, Time> shutdownGracePeriod;
-    private final Amount<Long, Time> snapshotInterval;
+    private final SnapshotPolicy snapshotPolicy;
+    private final Optional<Amount<Long, Time>> groupCommitWindow;
+    private final int jobLockStripes;
+    private final int fullSnapshotInterval;
+    private final Optional<Amount<Long, Time>> standbyPollInterval;
+    private final boolean taskTransitionOps;
 
     public Settings(Amount<Long, Time> shutdownGracePeriod, Amount<Long, Time> snapshotInterval) {
+      this(shutdownGracePeriod, snapshotInterval, Optional.<Amount<Long, Time>>absent());
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        Amount<Long, Time> snapshotInterval,
+        Optional<Amount<Long, Time>> groupCommitWindow) {
+
+      this(shutdownGracePeriod, snapshotInterval, groupCommitWindow, 0);
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        Amount<Long, Time> snapshotInterval,
+        Optional<Amount<Long, Time>> groupCommitWindow,
+        int jobLockStripes) {
+
+      this(shutdownGracePeriod, snapshotInterval, groupCommitWindow, jobLockStripes, 1);
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        Amount<Long, Time> snapshotInterval,
+        Optional<Amount<Long, Time>> groupCommitWindow,
+        int jobLockStripes,
+        int fullSnapshotInterval) {
+
+      this(
+          shutdownGracePeriod,
+          snapshotInterval,
+          groupCommitWindow,
+          jobLockStripes,
+          fullSnapshotInterval,
+          Optional.<Amount<Long, Time>>absent());
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        Amount<Long, Time> snapshotInterval,
+        Optional<Amount<Long, Time>> groupCommitWindow,
+        int jobLockStripes,
+        int fullSnapshotInterval,
+        Optional<Amount<Long, Time>> standbyPollInterval) {
+
+      this(
+          shutdownGracePeriod,
+          SnapshotPolicy.fixed(snapshotInterval),
+          groupCommitWindow,
+          jobLockStripes,
+          fullSnapshotInterval,
+          standbyPollInterval);
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        SnapshotPolicy snapshotPolicy,
+        Optional<Amount<Long, Time>> groupCommitWindow,
+        int jobLockStripes,
+        int fullSnapshotInterval,
+        Optional<Amount<Long, Time>> standbyPollInterval) {
+
+      this(
+          shutdownGracePeriod,
+          snapshotPolicy,
+          groupCommitWindow,
+          jobLockStripes,
+          fullSnapshotInterval,
+          standbyPollInterval,
+          false);
+    }
+
+    public Settings(
+        Amount<Long, Time> shutdownGracePeriod,
+        SnapshotPolicy snapshotPolicy,
+        Optional<Amount<Long, Time>> groupCommitWindow,
+        int jobLockStripes,
+        int fullSnapshotInterval,
+        Optional<Amount<Long, Time>> standbyPollInterval,
+        boolean taskTransitionOps) {
+
       this.shutdownGracePeriod = requireNonNull(shutdownGracePeriod);
-      this.snapshotInterval = requireNonNull(snapshotInterval);
+      this.snapshotPolicy = requireNonNull(snapshotPolicy);
+      this.groupCommitWindow = requireNonNull(groupCommitWindow);
+      this.jobLockStripes = jobLockStripes;
+      this.fullSnapshotInterval = fullSnapshotInterval;
+      this.standbyPollInterval = requireNonNull(standbyPollInterval);
+      this.taskTransitionOps = taskTransitionOps;
     }
 
     public Amount<Long, Time> getShutdownGracePeriod() {
@@ -711,7 +1403,65 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
     }
 
     public Amount<Long, Time> getSnapshotInterval() {
-      return snapshotInterval;
+      return snapshotPolicy.getMaxInterval();
+    }
+
+    /**
+     * Gets the policy that decides when snapshots are taken.
+     *
+     * @return The snapshot policy.
+     */
+    public SnapshotPolicy getSnapshotPolicy() {
+      return snapshotPolicy;
+    }
+
+    /**
+     * Gets the time to wait for transactions to join a commit group, if group commit is enabled.
+     *
+     * @return The group commit window, or absent if each transaction is committed individually.
+     */
+    public Optional<Amount<Long, Time>> getGroupCommitWindow() {
+      return groupCommitWindow;
+    }
+
+    /**
+     * Gets the number of striped locks that allow writes scoped to different jobs to proceed
+     * concurrently.
+     *
+     * @return The number of job lock stripes, or zero if all writes are serialized.
+     */
+    public int getJobLockStripes() {
+      return jobLockStripes;
+    }
+
+    /**
+     * Gets the number of snapshots per full snapshot.  Snapshots in between full snapshots only
+     * contain the changes since the previous snapshot.
+     *
+     * @return The full snapshot interval, where one indicates that every snapshot is full.
+     */
+    public int getFullSnapshotInterval() {
+      return fullSnapshotInterval;
+    }
+
+    /**
+     * Gets the time between replays of the log into local storage while standing by to become the
+     * leader, if standing by warm is enabled.
+     *
+     * @return The standby poll interval, or absent if the log is only replayed when elected.
+     */
+    public Optional<Amount<Long, Time>> getStandbyPollInterval() {
+      return standbyPollInterval;
+    }
+
+    /**
+     * Gets whether task state transitions may be logged as compact transition ops rather than
+     * full copies of the tasks.
+     *
+     * @return {@code true} if transition ops may be written.
+     */
+    public boolean isTaskTransitionOpsEnabled() {
+      return taskTransitionOps;
     }
   }
 }
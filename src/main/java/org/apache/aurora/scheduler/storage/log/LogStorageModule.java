@@ -13,9 +13,12 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.io.File;
+
 import javax.inject.Singleton;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.inject.PrivateModule;
@@ -23,16 +26,26 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.NotNegative;
+import com.twitter.common.args.constraints.Positive;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
 import com.twitter.common.quantity.Time;
+import com.twitter.common.quantity.Unit;
 
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
 import org.apache.aurora.scheduler.storage.CallOrderEnforcingStorage;
 import org.apache.aurora.scheduler.storage.DistributedSnapshotStore;
+import org.apache.aurora.scheduler.storage.PostCommitExecutor;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.NonVolatileStorage;
 import org.apache.aurora.scheduler.storage.log.LogManager.DeduplicateSnapshots;
+import org.apache.aurora.scheduler.storage.log.LogManager.DeflateThreads;
+import org.apache.aurora.scheduler.storage.log.LogManager.LogEntryEncoding;
 import org.apache.aurora.scheduler.storage.log.LogManager.MaxEntrySize;
+import org.apache.aurora.scheduler.storage.log.LogManager.RecoveryThreads;
+import org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCompression;
 import org.apache.aurora.scheduler.storage.log.LogStorage.Settings;
 
 import static org.apache.aurora.scheduler.storage.log.EntrySerializer.EntrySerializerImpl;
@@ -53,10 +66,86 @@ public class LogStorageModule extends PrivateModule {
 
   @CmdLine(name = "dlog_snapshot_interval",
            help = "Specifies the frequency at which snapshots of local storage are taken and "
-                  + "written to the log.")
+                  + "written to the log.  When snapshots are triggered by log volume, this is the "
+                  + "maximum time between snapshots.")
   private static final Arg<Amount<Long, Time>> SNAPSHOT_INTERVAL =
       Arg.create(Amount.of(1L, Time.HOURS));
 
+  @CmdLine(name = "dlog_min_snapshot_interval",
+           help = "When snapshots are triggered by log volume, the minimum time between "
+                  + "snapshots.")
+  private static final Arg<Amount<Long, Time>> MIN_SNAPSHOT_INTERVAL =
+      Arg.create(Amount.of(1L, Time.MINUTES));
+
+  @CmdLine(name = "dlog_snapshot_max_bytes",
+           help = "Take a snapshot once this much data has been written to the log since the "
+                  + "last snapshot.  Zero disables this trigger.")
+  private static final Arg<Amount<Long, Data>> SNAPSHOT_MAX_BYTES =
+      Arg.create(Amount.of(0L, Data.BYTES));
+
+  @NotNegative
+  @CmdLine(name = "dlog_snapshot_max_transactions",
+           help = "Take a snapshot once this many transactions have been written to the log "
+                  + "since the last snapshot.  Zero disables this trigger.")
+  private static final Arg<Integer> SNAPSHOT_MAX_TRANSACTIONS = Arg.create(0);
+
+  @CmdLine(name = "dlog_snapshot_max_replay_time",
+           help = "Take a snapshot once the log written since the last snapshot is estimated to "
+                  + "take this long to replay, based on the rate at which the log was last "
+                  + "recovered.  Bounds the time to recover from the log.  Zero disables this "
+                  + "trigger.")
+  private static final Arg<Amount<Long, Time>> SNAPSHOT_MAX_REPLAY_TIME =
+      Arg.create(Amount.of(0L, Time.SECONDS));
+
+  @Positive
+  @CmdLine(name = "dlog_full_snapshot_interval",
+           help = "Number of snapshots per full snapshot of local storage.  Snapshots in between "
+                  + "only contain the changes since the previous snapshot, and the log is only "
+                  + "truncated by full snapshots.  Values greater than one write log entries that "
+                  + "older schedulers cannot read, so should only be used once all schedulers "
+                  + "support snapshot deltas.")
+  private static final Arg<Integer> FULL_SNAPSHOT_INTERVAL = Arg.create(1);
+
+  @CmdLine(name = "dlog_group_commit",
+           help = "Coalesce concurrently committed storage transactions into a single log entry. "
+                  + "Storage writes are applied locally before their group is appended to the "
+                  + "log, with side-effects held until the append completes.  A failed append "
+                  + "renders storage unusable until failover.")
+  private static final Arg<Boolean> GROUP_COMMIT = Arg.create(false);
+
+  @CmdLine(name = "dlog_group_commit_window",
+           help = "When group commit is enabled, the amount of time to wait for more transactions "
+                  + "to join a group before appending it to the log.")
+  private static final Arg<Amount<Long, Time>> GROUP_COMMIT_WINDOW =
+      Arg.create(Amount.of(1L, Time.MILLISECONDS));
+
+  @CmdLine(name = "dlog_warm_standby",
+           help = "While not the leader, periodically replay the log entries appended by the "
+                  + "leader into local storage, so that only the most recent entries must be "
+                  + "replayed when elected.  Reduces failover time at the cost of keeping stored "
+                  + "state in memory on every scheduler.")
+  private static final Arg<Boolean> WARM_STANDBY = Arg.create(false);
+
+  @CmdLine(name = "dlog_warm_standby_poll_interval",
+           help = "When warm standby is enabled, the amount of time between replays of new log "
+                  + "entries.")
+  private static final Arg<Amount<Long, Time>> WARM_STANDBY_POLL_INTERVAL =
+      Arg.create(Amount.of(1L, Time.SECONDS));
+
+  @NotNegative
+  @CmdLine(name = "dlog_job_lock_stripes",
+           help = "Number of striped per-job storage write locks.  When positive, storage writes "
+                  + "confined to individual jobs (such as task state changes, job update "
+                  + "evaluation and task kills) may proceed concurrently with writes to other "
+                  + "jobs.  Zero serializes all storage writes.")
+  private static final Arg<Integer> JOB_LOCK_STRIPES = Arg.create(0);
+
+  @CmdLine(name = "dlog_task_transition_ops",
+           help = "Log task state transitions as compact deltas rather than full copies of the "
+                  + "tasks.  Transition entries can not be read by older schedulers, so this "
+                  + "should only be enabled once all schedulers support them.")
+  private static final Arg<Boolean> TASK_TRANSITION_OPS = Arg.create(false);
+
   @CmdLine(name = "dlog_max_entry_size",
            help = "Specifies the maximum entry size to append to the log. Larger entries will be "
                   + "split across entry Frames.")
@@ -64,6 +153,13 @@ public class LogStorageModule extends PrivateModule {
   public static final Arg<Amount<Integer, Data>> MAX_LOG_ENTRY_SIZE =
       Arg.create(Amount.of(512, Data.KB));
 
+  @CmdLine(name = "dlog_entry_encoding",
+           help = "Thrift encoding used to write log entries.  COMPACT entries are smaller and "
+                  + "faster to decode than BINARY entries, but can not be read by older "
+                  + "schedulers, so should only be used once all schedulers support them.  Entries "
+                  + "in either encoding are always readable.")
+  private static final Arg<Encoding> LOG_ENTRY_ENCODING = Arg.create(Encoding.BINARY);
+
   @CmdLine(name = "deduplicate_snapshots",
       help = "Write snapshots in deduplicated format. For details and backwards compatibility "
           + "concerns see docs/scheduler-storage.md.")
@@ -72,23 +168,118 @@ public class LogStorageModule extends PrivateModule {
   @CmdLine(name = "deflate_snapshots", help = "Whether snapshots should be deflate-compressed.")
   private static final Arg<Boolean> DEFLATE_SNAPSHOTS = Arg.create(true);
 
+  @CmdLine(name = "snapshot_compression_codec",
+      help = "Codec used to compress snapshots when deflate_snapshots is enabled.  LZ4 compresses "
+          + "and decompresses considerably faster than DEFLATE at a lower compression ratio.  "
+          + "Codecs other than DEFLATE write log entries that older schedulers cannot read, so "
+          + "should only be used once all schedulers support them.")
+  private static final Arg<Compression> SNAPSHOT_COMPRESSION = Arg.create(Compression.DEFLATE);
+
+  @NotNegative
+  @CmdLine(name = "deflate_snapshot_threads",
+      help = "Number of threads used to compress blocks of a snapshot concurrently when "
+          + "deflate_snapshots is enabled.  When zero, snapshots are compressed on the writing "
+          + "thread.")
+  private static final Arg<Integer> DEFLATE_SNAPSHOT_THREADS = Arg.create(4);
+
+  @NotNegative
+  @CmdLine(name = "dlog_recovery_threads",
+      help = "Number of threads used to decode, inflate and reduplicate log entries while "
+          + "recovering from the log.  When zero, entries are decoded on the recovering thread.")
+  private static final Arg<Integer> RECOVERY_THREADS = Arg.create(4);
+
+  @CmdLine(name = "dlog_checkpoint_file",
+      help = "Local file to save a checkpoint of storage to after each full snapshot.  When set, "
+          + "the scheduler restores the checkpoint when starting and only reads the log entries "
+          + "written after it, falling back to reading the whole log if the checkpoint is not "
+          + "usable.  Checkpoint entries are empty transactions to older schedulers.")
+  private static final Arg<File> CHECKPOINT_FILE = Arg.create(null);
+
+  private final Optional<Settings> settings;
+  private final Optional<Integer> recoveryThreads;
+
+  public LogStorageModule() {
+    this.settings = Optional.absent();
+    this.recoveryThreads = Optional.absent();
+  }
+
+  /**
+   * Creates a module that uses the provided settings rather than those specified on the command
+   * line.
+   *
+   * @param settings Log storage settings.
+   */
+  @VisibleForTesting
+  public LogStorageModule(Settings settings) {
+    this.settings = Optional.of(settings);
+    this.recoveryThreads = Optional.absent();
+  }
+
+  /**
+   * Creates a module that uses the provided settings and number of recovery threads rather than
+   * those specified on the command line.
+   *
+   * @param settings Log storage settings.
+   * @param recoveryThreads Number of threads used to decode log entries during recovery.
+   */
+  @VisibleForTesting
+  public LogStorageModule(Settings settings, int recoveryThreads) {
+    this.settings = Optional.of(settings);
+    this.recoveryThreads = Optional.of(recoveryThreads);
+  }
+
   @Override
   protected void configure() {
-    bind(Settings.class)
-        .toInstance(new Settings(SHUTDOWN_GRACE_PERIOD.get(), SNAPSHOT_INTERVAL.get()));
+    if (settings.isPresent()) {
+      bind(Settings.class).toInstance(settings.get());
+    } else {
+      bind(Settings.class).toInstance(new Settings(
+          SHUTDOWN_GRACE_PERIOD.get(),
+          new SnapshotPolicy(
+              MIN_SNAPSHOT_INTERVAL.get(),
+              SNAPSHOT_INTERVAL.get(),
+              positive(SNAPSHOT_MAX_BYTES.get()),
+              SNAPSHOT_MAX_TRANSACTIONS.get() > 0
+                  ? Optional.of(SNAPSHOT_MAX_TRANSACTIONS.get())
+                  : Optional.<Integer>absent(),
+              positive(SNAPSHOT_MAX_REPLAY_TIME.get())),
+          GROUP_COMMIT.get()
+              ? Optional.of(GROUP_COMMIT_WINDOW.get())
+              : Optional.<Amount<Long, Time>>absent(),
+          JOB_LOCK_STRIPES.get(),
+          FULL_SNAPSHOT_INTERVAL.get(),
+          WARM_STANDBY.get()
+              ? Optional.of(WARM_STANDBY_POLL_INTERVAL.get())
+              : Optional.<Amount<Long, Time>>absent(),
+          TASK_TRANSITION_OPS.get()));
+    }
 
     bind(new TypeLiteral<Amount<Integer, Data>>() { }).annotatedWith(MaxEntrySize.class)
         .toInstance(MAX_LOG_ENTRY_SIZE.get());
     bind(LogManager.class).in(Singleton.class);
     bindConstant().annotatedWith(DeduplicateSnapshots.class).to(DEDUPLICATE_SNAPSHOTS.get());
     bindConstant().annotatedWith(DeflateSnapshots.class).to(DEFLATE_SNAPSHOTS.get());
+    bindConstant().annotatedWith(DeflateThreads.class).to(DEFLATE_SNAPSHOT_THREADS.get());
+    bind(Compression.class).annotatedWith(SnapshotCompression.class)
+        .toInstance(SNAPSHOT_COMPRESSION.get());
+    bind(Encoding.class).annotatedWith(LogEntryEncoding.class)
+        .toInstance(LOG_ENTRY_ENCODING.get());
+    bindConstant().annotatedWith(RecoveryThreads.class)
+        .to(recoveryThreads.or(RECOVERY_THREADS.get()));
+    bind(new TypeLiteral<Optional<CheckpointFile>>() { }).toInstance(
+        CHECKPOINT_FILE.get() == null
+            ? Optional.<CheckpointFile>absent()
+            : Optional.of(new CheckpointFile(CHECKPOINT_FILE.get())));
     bind(LogStorage.class).in(Singleton.class);
+    bind(PostCommitQueue.class).in(Singleton.class);
+    bind(PostCommitExecutor.class).to(PostCommitQueue.class);
 
     install(CallOrderEnforcingStorage.wrappingModule(LogStorage.class));
     bind(DistributedSnapshotStore.class).to(LogStorage.class);
     expose(Storage.class);
     expose(NonVolatileStorage.class);
     expose(DistributedSnapshotStore.class);
+    expose(PostCommitExecutor.class);
 
     bind(EntrySerializer.class).to(EntrySerializerImpl.class);
     // TODO(ksweeney): We don't need a cryptographic checksum here - assess performance of MD5
@@ -101,4 +292,8 @@ public class LogStorageModule extends PrivateModule {
         .implement(StreamManager.class, StreamManagerImpl.class)
         .build(StreamManagerFactory.class));
   }
+
+  private static <U extends Unit<U>> Optional<Amount<Long, U>> positive(Amount<Long, U> amount) {
+    return amount.getValue() > 0 ? Optional.of(amount) : Optional.<Amount<Long, U>>absent();
+  }
 }
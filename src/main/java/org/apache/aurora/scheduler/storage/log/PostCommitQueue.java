@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.aurora.scheduler.storage.PostCommitExecutor;
+
+/**
+ * A post-commit executor that holds side-effects submitted while the calling thread is within a
+ * log storage write operation, so that they may be executed once the operation is durable.
+ */
+class PostCommitQueue implements PostCommitExecutor {
+  private final ThreadLocal<List<Runnable>> pending = new ThreadLocal<>();
+
+  /**
+   * Starts holding side-effects submitted by the calling thread.
+   */
+  void begin() {
+    Preconditions.checkState(pending.get() == null, "Side-effects are already being held.");
+    pending.set(Lists.<Runnable>newArrayList());
+  }
+
+  /**
+   * Stops holding side-effects submitted by the calling thread.
+   *
+   * @return The side-effects held since {@link #begin()}, in submission order.
+   */
+  List<Runnable> end() {
+    List<Runnable> sideEffects = pending.get();
+    pending.remove();
+    return sideEffects == null ? ImmutableList.<Runnable>of() : sideEffects;
+  }
+
+  @Override
+  public void execute(Runnable sideEffect) {
+    List<Runnable> sideEffects = pending.get();
+    if (sideEffects == null) {
+      sideEffect.run();
+    } else {
+      sideEffects.add(sideEffect);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.QuotaConfiguration;
+import org.apache.aurora.gen.storage.SchedulerMetadata;
+import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
+import org.apache.aurora.gen.storage.StoredCronJob;
+import org.apache.aurora.gen.storage.TaskTransition;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.log.Log;
+import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
+import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IResourceAggregate;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks the stored entities changed by committed transactions, so that a snapshot may be taken
+ * as a delta against the previous one.  Tasks, cron jobs, quotas, host attributes and the
+ * framework ID are tracked as dirty-sets of keys, and captured at their current values.  Lock and
+ * job update operations are retained in commit order instead, since their stores do not support
+ * replacing individual entities.
+ *
+ * <p>Transactions are committed while holding the storage write lock, which may be shared by
+ * writers to disjoint jobs, so the tracker is thread-safe.
+ */
+class SnapshotDeltaTracker {
+
+  private final Set<String> taskIds = Sets.newHashSet();
+  private final Set<IJobKey> cronJobs = Sets.newHashSet();
+  private final Set<String> quotaRoles = Sets.newHashSet();
+  private final Set<String> hosts = Sets.newHashSet();
+  private boolean frameworkIdChanged = false;
+  private final List<Op> orderedOps = Lists.newArrayList();
+
+  /**
+   * Wraps a transaction to record the ops it contains once it is committed.
+   *
+   * @param delegate Transaction to wrap.
+   * @return A transaction that records its ops when committed.
+   */
+  StreamTransaction track(final StreamTransaction delegate) {
+    requireNonNull(delegate);
+    return new StreamTransaction() {
+      private final List<Op> ops = Lists.newArrayList();
+
+      @Override
+      public Log.Position commit() throws CodingException {
+        Log.Position position = delegate.commit();
+        record(ops);
+        return position;
+      }
+
+      @Override
+      public void add(Op op) {
+        delegate.add(op);
+        ops.add(op);
+      }
+    };
+  }
+
+  /**
+   * Records committed ops.
+   *
+   * @param ops Ops that were committed.
+   */
+  synchronized void record(Iterable<Op> ops) {
+    for (Op op : ops) {
+      switch (op.getSetField()) {
+        case SAVE_FRAMEWORK_ID:
+          frameworkIdChanged = true;
+          break;
+
+        case SAVE_CRON_JOB:
+          cronJobs.add(IJobKey.build(op.getSaveCronJob().getJobConfig().getKey()));
+          break;
+
+        case REMOVE_JOB:
+          cronJobs.add(IJobKey.build(op.getRemoveJob().getJobKey()));
+          break;
+
+        case SAVE_TASKS:
+          for (ScheduledTask task : op.getSaveTasks().getTasks()) {
+            taskIds.add(task.getAssignedTask().getTaskId());
+          }
+          break;
+
+        case REMOVE_TASKS:
+          taskIds.addAll(op.getRemoveTasks().getTaskIds());
+          break;
+
+        case REWRITE_TASK:
+          taskIds.add(op.getRewriteTask().getTaskId());
+          break;
+
+        case TRANSITION_TASKS:
+          for (TaskTransition transition : op.getTransitionTasks().getTransitions()) {
+            taskIds.add(transition.getTaskId());
+          }
+          break;
+
+        case SAVE_QUOTA:
+          quotaRoles.add(op.getSaveQuota().getRole());
+          break;
+
+        case REMOVE_QUOTA:
+          quotaRoles.add(op.getRemoveQuota().getRole());
+          break;
+
+        case SAVE_HOST_ATTRIBUTES:
+          hosts.add(op.getSaveHostAttributes().getHostAttributes().getHost());
+          break;
+
+        case SAVE_LOCK:
+        case REMOVE_LOCK:
+        case SAVE_JOB_UPDATE:
+        case SAVE_JOB_UPDATE_EVENT:
+        case SAVE_JOB_INSTANCE_UPDATE_EVENT:
+        case PRUNE_JOB_UPDATE_HISTORY:
+          orderedOps.add(op);
+          break;
+
+        default:
+          throw new IllegalArgumentException("Unhandled op type " + op.getSetField());
+      }
+    }
+  }
+
+  /**
+   * Discards all changes recorded so far.  Must be called while holding the storage write lock
+   * exclusively, when capturing a full snapshot.
+   */
+  synchronized void reset() {
+    taskIds.clear();
+    cronJobs.clear();
+    quotaRoles.clear();
+    hosts.clear();
+    frameworkIdChanged = false;
+    orderedOps.clear();
+  }
+
+  /**
+   * Captures the current values of all entities changed since the tracker was last captured or
+   * reset, and resets the tracker.  Like {@link SnapshotStoreImpl#captureSnapshot()}, this only
+   * retains immutable stored state, and must be called while holding the storage write lock
+   * exclusively.
+   *
+   * @param store Store to capture changed entities from.
+   * @return A supplier of the delta, which may be invoked without holding the write lock.
+   */
+  synchronized Supplier<SnapshotDelta> capture(StoreProvider store) {
+    final Set<IScheduledTask> tasks = taskIds.isEmpty()
+        ? ImmutableSet.<IScheduledTask>of()
+        : ImmutableSet.copyOf(store.getTaskStore().fetchTasks(Query.taskScoped(taskIds)));
+    final Set<String> removedTaskIds =
+        ImmutableSet.copyOf(Sets.difference(taskIds, Tasks.ids(tasks)));
+
+    ImmutableSet.Builder<IJobConfiguration> jobs = ImmutableSet.builder();
+    ImmutableSet.Builder<IJobKey> removedJobs = ImmutableSet.builder();
+    for (IJobKey jobKey : cronJobs) {
+      Optional<IJobConfiguration> job = store.getCronJobStore().fetchJob(jobKey);
+      if (job.isPresent()) {
+        jobs.add(job.get());
+      } else {
+        removedJobs.add(jobKey);
+      }
+    }
+
+    ImmutableMap.Builder<String, IResourceAggregate> quotas = ImmutableMap.builder();
+    ImmutableSet.Builder<String> removedQuotas = ImmutableSet.builder();
+    for (String role : quotaRoles) {
+      Optional<IResourceAggregate> quota = store.getQuotaStore().fetchQuota(role);
+      if (quota.isPresent()) {
+        quotas.put(role, quota.get());
+      } else {
+        removedQuotas.add(role);
+      }
+    }
+
+    ImmutableSet.Builder<IHostAttributes> attributes = ImmutableSet.builder();
+    for (String host : hosts) {
+      attributes.addAll(store.getAttributeStore().getHostAttributes(host).asSet());
+    }
+
+    final Optional<String> frameworkId = frameworkIdChanged
+        ? store.getSchedulerStore().fetchFrameworkId()
+        : Optional.<String>absent();
+    final Set<IJobConfiguration> changedJobs = jobs.build();
+    final Set<IJobKey> removedJobKeys = removedJobs.build();
+    final Map<String, IResourceAggregate> changedQuotas = quotas.build();
+    final Set<String> removedQuotaRoles = removedQuotas.build();
+    final Set<IHostAttributes> changedAttributes = attributes.build();
+    final List<Op> ops = ImmutableList.copyOf(orderedOps);
+    reset();
+
+    return new Supplier<SnapshotDelta>() {
+      @Override
+      public SnapshotDelta get() {
+        ImmutableSet.Builder<StoredCronJob> storedJobs = ImmutableSet.builder();
+        for (IJobConfiguration job : changedJobs) {
+          storedJobs.add(new StoredCronJob(job.newBuilder()));
+        }
+        ImmutableSet.Builder<QuotaConfiguration> quotaConfigurations = ImmutableSet.builder();
+        for (Map.Entry<String, IResourceAggregate> quota : changedQuotas.entrySet()) {
+          quotaConfigurations.add(
+              new QuotaConfiguration(quota.getKey(), quota.getValue().newBuilder()));
+        }
+
+        Snapshot changed = new Snapshot()
+            .setTasks(IScheduledTask.toBuildersSet(tasks))
+            .setCronJobs(storedJobs.build())
+            .setQuotaConfigurations(quotaConfigurations.build())
+            .setHostAttributes(IHostAttributes.toBuildersSet(changedAttributes));
+        if (frameworkId.isPresent()) {
+          changed.setSchedulerMetadata(new SchedulerMetadata().setFrameworkId(frameworkId.get()));
+        }
+
+        return new SnapshotDelta()
+            .setChanged(changed)
+            .setRemovedTaskIds(removedTaskIds)
+            .setRemovedCronJobs(IJobKey.toBuildersSet(removedJobKeys))
+            .setRemovedQuotaRoles(removedQuotaRoles)
+            .setOps(ops);
+      }
+    };
+  }
+}
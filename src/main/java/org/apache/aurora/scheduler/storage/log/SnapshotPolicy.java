@@ -0,0 +1,144 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decides when a snapshot of storage is due.
+ *
+ * <p>A fixed policy snapshots at a regular interval regardless of how much was written to the log.
+ * An adaptive policy snapshots once the log entries written since the last snapshot exceed a
+ * number of bytes, a number of transactions, or an estimated time to replay them, which bounds
+ * the time to recover from the log while traffic is heavy.  Adaptive snapshots are never taken
+ * more often than a minimum interval, and are taken at least every maximum interval unless
+ * nothing was written to the log since the last snapshot.
+ */
+public final class SnapshotPolicy {
+  private final Amount<Long, Time> minInterval;
+  private final Amount<Long, Time> maxInterval;
+  private final Optional<Amount<Long, Data>> maxBytes;
+  private final Optional<Integer> maxTransactions;
+  private final Optional<Amount<Long, Time>> maxReplayTime;
+
+  /**
+   * Creates a snapshot policy.
+   *
+   * @param minInterval Minimum time between adaptive snapshots.
+   * @param maxInterval Maximum time between snapshots, where zero disables snapshots.
+   * @param maxBytes Bytes written to the log since the last snapshot that make a snapshot due.
+   * @param maxTransactions Transactions written to the log since the last snapshot that make a
+   *     snapshot due.
+   * @param maxReplayTime Estimated time to replay the log entries written since the last snapshot
+   *     that makes a snapshot due.
+   */
+  public SnapshotPolicy(
+      Amount<Long, Time> minInterval,
+      Amount<Long, Time> maxInterval,
+      Optional<Amount<Long, Data>> maxBytes,
+      Optional<Integer> maxTransactions,
+      Optional<Amount<Long, Time>> maxReplayTime) {
+
+    this.minInterval = requireNonNull(minInterval);
+    this.maxInterval = requireNonNull(maxInterval);
+    this.maxBytes = requireNonNull(maxBytes);
+    this.maxTransactions = requireNonNull(maxTransactions);
+    this.maxReplayTime = requireNonNull(maxReplayTime);
+    Preconditions.checkArgument(
+        minInterval.getValue() >= 0,
+        "Minimum snapshot interval may not be negative.");
+  }
+
+  /**
+   * Creates a policy that snapshots at a fixed interval.
+   *
+   * @param interval Time between snapshots, where zero disables snapshots.
+   * @return A fixed snapshot policy.
+   */
+  public static SnapshotPolicy fixed(Amount<Long, Time> interval) {
+    return new SnapshotPolicy(
+        interval,
+        interval,
+        Optional.<Amount<Long, Data>>absent(),
+        Optional.<Integer>absent(),
+        Optional.<Amount<Long, Time>>absent());
+  }
+
+  /**
+   * Gets the maximum time between snapshots, which is the snapshot interval of a fixed policy.
+   *
+   * @return The maximum snapshot interval.
+   */
+  public Amount<Long, Time> getMaxInterval() {
+    return maxInterval;
+  }
+
+  boolean isEnabled() {
+    return maxInterval.getValue() > 0;
+  }
+
+  /**
+   * Checks whether snapshots are triggered by the volume of log entries, in which case
+   * {@link #isDue} must be checked periodically.  Otherwise snapshots are simply taken every
+   * {@link #getMaxInterval() maximum interval}.
+   *
+   * @return {@code true} if the policy is adaptive.
+   */
+  boolean isAdaptive() {
+    return maxBytes.isPresent() || maxTransactions.isPresent() || maxReplayTime.isPresent();
+  }
+
+  /**
+   * Checks whether an adaptive snapshot is due.
+   *
+   * @param nanosSinceSnapshot Time since the last snapshot, in nanoseconds.
+   * @param unSnapshottedBytes Bytes written to the log since the last snapshot.
+   * @param unSnapshottedTransactions Transactions written to the log since the last snapshot.
+   * @param replayNanosPerByte Estimated time to replay a byte of the log, if known.
+   * @return {@code true} if a snapshot should be taken.
+   */
+  boolean isDue(
+      long nanosSinceSnapshot,
+      long unSnapshottedBytes,
+      int unSnapshottedTransactions,
+      Optional<Double> replayNanosPerByte) {
+
+    if (unSnapshottedTransactions == 0 || nanosSinceSnapshot < minInterval.as(Time.NANOSECONDS)) {
+      return false;
+    }
+
+    if (nanosSinceSnapshot >= maxInterval.as(Time.NANOSECONDS)) {
+      return true;
+    }
+
+    if (maxBytes.isPresent() && unSnapshottedBytes >= maxBytes.get().as(Data.BYTES)) {
+      return true;
+    }
+
+    if (maxTransactions.isPresent() && unSnapshottedTransactions >= maxTransactions.get()) {
+      return true;
+    }
+
+    return maxReplayTime.isPresent()
+        && replayNanosPerByte.isPresent()
+        && unSnapshottedBytes * replayNanosPerByte.get()
+            >= maxReplayTime.get().as(Time.NANOSECONDS);
+  }
+}
@@ -14,29 +14,41 @@
 package org.apache.aurora.scheduler.storage.log;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.twitter.common.base.Closure;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.util.BuildInfo;
 import com.twitter.common.util.Clock;
 
 import org.apache.aurora.gen.HostAttributes;
-import org.apache.aurora.gen.JobInstanceUpdateEvent;
 import org.apache.aurora.gen.JobUpdateDetails;
-import org.apache.aurora.gen.JobUpdateEvent;
-import org.apache.aurora.gen.Lock;
 import org.apache.aurora.gen.storage.QuotaConfiguration;
 import org.apache.aurora.gen.storage.SchedulerMetadata;
 import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.gen.storage.StoredCronJob;
 import org.apache.aurora.gen.storage.StoredJobUpdateDetails;
-import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.AsyncUtil;
 import org.apache.aurora.scheduler.storage.JobUpdateStore;
 import org.apache.aurora.scheduler.storage.SnapshotStore;
 import org.apache.aurora.scheduler.storage.Storage;
@@ -68,186 +80,295 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
 
   private static final Logger LOG = Logger.getLogger(SnapshotStoreImpl.class.getName());
 
-  private static final Iterable<SnapshotField> SNAPSHOT_FIELDS = Arrays.asList(
+  private static final List<SnapshotField> SNAPSHOT_FIELDS = Arrays.asList(
       new SnapshotField() {
         // It's important for locks to be replayed first, since there are relations that expect
         // references to be valid on insertion.
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          snapshot.setLocks(ILock.toBuildersSet(store.getLockStore().fetchLocks()));
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Set<ILock> locks = ImmutableSet.copyOf(store.getLockStore().fetchLocks());
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              snapshot.setLocks(ILock.toBuildersSet(locks));
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          store.getLockStore().deleteLocks();
-
-          if (snapshot.isSetLocks()) {
-            for (Lock lock : snapshot.getLocks()) {
-              store.getLockStore().saveLock(ILock.build(lock));
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final Set<ILock> locks = snapshot.isSetLocks()
+              ? ILock.setFromBuilders(snapshot.getLocks())
+              : ImmutableSet.<ILock>of();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              store.getLockStore().deleteLocks();
+              for (ILock lock : locks) {
+                store.getLockStore().saveLock(lock);
+              }
             }
-          }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider storeProvider, Snapshot snapshot) {
-          snapshot.setHostAttributes(
-              IHostAttributes.toBuildersSet(storeProvider.getAttributeStore().getHostAttributes()));
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Set<IHostAttributes> attributes =
+              ImmutableSet.copyOf(store.getAttributeStore().getHostAttributes());
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              snapshot.setHostAttributes(IHostAttributes.toBuildersSet(attributes));
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          store.getAttributeStore().deleteHostAttributes();
-
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final ImmutableList.Builder<IHostAttributes> builder = ImmutableList.builder();
           if (snapshot.isSetHostAttributes()) {
             for (HostAttributes attributes : snapshot.getHostAttributes()) {
               // Prior to commit 5cf760b, the store would persist maintenance mode changes for
               // unknown hosts.  5cf760b began rejecting these, but the replicated log may still
               // contain entries with a null slave ID.
               if (attributes.isSetSlaveId()) {
-                store.getAttributeStore().saveHostAttributes(IHostAttributes.build(attributes));
+                builder.add(IHostAttributes.build(attributes));
               } else {
                 LOG.info("Dropping host attributes with no slave ID: " + attributes);
               }
             }
           }
+          final List<IHostAttributes> hostAttributes = builder.build();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              store.getAttributeStore().deleteHostAttributes();
+              for (IHostAttributes attributes : hostAttributes) {
+                store.getAttributeStore().saveHostAttributes(attributes);
+              }
+            }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          snapshot.setTasks(
-              IScheduledTask.toBuildersSet(store.getTaskStore().fetchTasks(Query.unscoped())));
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Supplier<ImmutableSet<IScheduledTask>> tasks =
+              store.getTaskStore().captureTasks();
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              snapshot.setTasks(IScheduledTask.toBuildersSet(tasks.get()));
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          store.getUnsafeTaskStore().deleteAllTasks();
-
-          if (snapshot.isSetTasks()) {
-            store.getUnsafeTaskStore().saveTasks(
-                IScheduledTask.setFromBuilders(snapshot.getTasks()));
-          }
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final Set<IScheduledTask> tasks = snapshot.isSetTasks()
+              ? IScheduledTask.setFromBuilders(snapshot.getTasks())
+              : ImmutableSet.<IScheduledTask>of();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              store.getUnsafeTaskStore().deleteAllTasks();
+              if (!tasks.isEmpty()) {
+                store.getUnsafeTaskStore().saveTasks(tasks);
+              }
+            }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          ImmutableSet.Builder<StoredCronJob> jobs = ImmutableSet.builder();
-
-          for (IJobConfiguration config : store.getCronJobStore().fetchJobs()) {
-            jobs.add(new StoredCronJob(config.newBuilder()));
-          }
-          snapshot.setCronJobs(jobs.build());
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Set<IJobConfiguration> configs =
+              ImmutableSet.copyOf(store.getCronJobStore().fetchJobs());
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              ImmutableSet.Builder<StoredCronJob> jobs = ImmutableSet.builder();
+
+              for (IJobConfiguration config : configs) {
+                jobs.add(new StoredCronJob(config.newBuilder()));
+              }
+              snapshot.setCronJobs(jobs.build());
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          store.getCronJobStore().deleteJobs();
-
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final ImmutableList.Builder<IJobConfiguration> builder = ImmutableList.builder();
           if (snapshot.isSetCronJobs()) {
             for (StoredCronJob job : snapshot.getCronJobs()) {
-              store.getCronJobStore().saveAcceptedJob(
-                  IJobConfiguration.build(job.getJobConfiguration()));
+              builder.add(IJobConfiguration.build(job.getJobConfiguration()));
             }
           }
+          final List<IJobConfiguration> jobs = builder.build();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              store.getCronJobStore().deleteJobs();
+              for (IJobConfiguration job : jobs) {
+                store.getCronJobStore().saveAcceptedJob(job);
+              }
+            }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          Properties props = new BuildInfo().getProperties();
-
-          snapshot.setSchedulerMetadata(
-                new SchedulerMetadata()
-                  .setFrameworkId(store.getSchedulerStore().fetchFrameworkId().orNull())
-                  .setRevision(props.getProperty(BuildInfo.Key.GIT_REVISION.value))
-                  .setTag(props.getProperty(BuildInfo.Key.GIT_TAG.value))
-                  .setTimestamp(props.getProperty(BuildInfo.Key.TIMESTAMP.value))
-                  .setUser(props.getProperty(BuildInfo.Key.USER.value))
-                  .setMachine(props.getProperty(BuildInfo.Key.MACHINE.value))
-                  .setVersion(CURRENT_API_VERSION));
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Optional<String> frameworkId = store.getSchedulerStore().fetchFrameworkId();
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              Properties props = new BuildInfo().getProperties();
+
+              snapshot.setSchedulerMetadata(
+                    new SchedulerMetadata()
+                      .setFrameworkId(frameworkId.orNull())
+                      .setRevision(props.getProperty(BuildInfo.Key.GIT_REVISION.value))
+                      .setTag(props.getProperty(BuildInfo.Key.GIT_TAG.value))
+                      .setTimestamp(props.getProperty(BuildInfo.Key.TIMESTAMP.value))
+                      .setUser(props.getProperty(BuildInfo.Key.USER.value))
+                      .setMachine(props.getProperty(BuildInfo.Key.MACHINE.value))
+                      .setVersion(CURRENT_API_VERSION));
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          if (snapshot.isSetSchedulerMetadata()
-              && snapshot.getSchedulerMetadata().isSetFrameworkId()) {
-            // No delete necessary here since this is a single value.
-
-            store.getSchedulerStore()
-                .saveFrameworkId(snapshot.getSchedulerMetadata().getFrameworkId());
-          }
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final Optional<String> frameworkId = snapshot.isSetSchedulerMetadata()
+              ? Optional.fromNullable(snapshot.getSchedulerMetadata().getFrameworkId())
+              : Optional.<String>absent();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              if (frameworkId.isPresent()) {
+                // No delete necessary here since this is a single value.
+                store.getSchedulerStore().saveFrameworkId(frameworkId.get());
+              }
+            }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          ImmutableSet.Builder<QuotaConfiguration> quotas = ImmutableSet.builder();
-          for (Map.Entry<String, IResourceAggregate> entry
-              : store.getQuotaStore().fetchQuotas().entrySet()) {
-
-            quotas.add(new QuotaConfiguration(entry.getKey(), entry.getValue().newBuilder()));
-          }
+        public Closure<Snapshot> capture(StoreProvider store) {
+          final Map<String, IResourceAggregate> quotas =
+              ImmutableMap.copyOf(store.getQuotaStore().fetchQuotas());
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              ImmutableSet.Builder<QuotaConfiguration> configurations = ImmutableSet.builder();
+              for (Map.Entry<String, IResourceAggregate> entry : quotas.entrySet()) {
+                configurations.add(
+                    new QuotaConfiguration(entry.getKey(), entry.getValue().newBuilder()));
+              }
 
-          snapshot.setQuotaConfigurations(quotas.build());
+              snapshot.setQuotaConfigurations(configurations.build());
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          store.getQuotaStore().deleteQuotas();
-
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final Map<String, IResourceAggregate> quotas = Maps.newLinkedHashMap();
           if (snapshot.isSetQuotaConfigurations()) {
             for (QuotaConfiguration quota : snapshot.getQuotaConfigurations()) {
-              store.getQuotaStore()
-                  .saveQuota(quota.getRole(), IResourceAggregate.build(quota.getQuota()));
+              quotas.put(quota.getRole(), IResourceAggregate.build(quota.getQuota()));
             }
           }
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              store.getQuotaStore().deleteQuotas();
+              for (Map.Entry<String, IResourceAggregate> quota : quotas.entrySet()) {
+                store.getQuotaStore().saveQuota(quota.getKey(), quota.getValue());
+              }
+            }
+          };
         }
       },
       new SnapshotField() {
         @Override
-        public void saveToSnapshot(StoreProvider store, Snapshot snapshot) {
-          snapshot.setJobUpdateDetails(store.getJobUpdateStore().fetchAllJobUpdateDetails());
+        public Closure<Snapshot> capture(StoreProvider store) {
+          // The stored details are built fresh for each fetch, so they are not shared with storage.
+          final Set<StoredJobUpdateDetails> details =
+              store.getJobUpdateStore().fetchAllJobUpdateDetails();
+          return new Closure<Snapshot>() {
+            @Override
+            public void execute(Snapshot snapshot) {
+              snapshot.setJobUpdateDetails(details);
+            }
+          };
         }
 
         @Override
-        public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          JobUpdateStore.Mutable updateStore = store.getJobUpdateStore();
-          updateStore.deleteAllUpdatesAndEvents();
-
+        public Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot) {
+          final ImmutableList.Builder<RestoredUpdate> builder = ImmutableList.builder();
           if (snapshot.isSetJobUpdateDetails()) {
             for (StoredJobUpdateDetails storedDetails : snapshot.getJobUpdateDetails()) {
-              JobUpdateDetails details = storedDetails.getDetails();
-              details.getUpdate().setSummary(
-                  Updates.backfillJobUpdateKey(
-                      IJobUpdateSummary.build(details.getUpdate().getSummary())).newBuilder());
-
-              updateStore.saveJobUpdate(
-                  IJobUpdate.build(details.getUpdate()),
-                  Optional.fromNullable(storedDetails.getLockToken()));
-
-              if (details.getUpdateEventsSize() > 0) {
-                for (JobUpdateEvent updateEvent : details.getUpdateEvents()) {
-                  updateStore.saveJobUpdateEvent(
-                      IJobUpdateKey.build(details.getUpdate().getSummary().getKey()),
-                      IJobUpdateEvent.build(updateEvent));
-                }
-              }
-
-              if (details.getInstanceEventsSize() > 0) {
-                for (JobInstanceUpdateEvent instanceEvent : details.getInstanceEvents()) {
-                  updateStore.saveJobInstanceUpdateEvent(
-                      IJobUpdateKey.build(details.getUpdate().getSummary().getKey()),
-                      IJobInstanceUpdateEvent.build(instanceEvent));
-                }
-              }
+              builder.add(new RestoredUpdate(storedDetails));
             }
           }
+          final List<RestoredUpdate> updates = builder.build();
+          return new Closure<MutableStoreProvider>() {
+            @Override
+            public void execute(MutableStoreProvider store) {
+              JobUpdateStore.Mutable updateStore = store.getJobUpdateStore();
+              updateStore.deleteAllUpdatesAndEvents();
+              for (RestoredUpdate update : updates) {
+                update.save(updateStore);
+              }
+            }
+          };
         }
       }
   );
 
+  /**
+   * A job update and its events, converted from the stored details in a snapshot.
+   */
+  private static final class RestoredUpdate {
+    private final IJobUpdate update;
+    private final Optional<String> lockToken;
+    private final IJobUpdateKey key;
+    private final List<IJobUpdateEvent> updateEvents;
+    private final List<IJobInstanceUpdateEvent> instanceEvents;
+
+    RestoredUpdate(StoredJobUpdateDetails storedDetails) {
+      JobUpdateDetails details = storedDetails.getDetails();
+      details.getUpdate().setSummary(
+          Updates.backfillJobUpdateKey(
+              IJobUpdateSummary.build(details.getUpdate().getSummary())).newBuilder());
+
+      this.update = IJobUpdate.build(details.getUpdate());
+      this.lockToken = Optional.fromNullable(storedDetails.getLockToken());
+      this.key = update.getSummary().getKey();
+      this.updateEvents = details.getUpdateEventsSize() > 0
+          ? IJobUpdateEvent.listFromBuilders(details.getUpdateEvents())
+          : ImmutableList.<IJobUpdateEvent>of();
+      this.instanceEvents = details.getInstanceEventsSize() > 0
+          ? IJobInstanceUpdateEvent.listFromBuilders(details.getInstanceEvents())
+          : ImmutableList.<IJobInstanceUpdateEvent>of();
+    }
+
+    void save(JobUpdateStore.Mutable updateStore) {
+      updateStore.saveJobUpdate(update, lockToken);
+      for (IJobUpdateEvent updateEvent : updateEvents) {
+        updateStore.saveJobUpdateEvent(key, updateEvent);
+      }
+      for (IJobInstanceUpdateEvent instanceEvent : instanceEvents) {
+        updateStore.saveJobInstanceUpdateEvent(key, instanceEvent);
+      }
+    }
+  }
+
   private final Clock clock;
   private final Storage storage;
 
@@ -260,21 +381,37 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
   @Timed("snapshot_create")
   @Override
   public Snapshot createSnapshot() {
-    // It's important to perform snapshot creation in a write lock to ensure all upstream callers
+    return captureSnapshot().get();
+  }
+
+  @Timed("snapshot_capture")
+  @Override
+  public Supplier<Snapshot> captureSnapshot() {
+    // It's important to perform snapshot capture in a write lock to ensure all upstream callers
     // are correctly synchronized (e.g. during backup creation).
-    return storage.write(new MutateWork.Quiet<Snapshot>() {
+    return storage.write(new MutateWork.Quiet<Supplier<Snapshot>>() {
       @Override
-      public Snapshot apply(MutableStoreProvider storeProvider) {
-        Snapshot snapshot = new Snapshot();
-
+      public Supplier<Snapshot> apply(MutableStoreProvider storeProvider) {
         // Capture timestamp to signify the beginning of a snapshot operation, apply after in case
         // one of the field closures is mean and tries to apply a timestamp.
-        long timestamp = clock.nowMillis();
+        final long timestamp = clock.nowMillis();
+        ImmutableList.Builder<Closure<Snapshot>> fields = ImmutableList.builder();
         for (SnapshotField field : SNAPSHOT_FIELDS) {
-          field.saveToSnapshot(storeProvider, snapshot);
+          fields.add(field.capture(storeProvider));
         }
-        snapshot.setTimestamp(timestamp);
-        return snapshot;
+        final List<Closure<Snapshot>> captured = fields.build();
+
+        return new Supplier<Snapshot>() {
+          @Override
+          public Snapshot get() {
+            Snapshot snapshot = new Snapshot();
+            for (Closure<Snapshot> field : captured) {
+              field.execute(snapshot);
+            }
+            snapshot.setTimestamp(timestamp);
+            return snapshot;
+          }
+        };
       }
     });
   }
@@ -284,21 +421,71 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
   public void applySnapshot(final Snapshot snapshot) {
     requireNonNull(snapshot);
 
+    LOG.info("Restoring snapshot.");
+    final List<Closure<MutableStoreProvider>> restores = prepareRestores(snapshot);
     storage.write(new MutateWork.NoResult.Quiet() {
       @Override
       protected void execute(MutableStoreProvider storeProvider) {
-        LOG.info("Restoring snapshot.");
-
-        for (SnapshotField field : SNAPSHOT_FIELDS) {
-          field.restoreFromSnapshot(storeProvider, snapshot);
+        for (Closure<MutableStoreProvider> restore : restores) {
+          restore.execute(storeProvider);
         }
       }
     });
   }
 
-  private interface SnapshotField {
-    void saveToSnapshot(StoreProvider storeProvider, Snapshot snapshot);
+  /**
+   * Converts the fields of a snapshot into stored entities, concurrently and without holding the
+   * storage write lock.  The stores are then written on the calling thread, in field order, since
+   * database-backed stores bind their transaction to the thread that holds the write lock.
+   */
+  private static List<Closure<MutableStoreProvider>> prepareRestores(final Snapshot snapshot) {
+    ExecutorService executor = AsyncUtil.loggingExecutor(
+        SNAPSHOT_FIELDS.size(),
+        SNAPSHOT_FIELDS.size(),
+        new LinkedBlockingQueue<Runnable>(),
+        "SnapshotRestore-%d",
+        LOG);
+    try {
+      List<Future<Closure<MutableStoreProvider>>> futures = Lists.newArrayList();
+      for (final SnapshotField field : SNAPSHOT_FIELDS) {
+        futures.add(executor.submit(new Callable<Closure<MutableStoreProvider>>() {
+          @Override
+          public Closure<MutableStoreProvider> call() {
+            return field.prepareRestore(snapshot);
+          }
+        }));
+      }
 
-    void restoreFromSnapshot(MutableStoreProvider storeProvider, Snapshot snapshot);
+      ImmutableList.Builder<Closure<MutableStoreProvider>> restores = ImmutableList.builder();
+      for (Future<Closure<MutableStoreProvider>> future : futures) {
+        restores.add(Uninterruptibles.getUninterruptibly(future));
+      }
+      return restores.build();
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private interface SnapshotField {
+    /**
+     * Captures the immutable stored state of this field.  Called while holding the storage write
+     * lock, and must not retain references to mutable storage state.
+     *
+     * @param storeProvider Store provider to capture state from.
+     * @return A closure that populates a snapshot with the captured state.
+     */
+    Closure<Snapshot> capture(StoreProvider storeProvider);
+
+    /**
+     * Converts the state of this field in a snapshot into immutable stored entities.  Called
+     * concurrently for all fields without holding the storage write lock, so it must not access
+     * storage or modify parts of the snapshot that belong to other fields.
+     *
+     * @param snapshot Snapshot to restore from.
+     * @return A closure that replaces the stored state of this field with the converted state.
+     */
+    Closure<MutableStoreProvider> prepareRestore(Snapshot snapshot);
   }
 }
@@ -0,0 +1,131 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+
+/**
+ * Controls concurrency of storage write operations.
+ *
+ * <p>By default, all writes are serialized by an exclusive global lock.  When job striping is
+ * enabled, writes that are confined to a set of jobs hold the global lock in shared mode along
+ * with a striped lock for each of their jobs.  Such writes only wait for writes to the same jobs
+ * (or jobs sharing a stripe), and for writes that are not job scoped.  Writes that are not job
+ * scoped, such as snapshots, continue to hold the global lock exclusively.
+ *
+ * <p>Locks are reentrant.  Nested writes run under the locks acquired by the outermost write on
+ * the same thread.  Within a job scoped write, nested writes must also be job scoped and may not
+ * name jobs outside the scope of the outermost write.
+ */
+class StorageWriteLock {
+
+  private final ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock();
+  private final Optional<Striped<Lock>> jobLocks;
+  private final ThreadLocal<Held> held = new ThreadLocal<>();
+
+  /**
+   * Creates a write lock.
+   *
+   * @param jobStripes Number of striped job locks, or zero to serialize all writes.
+   */
+  StorageWriteLock(int jobStripes) {
+    Preconditions.checkArgument(jobStripes >= 0, "Job lock stripes may not be negative.");
+    this.jobLocks = jobStripes == 0
+        ? Optional.<Striped<Lock>>absent()
+        : Optional.of(Striped.lock(jobStripes));
+  }
+
+  private static final class Held {
+    private final Optional<ImmutableSet<IJobKey>> jobScope;
+    private final List<Lock> locks;
+    private int depth = 1;
+
+    Held(Optional<ImmutableSet<IJobKey>> jobScope, List<Lock> locks) {
+      this.jobScope = jobScope;
+      this.locks = locks;
+    }
+  }
+
+  /**
+   * Acquires the locks for a write operation, blocking until they are available.
+   *
+   * @param jobScope Jobs the write is confined to, or absent if the write may modify any state.
+   * @return {@code true} if this is the outermost write on the calling thread.
+   */
+  boolean lock(Optional<ImmutableSet<IJobKey>> jobScope) {
+    Held current = held.get();
+    if (current != null) {
+      if (current.jobScope.isPresent()) {
+        Preconditions.checkState(
+            jobScope.isPresent(),
+            "Unscoped nested write is outside the scope of the enclosing write to jobs %s.",
+            current.jobScope.get());
+        Preconditions.checkState(
+            current.jobScope.get().containsAll(jobScope.get()),
+            "Nested write to jobs %s is outside the scope of the enclosing write.",
+            jobScope.get());
+      }
+      current.depth++;
+      return false;
+    }
+
+    if (jobLocks.isPresent() && jobScope.isPresent()) {
+      globalLock.readLock().lock();
+      // Stripes are returned in a consistent order, which prevents writers from deadlocking.
+      List<Lock> locks = Lists.newArrayList();
+      for (Lock lock : jobLocks.get().bulkGet(jobScope.get())) {
+        lock.lock();
+        locks.add(lock);
+      }
+      held.set(new Held(jobScope, locks));
+    } else {
+      globalLock.writeLock().lock();
+      held.set(new Held(Optional.<ImmutableSet<IJobKey>>absent(), ImmutableList.<Lock>of()));
+    }
+    return true;
+  }
+
+  /**
+   * Releases the locks acquired by the matching call to {@link #lock(Optional)}.
+   */
+  void unlock() {
+    Held current = held.get();
+    Preconditions.checkState(current != null, "Write lock is not held.");
+    current.depth--;
+    if (current.depth > 0) {
+      return;
+    }
+
+    held.remove();
+    for (Lock lock : Lists.reverse(current.locks)) {
+      lock.unlock();
+    }
+    if (current.jobScope.isPresent()) {
+      globalLock.readLock().unlock();
+    } else {
+      globalLock.writeLock().unlock();
+    }
+  }
+}
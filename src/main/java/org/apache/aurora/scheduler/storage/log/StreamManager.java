@@ -13,10 +13,12 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import com.google.common.base.Optional;
 import com.twitter.common.base.Closure;
 
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
 import org.apache.aurora.scheduler.log.Log;
 
 import static org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
@@ -33,7 +35,8 @@ import static org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 public interface StreamManager {
   /**
    * Reads all entries in the log stream after the given position.  If the position
-   * supplied is {@code null} then all log entries in the stream will be read.
+   * supplied is {@code null} then all log entries in the stream will be read.  Entries may be
+   * decoded concurrently, but are always handed to the reader in log order on the calling thread.
    *
    * @param reader A reader that will be handed log entries decoded from the stream.
    * @throws CodingException if there was a problem decoding a log entry from the stream.
@@ -43,6 +46,61 @@ public interface StreamManager {
   void readFromBeginning(Closure<LogEntry> reader)
       throws CodingException, InvalidPositionException, StreamAccessException;
 
+  /**
+   * Reads all entries in the log stream starting at the given position, which must be the position
+   * of an entry that is not framed, such as a {@link #markCheckpoint(long) checkpoint}.  Entries
+   * are handed to the reader as with {@link #readFromBeginning(Closure)}.
+   *
+   * @param position Position of the first entry to read.
+   * @param reader A reader that will be handed log entries decoded from the stream.
+   * @throws CodingException if there was a problem decoding a log entry from the stream.
+   * @throws InvalidPositionException if the given position is not found in the log.
+   * @throws StreamAccessException if there is a problem reading from the log.
+   */
+  void readFrom(Log.Position position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException;
+
+  /**
+   * Reads all entries in the log stream following the given position, which must be the position
+   * {@link #tail(Optional, Closure) returned} from tailing the log.  Entries are handed to the
+   * reader as with {@link #readFromBeginning(Closure)}.
+   *
+   * @param position Position of the last entry that was already read.
+   * @param reader A reader that will be handed log entries decoded from the stream.
+   * @throws CodingException if there was a problem decoding a log entry from the stream.
+   * @throws InvalidPositionException if the given position is not found in the log.
+   * @throws StreamAccessException if there is a problem reading from the log.
+   */
+  void readAfter(Log.Position position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException;
+
+  /**
+   * Reads the complete entries following the given position that are known to the local log
+   * replica, without writing to the log, so that the log may be followed while another process
+   * writes to it.  Entries are handed to the reader in log order on the calling thread.  A framed
+   * entry whose frames have not all been read yet is left to be read by the next call.
+   *
+   * @param position Position returned from the previous call, or absent to read from the
+   *     beginning of the log.
+   * @param reader A reader that will be handed log entries decoded from the stream.
+   * @return The position of the last entry handed to the reader, or {@code position} if no
+   *     entries were read.
+   * @throws CodingException if there was a problem decoding a log entry from the stream.
+   * @throws InvalidPositionException if the entries following the given position were truncated.
+   * @throws StreamAccessException if there is a problem reading from the log.
+   */
+  Optional<Log.Position> tail(Optional<Log.Position> position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException;
+
+  /**
+   * Looks up a log position from its {@link Log.Position#identity() identity}.
+   *
+   * @param identity Identity of a position in the log.
+   * @return The position with the given identity.
+   * @throws InvalidPositionException if the identity is not a valid position identity.
+   */
+  Log.Position position(byte[] identity) throws InvalidPositionException;
+
   /**
    * Truncates all entries in the log stream occuring before the given position.  The entry at the
    * given position becomes the first entry in the stream when this call completes.
@@ -73,4 +131,78 @@ public interface StreamManager {
    */
   void snapshot(Snapshot snapshot)
       throws CodingException, InvalidPositionException, StreamAccessException;
+
+  /**
+   * Appends a marker for a snapshot whose state is about to be captured.  Transactions appended
+   * after the marker and before the snapshot are re-applied on top of the snapshot when the log is
+   * read, which allows the snapshot to be built and appended without blocking storage writes.
+   *
+   * @return The position of the marker in the log.
+   * @throws CodingException if there was a problem encoding the marker.
+   * @throws StreamAccessException if there was a problem appending the marker to the log.
+   */
+  Log.Position markSnapshot() throws CodingException, StreamAccessException;
+
+  /**
+   * Appends a transaction without ops whose position identifies a checkpoint of local storage
+   * taken outside of the log.  The checkpoint reflects all transactions preceding the entry, so a
+   * reader may restore the checkpoint and {@link #readFrom(Log.Position, Closure) read from} the
+   * entry rather than reading the whole log.  The entry carries {@code checkpointId}, which the
+   * reader must match against the checkpoint before trusting the position.
+   *
+   * @param checkpointId Unique ID of the checkpoint, also saved with the checkpoint.
+   * @return The position of the checkpoint entry in the log.
+   * @throws CodingException if there was a problem encoding the entry.
+   * @throws StreamAccessException if there was a problem appending the entry to the log.
+   */
+  Log.Position markCheckpoint(long checkpointId) throws CodingException, StreamAccessException;
+
+  /**
+   * Adds a snapshot that was captured at a {@link #markSnapshot() marker} to the log, and if
+   * successful, truncates the log entries preceding the marker.
+   *
+   * @param snapshot The snapshot to add.
+   * @param marker The position of the marker appended before the snapshot state was captured.
+   * @throws CodingException if the was a problem encoding the snapshot into a log entry.
+   * @throws InvalidPositionException if there was a problem truncating before the marker.
+   * @throws StreamAccessException if there was a problem appending the snapshot to the log.
+   */
+  void snapshot(Snapshot snapshot, Log.Position marker)
+      throws CodingException, InvalidPositionException, StreamAccessException;
+
+  /**
+   * Adds the changes captured since the preceding {@link #markSnapshot() marker} to the log.
+   * Unlike a full snapshot, a delta does not truncate the log, since it is only meaningful when
+   * applied on top of the snapshots and deltas preceding it.
+   *
+   * @param delta The snapshot delta to add.
+   * @throws CodingException if the was a problem encoding the delta into a log entry.
+   * @throws StreamAccessException if there was a problem appending the delta to the log.
+   */
+  void snapshotDelta(SnapshotDelta delta) throws CodingException, StreamAccessException;
+
+  /**
+   * Gets the number of bytes appended to the log since the most recent snapshot or snapshot delta.
+   *
+   * @return Bytes appended since the last snapshot.
+   */
+  long getUnSnapshottedBytes();
+
+  /**
+   * Gets the number of transactions appended to the log since the most recent snapshot or snapshot
+   * delta.
+   *
+   * @return Transactions appended since the last snapshot.
+   */
+  int getUnSnapshottedTransactions();
+
+  /**
+   * Gets the average time taken to read, decode and apply a byte of the log the last time the
+   * stream was read from the beginning or from a position.  Since snapshots are more expensive to
+   * decode than transactions, this is a conservative estimate of the cost of replaying
+   * transactions.
+   *
+   * @return Replay time per byte in nanoseconds, or absent if no entries have been read.
+   */
+  Optional<Double> getReplayNanosPerByte();
 }
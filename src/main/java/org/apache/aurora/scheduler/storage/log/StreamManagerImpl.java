@@ -16,6 +16,13 @@ package org.apache.aurora.scheduler.storage.log;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -24,15 +31,22 @@ import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.assistedinject.Assisted;
 import com.twitter.common.base.Closure;
+import com.twitter.common.stats.SlidingStats;
 import com.twitter.common.stats.Stats;
 
 import org.apache.aurora.gen.ScheduledTask;
@@ -44,8 +58,12 @@ import org.apache.aurora.gen.storage.RemoveTasks;
 import org.apache.aurora.gen.storage.SaveHostAttributes;
 import org.apache.aurora.gen.storage.SaveTasks;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
+import org.apache.aurora.gen.storage.TaskTransition;
 import org.apache.aurora.gen.storage.Transaction;
+import org.apache.aurora.gen.storage.TransitionTasks;
 import org.apache.aurora.gen.storage.storageConstants;
+import org.apache.aurora.scheduler.base.AsyncUtil;
 import org.apache.aurora.scheduler.log.Log;
 import org.apache.aurora.scheduler.log.Log.Stream;
 
@@ -59,6 +77,7 @@ import static org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import static org.apache.aurora.scheduler.storage.log.LogManager.DeduplicateSnapshots;
 import static org.apache.aurora.scheduler.storage.log.LogManager.DeflateSnapshots;
 import static org.apache.aurora.scheduler.storage.log.LogManager.LogEntryHashFunction;
+import static org.apache.aurora.scheduler.storage.log.LogManager.RecoveryThreads;
 
 class StreamManagerImpl implements StreamManager {
   private static final Logger LOG = Logger.getLogger(StreamManagerImpl.class.getName());
@@ -66,6 +85,8 @@ class StreamManagerImpl implements StreamManager {
   private static class Vars {
     private final AtomicInteger unSnapshottedTransactions =
         Stats.exportInt("scheduler_log_un_snapshotted_transactions");
+    private final AtomicLong unSnapshottedBytes =
+        Stats.exportLong("scheduler_log_un_snapshotted_bytes");
     private final AtomicLong bytesWritten = Stats.exportLong("scheduler_log_bytes_written");
     private final AtomicLong entriesWritten = Stats.exportLong("scheduler_log_entries_written");
     private final AtomicLong badFramesRead = Stats.exportLong("scheduler_log_bad_frames_read");
@@ -74,9 +95,28 @@ class StreamManagerImpl implements StreamManager {
     private final AtomicLong deflatedEntriesRead =
         Stats.exportLong("scheduler_log_deflated_entries_read");
     private final AtomicLong snapshots = Stats.exportLong("scheduler_log_snapshots");
+    private final SlidingStats recoveryRead =
+        new SlidingStats("scheduler_log_recovery_read", "ns");
+    private final SlidingStats recoveryDecode =
+        new SlidingStats("scheduler_log_recovery_decode", "ns");
+    private final SlidingStats recoveryInflate =
+        new SlidingStats("scheduler_log_recovery_inflate", "ns");
+    private final SlidingStats recoveryReduplicate =
+        new SlidingStats("scheduler_log_recovery_reduplicate", "ns");
+    private final SlidingStats recoveryApplyWait =
+        new SlidingStats("scheduler_log_recovery_apply_wait", "ns");
+    private final SlidingStats recoveryApply =
+        new SlidingStats("scheduler_log_recovery_apply", "ns");
   }
   private final Vars vars = new Vars();
 
+  // Number of entries buffered between the read and apply stages of recovery, per decoding thread.
+  @VisibleForTesting
+  static final int RECOVERY_BUFFER_PER_THREAD = 4;
+
+  // Marks the end of the stream in the recovery pipeline.
+  private static final Future<LogEntry> END_OF_STREAM = Futures.<LogEntry>immediateFuture(null);
+
   private final Object writeMutex = new Object();
   private final Log.Stream stream;
   private final EntrySerializer entrySerializer;
@@ -84,6 +124,9 @@ class StreamManagerImpl implements StreamManager {
   private final HashFunction hashFunction;
   private final SnapshotDeduplicator snapshotDeduplicator;
   private final boolean deduplicateSnapshots;
+  private final int recoveryThreads;
+
+  private volatile Optional<Double> replayNanosPerByte = Optional.absent();
 
   @Inject
   StreamManagerImpl(
@@ -92,7 +135,8 @@ class StreamManagerImpl implements StreamManager {
       @DeflateSnapshots boolean deflateSnapshots,
       @LogEntryHashFunction HashFunction hashFunction,
       SnapshotDeduplicator snapshotDeduplicator,
-      @DeduplicateSnapshots boolean deduplicateSnapshots) {
+      @DeduplicateSnapshots boolean deduplicateSnapshots,
+      @RecoveryThreads int recoveryThreads) {
 
     this.stream = requireNonNull(stream);
     this.entrySerializer = requireNonNull(entrySerializer);
@@ -100,38 +144,275 @@ class StreamManagerImpl implements StreamManager {
     this.hashFunction = requireNonNull(hashFunction);
     this.snapshotDeduplicator = requireNonNull(snapshotDeduplicator);
     this.deduplicateSnapshots = deduplicateSnapshots;
+    Preconditions.checkArgument(recoveryThreads >= 0, "Recovery threads may not be negative.");
+    this.recoveryThreads = recoveryThreads;
   }
 
   @Override
   public void readFromBeginning(Closure<LogEntry> reader)
       throws CodingException, InvalidPositionException, StreamAccessException {
 
-    Iterator<Log.Entry> entries = stream.readAll();
+    readAndMeasure(stream.readAll(), reader);
+  }
+
+  @Override
+  public void readFrom(Log.Position position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException {
+
+    readAndMeasure(stream.readFrom(position), reader);
+  }
+
+  @Override
+  public void readAfter(Log.Position position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException {
+
+    Iterator<Log.Entry> entries = stream.readFrom(position);
+    // The entry at the position was already read.
+    if (entries.hasNext()) {
+      entries.next();
+    }
+    read(entries, reader);
+  }
+
+  @Override
+  public Optional<Log.Position> tail(Optional<Log.Position> position, Closure<LogEntry> reader)
+      throws CodingException, InvalidPositionException, StreamAccessException {
 
+    PositionTrackingIterator entries = new PositionTrackingIterator(stream.tail(position));
+    Optional<Log.Position> last = position;
     while (entries.hasNext()) {
-      LogEntry logEntry = decodeLogEntry(entries.next());
-      while (logEntry != null && isFrame(logEntry)) {
-        logEntry = tryDecodeFrame(logEntry.getFrame(), entries);
+      PendingEntry pending = readEntry(entries);
+      if (pending == null && !entries.hasNext()) {
+        // The remaining frames of this entry have not been appended yet, so it will be read again
+        // by the next call.
+        break;
+      }
+      if (pending != null) {
+        apply(reader, pending.decode());
       }
-      if (logEntry != null) {
-        if (logEntry.isSet(LogEntry._Fields.DEFLATED_ENTRY)) {
-          logEntry = Entries.inflate(logEntry);
-          vars.deflatedEntriesRead.incrementAndGet();
+      last = Optional.of(entries.lastPosition);
+    }
+    return last;
+  }
+
+  /**
+   * Tracks the position of the last entry taken from an iterator.
+   */
+  private static final class PositionTrackingIterator extends UnmodifiableIterator<Log.Entry> {
+    private final Iterator<Log.Entry> entries;
+    private Log.Position lastPosition = null;
+
+    PositionTrackingIterator(Iterator<Log.Entry> entries) {
+      this.entries = requireNonNull(entries);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return entries.hasNext();
+    }
+
+    @Override
+    public Log.Entry next() {
+      Log.Entry entry = entries.next();
+      lastPosition = entry.position();
+      return entry;
+    }
+  }
+
+  @Override
+  public Log.Position position(byte[] identity) throws InvalidPositionException {
+    return stream.position(identity);
+  }
+
+  private void readAndMeasure(Iterator<Log.Entry> entries, Closure<LogEntry> reader)
+      throws CodingException {
+
+    long bytesBefore = vars.bytesRead.get();
+    long start = System.nanoTime();
+    read(entries, reader);
+    long bytes = vars.bytesRead.get() - bytesBefore;
+    if (bytes > 0) {
+      replayNanosPerByte = Optional.of((double) (System.nanoTime() - start) / bytes);
+    }
+  }
+
+  private void read(Iterator<Log.Entry> entries, Closure<LogEntry> reader)
+      throws CodingException {
+
+    if (recoveryThreads == 0) {
+      while (entries.hasNext()) {
+        PendingEntry pending = readEntry(entries);
+        if (pending != null) {
+          apply(reader, pending.decode());
         }
+      }
+    } else {
+      readPipelined(entries, reader);
+    }
+  }
 
-        if (logEntry.isSetDeduplicatedSnapshot()) {
-          logEntry = LogEntry.snapshot(
-              snapshotDeduplicator.reduplicate(logEntry.getDeduplicatedSnapshot()));
+  /**
+   * Reads entries in a pipeline of three stages.  A single thread reads entries from the stream
+   * and reassembles framed entries, which must happen in log order.  A pool of threads then
+   * decodes, inflates and reduplicates entries concurrently, which dominates the cost of reading
+   * snapshots.  Finally, decoded entries are handed to the reader in log order on the calling
+   * thread.  At most {@link #RECOVERY_BUFFER_PER_THREAD} entries per decoding thread are buffered
+   * between the read and apply stages.
+   */
+  private void readPipelined(final Iterator<Log.Entry> entries, Closure<LogEntry> reader)
+      throws CodingException {
+
+    final BlockingQueue<Future<LogEntry>> decoded =
+        new ArrayBlockingQueue<>(recoveryThreads * RECOVERY_BUFFER_PER_THREAD);
+    final ExecutorService decoders = AsyncUtil.loggingExecutor(
+        recoveryThreads,
+        recoveryThreads,
+        new LinkedBlockingQueue<Runnable>(),
+        "LogRecoveryDecoder-%d",
+        LOG);
+    ExecutorService readerExecutor = AsyncUtil.loggingExecutor(
+        1,
+        1,
+        new LinkedBlockingQueue<Runnable>(),
+        "LogRecoveryReader-%d",
+        LOG);
+
+    Future<Void> readResult = readerExecutor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws CodingException, InterruptedException {
+        try {
+          while (entries.hasNext()) {
+            final PendingEntry pending = readEntry(entries);
+            if (pending != null) {
+              decoded.put(decoders.submit(new Callable<LogEntry>() {
+                @Override
+                public LogEntry call() throws CodingException {
+                  return pending.decode();
+                }
+              }));
+            }
+          }
+        } catch (InterruptedException e) {
+          // The apply stage has given up, and will not consume any more entries.
+          return null;
+        } catch (CodingException | RuntimeException | Error e) {
+          // Let the apply stage finish, the failure is then surfaced through this future.
+          decoded.put(END_OF_STREAM);
+          throw e;
+        }
+        decoded.put(END_OF_STREAM);
+        return null;
+      }
+    });
+
+    boolean completed = false;
+    try {
+      while (true) {
+        long start = System.nanoTime();
+        Future<LogEntry> next = decoded.take();
+        vars.recoveryApplyWait.accumulate(System.nanoTime() - start);
+        if (next == END_OF_STREAM) {
+          break;
         }
+        apply(reader, getPipelineResult(next));
+      }
+      getPipelineResult(readResult);
+      completed = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamAccessException("Interrupted while reading from the log.", e);
+    } finally {
+      if (!completed) {
+        readResult.cancel(true);
+      }
+      readerExecutor.shutdownNow();
+      decoders.shutdownNow();
+    }
+  }
+
+  private static <T> T getPipelineResult(Future<T> future)
+      throws CodingException, InterruptedException {
+
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), CodingException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void apply(Closure<LogEntry> reader, LogEntry logEntry) {
+    long start = System.nanoTime();
+    reader.execute(logEntry);
+    vars.recoveryApply.accumulate(System.nanoTime() - start);
+    vars.entriesRead.incrementAndGet();
+  }
+
+  /**
+   * A log entry that has been read from the stream, but may not be fully decoded.
+   */
+  private final class PendingEntry {
+    // Exactly one of these is set.
+    @Nullable private final LogEntry entry;
+    @Nullable private final byte[] framedEntry;
+
+    PendingEntry(@Nullable LogEntry entry, @Nullable byte[] framedEntry) {
+      this.entry = entry;
+      this.framedEntry = framedEntry;
+    }
+
+    boolean isFrame() {
+      return entry != null && StreamManagerImpl.isFrame(entry);
+    }
+
+    LogEntry decode() throws CodingException {
+      LogEntry logEntry = entry;
+      if (logEntry == null) {
+        long start = System.nanoTime();
+        logEntry = Entries.thriftBinaryDecode(framedEntry);
+        vars.recoveryDecode.accumulate(System.nanoTime() - start);
+      }
 
-        reader.execute(logEntry);
-        vars.entriesRead.incrementAndGet();
+      if (Entries.isCompressed(logEntry)) {
+        long start = System.nanoTime();
+        logEntry = Entries.decompress(logEntry);
+        vars.recoveryInflate.accumulate(System.nanoTime() - start);
+        vars.deflatedEntriesRead.incrementAndGet();
       }
+
+      if (logEntry.isSetDeduplicatedSnapshot()) {
+        long start = System.nanoTime();
+        logEntry = LogEntry.snapshot(
+            snapshotDeduplicator.reduplicate(logEntry.getDeduplicatedSnapshot()));
+        vars.recoveryReduplicate.accumulate(System.nanoTime() - start);
+      }
+      return logEntry;
+    }
+  }
+
+  /**
+   * Reads the next entry from the stream, reassembling framed entries.  Framed entries are
+   * checksummed but not decoded.
+   *
+   * @param entries Stream entries, which must have a next entry.
+   * @return The next entry, or {@code null} if the next entries were an incomplete frame.
+   * @throws CodingException If an entry could not be decoded or failed its checksum.
+   */
+  @Nullable
+  private PendingEntry readEntry(Iterator<Log.Entry> entries) throws CodingException {
+    long start = System.nanoTime();
+    PendingEntry pending = new PendingEntry(decodeLogEntry(entries.next()), null);
+    while (pending != null && pending.isFrame()) {
+      pending = tryReadFrame(pending.entry.getFrame(), entries);
     }
+    vars.recoveryRead.accumulate(System.nanoTime() - start);
+    return pending;
   }
 
   @Nullable
-  private LogEntry tryDecodeFrame(Frame frame, Iterator<Log.Entry> entries) throws CodingException {
+  private PendingEntry tryReadFrame(Frame frame, Iterator<Log.Entry> entries)
+      throws CodingException {
+
     if (!isHeader(frame)) {
       LOG.warning("Found a frame with no preceding header, skipping.");
       return null;
@@ -148,12 +429,12 @@ class StreamManagerImpl implements StreamManager {
       LogEntry logEntry = decodeLogEntry(entries.next());
       if (!isFrame(logEntry)) {
         logBadFrame(header, i);
-        return logEntry;
+        return new PendingEntry(logEntry, null);
       }
       Frame chunkFrame = logEntry.getFrame();
       if (!isChunk(chunkFrame)) {
         logBadFrame(header, i);
-        return logEntry;
+        return new PendingEntry(logEntry, null);
       }
       byte[] chunkData = chunkFrame.getChunk().getData();
       hasher.putBytes(chunkData);
@@ -162,7 +443,7 @@ class StreamManagerImpl implements StreamManager {
     if (!Arrays.equals(header.getChecksum(), hasher.hash().asBytes())) {
       throw new CodingException("Read back a framed log entry that failed its checksum");
     }
-    return Entries.thriftBinaryDecode(Bytes.concat(chunks));
+    return new PendingEntry(null, Bytes.concat(chunks));
   }
 
   private static boolean isFrame(LogEntry logEntry) {
@@ -204,6 +485,47 @@ class StreamManagerImpl implements StreamManager {
   public void snapshot(Snapshot snapshot)
       throws CodingException, InvalidPositionException, StreamAccessException {
 
+    stream.truncateBefore(appendSnapshot(snapshot));
+  }
+
+  @Override
+  public Log.Position markSnapshot() throws CodingException, StreamAccessException {
+    return appendAndGetPosition(entrySerializer.serialize(LogEntry.snapshotMarker(true)));
+  }
+
+  @Override
+  public Log.Position markCheckpoint(long checkpointId)
+      throws CodingException, StreamAccessException {
+
+    Transaction marker = new Transaction(
+        ImmutableList.<Op>of(),
+        storageConstants.CURRENT_SCHEMA_VERSION)
+        .setCheckpointId(checkpointId);
+    return appendAndGetPosition(entrySerializer.serialize(LogEntry.transaction(marker)));
+  }
+
+  @Override
+  @Timed("log_manager_snapshot")
+  public void snapshot(Snapshot snapshot, Log.Position marker)
+      throws CodingException, InvalidPositionException, StreamAccessException {
+
+    appendSnapshot(snapshot);
+    stream.truncateBefore(marker);
+  }
+
+  @Override
+  @Timed("log_manager_snapshot_delta")
+  public void snapshotDelta(SnapshotDelta delta) throws CodingException, StreamAccessException {
+    LogEntry entry = LogEntry.snapshotDelta(delta);
+    appendAndGetPosition(deflateSnapshots
+        ? entrySerializer.serializeCompressed(entry)
+        : entrySerializer.serialize(entry));
+    vars.snapshots.incrementAndGet();
+    vars.unSnapshottedTransactions.set(0);
+    vars.unSnapshottedBytes.set(0);
+  }
+
+  private Log.Position appendSnapshot(Snapshot snapshot) throws CodingException {
     LogEntry entry;
     if (deduplicateSnapshots) {
       entry = LogEntry.deduplicatedSnapshot(snapshotDeduplicator.deduplicate(snapshot));
@@ -211,29 +533,35 @@ class StreamManagerImpl implements StreamManager {
       entry = LogEntry.snapshot(snapshot);
     }
 
-    if (deflateSnapshots) {
-      entry = deflate(entry);
-    }
-
-    Log.Position position = appendAndGetPosition(entry);
+    Log.Position position = appendAndGetPosition(deflateSnapshots
+        ? entrySerializer.serializeCompressed(entry)
+        : entrySerializer.serialize(entry));
     vars.snapshots.incrementAndGet();
     vars.unSnapshottedTransactions.set(0);
-    stream.truncateBefore(position);
+    vars.unSnapshottedBytes.set(0);
+    return position;
   }
 
-  // Not meant to be subclassed, but timed methods must be non-private.
-  // See https://github.com/google/guice/wiki/AOP#limitations
-  @Timed("log_manager_deflate")
-  protected LogEntry deflate(LogEntry entry) throws CodingException {
-    return Entries.deflate(entry);
+  @Override
+  public long getUnSnapshottedBytes() {
+    return vars.unSnapshottedBytes.get();
+  }
+
+  @Override
+  public int getUnSnapshottedTransactions() {
+    return vars.unSnapshottedTransactions.get();
+  }
+
+  @Override
+  public Optional<Double> getReplayNanosPerByte() {
+    return replayNanosPerByte;
   }
 
   // Not meant to be subclassed, but timed methods must be non-private.
   // See https://github.com/google/guice/wiki/AOP#limitations
   @Timed("log_manager_append")
-  protected Log.Position appendAndGetPosition(LogEntry logEntry) throws CodingException {
+  protected Log.Position appendAndGetPosition(Iterable<byte[]> entries) {
     Log.Position firstPosition = null;
-    Iterable<byte[]> entries = entrySerializer.serialize(logEntry);
     synchronized (writeMutex) { // ensure all sub-entries are written as a unit
       for (byte[] entry : entries) {
         Log.Position position = stream.append(entry);
@@ -241,6 +569,7 @@ class StreamManagerImpl implements StreamManager {
           firstPosition = position;
         }
         vars.bytesWritten.addAndGet(entry.length);
+        vars.unSnapshottedBytes.addAndGet(entry.length);
       }
     }
     vars.entriesWritten.incrementAndGet();
@@ -265,7 +594,8 @@ class StreamManagerImpl implements StreamManager {
         return null;
       }
 
-      Log.Position position = appendAndGetPosition(LogEntry.transaction(transaction));
+      Log.Position position = appendAndGetPosition(
+          entrySerializer.serialize(LogEntry.transaction(transaction)));
       vars.unSnapshottedTransactions.incrementAndGet();
       return position;
     }
@@ -320,6 +650,9 @@ class StreamManagerImpl implements StreamManager {
           return true;
         case SAVE_HOST_ATTRIBUTES:
           return coalesce(prior.getSaveHostAttributes(), next.getSaveHostAttributes());
+        case TRANSITION_TASKS:
+          coalesce(prior.getTransitionTasks(), next.getTransitionTasks());
+          return true;
         default:
           LOG.warning("Unoptimized op: " + priorType);
           return false;
@@ -359,6 +692,20 @@ class StreamManagerImpl implements StreamManager {
       }
     }
 
+    private void coalesce(TransitionTasks prior, TransitionTasks next) {
+      if (next.isSetTransitions()) {
+        if (prior.isSetTransitions()) {
+          // Transitions are applied in order, and may not be reordered or merged.
+          prior.setTransitions(ImmutableList.<TaskTransition>builder()
+              .addAll(prior.getTransitions())
+              .addAll(next.getTransitions())
+              .build());
+        } else {
+          prior.setTransitions(next.getTransitions());
+        }
+      }
+    }
+
     private boolean coalesce(SaveHostAttributes prior, SaveHostAttributes next) {
       if (prior.getHostAttributes().getHost().equals(next.getHostAttributes().getHost())) {
         prior.getHostAttributes().setAttributes(next.getHostAttributes().getAttributes());
@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+import org.apache.aurora.gen.storage.TaskTransition;
+import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+
+/**
+ * Utility functions to represent changes to stored tasks as {@link TaskTransition}s, which omit
+ * the parts of a task that a state transition does not change.
+ */
+final class TaskTransitions {
+
+  private TaskTransitions() {
+    // Utility class.
+  }
+
+  /**
+   * Describes the change from one version of a task to another as a transition, if possible.
+   * A transition can only describe changes to the status, failure count and assignment of a task,
+   * and the addition of task events.  Any other change must be recorded by saving the whole task.
+   *
+   * @param original Previous version of the task.
+   * @param mutated New version of the task.
+   * @return A transition that produces {@code mutated} when {@link #apply applied} to
+   *     {@code original}, or absent if the change can not be described as a transition.
+   */
+  static Optional<TaskTransition> diff(IScheduledTask original, IScheduledTask mutated) {
+    IAssignedTask before = original.getAssignedTask();
+    IAssignedTask after = mutated.getAssignedTask();
+    if (before == null
+        || after == null
+        || mutated.getStatus() == null
+        || !Objects.equals(original.getAncestorId(), mutated.getAncestorId())
+        || !Objects.equals(before.getTaskId(), after.getTaskId())
+        || before.getInstanceId() != after.getInstanceId()
+        // Configurations are shared between versions of a task, so this is typically an identity
+        // comparison.
+        || !Objects.equals(before.getTask(), after.getTask())) {
+
+      return Optional.absent();
+    }
+
+    List<ITaskEvent> beforeEvents = original.getTaskEvents();
+    List<ITaskEvent> afterEvents = mutated.getTaskEvents();
+    if (afterEvents.size() < beforeEvents.size()
+        || (afterEvents.size() == beforeEvents.size()
+            && original.isSetTaskEvents() != mutated.isSetTaskEvents())) {
+
+      return Optional.absent();
+    }
+    for (int i = 0; i < beforeEvents.size(); i++) {
+      if (!Objects.equals(beforeEvents.get(i), afterEvents.get(i))) {
+        return Optional.absent();
+      }
+    }
+
+    TaskTransition transition = new TaskTransition()
+        .setTaskId(after.getTaskId())
+        .setStatus(mutated.getStatus())
+        .setNewEvents(ITaskEvent.toBuildersList(
+            afterEvents.subList(beforeEvents.size(), afterEvents.size())))
+        .setFailureCount(mutated.getFailureCount());
+
+    if (!Objects.equals(before.getSlaveId(), after.getSlaveId())) {
+      if (after.getSlaveId() == null) {
+        return Optional.absent();
+      }
+      transition.setSlaveId(after.getSlaveId());
+    }
+    if (!Objects.equals(before.getSlaveHost(), after.getSlaveHost())) {
+      if (after.getSlaveHost() == null) {
+        return Optional.absent();
+      }
+      transition.setSlaveHost(after.getSlaveHost());
+    }
+    if (before.isSetAssignedPorts() != after.isSetAssignedPorts()
+        || !before.getAssignedPorts().equals(after.getAssignedPorts())) {
+
+      if (!after.isSetAssignedPorts()) {
+        return Optional.absent();
+      }
+      transition.setAssignedPorts(after.getAssignedPorts());
+    }
+
+    return Optional.of(transition);
+  }
+
+  /**
+   * Applies a transition to a task.
+   *
+   * @param task Task to apply the transition to.
+   * @param transition Transition to apply.
+   * @return The task with the transition applied.
+   */
+  static IScheduledTask apply(IScheduledTask task, TaskTransition transition) {
+    IAssignedTask assignedTask = task.getAssignedTask();
+    if (transition.isSetSlaveId()) {
+      assignedTask = assignedTask.withSlaveId(transition.getSlaveId());
+    }
+    if (transition.isSetSlaveHost()) {
+      assignedTask = assignedTask.withSlaveHost(transition.getSlaveHost());
+    }
+    if (transition.isSetAssignedPorts()) {
+      assignedTask = assignedTask.withAssignedPorts(transition.getAssignedPorts());
+    }
+
+    IScheduledTask transitioned = task.withAssignedTask(assignedTask)
+        .withStatus(transition.getStatus())
+        .withFailureCount(transition.getFailureCount());
+    if (transition.isSetNewEvents() && !transition.getNewEvents().isEmpty()) {
+      transitioned = transitioned.withTaskEvents(ImmutableList.<ITaskEvent>builder()
+          .addAll(task.getTaskEvents())
+          .addAll(ITaskEvent.listFromBuilders(transition.getNewEvents()))
+          .build());
+    }
+    return transitioned;
+  }
+}
@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -21,9 +22,11 @@ import java.util.logging.Logger;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
+import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.storage.Op;
 import org.apache.aurora.gen.storage.PruneJobUpdateHistory;
 import org.apache.aurora.gen.storage.RemoveJob;
@@ -40,6 +43,8 @@ import org.apache.aurora.gen.storage.SaveJobUpdateEvent;
 import org.apache.aurora.gen.storage.SaveLock;
 import org.apache.aurora.gen.storage.SaveQuota;
 import org.apache.aurora.gen.storage.SaveTasks;
+import org.apache.aurora.gen.storage.TaskTransition;
+import org.apache.aurora.gen.storage.TransitionTasks;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.EventSink;
@@ -95,6 +100,7 @@ class WriteAheadStorage extends ForwardingStore implements
   private final JobUpdateStore.Mutable jobUpdateStore;
   private final Logger log;
   private final EventSink eventSink;
+  private final boolean taskTransitionOps;
 
   /**
    * Creates a new write-ahead storage that delegates to the providing default stores.
@@ -107,6 +113,7 @@ class WriteAheadStorage extends ForwardingStore implements
    * @param quotaStore     Delegate.
    * @param attributeStore Delegate.
    * @param jobUpdateStore Delegate.
+   * @param taskTransitionOps Whether task mutations may be logged as {@link TransitionTasks} ops.
    */
   WriteAheadStorage(
       TransactionManager transactionManager,
@@ -118,7 +125,8 @@ class WriteAheadStorage extends ForwardingStore implements
       AttributeStore.Mutable attributeStore,
       JobUpdateStore.Mutable jobUpdateStore,
       Logger log,
-      EventSink eventSink) {
+      EventSink eventSink,
+      boolean taskTransitionOps) {
 
     super(
         schedulerStore,
@@ -139,6 +147,7 @@ class WriteAheadStorage extends ForwardingStore implements
     this.jobUpdateStore = requireNonNull(jobUpdateStore);
     this.log = requireNonNull(log);
     this.eventSink = requireNonNull(eventSink);
+    this.taskTransitionOps = taskTransitionOps;
   }
 
   private void write(Op op) {
@@ -192,19 +201,62 @@ class WriteAheadStorage extends ForwardingStore implements
     requireNonNull(query);
     requireNonNull(mutator);
 
-    ImmutableSet<IScheduledTask> mutated = taskStore.mutateTasks(query, mutator);
+    if (!taskTransitionOps) {
+      ImmutableSet<IScheduledTask> mutated = taskStore.mutateTasks(query, mutator);
+      logMutated(mutated);
+      // TODO(William Farner): Avoid writing an op when mutated is empty.
+      write(Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))));
+      return mutated;
+    }
 
-    Map<String, IScheduledTask> tasksById = Tasks.mapById(mutated);
-    if (log.isLoggable(Level.FINE)) {
-      log.fine("Storing updated tasks to log: "
-          + Maps.transformValues(tasksById, Tasks.GET_STATUS));
+    // Retain the original version of each task the mutator is applied to, so that changes may be
+    // logged as compact transitions where possible.
+    final Map<String, IScheduledTask> originals = Maps.newHashMap();
+    ImmutableSet<IScheduledTask> mutated = taskStore.mutateTasks(
+        query,
+        new Function<IScheduledTask, IScheduledTask>() {
+          @Override
+          public IScheduledTask apply(IScheduledTask original) {
+            originals.put(Tasks.id(original), original);
+            return mutator.apply(original);
+          }
+        });
+
+    logMutated(mutated);
+
+    ImmutableList.Builder<TaskTransition> transitions = ImmutableList.builder();
+    ImmutableSet.Builder<ScheduledTask> saved = ImmutableSet.builder();
+    for (IScheduledTask task : mutated) {
+      IScheduledTask original = originals.get(Tasks.id(task));
+      Optional<TaskTransition> transition = original == null
+          ? Optional.<TaskTransition>absent()
+          : TaskTransitions.diff(original, task);
+      if (transition.isPresent()) {
+        transitions.add(transition.get());
+      } else {
+        saved.add(task.newBuilder());
+      }
     }
 
+    Set<ScheduledTask> savedTasks = saved.build();
+    List<TaskTransition> taskTransitions = transitions.build();
     // TODO(William Farner): Avoid writing an op when mutated is empty.
-    write(Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))));
+    if (!savedTasks.isEmpty() || taskTransitions.isEmpty()) {
+      write(Op.saveTasks(new SaveTasks(savedTasks)));
+    }
+    if (!taskTransitions.isEmpty()) {
+      write(Op.transitionTasks(new TransitionTasks(taskTransitions)));
+    }
     return mutated;
   }
 
+  private void logMutated(Set<IScheduledTask> mutated) {
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Storing updated tasks to log: "
+          + Maps.transformValues(Tasks.mapById(mutated), Tasks.GET_STATUS));
+    }
+  }
+
   @Override
   public void saveQuota(final String role, final IResourceAggregate quota) {
     requireNonNull(role);
@@ -0,0 +1,684 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.SetMultimap;
+import com.twitter.common.base.Closure;
+import com.twitter.common.base.MorePreconditions;
+import com.twitter.common.inject.TimedInterceptor.Timed;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatsProvider;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskEvent;
+import org.apache.aurora.gen.TaskQuery;
+import org.apache.aurora.gen.TaskSortKey;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+
+import static java.util.Objects.requireNonNull;
+
+import static com.google.common.base.CharMatcher.WHITESPACE;
+
+import static org.apache.aurora.scheduler.storage.mem.Dictionary.ABSENT;
+
+/**
+ * An in-memory task store that keeps task fields in parallel primitive arrays (columns) rather
+ * than in a per-task object graph.
+ * <p>
+ * Every stored task occupies a slot, which is an index into each column.  Values that repeat
+ * heavily across tasks (job keys, task configurations, slave hosts and IDs, event schedulers) are
+ * dictionary-encoded as int codes, statuses are stored as bytes, and event histories are stored
+ * as arrays of timestamps and statuses.  Queries are evaluated against the columns, and
+ * {@link IScheduledTask} objects are only materialized for matching tasks.  This trades some CPU
+ * on reads for a substantially smaller heap footprint in clusters that retain many tasks,
+ * particularly terminal tasks that are rarely read.
+ * <p>
+ * Unlike {@link MemTaskStore}, columns must be updated together to remain coherent, so all access
+ * is guarded by a read-write lock.
+ */
+class ColumnarTaskStore implements TaskStore.Mutable {
+
+  private static final Logger LOG = Logger.getLogger(ColumnarTaskStore.class.getName());
+
+  @VisibleForTesting
+  static final String ALLOCATED_SLOTS_STAT = "columnar_task_store_allocated_slots";
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final byte NO_STATUS = -1;
+  private static final ScheduleStatus[] STATUSES = ScheduleStatus.values();
+
+  private final long slowQueryThresholdNanos;
+  private final AtomicLong taskQueriesById;
+  private final AtomicLong taskQueriesByJob;
+  private final AtomicLong taskQueriesByHost;
+  private final AtomicLong taskQueriesAll;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Integer> slotsById = Maps.newHashMap();
+  private final SetMultimap<Integer, Integer> slotsByJob = HashMultimap.create();
+  private final SetMultimap<Integer, Integer> slotsByHost = HashMultimap.create();
+  private final Deque<Integer> freeSlots = new ArrayDeque<>();
+  private int allocatedSlots;
+
+  private final Dictionary<IJobKey> jobKeys = new Dictionary<>();
+  private final Dictionary<ITaskConfig> configs = new Dictionary<>();
+  private final Dictionary<String> slaveHosts = new Dictionary<>();
+  private final Dictionary<String> slaveIds = new Dictionary<>();
+  private final Dictionary<String> schedulers = new Dictionary<>();
+
+  // Columns, indexed by slot.
+  private String[] taskIds;
+  private int[] jobCodes;
+  private int[] configCodes;
+  private int[] slaveHostCodes;
+  private int[] slaveIdCodes;
+  private int[] instanceIds;
+  private int[] failureCounts;
+  private byte[] statuses;
+  private String[] ancestorIds;
+  private Object[] assignedPorts;
+  private long[][] eventTimestamps;
+  private byte[][] eventStatuses;
+  private int[][] eventSchedulers;
+  private String[][] eventMessages;
+
+  @Inject
+  ColumnarTaskStore(StatsProvider statsProvider, Amount<Long, Time> slowQueryThreshold) {
+    this.slowQueryThresholdNanos = slowQueryThreshold.as(Time.NANOSECONDS);
+    taskQueriesById = statsProvider.makeCounter("task_queries_by_id");
+    taskQueriesByJob = statsProvider.makeCounter("task_queries_by_job");
+    taskQueriesByHost = statsProvider.makeCounter("task_queries_by_host");
+    taskQueriesAll = statsProvider.makeCounter("task_queries_all");
+    statsProvider.makeGauge(
+        ALLOCATED_SLOTS_STAT,
+        new Supplier<Number>() {
+          @Override
+          public Number get() {
+            return allocatedSlots;
+          }
+        });
+    resetColumns();
+  }
+
+  private void resetColumns() {
+    taskIds = new String[INITIAL_CAPACITY];
+    jobCodes = new int[INITIAL_CAPACITY];
+    configCodes = new int[INITIAL_CAPACITY];
+    slaveHostCodes = new int[INITIAL_CAPACITY];
+    slaveIdCodes = new int[INITIAL_CAPACITY];
+    instanceIds = new int[INITIAL_CAPACITY];
+    failureCounts = new int[INITIAL_CAPACITY];
+    statuses = new byte[INITIAL_CAPACITY];
+    ancestorIds = new String[INITIAL_CAPACITY];
+    assignedPorts = new Object[INITIAL_CAPACITY];
+    eventTimestamps = new long[INITIAL_CAPACITY][];
+    eventStatuses = new byte[INITIAL_CAPACITY][];
+    eventSchedulers = new int[INITIAL_CAPACITY][];
+    eventMessages = new String[INITIAL_CAPACITY][];
+    allocatedSlots = 0;
+    freeSlots.clear();
+  }
+
+  private void growColumns() {
+    int capacity = taskIds.length * 2;
+    taskIds = Arrays.copyOf(taskIds, capacity);
+    jobCodes = Arrays.copyOf(jobCodes, capacity);
+    configCodes = Arrays.copyOf(configCodes, capacity);
+    slaveHostCodes = Arrays.copyOf(slaveHostCodes, capacity);
+    slaveIdCodes = Arrays.copyOf(slaveIdCodes, capacity);
+    instanceIds = Arrays.copyOf(instanceIds, capacity);
+    failureCounts = Arrays.copyOf(failureCounts, capacity);
+    statuses = Arrays.copyOf(statuses, capacity);
+    ancestorIds = Arrays.copyOf(ancestorIds, capacity);
+    assignedPorts = Arrays.copyOf(assignedPorts, capacity);
+    eventTimestamps = Arrays.copyOf(eventTimestamps, capacity);
+    eventStatuses = Arrays.copyOf(eventStatuses, capacity);
+    eventSchedulers = Arrays.copyOf(eventSchedulers, capacity);
+    eventMessages = Arrays.copyOf(eventMessages, capacity);
+  }
+
+  private int allocateSlot() {
+    if (!freeSlots.isEmpty()) {
+      return freeSlots.pop();
+    }
+
+    if (allocatedSlots == taskIds.length) {
+      growColumns();
+    }
+    return allocatedSlots++;
+  }
+
+  @Timed("columnar_storage_fetch_tasks")
+  @Override
+  public ImmutableSet<IScheduledTask> fetchTasks(Query.Builder query) {
+    requireNonNull(query);
+
+    long start = System.nanoTime();
+    ImmutableSet.Builder<IScheduledTask> result = ImmutableSet.builder();
+    lock.readLock().lock();
+    try {
+      for (int slot : matchingSlots(query)) {
+        result.add(materialize(slot));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    long durationNanos = System.nanoTime() - start;
+    Level level = durationNanos >= slowQueryThresholdNanos ? Level.INFO : Level.FINE;
+    if (LOG.isLoggable(level)) {
+      Long time = Amount.of(durationNanos, Time.NANOSECONDS).as(Time.MILLISECONDS);
+      LOG.log(level, "Query took " + time + " ms: " + query.get());
+    }
+
+    return result.build();
+  }
+
+  @Timed("columnar_storage_for_each_task")
+  @Override
+  public void forEach(Query.Builder query, Closure<IScheduledTask> visitor) {
+    requireNonNull(query);
+    requireNonNull(visitor);
+
+    lock.readLock().lock();
+    try {
+      for (int slot : matchingSlots(query)) {
+        visitor.execute(materialize(slot));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Timed("columnar_storage_fetch_task_ids")
+  @Override
+  public ImmutableSet<String> fetchTaskIds(Query.Builder query) {
+    requireNonNull(query);
+
+    ImmutableSet.Builder<String> result = ImmutableSet.builder();
+    lock.readLock().lock();
+    try {
+      for (int slot : matchingSlots(query)) {
+        result.add(taskIds[slot]);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return result.build();
+  }
+
+  @Timed("columnar_storage_fetch_job_keys")
+  @Override
+  public ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query) {
+    requireNonNull(query);
+
+    ImmutableSet.Builder<IJobKey> result = ImmutableSet.builder();
+    lock.readLock().lock();
+    try {
+      for (int slot : matchingSlots(query)) {
+        result.add(jobKeys.get(jobCodes[slot]));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return result.build();
+  }
+  @Override
+  public Supplier<ImmutableSet<IScheduledTask>> captureTasks() {
+    // Tasks are not stored as immutable versions, so they are copied while the caller holds the
+    // storage lock.
+    return Suppliers.ofInstance(fetchTasks(Query.unscoped()));
+  }
+
+
+  @Timed("columnar_storage_save_tasks")
+  @Override
+  public void saveTasks(Set<IScheduledTask> newTasks) {
+    requireNonNull(newTasks);
+    Preconditions.checkState(Tasks.ids(newTasks).size() == newTasks.size(),
+        "Proposed new tasks would create task ID collision.");
+
+    lock.writeLock().lock();
+    try {
+      for (IScheduledTask task : newTasks) {
+        store(task);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Timed("columnar_storage_delete_all_tasks")
+  @Override
+  public void deleteAllTasks() {
+    lock.writeLock().lock();
+    try {
+      slotsById.clear();
+      slotsByJob.clear();
+      slotsByHost.clear();
+      jobKeys.clear();
+      configs.clear();
+      slaveHosts.clear();
+      slaveIds.clear();
+      schedulers.clear();
+      resetColumns();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Timed("columnar_storage_delete_tasks")
+  @Override
+  public void deleteTasks(Set<String> taskIds) {
+    requireNonNull(taskIds);
+
+    lock.writeLock().lock();
+    try {
+      for (String id : taskIds) {
+        Integer slot = slotsById.get(id);
+        if (slot != null) {
+          free(slot);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Timed("columnar_storage_mutate_tasks")
+  @Override
+  public ImmutableSet<IScheduledTask> mutateTasks(
+      Query.Builder query,
+      Function<IScheduledTask, IScheduledTask> mutator) {
+
+    requireNonNull(query);
+    requireNonNull(mutator);
+
+    ImmutableSet.Builder<IScheduledTask> mutated = ImmutableSet.builder();
+    lock.writeLock().lock();
+    try {
+      for (int slot : matchingSlots(query)) {
+        IScheduledTask original = materialize(slot);
+        IScheduledTask maybeMutated = mutator.apply(original);
+        if (!original.equals(maybeMutated)) {
+          Preconditions.checkState(
+              Tasks.id(original).equals(Tasks.id(maybeMutated)),
+              "A task's ID may not be mutated.");
+          store(maybeMutated);
+          mutated.add(maybeMutated);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    return mutated.build();
+  }
+
+  @Timed("columnar_storage_unsafe_modify_in_place")
+  @Override
+  public boolean unsafeModifyInPlace(String taskId, ITaskConfig taskConfiguration) {
+    MorePreconditions.checkNotBlank(taskId);
+    requireNonNull(taskConfiguration);
+
+    lock.writeLock().lock();
+    try {
+      Integer slot = slotsById.get(taskId);
+      if (slot == null) {
+        return false;
+      }
+
+      int replacement = configs.acquire(taskConfiguration);
+      configs.release(configCodes[slot]);
+      configCodes[slot] = replacement;
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Writes a task into a slot, replacing any existing task with the same ID.
+   *
+   * @param task Task to store.
+   */
+  private void store(IScheduledTask task) {
+    String id = Tasks.id(task);
+    Integer existing = slotsById.get(id);
+    if (existing != null) {
+      free(existing);
+    }
+
+    int slot = allocateSlot();
+    IAssignedTask assignedTask = task.getAssignedTask();
+    ITaskConfig config = assignedTask.getTask();
+
+    taskIds[slot] = id;
+    jobCodes[slot] = jobKeys.acquire(config.getJob());
+    configCodes[slot] = configs.acquire(config);
+    slaveHostCodes[slot] = slaveHosts.acquire(assignedTask.getSlaveHost());
+    slaveIdCodes[slot] = slaveIds.acquire(assignedTask.getSlaveId());
+    instanceIds[slot] = assignedTask.getInstanceId();
+    failureCounts[slot] = task.getFailureCount();
+    statuses[slot] = encodeStatus(task.getStatus());
+    ancestorIds[slot] = task.getAncestorId();
+    assignedPorts[slot] = assignedTask.isSetAssignedPorts()
+        ? ImmutableMap.copyOf(assignedTask.getAssignedPorts())
+        : null;
+
+    if (task.isSetTaskEvents()) {
+      List<ITaskEvent> events = task.getTaskEvents();
+      long[] timestamps = new long[events.size()];
+      byte[] eventStatus = new byte[events.size()];
+      int[] eventScheduler = new int[events.size()];
+      String[] messages = null;
+      for (int i = 0; i < events.size(); i++) {
+        ITaskEvent event = events.get(i);
+        timestamps[i] = event.getTimestamp();
+        eventStatus[i] = encodeStatus(event.getStatus());
+        eventScheduler[i] = schedulers.acquire(event.getScheduler());
+        if (event.getMessage() != null) {
+          if (messages == null) {
+            messages = new String[events.size()];
+          }
+          messages[i] = event.getMessage();
+        }
+      }
+      eventTimestamps[slot] = timestamps;
+      eventStatuses[slot] = eventStatus;
+      eventSchedulers[slot] = eventScheduler;
+      eventMessages[slot] = messages;
+    }
+
+    slotsById.put(id, slot);
+    slotsByJob.put(jobCodes[slot], slot);
+    if (slaveHostCodes[slot] != ABSENT) {
+      slotsByHost.put(slaveHostCodes[slot], slot);
+    }
+  }
+
+  /**
+   * Removes the task in a slot, releasing its dictionary references and returning the slot to the
+   * free list.
+   *
+   * @param slot Slot to free.
+   */
+  private void free(int slot) {
+    slotsById.remove(taskIds[slot]);
+    slotsByJob.remove(jobCodes[slot], slot);
+    if (slaveHostCodes[slot] != ABSENT) {
+      slotsByHost.remove(slaveHostCodes[slot], slot);
+    }
+
+    jobKeys.release(jobCodes[slot]);
+    configs.release(configCodes[slot]);
+    slaveHosts.release(slaveHostCodes[slot]);
+    slaveIds.release(slaveIdCodes[slot]);
+    if (eventSchedulers[slot] != null) {
+      for (int code : eventSchedulers[slot]) {
+        schedulers.release(code);
+      }
+    }
+
+    taskIds[slot] = null;
+    ancestorIds[slot] = null;
+    assignedPorts[slot] = null;
+    eventTimestamps[slot] = null;
+    eventStatuses[slot] = null;
+    eventSchedulers[slot] = null;
+    eventMessages[slot] = null;
+    freeSlots.push(slot);
+  }
+
+  private Iterable<Integer> fromIds(Collection<String> ids) {
+    ImmutableList.Builder<Integer> slots = ImmutableList.builder();
+    for (String id : ids) {
+      Integer slot = slotsById.get(id);
+      if (slot != null) {
+        slots.add(slot);
+      }
+    }
+    return slots.build();
+  }
+
+  private static <K> Iterable<Integer> fromIndex(
+      Dictionary<K> dictionary,
+      SetMultimap<Integer, Integer> index,
+      Set<K> keys) {
+
+    ImmutableList.Builder<Integer> slots = ImmutableList.builder();
+    for (K key : keys) {
+      int code = dictionary.find(key);
+      if (code != ABSENT) {
+        slots.addAll(index.get(code));
+      }
+    }
+    return slots.build();
+  }
+
+  private Iterable<Integer> candidateSlots(Query.Builder query, TaskQuery taskQuery) {
+    if (taskQuery.isSetTaskIds()) {
+      taskQueriesById.incrementAndGet();
+      return fromIds(taskQuery.getTaskIds());
+    }
+
+    Optional<Set<IJobKey>> jobs = JobKeys.from(query);
+    if (jobs.isPresent()) {
+      taskQueriesByJob.incrementAndGet();
+      return fromIndex(jobKeys, slotsByJob, jobs.get());
+    }
+
+    if (taskQuery.getSlaveHosts() != null) {
+      taskQueriesByHost.incrementAndGet();
+      return fromIndex(slaveHosts, slotsByHost, taskQuery.getSlaveHosts());
+    }
+
+    // No indices match, fall back to a full scan.
+    taskQueriesAll.incrementAndGet();
+    return ImmutableList.copyOf(slotsById.values());
+  }
+
+  /**
+   * Finds the slots of tasks matching a query.  The slots are in the query's page order if it is
+   * paginated.  Must be called with the lock held.
+   *
+   * @param query Query to match.
+   * @return Matching slots.
+   */
+  private List<Integer> matchingSlots(Query.Builder query) {
+    final TaskQuery taskQuery = query.get();
+    FluentIterable<Integer> slots = FluentIterable.from(candidateSlots(query, taskQuery))
+        .filter(new Predicate<Integer>() {
+          @Override
+          public boolean apply(Integer slot) {
+            return matches(slot, taskQuery);
+          }
+        });
+
+    return Query.isPaginated(query)
+        ? Query.page(query, slots, slotOrdering(taskQuery))
+        : slots.toList();
+  }
+
+  private final Ordering<Integer> byTaskId = new Ordering<Integer>() {
+    @Override
+    public int compare(Integer a, Integer b) {
+      return taskIds[a].compareTo(taskIds[b]);
+    }
+  };
+
+  private final Ordering<Integer> byInstanceId = new Ordering<Integer>() {
+    @Override
+    public int compare(Integer a, Integer b) {
+      return Integer.compare(instanceIds[a], instanceIds[b]);
+    }
+  };
+
+  private final Ordering<Integer> byLatestEventTime = Ordering.natural().nullsFirst()
+      .onResultOf(new Function<Integer, Long>() {
+        @Override
+        public Long apply(Integer slot) {
+          long[] timestamps = eventTimestamps[slot];
+          return timestamps == null || timestamps.length == 0
+              ? null
+              : timestamps[timestamps.length - 1];
+        }
+      });
+
+  /**
+   * Equivalent of {@link Tasks#pageOrdering(TaskQuery)} that orders slots by reading the columns,
+   * rather than materialized tasks.
+   */
+  private Ordering<Integer> slotOrdering(TaskQuery query) {
+    Ordering<Integer> ordering;
+    switch (query.isSetSortKey() ? query.getSortKey() : TaskSortKey.TASK_ID) {
+      case INSTANCE_ID:
+        ordering = byInstanceId.compound(byTaskId);
+        break;
+
+      case LATEST_EVENT_TIME:
+        ordering = byLatestEventTime.compound(byTaskId);
+        break;
+
+      default:
+        ordering = byTaskId;
+    }
+
+    return query.isSortDescending() ? ordering.reverse() : ordering;
+  }
+
+  private boolean matches(int slot, TaskQuery query) {
+    ITaskConfig config = configs.get(configCodes[slot]);
+    if (query.getRole() != null
+        && !WHITESPACE.matchesAllOf(query.getRole())
+        && !query.getRole().equals(config.getJob().getRole())) {
+      return false;
+    }
+    if (query.getEnvironment() != null
+        && !query.getEnvironment().equals(config.getEnvironment())) {
+      return false;
+    }
+    if (query.getJobName() != null && !query.getJobName().equals(config.getJobName())) {
+      return false;
+    }
+
+    if (query.getJobKeysSize() > 0
+        && !query.getJobKeys().contains(config.getJob().newBuilder())) {
+      return false;
+    }
+    if (query.getTaskIds() != null && !query.getTaskIds().contains(taskIds[slot])) {
+      return false;
+    }
+
+    if (query.getStatusesSize() > 0
+        && !query.getStatuses().contains(decodeStatus(statuses[slot]))) {
+      return false;
+    }
+    if (query.getSlaveHostsSize() > 0
+        && !query.getSlaveHosts().contains(slaveHosts.get(slaveHostCodes[slot]))) {
+      return false;
+    }
+    if (query.getInstanceIdsSize() > 0 && !query.getInstanceIds().contains(instanceIds[slot])) {
+      return false;
+    }
+
+    return true;
+  }
+
+  private IScheduledTask materialize(int slot) {
+    @SuppressWarnings("unchecked")
+    Map<String, Integer> ports = (Map<String, Integer>) assignedPorts[slot];
+    IAssignedTask assignedTask = IAssignedTask.buildNoCopy(new AssignedTask()
+        .setTaskId(taskIds[slot])
+        .setSlaveId(slaveIds.get(slaveIdCodes[slot]))
+        .setSlaveHost(slaveHosts.get(slaveHostCodes[slot]))
+        .setAssignedPorts(ports)
+        .setInstanceId(instanceIds[slot]))
+        .withTask(configs.get(configCodes[slot]));
+
+    ScheduledTask task = new ScheduledTask()
+        .setStatus(decodeStatus(statuses[slot]))
+        .setFailureCount(failureCounts[slot])
+        .setAncestorId(ancestorIds[slot]);
+
+    long[] timestamps = eventTimestamps[slot];
+    if (timestamps != null) {
+      List<TaskEvent> events = Lists.newArrayListWithCapacity(timestamps.length);
+      for (int i = 0; i < timestamps.length; i++) {
+        events.add(new TaskEvent()
+            .setTimestamp(timestamps[i])
+            .setStatus(decodeStatus(eventStatuses[slot][i]))
+            .setMessage(eventMessages[slot] == null ? null : eventMessages[slot][i])
+            .setScheduler(schedulers.get(eventSchedulers[slot][i])));
+      }
+      task.setTaskEvents(events);
+    }
+
+    // All values are either freshly allocated or immutable, so no copies are necessary.  The
+    // canonical config instance is shared by all tasks that reference it.
+    return IScheduledTask.buildNoCopy(task).withAssignedTask(assignedTask);
+  }
+
+  private static byte encodeStatus(@Nullable ScheduleStatus status) {
+    return status == null ? NO_STATUS : (byte) status.ordinal();
+  }
+
+  @Nullable
+  private static ScheduleStatus decodeStatus(byte status) {
+    return status == NO_STATUS ? null : STATUSES[status];
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A reference-counted dictionary encoding, which maps values to dense integer codes.  Codes are
+ * recycled once all references to the value they represent have been released.
+ * <p>
+ * This class is not thread-safe, callers are expected to provide external synchronization.
+ *
+ * @param <T> The encoded value type.
+ */
+class Dictionary<T> {
+
+  /**
+   * Code used to represent a {@code null} or unknown value.
+   */
+  static final int ABSENT = -1;
+
+  private final Map<T, Integer> codes = Maps.newHashMap();
+  private final List<T> values = Lists.newArrayList();
+  private final Deque<Integer> freeCodes = new ArrayDeque<>();
+  private int[] refCounts = new int[16];
+
+  /**
+   * Obtains the code for a value, adding the value to the dictionary if it is not yet present.
+   * Each call must be balanced by a call to {@link #release(int)}.
+   *
+   * @param value Value to encode.
+   * @return The code for {@code value}, or {@link #ABSENT} if the value is {@code null}.
+   */
+  int acquire(@Nullable T value) {
+    if (value == null) {
+      return ABSENT;
+    }
+
+    Integer code = codes.get(value);
+    if (code == null) {
+      if (freeCodes.isEmpty()) {
+        code = values.size();
+        values.add(value);
+        if (code == refCounts.length) {
+          refCounts = Arrays.copyOf(refCounts, refCounts.length * 2);
+        }
+      } else {
+        code = freeCodes.pop();
+        values.set(code, value);
+      }
+      codes.put(value, code);
+    }
+    refCounts[code]++;
+    return code;
+  }
+
+  /**
+   * Releases a reference to a code previously obtained from {@link #acquire(Object)}.
+   *
+   * @param code Code to release.
+   */
+  void release(int code) {
+    if (code == ABSENT) {
+      return;
+    }
+
+    Preconditions.checkState(refCounts[code] > 0, "Code is not in use: " + code);
+    refCounts[code]--;
+    if (refCounts[code] == 0) {
+      codes.remove(values.get(code));
+      values.set(code, null);
+      freeCodes.push(code);
+    }
+  }
+
+  /**
+   * Decodes a value.
+   *
+   * @param code Code to decode.
+   * @return The value associated with {@code code}, or {@code null} if the code is
+   *         {@link #ABSENT}.
+   */
+  @Nullable
+  T get(int code) {
+    return code == ABSENT ? null : values.get(code);
+  }
+
+  /**
+   * Looks up the code for a value without acquiring a reference.
+   *
+   * @param value Value to look up.
+   * @return The code for {@code value}, or {@link #ABSENT} if the value is not in the dictionary.
+   */
+  int find(@Nullable T value) {
+    Integer code = value == null ? null : codes.get(value);
+    return code == null ? ABSENT : code;
+  }
+
+  /**
+   * Gets the number of distinct values in the dictionary.
+   *
+   * @return Number of values.
+   */
+  int size() {
+    return codes.size();
+  }
+
+  /**
+   * Removes all values from the dictionary.
+   */
+  void clear() {
+    codes.clear();
+    values.clear();
+    freeCodes.clear();
+    refCounts = new int[16];
+  }
+}
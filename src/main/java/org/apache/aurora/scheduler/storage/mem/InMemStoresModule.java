@@ -55,9 +55,25 @@ public final class InMemStoresModule extends AbstractModule {
    */
   public static class TaskStoreModule extends PrivateModule {
     private final KeyFactory keyFactory;
+    private final Class<? extends TaskStore.Mutable> impl;
 
     public TaskStoreModule(KeyFactory keyFactory) {
+      this(keyFactory, MemTaskStore.class);
+    }
+
+    private TaskStoreModule(KeyFactory keyFactory, Class<? extends TaskStore.Mutable> impl) {
       this.keyFactory = requireNonNull(keyFactory);
+      this.impl = requireNonNull(impl);
+    }
+
+    /**
+     * Creates a binding module that installs the compact columnar task store implementation.
+     *
+     * @param keyFactory Binding scope for the store.
+     * @return A task store module.
+     */
+    public static TaskStoreModule columnar(KeyFactory keyFactory) {
+      return new TaskStoreModule(keyFactory, ColumnarTaskStore.class);
     }
 
     private <T> void bindStore(Class<T> binding, Class<? extends T> impl) {
@@ -70,7 +86,7 @@ public final class InMemStoresModule extends AbstractModule {
 
     @Override
     protected void configure() {
-      bindStore(TaskStore.Mutable.class, MemTaskStore.class);
+      bindStore(TaskStore.Mutable.class, impl);
       expose(TaskStore.Mutable.class);
     }
   }
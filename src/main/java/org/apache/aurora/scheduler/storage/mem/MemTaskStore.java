@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.storage.mem;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -20,6 +21,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -28,26 +30,22 @@ import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
+import com.twitter.common.base.Closure;
 import com.twitter.common.base.MorePreconditions;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.StatsProvider;
 
-import org.apache.aurora.gen.ScheduledTask;
-import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.gen.TaskQuery;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
@@ -90,22 +88,23 @@ class MemTaskStore implements TaskStore.Mutable {
         }
       };
 
-  // Since this class operates under the API and umbrella of {@link Storage}, it is expected to be
-  // thread-safe but not necessarily strongly-consistent unless the externally-controlled storage
-  // lock is secured.  To adhere to that, these data structures are individually thread-safe, but
-  // we don't lock across them because of the relaxed consistency guarantees.
-  // Note that this behavior makes it possible to receive query results that are not sane,
-  // specifically when a secondary key value is changed.  In other words, we currently don't always
-  // support the invariant that a query by slave host yields a result with all tasks matching that
-  // slave host.  This is deemed acceptable due to the fact that secondary key values are rarely
-  // mutated in practice, and mutated in ways that are not impacted by this behavior.
-  private final Map<String, Task> tasks = Maps.newConcurrentMap();
+  private static final int TASK_SEGMENTS = 256;
+  private static final int INDEX_KEY_SEGMENTS = 64;
+  private static final int INDEX_VALUE_SEGMENTS = 32;
+
+  // Readers are served from an immutable version of the store contents, which is replaced
+  // wholesale by each write.  A reader captures the current version once, so all results it sees
+  // are consistent with each other (including the secondary indices) and reflect a single point in
+  // time.  Readers never block, and are never blocked by, writers.  Writes are serialized amongst
+  // themselves, and copy only the map segments they modify.
+  private volatile Version current;
   private final List<SecondaryIndex<?>> secondaryIndices;
 
   // An interner is used here to collapse equivalent TaskConfig instances into canonical instances.
   // Ideally this would fall out of the object hierarchy (TaskConfig being associated with the job
   // rather than the task), but we intuit this detail here for performance reasons.
-  private final Interner<TaskConfig, String> configInterner = new Interner<>();
+  // The interner is only accessed by writers.
+  private final Interner<ITaskConfig, String> configInterner = new Interner<>();
 
   private final AtomicLong taskQueriesById;
   private final AtomicLong taskQueriesAll;
@@ -123,6 +122,18 @@ class MemTaskStore implements TaskStore.Mutable {
             QUERY_TO_SLAVE_HOST,
             statsProvider,
             "host"));
+    current = Version.empty(secondaryIndices.size());
+    for (int i = 0; i < secondaryIndices.size(); i++) {
+      final int position = i;
+      statsProvider.makeGauge(
+          getIndexSizeStatName(secondaryIndices.get(i).name),
+          new Supplier<Number>() {
+            @Override
+            public Number get() {
+              return current.indices.get(position).size;
+            }
+          });
+    }
     taskQueriesById = statsProvider.makeCounter("task_queries_by_id");
     taskQueriesAll = statsProvider.makeCounter("task_queries_all");
   }
@@ -130,10 +141,83 @@ class MemTaskStore implements TaskStore.Mutable {
   @Timed("mem_storage_fetch_tasks")
   @Override
   public ImmutableSet<IScheduledTask> fetchTasks(Query.Builder query) {
+    return fetchTasks(current, query);
+  }
+
+  @Timed("mem_storage_for_each_task")
+  @Override
+  public void forEach(Query.Builder query, Closure<IScheduledTask> visitor) {
+    forEach(current, query, visitor);
+  }
+
+  @Timed("mem_storage_fetch_task_ids")
+  @Override
+  public ImmutableSet<String> fetchTaskIds(Query.Builder query) {
+    return fetchTaskIds(current, query);
+  }
+
+  @Timed("mem_storage_fetch_job_keys")
+  @Override
+  public ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query) {
+    return fetchJobKeys(current, query);
+  }
+
+  @Override
+  public Supplier<ImmutableSet<IScheduledTask>> captureTasks() {
+    return captureTasks(current);
+  }
+
+  /**
+   * Captures a point-in-time view of the store.  The returned store is not affected by subsequent
+   * writes, and reading from it does not require any storage locks.
+   *
+   * @return A read-only view of the current store contents.
+   */
+  TaskStore snapshot() {
+    final Version version = current;
+    return new TaskStore() {
+      @Override
+      public ImmutableSet<IScheduledTask> fetchTasks(Query.Builder query) {
+        return MemTaskStore.this.fetchTasks(version, query);
+      }
+
+      @Override
+      public void forEach(Query.Builder query, Closure<IScheduledTask> visitor) {
+        MemTaskStore.this.forEach(version, query, visitor);
+      }
+
+      @Override
+      public ImmutableSet<String> fetchTaskIds(Query.Builder query) {
+        return MemTaskStore.this.fetchTaskIds(version, query);
+      }
+
+      @Override
+      public ImmutableSet<IJobKey> fetchJobKeys(Query.Builder query) {
+        return MemTaskStore.this.fetchJobKeys(version, query);
+      }
+
+      @Override
+      public Supplier<ImmutableSet<IScheduledTask>> captureTasks() {
+        return MemTaskStore.this.captureTasks(version);
+      }
+    };
+  }
+
+  private Supplier<ImmutableSet<IScheduledTask>> captureTasks(final Version version) {
+    // Only the version is captured, tasks are copied out of it when the supplier is read.
+    return new Supplier<ImmutableSet<IScheduledTask>>() {
+      @Override
+      public ImmutableSet<IScheduledTask> get() {
+        return fetchTasks(version, Query.unscoped());
+      }
+    };
+  }
+
+  private ImmutableSet<IScheduledTask> fetchTasks(Version version, Query.Builder query) {
     requireNonNull(query);
 
     long start = System.nanoTime();
-    ImmutableSet<IScheduledTask> result = matches(query).transform(TO_SCHEDULED).toSet();
+    ImmutableSet<IScheduledTask> result = matches(version, query).transform(TO_SCHEDULED).toSet();
     long durationNanos = System.nanoTime() - start;
     Level level = durationNanos >= slowQueryThresholdNanos ? Level.INFO : Level.FINE;
     if (LOG.isLoggable(level)) {
@@ -144,6 +228,27 @@ class MemTaskStore implements TaskStore.Mutable {
     return result;
   }
 
+  private void forEach(Version version, Query.Builder query, Closure<IScheduledTask> visitor) {
+    requireNonNull(query);
+    requireNonNull(visitor);
+
+    for (Task task : matches(version, query)) {
+      visitor.execute(task.storedTask);
+    }
+  }
+
+  private ImmutableSet<String> fetchTaskIds(Version version, Query.Builder query) {
+    requireNonNull(query);
+
+    return matches(version, query).transform(TO_ID).toSet();
+  }
+
+  private ImmutableSet<IJobKey> fetchJobKeys(Version version, Query.Builder query) {
+    requireNonNull(query);
+
+    return matches(version, query).transform(TO_JOB_KEY).toSet();
+  }
+
   private final Function<IScheduledTask, Task> toTask =
       new Function<IScheduledTask, Task>() {
         @Override
@@ -154,87 +259,98 @@ class MemTaskStore implements TaskStore.Mutable {
 
   @Timed("mem_storage_save_tasks")
   @Override
-  public void saveTasks(Set<IScheduledTask> newTasks) {
+  public synchronized void saveTasks(Set<IScheduledTask> newTasks) {
     requireNonNull(newTasks);
     Preconditions.checkState(Tasks.ids(newTasks).size() == newTasks.size(),
         "Proposed new tasks would create task ID collision.");
 
-    Iterable<Task> canonicalized = Iterables.transform(newTasks, toTask);
-    tasks.putAll(Maps.uniqueIndex(canonicalized, TO_ID));
-    for (SecondaryIndex<?> index : secondaryIndices) {
-      index.insert(Iterables.transform(canonicalized, TO_SCHEDULED));
+    if (current.tasks.isEmpty()) {
+      // Populating an empty store, typically when restoring from a snapshot.  The new version is
+      // built directly rather than applying each task as a change to the secondary indices.
+      List<Task> tasks = FluentIterable.from(newTasks).transform(toTask).toList();
+      SegmentedMap.Editor<String, Task> editor =
+          SegmentedMap.<String, Task>empty(TASK_SEGMENTS).edit(tasks.size());
+      for (Task task : tasks) {
+        editor.put(Tasks.id(task.storedTask), task);
+      }
+      ImmutableList.Builder<IndexVersion> indices = ImmutableList.builder();
+      for (SecondaryIndex<?> index : secondaryIndices) {
+        indices.add(index.build(tasks));
+      }
+      current = new Version(editor.build(), indices.build());
+      return;
+    }
+
+    VersionEditor editor = new VersionEditor(newTasks.size());
+    for (IScheduledTask task : newTasks) {
+      editor.put(toTask.apply(task));
     }
+    editor.publish();
   }
 
   @Timed("mem_storage_delete_all_tasks")
   @Override
-  public void deleteAllTasks() {
-    tasks.clear();
-    for (SecondaryIndex<?> index : secondaryIndices) {
-      index.clear();
-    }
+  public synchronized void deleteAllTasks() {
+    current = Version.empty(secondaryIndices.size());
     configInterner.clear();
   }
 
   @Timed("mem_storage_delete_tasks")
   @Override
-  public void deleteTasks(Set<String> taskIds) {
+  public synchronized void deleteTasks(Set<String> taskIds) {
     requireNonNull(taskIds);
 
+    VersionEditor editor = new VersionEditor();
     for (String id : taskIds) {
-      Task removed = tasks.remove(id);
+      Task removed = editor.remove(id);
       if (removed != null) {
-        for (SecondaryIndex<?> index : secondaryIndices) {
-          index.remove(removed.storedTask);
-        }
-        configInterner.removeAssociation(
-            removed.storedTask.getAssignedTask().getTask().newBuilder(),
-            id);
+        configInterner.removeAssociation(removed.storedTask.getAssignedTask().getTask(), id);
       }
     }
+    editor.publish();
   }
 
   @Timed("mem_storage_mutate_tasks")
   @Override
-  public ImmutableSet<IScheduledTask> mutateTasks(
+  public synchronized ImmutableSet<IScheduledTask> mutateTasks(
       Query.Builder query,
       Function<IScheduledTask, IScheduledTask> mutator) {
 
     requireNonNull(query);
     requireNonNull(mutator);
 
+    VersionEditor editor = new VersionEditor();
     ImmutableSet.Builder<IScheduledTask> mutated = ImmutableSet.builder();
-    for (Task original : matches(query).toList()) {
+    for (Task original : matches(editor.base, query).toList()) {
       IScheduledTask maybeMutated = mutator.apply(original.storedTask);
       if (!original.storedTask.equals(maybeMutated)) {
         Preconditions.checkState(
             Tasks.id(original.storedTask).equals(Tasks.id(maybeMutated)),
             "A task's ID may not be mutated.");
-        tasks.put(Tasks.id(maybeMutated), toTask.apply(maybeMutated));
-        for (SecondaryIndex<?> index : secondaryIndices) {
-          index.replace(original.storedTask, maybeMutated);
-        }
-
+        editor.put(toTask.apply(maybeMutated));
         mutated.add(maybeMutated);
       }
     }
+    editor.publish();
 
     return mutated.build();
   }
 
   @Timed("mem_storage_unsafe_modify_in_place")
   @Override
-  public boolean unsafeModifyInPlace(String taskId, ITaskConfig taskConfiguration) {
+  public synchronized boolean unsafeModifyInPlace(String taskId, ITaskConfig taskConfiguration) {
     MorePreconditions.checkNotBlank(taskId);
     requireNonNull(taskConfiguration);
 
-    Task stored = tasks.get(taskId);
+    VersionEditor editor = new VersionEditor();
+    Task stored = editor.get(taskId);
     if (stored == null) {
       return false;
     } else {
-      ScheduledTask updated = stored.storedTask.newBuilder();
-      updated.getAssignedTask().setTask(taskConfiguration.newBuilder());
-      tasks.put(taskId, toTask.apply(IScheduledTask.build(updated)));
+      IScheduledTask updated = stored.storedTask.withAssignedTask(
+          stored.storedTask.getAssignedTask().withTask(taskConfiguration));
+      editor.put(toTask.apply(updated));
+      editor.publish();
       return true;
     }
   }
@@ -283,27 +399,32 @@ class MemTaskStore implements TaskStore.Mutable {
     };
   }
 
-  private Iterable<Task> fromIdIndex(Iterable<String> taskIds) {
-    return FluentIterable.from(taskIds)
-        .transform(Functions.forMap(tasks, null))
-        .filter(Predicates.notNull())
-        .toList();
+  private static Iterable<Task> fromIdIndex(Version version, Iterable<String> taskIds) {
+    ImmutableList.Builder<Task> matches = ImmutableList.builder();
+    for (String id : taskIds) {
+      Task task = version.tasks.get(id);
+      if (task != null) {
+        matches.add(task);
+      }
+    }
+    return matches.build();
   }
 
-  private FluentIterable<Task> matches(Query.Builder query) {
+  private FluentIterable<Task> matches(Version version, Query.Builder query) {
     // Apply the query against the working set.
     Optional<? extends Iterable<Task>> from = Optional.absent();
     if (query.get().isSetTaskIds()) {
       taskQueriesById.incrementAndGet();
-      from = Optional.of(fromIdIndex(query.get().getTaskIds()));
+      from = Optional.of(fromIdIndex(version, query.get().getTaskIds()));
     } else {
-      for (SecondaryIndex<?> index : secondaryIndices) {
-        Optional<Iterable<String>> indexMatch = index.getMatches(query);
+      for (int i = 0; i < secondaryIndices.size(); i++) {
+        Optional<Iterable<Task>> indexMatch =
+            secondaryIndices.get(i).getMatches(version.indices.get(i), query);
         if (indexMatch.isPresent()) {
           // Note: we could leverage multiple indexes here if the query applies to them, by
           // choosing to intersect the results.  Given current indexes and query profile, this is
           // unlikely to offer much improvement, though.
-          from = Optional.of(fromIdIndex(indexMatch.get()));
+          from = Optional.of(indexMatch.get());
           break;
         }
       }
@@ -311,11 +432,17 @@ class MemTaskStore implements TaskStore.Mutable {
       // No indices match, fall back to a full scan.
       if (!from.isPresent()) {
         taskQueriesAll.incrementAndGet();
-        from = Optional.of(tasks.values());
+        from = Optional.of(version.tasks.values());
       }
     }
 
-    return FluentIterable.from(from.get()).filter(queryFilter(query.get()));
+    FluentIterable<Task> matches = FluentIterable.from(from.get()).filter(queryFilter(query.get()));
+    return Query.isPaginated(query)
+        ? FluentIterable.from(Query.page(
+            query,
+            matches,
+            Tasks.pageOrdering(query.get()).onResultOf(TO_SCHEDULED)))
+        : matches;
   }
 
   private static final Function<Task, IScheduledTask> TO_SCHEDULED =
@@ -329,19 +456,20 @@ class MemTaskStore implements TaskStore.Mutable {
   private static final Function<Task, String> TO_ID =
       Functions.compose(Tasks.SCHEDULED_TO_ID, TO_SCHEDULED);
 
+  private static final Function<Task, IJobKey> TO_JOB_KEY =
+      Functions.compose(Tasks.SCHEDULED_TO_JOB_KEY, TO_SCHEDULED);
+
   private static class Task {
     private final IScheduledTask storedTask;
 
-    Task(IScheduledTask storedTask, Interner<TaskConfig, String> interner) {
-      interner.removeAssociation(
-          storedTask.getAssignedTask().getTask().newBuilder(),
-          Tasks.id(storedTask));
-      TaskConfig canonical = interner.addAssociation(
-          storedTask.getAssignedTask().getTask().newBuilder(),
-          Tasks.id(storedTask));
-      ScheduledTask builder = storedTask.newBuilder();
-      builder.getAssignedTask().setTask(canonical);
-      this.storedTask = IScheduledTask.build(builder);
+    Task(IScheduledTask storedTask, Interner<ITaskConfig, String> interner) {
+      ITaskConfig config = storedTask.getAssignedTask().getTask();
+      interner.removeAssociation(config, Tasks.id(storedTask));
+      ITaskConfig canonical = interner.addAssociation(config, Tasks.id(storedTask));
+      // The canonical config is shared by reference, avoiding a copy of the task.
+      this.storedTask = canonical == config
+          ? storedTask
+          : storedTask.withAssignedTask(storedTask.getAssignedTask().withTask(canonical));
     }
 
     @Override
@@ -366,16 +494,114 @@ class MemTaskStore implements TaskStore.Mutable {
   }
 
   /**
-   * A non-unique secondary index on the task store.  Maps a custom key type to a set of task IDs.
+   * An immutable version of the store contents.
+   */
+  private static final class Version {
+    private final SegmentedMap<String, Task> tasks;
+    // Secondary index contents, in the same order as the secondary index definitions.
+    private final ImmutableList<IndexVersion> indices;
+
+    Version(SegmentedMap<String, Task> tasks, ImmutableList<IndexVersion> indices) {
+      this.tasks = tasks;
+      this.indices = indices;
+    }
+
+    static Version empty(int numIndices) {
+      return new Version(
+          SegmentedMap.<String, Task>empty(TASK_SEGMENTS),
+          ImmutableList.copyOf(Collections.nCopies(numIndices, IndexVersion.EMPTY)));
+    }
+  }
+
+  /**
+   * Accumulates changes against the current version of the store, and publishes the result as a
+   * new version.  Must only be used by a writer, while holding the store's monitor.
+   */
+  private final class VersionEditor {
+    private final Version base = current;
+    private final SegmentedMap.Editor<String, Task> tasks;
+    private final Set<String> modifiedIds = Sets.newHashSet();
+
+    VersionEditor() {
+      this(0);
+    }
+
+    /**
+     * Creates an editor sized for an expected number of added tasks.
+     *
+     * @param expectedPuts Number of tasks that are expected to be added.
+     */
+    VersionEditor(int expectedPuts) {
+      tasks = base.tasks.edit(expectedPuts);
+    }
+
+    @Nullable
+    Task get(String taskId) {
+      return tasks.get(taskId);
+    }
+
+    void put(Task task) {
+      String taskId = Tasks.id(task.storedTask);
+      tasks.put(taskId, task);
+      modifiedIds.add(taskId);
+    }
+
+    @Nullable
+    Task remove(String taskId) {
+      Task removed = tasks.remove(taskId);
+      if (removed != null) {
+        modifiedIds.add(taskId);
+      }
+      return removed;
+    }
+
+    void publish() {
+      if (modifiedIds.isEmpty()) {
+        return;
+      }
+
+      ImmutableList.Builder<IndexVersion> indices = ImmutableList.builder();
+      for (int i = 0; i < secondaryIndices.size(); i++) {
+        indices.add(secondaryIndices.get(i).update(
+            base.indices.get(i),
+            modifiedIds,
+            base.tasks,
+            tasks));
+      }
+      current = new Version(tasks.build(), indices.build());
+    }
+  }
+
+  /**
+   * An immutable version of a secondary index.  Maps index keys to the tasks with that key,
+   * keyed by task ID.
+   */
+  private static final class IndexVersion {
+    static final IndexVersion EMPTY = new IndexVersion(
+        SegmentedMap.<Object, SegmentedMap<String, Task>>empty(INDEX_KEY_SEGMENTS),
+        0);
+
+    private final SegmentedMap<Object, SegmentedMap<String, Task>> entries;
+    private final int size;
+
+    IndexVersion(SegmentedMap<Object, SegmentedMap<String, Task>> entries, int size) {
+      this.entries = entries;
+      this.size = size;
+    }
+  }
+
+  /**
+   * A non-unique secondary index on the task store.  Maps a custom key type to a set of tasks.
+   * The index contents are held in an {@link IndexVersion}, this class defines how tasks are
+   * indexed and how queries are matched against the index.
    *
    * @param <K> Key type.
    */
   private static class SecondaryIndex<K> {
-    private final Multimap<K, String> index =
-        Multimaps.synchronizedSetMultimap(HashMultimap.<K, String>create());
     private final Function<IScheduledTask, K> indexer;
     private final Function<Query.Builder, Optional<Set<K>>> queryExtractor;
     private final AtomicLong hitCount;
+    private final String name;
 
     /**
      * Creates a secondary index that will extract keys from tasks using the provided indexer.
@@ -394,64 +620,124 @@ class MemTaskStore implements TaskStore.Mutable {
       this.indexer = indexer;
       this.queryExtractor = queryExtractor;
       this.hitCount = statsProvider.makeCounter("task_queries_by_" + name);
-      statsProvider.makeGauge(
-          getIndexSizeStatName(name),
-          new Supplier<Number>() {
-            @Override
-            public Number get() {
-              return index.size();
-            }
-          });
+      this.name = name;
     }
 
-    void insert(Iterable<IScheduledTask> tasks) {
-      for (IScheduledTask task : tasks) {
-        insert(task);
+    /**
+     * Creates a new version of the index, reflecting changes to a set of tasks.
+     *
+     * @param base Index version to apply changes to.
+     * @param taskIds IDs of tasks that were added, replaced or removed.
+     * @param before Task contents that {@code base} reflects.
+     * @param after Task contents that the new index version should reflect.
+     * @return A new index version.
+     */
+    IndexVersion update(
+        IndexVersion base,
+        Iterable<String> taskIds,
+        SegmentedMap<String, Task> before,
+        SegmentedMap.Editor<String, Task> after) {
+
+      Map<Object, SegmentedMap.Editor<String, Task>> keyEditors = Maps.newHashMap();
+      int size = base.size;
+      for (String taskId : taskIds) {
+        Task removed = before.get(taskId);
+        if (removed != null) {
+          K key = indexer.apply(removed.storedTask);
+          if (key != null && editorFor(base, keyEditors, key).remove(taskId) != null) {
+            size--;
+          }
+        }
+
+        Task added = after.get(taskId);
+        if (added != null) {
+          K key = indexer.apply(added.storedTask);
+          if (key != null && editorFor(base, keyEditors, key).put(taskId, added) == null) {
+            size++;
+          }
+        }
       }
-    }
 
-    void insert(IScheduledTask task) {
-      K key = indexer.apply(task);
-      if (key != null) {
-        index.put(key, Tasks.id(task));
+      SegmentedMap.Editor<Object, SegmentedMap<String, Task>> entries = base.entries.edit();
+      for (Map.Entry<Object, SegmentedMap.Editor<String, Task>> entry : keyEditors.entrySet()) {
+        SegmentedMap<String, Task> keyTasks = entry.getValue().build();
+        if (keyTasks.isEmpty()) {
+          entries.remove(entry.getKey());
+        } else {
+          entries.put(entry.getKey(), keyTasks);
+        }
       }
+      return new IndexVersion(entries.build(), size);
     }
 
-    void clear() {
-      index.clear();
-    }
+    /**
+     * Creates a version of the index from scratch.  Tasks are grouped by key before any index
+     * entries are created, so each entry is built once and sized for its tasks.
+     *
+     * @param tasks Tasks to index, with unique IDs.
+     * @return A new index version.
+     */
+    IndexVersion build(Iterable<Task> tasks) {
+      Map<Object, List<Task>> byKey = Maps.newHashMap();
+      int size = 0;
+      for (Task task : tasks) {
+        K key = indexer.apply(task.storedTask);
+        if (key != null) {
+          List<Task> keyTasks = byKey.get(key);
+          if (keyTasks == null) {
+            keyTasks = Lists.newArrayList();
+            byKey.put(key, keyTasks);
+          }
+          keyTasks.add(task);
+          size++;
+        }
+      }
 
-    void remove(IScheduledTask task) {
-      K key = indexer.apply(task);
-      if (key != null) {
-        index.remove(key, Tasks.id(task));
+      SegmentedMap.Editor<Object, SegmentedMap<String, Task>> entries =
+          SegmentedMap.<Object, SegmentedMap<String, Task>>empty(INDEX_KEY_SEGMENTS)
+              .edit(byKey.size());
+      for (Map.Entry<Object, List<Task>> entry : byKey.entrySet()) {
+        SegmentedMap.Editor<String, Task> keyTasks =
+            SegmentedMap.<String, Task>empty(INDEX_VALUE_SEGMENTS).edit(entry.getValue().size());
+        for (Task task : entry.getValue()) {
+          keyTasks.put(Tasks.id(task.storedTask), task);
+        }
+        entries.put(entry.getKey(), keyTasks.build());
       }
+      return new IndexVersion(entries.build(), size);
     }
 
-    void replace(IScheduledTask old, IScheduledTask replacement) {
-      synchronized (index) {
-        remove(old);
-        insert(replacement);
+    private static SegmentedMap.Editor<String, Task> editorFor(
+        IndexVersion base,
+        Map<Object, SegmentedMap.Editor<String, Task>> keyEditors,
+        Object key) {
+
+      SegmentedMap.Editor<String, Task> editor = keyEditors.get(key);
+      if (editor == null) {
+        SegmentedMap<String, Task> keyTasks = base.entries.get(key);
+        editor = (keyTasks == null
+            ? SegmentedMap.<String, Task>empty(INDEX_VALUE_SEGMENTS)
+            : keyTasks).edit();
+        keyEditors.put(key, editor);
       }
+      return editor;
     }
 
-    private final Function<Set<K>, Iterable<String>> lookup =
-        new Function<Set<K>, Iterable<String>>() {
-          @Override
-          public Iterable<String> apply(Set<K> keys) {
-            hitCount.incrementAndGet();
-            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-            synchronized (index) {
-              for (K key : keys) {
-                builder.addAll(index.get(key));
-              }
+    Optional<Iterable<Task>> getMatches(final IndexVersion version, Query.Builder query) {
+      return queryExtractor.apply(query).transform(new Function<Set<K>, Iterable<Task>>() {
+        @Override
+        public Iterable<Task> apply(Set<K> keys) {
+          hitCount.incrementAndGet();
+          ImmutableList.Builder<Task> matches = ImmutableList.builder();
+          for (K key : keys) {
+            SegmentedMap<String, Task> keyTasks = version.entries.get(key);
+            if (keyTasks != null) {
+              matches.addAll(keyTasks.values());
             }
-            return builder.build();
           }
-    };
-
-    Optional<Iterable<String>> getMatches(Query.Builder query) {
-      return queryExtractor.apply(query).transform(lookup);
+          return matches.build();
+        }
+      });
     }
   }
 }
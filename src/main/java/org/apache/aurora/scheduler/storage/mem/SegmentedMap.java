@@ -0,0 +1,222 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable map that is partitioned into a fixed number of segments by key hash.  Modified
+ * copies are produced with an {@link Editor}, which copies only the segments that are changed and
+ * shares all other segments with the original map.  This makes it practical to publish a new
+ * version of a large map for every change.
+ * <p>
+ * Null keys and values are not permitted.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+final class SegmentedMap<K, V> {
+
+  private final ImmutableList<ImmutableMap<K, V>> segments;
+  private final int size;
+
+  private SegmentedMap(ImmutableList<ImmutableMap<K, V>> segments, int size) {
+    this.segments = segments;
+    this.size = size;
+  }
+
+  /**
+   * Creates an empty map.
+   *
+   * @param numSegments Number of segments to partition the map into, must be a power of two.
+   * @param <K> Key type.
+   * @param <V> Value type.
+   * @return An empty map.
+   */
+  static <K, V> SegmentedMap<K, V> empty(int numSegments) {
+    Preconditions.checkArgument(
+        numSegments > 0 && Integer.bitCount(numSegments) == 1,
+        "Segment count must be a positive power of two.");
+
+    return new SegmentedMap<>(
+        ImmutableList.copyOf(Collections.nCopies(numSegments, ImmutableMap.<K, V>of())),
+        0);
+  }
+
+  private static int segmentIndex(Object key, int numSegments) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (numSegments - 1);
+  }
+
+  @Nullable
+  V get(Object key) {
+    return segments.get(segmentIndex(key, segments.size())).get(key);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets a live view of the values in the map.  Since the map is immutable, the view may be
+   * iterated any number of times and from any thread.
+   *
+   * @return The map values, in no particular order.
+   */
+  FluentIterable<V> values() {
+    return FluentIterable.from(segments).transformAndConcat(
+        new Function<ImmutableMap<K, V>, Iterable<V>>() {
+          @Override
+          public Iterable<V> apply(ImmutableMap<K, V> segment) {
+            return segment.values();
+          }
+        });
+  }
+
+  /**
+   * Creates an editor that accumulates changes against this map.  This map is not modified.
+   *
+   * @return A new editor.
+   */
+  Editor<K, V> edit() {
+    return edit(0);
+  }
+
+  /**
+   * Creates an editor that accumulates changes against this map, sizing modified segments to hold
+   * an expected number of additional entries without being resized.  This map is not modified.
+   *
+   * @param expectedPuts Number of entries that are expected to be added with the editor.
+   * @return A new editor.
+   */
+  Editor<K, V> edit(int expectedPuts) {
+    Preconditions.checkArgument(expectedPuts >= 0, "Expected puts may not be negative.");
+    return new Editor<>(this, expectedPuts);
+  }
+
+  /**
+   * Accumulates changes against a base map, and produces a new map that shares unmodified segments
+   * with the base.  Editors are not thread-safe.
+   *
+   * @param <K> Key type.
+   * @param <V> Value type.
+   */
+  static final class Editor<K, V> {
+    private final SegmentedMap<K, V> base;
+    private final List<Map<K, V>> modified;
+    private final int expectedSegmentPuts;
+    private int size;
+    private boolean dirty = false;
+
+    private Editor(SegmentedMap<K, V> base, int expectedPuts) {
+      this.base = base;
+      int numSegments = base.segments.size();
+      this.modified = Lists.newArrayList(Collections.<Map<K, V>>nCopies(numSegments, null));
+      this.expectedSegmentPuts = (expectedPuts + numSegments - 1) / numSegments;
+      this.size = base.size;
+    }
+
+    private Map<K, V> modifiableSegment(int index) {
+      Map<K, V> segment = modified.get(index);
+      if (segment == null) {
+        ImmutableMap<K, V> baseSegment = base.segments.get(index);
+        segment = Maps.newHashMapWithExpectedSize(baseSegment.size() + expectedSegmentPuts);
+        segment.putAll(baseSegment);
+        modified.set(index, segment);
+        dirty = true;
+      }
+      return segment;
+    }
+
+    @Nullable
+    V get(Object key) {
+      int index = segmentIndex(key, modified.size());
+      Map<K, V> segment = modified.get(index);
+      return segment == null ? base.segments.get(index).get(key) : segment.get(key);
+    }
+
+    /**
+     * Associates a value with a key, replacing any existing value.
+     *
+     * @param key Key to store.
+     * @param value Value to associate with {@code key}.
+     * @return The previous value associated with {@code key}, or {@code null} if there was none.
+     */
+    @Nullable
+    V put(K key, V value) {
+      requireNonNull(value);
+      V previous = modifiableSegment(segmentIndex(key, modified.size())).put(key, value);
+      if (previous == null) {
+        size++;
+      }
+      return previous;
+    }
+
+    /**
+     * Removes the value associated with a key.
+     *
+     * @param key Key to remove.
+     * @return The value that was associated with {@code key}, or {@code null} if there was none.
+     */
+    @Nullable
+    V remove(Object key) {
+      int index = segmentIndex(key, modified.size());
+      if (modified.get(index) == null && !base.segments.get(index).containsKey(key)) {
+        return null;
+      }
+
+      V previous = modifiableSegment(index).remove(key);
+      if (previous != null) {
+        size--;
+      }
+      return previous;
+    }
+
+    /**
+     * Creates a map reflecting the base map with all changes applied.
+     *
+     * @return The modified map.
+     */
+    SegmentedMap<K, V> build() {
+      if (!dirty) {
+        return base;
+      }
+
+      ImmutableList.Builder<ImmutableMap<K, V>> segments = ImmutableList.builder();
+      for (int i = 0; i < modified.size(); i++) {
+        Map<K, V> segment = modified.get(i);
+        segments.add(segment == null ? base.segments.get(i) : ImmutableMap.copyOf(segment));
+      }
+      return new SegmentedMap<>(segments.build(), size);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
@@ -32,7 +33,6 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -155,15 +155,18 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
 
   @Override
   public Response getTasksWithoutConfigs(TaskQuery query) {
-    List<ScheduledTask> tasks = Lists.transform(
-        getTasks(query),
-        new Function<ScheduledTask, ScheduledTask>() {
+    // The executor config is dropped before the tasks are copied, so that it is never copied.
+    List<ScheduledTask> tasks = FluentIterable.from(queryTasks(query))
+        .transform(new Function<IScheduledTask, ScheduledTask>() {
           @Override
-          public ScheduledTask apply(ScheduledTask task) {
-            task.getAssignedTask().getTask().unsetExecutorConfig();
-            return task;
+          public ScheduledTask apply(IScheduledTask task) {
+            IAssignedTask assignedTask = task.getAssignedTask();
+            return task.withAssignedTask(
+                assignedTask.withTask(assignedTask.getTask().withExecutorConfig(null)))
+                .newBuilder();
           }
-        });
+        })
+        .toList();
 
     return ok(Result.scheduleStatusResult(new ScheduleStatusResult().setTasks(tasks)));
   }
@@ -228,8 +231,13 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   @Override
   public Response getRoleSummary() {
     Multimap<String, IJobKey> jobsByRole = mapByRole(
-        Storage.Util.fetchTasks(storage, Query.unscoped()),
-        Tasks.SCHEDULED_TO_JOB_KEY);
+        storage.read(new Quiet<Iterable<IJobKey>>() {
+          @Override
+          public Iterable<IJobKey> apply(StoreProvider storeProvider) {
+            return storeProvider.getTaskStore().fetchJobKeys(Query.unscoped());
+          }
+        }),
+        Functions.<IJobKey>identity());
 
     Multimap<String, IJobKey> cronJobsByRole = mapByRole(
         Storage.Util.fetchCronJobs(storage),
@@ -340,17 +348,14 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   }
 
   private List<ScheduledTask> getTasks(TaskQuery query) {
-    requireNonNull(query);
+    return IScheduledTask.toBuildersList(queryTasks(query));
+  }
 
-    Iterable<IScheduledTask> tasks = Storage.Util.fetchTasks(storage, Query.arbitrary(query));
-    if (query.isSetOffset()) {
-      tasks = Iterables.skip(tasks, query.getOffset());
-    }
-    if (query.isSetLimit()) {
-      tasks = Iterables.limit(tasks, query.getLimit());
-    }
+  private Iterable<IScheduledTask> queryTasks(TaskQuery query) {
+    requireNonNull(query);
 
-    return IScheduledTask.toBuildersList(tasks);
+    // The task store applies the query's ordering, offset and limit.
+    return Storage.Util.fetchTasks(storage, Query.arbitrary(query));
   }
 
   private Query.Builder maybeRoleScoped(Optional<String> ownerRole) {
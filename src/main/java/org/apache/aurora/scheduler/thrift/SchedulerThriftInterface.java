@@ -555,7 +555,8 @@ class SchedulerThriftInterface implements AnnotatedAuroraAdmin {
       }
     }
 
-    return storage.write(new MutateWork.Quiet<Response>() {
+    // Kills confined to specific jobs need not wait for writes to other jobs.
+    return storage.write(new MutateWork.Quiet<Response>(JobKeys.from(query)) {
       @Override
       public Response apply(MutableStoreProvider storeProvider) {
         Iterable<IScheduledTask> tasks = storeProvider.getTaskStore().fetchTasks(query);
@@ -604,7 +605,9 @@ class SchedulerThriftInterface implements AnnotatedAuroraAdmin {
       return error(AUTH_FAILED, e);
     }
 
-    return storage.write(new MutateWork.Quiet<Response>() {
+    return storage.write(new MutateWork.Quiet<Response>(
+        Optional.<Set<IJobKey>>of(ImmutableSet.of(jobKey))) {
+
       @Override
       public Response apply(MutableStoreProvider storeProvider) {
         try {
@@ -616,26 +619,21 @@ class SchedulerThriftInterface implements AnnotatedAuroraAdmin {
         }
 
         Query.Builder query = Query.instanceScoped(jobKey, shardIds).active();
-        final Iterable<IScheduledTask> matchingTasks =
+        Iterable<IScheduledTask> matchingTasks =
             storeProvider.getTaskStore().fetchTasks(query);
         if (Iterables.size(matchingTasks) != shardIds.size()) {
           return invalidRequest("Not all requested shards are active.");
         }
 
         LOG.info("Restarting shards matching " + query);
-        storage.write(new MutateWork.NoResult.Quiet() {
-          @Override
-          protected void execute(MutableStoreProvider storeProvider) {
-            for (String taskId : Tasks.ids(matchingTasks)) {
-              stateManager.changeState(
-                  storeProvider,
-                  taskId,
-                  Optional.<ScheduleStatus>absent(),
-                  ScheduleStatus.RESTARTING,
-                  restartedByMessage(context.getIdentity()));
-            }
-          }
-        });
+        for (String taskId : Tasks.ids(matchingTasks)) {
+          stateManager.changeState(
+              storeProvider,
+              taskId,
+              Optional.<ScheduleStatus>absent(),
+              ScheduleStatus.RESTARTING,
+              restartedByMessage(context.getIdentity()));
+        }
         return ok();
       }
     });
@@ -146,7 +146,9 @@ class JobUpdateControllerImpl implements JobUpdateController {
     requireNonNull(update);
     requireNonNull(auditData);
 
-    storage.write(new MutateWork.NoResult<UpdateStateException>() {
+    storage.write(new MutateWork.NoResult<UpdateStateException>(
+        jobScope(update.getSummary().getJobKey())) {
+
       @Override
       protected void execute(MutableStoreProvider storeProvider)
           throws UpdateStateException {
@@ -214,7 +216,7 @@ class JobUpdateControllerImpl implements JobUpdateController {
     requireNonNull(key);
     requireNonNull(auditData);
     LOG.info("Attempting to resume update " + key);
-    storage.write(new MutateWork.NoResult<UpdateStateException>() {
+    storage.write(new MutateWork.NoResult<UpdateStateException>(jobScope(key.getJob())) {
       @Override
       protected void execute(MutableStoreProvider storeProvider) throws UpdateStateException {
         IJobUpdateDetails details = Iterables.getOnlyElement(
@@ -344,7 +346,7 @@ class JobUpdateControllerImpl implements JobUpdateController {
   }
 
   private void instanceChanged(final IInstanceKey instance, final Optional<IScheduledTask> state) {
-    storage.write(new MutateWork.NoResult.Quiet() {
+    storage.write(new MutateWork.NoResult.Quiet(jobScope(instance.getJobKey())) {
       @Override
       protected void execute(MutableStoreProvider storeProvider) {
         IJobKey job = instance.getJobKey();
@@ -396,7 +398,7 @@ class JobUpdateControllerImpl implements JobUpdateController {
       final Function<? super JobUpdateStatus, JobUpdateEvent> stateChange)
       throws UpdateStateException {
 
-    storage.write(new MutateWork.NoResult<UpdateStateException>() {
+    storage.write(new MutateWork.NoResult<UpdateStateException>(jobScope(key.getJob())) {
       @Override
       protected void execute(MutableStoreProvider storeProvider)
           throws UpdateStateException {
@@ -725,6 +727,10 @@ class JobUpdateControllerImpl implements JobUpdateController {
     return IJobUpdateQuery.build(new JobUpdateQuery().setKey(key.newBuilder()));
   }
 
+  private static Optional<Set<IJobKey>> jobScope(IJobKey job) {
+    return Optional.<Set<IJobKey>>of(ImmutableSet.of(job));
+  }
+
   private static JobUpdateEvent newEvent(JobUpdateStatus status) {
     return new JobUpdateEvent().setStatus(status);
   }
@@ -738,7 +744,7 @@ class JobUpdateControllerImpl implements JobUpdateController {
     return new Runnable() {
       @Override
       public void run() {
-        storage.write(new MutateWork.NoResult.Quiet() {
+        storage.write(new MutateWork.NoResult.Quiet(jobScope(key.getJob())) {
           @Override
           protected void execute(MutableStoreProvider storeProvider) {
             IJobUpdateSummary summary =
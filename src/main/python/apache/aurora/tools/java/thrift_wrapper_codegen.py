@@ -99,6 +99,15 @@ class Field(object):
   def isset_method(self):
     return 'isSet%s' % (self.name[0].upper() + self.name[1:])
 
+  def setter_method(self):
+    return 'set%s' % (self.name[0].upper() + self.name[1:])
+
+  def with_method(self):
+    return 'with%s' % (self.name[0].upper() + self.name[1:])
+
+  def buffer_method(self):
+    return 'bufferFor%s' % (self.name[0].upper() + self.name[1:])
+
   def __str__(self):
     return '%s: %s' % (self.name, self.ttype)
 
@@ -128,12 +137,63 @@ IMMUTABLE_COLLECTION_ASSIGNMENT = '''this.%(field)s = !wrapped.%(isset)s()
 
 
 # Template string for assignment for a collection field containing a struct.
+# The wrapped struct is already owned by this instance, so elements may be wrapped without copying.
 STRUCT_COLLECTION_FIELD_ASSIGNMENT = '''this.%(field)s = !wrapped.%(isset)s()
         ? Immutable%(collection)s.<%(params)s>of()
         : FluentIterable.from(wrapped.%(fn_name)s())
-              .transform(%(params)s.FROM_BUILDER)
+              .transform(%(params)s.FROM_BUILDER_NO_COPY)
               .to%(collection)s();'''
 
+
+# Template string for a shallow copy of a single field, used to share unmodified field values
+# between a wrapper and instances derived from it.
+SHALLOW_COPY_FIELD_TEMPLATE = '''    if (wrapped.%(isset)s()) {
+      copy.%(setter)s(wrapped.%(fn_name)s());
+    }'''
+
+
+SHALLOW_COPY_TEMPLATE = '''  private %(wrapped)s shallowCopy() {
+    %(wrapped)s copy = new %(wrapped)s();
+%(copies)s
+    return copy;
+  }'''
+
+
+# Template string for a constructor that adopts already-wrapped field values.
+SHARING_CONSTRUCTOR_TEMPLATE = '''  private %(name)s(
+      %(wrapped)s wrapped,
+      %(params)s) {
+
+    this.wrapped = Objects.requireNonNull(wrapped);
+    %(assignments)s
+  }'''
+
+
+# Template string for a method that derives a copy of a wrapper with one field replaced.
+# Unmodified fields are shared with the original instance rather than copied.
+WITH_METHOD_TEMPLATE = '''  public %(name)s %(with)s(%(param_type)s value) {
+    %(wrapped)s copy = shallowCopy();%(prepare)s
+    copy.%(setter)s(%(value)s);
+    return %(construct)s;
+  }'''
+
+
+IMMUTABLE_COLLECTION_WITH_PREPARE = '''
+    Immutable%(collection)s<%(params)s> %(field)s = value == null
+        ? Immutable%(collection)s.<%(params)s>of()
+        : Immutable%(collection)s.copyOf(value);'''
+
+
+STRUCT_COLLECTION_WITH_PREPARE = '''
+    Immutable%(collection)s<%(params)s> %(field)s = value == null
+        ? Immutable%(collection)s.<%(params)s>of()
+        : Immutable%(collection)s.copyOf(value);'''
+
+
+STRUCT_COLLECTION_WITH_VALUE = '''value == null
+        ? null
+        : FluentIterable.from(%(field)s).transform(%(params)s.UNWRAP).to%(collection)s()'''
+
 PACKAGE_NAME = 'org.apache.aurora.scheduler.storage.entities'
 
 
@@ -154,7 +214,14 @@ public final class %(name)s {
     this.wrapped = Objects.requireNonNull(wrapped);%(assignments)s
   }
 
-  static %(name)s buildNoCopy(%(wrapped)s wrapped) {
+%(constructors)s  /**
+   * Creates a wrapper that takes ownership of {@code wrapped} rather than copying it.  The caller
+   * must not retain or modify {@code wrapped} after this call.
+   *
+   * @param wrapped Builder to wrap.
+   * @return A wrapper around {@code wrapped}.
+   */
+  public static %(name)s buildNoCopy(%(wrapped)s wrapped) {
     return new %(name)s(wrapped);
   }
 
@@ -178,6 +245,22 @@ public final class %(name)s {
         }
       };
 
+  static final Function<%(wrapped)s, %(name)s> FROM_BUILDER_NO_COPY =
+      new Function<%(wrapped)s, %(name)s>() {
+        @Override
+        public %(name)s apply(%(wrapped)s input) {
+          return %(name)s.buildNoCopy(input);
+        }
+      };
+
+  static final Function<%(name)s, %(wrapped)s> UNWRAP =
+      new Function<%(name)s, %(wrapped)s>() {
+        @Override
+        public %(wrapped)s apply(%(name)s input) {
+          return input.unwrap();
+        }
+      };
+
   public static ImmutableList<%(wrapped)s> toBuildersList(Iterable<%(name)s> w) {
     return FluentIterable.from(w).transform(TO_BUILDER).toList();
   }
@@ -198,6 +281,10 @@ public final class %(name)s {
     return wrapped.deepCopy();
   }
 
+  %(wrapped)s unwrap() {
+    return wrapped;
+  }
+
 %(accessors)s
 
   @Override
@@ -236,6 +323,7 @@ class GeneratedCode(object):
     self._accessors = []
     self._fields = []
     self._assignments = []
+    self._constructors = []
 
   def add_import(self, import_class):
     self._imports.add(import_class)
@@ -247,6 +335,9 @@ class GeneratedCode(object):
   def add_accessor(self, accessor_method):
     self._accessors.append(accessor_method)
 
+  def add_constructor(self, constructor):
+    self._constructors.append(constructor)
+
   def dump(self, f):
     remaining_imports = list(self._imports)
     import_groups = []
@@ -274,6 +365,7 @@ class GeneratedCode(object):
       'accessors': '\n\n'.join(self._accessors),
       'fields': ('  ' + '\n  '.join(self._fields) + '\n') if self._fields else '',
       'assignments': ('\n    ' + '\n    '.join(self._assignments)) if self._assignments else '',
+      'constructors': ''.join([c + '\n\n' for c in self._constructors]),
     }, file=f)
 
 
@@ -541,8 +633,94 @@ def generate_java(struct):
               'isset': field.isset_method(),
               'params': field.ttype.param_names()}
       code.add_assignment(IMMUTABLE_COLLECTION_DECLARATION % args, assignment % args)
+
+  if struct.kind == 'struct' and struct.fields:
+    generate_with_methods(code, struct)
   return code
 
+
+def generate_with_methods(code, struct):
+  '''Generates methods that derive modified copies of a wrapper while sharing unmodified fields.'''
+
+  def is_wrapped_struct(field):
+    return isinstance(field.ttype, StructType) and not field.ttype.immutable
+
+  def is_collection(field):
+    return isinstance(field.ttype, ParameterizedType)
+
+  def shared_type(field):
+    if is_wrapped_struct(field):
+      return field.ttype.codegen_name
+    return 'Immutable%s<%s>' % (field.ttype.name, field.ttype.param_names())
+
+  # Fields which hold wrapped values, and may be shared between instances.
+  shared_fields = [f for f in struct.fields if is_wrapped_struct(f) or is_collection(f)]
+
+  def construct(replaced):
+    if not shared_fields:
+      return 'new %s(copy)' % struct.codegen_name
+    def arg(f):
+      if f is replaced:
+        return 'value' if is_wrapped_struct(f) else f.name
+      return 'this.%s' % f.name
+    args = ['copy'] + [arg(f) for f in shared_fields]
+    if len(args) > 3:
+      return 'new %s(\n        %s)' % (struct.codegen_name, ',\n        '.join(args))
+    return 'new %s(%s)' % (struct.codegen_name, ', '.join(args))
+
+  if shared_fields:
+    code.add_constructor(SHARING_CONSTRUCTOR_TEMPLATE % {
+      'name': struct.codegen_name,
+      'wrapped': struct.name,
+      'params': ',\n      '.join(['%s %s' % (shared_type(f), f.name) for f in shared_fields]),
+      'assignments': '\n    '.join(['this.%s = %s;' % (f.name, f.name) for f in shared_fields]),
+    })
+
+  def copy_field(field):
+    if field.ttype.name == 'byte[]':
+      # Avoid the binary accessor, which replaces the field value with a right-sized buffer.
+      fn_name = field.buffer_method()
+    else:
+      fn_name = field.accessor_method()
+    return SHALLOW_COPY_FIELD_TEMPLATE % {'isset': field.isset_method(),
+                                          'setter': field.setter_method(),
+                                          'fn_name': fn_name}
+
+  code.add_constructor(SHALLOW_COPY_TEMPLATE % {
+    'wrapped': struct.name,
+    'copies': '\n'.join(map(copy_field, struct.fields)),
+  })
+
+  for field in struct.fields:
+    args = {
+      'name': struct.codegen_name,
+      'wrapped': struct.name,
+      'with': field.with_method(),
+      'setter': field.setter_method(),
+      'field': field.name,
+      'prepare': '',
+      'value': 'value',
+      'construct': construct(field),
+    }
+    if is_wrapped_struct(field):
+      args['param_type'] = field.ttype.codegen_name
+      args['value'] = 'value == null ? null : value.unwrap()'
+    elif is_collection(field):
+      code.add_import('java.util.%s' % field.ttype.name)
+      collection_args = {'collection': field.ttype.name,
+                         'field': field.name,
+                         'params': field.ttype.param_names()}
+      args['param_type'] = '%s<%s>' % (field.ttype.name, field.ttype.param_names())
+      if all([p.immutable for p in field.ttype.params]):
+        args['prepare'] = IMMUTABLE_COLLECTION_WITH_PREPARE % collection_args
+        args['value'] = 'value == null ? null : %s' % field.name
+      else:
+        args['prepare'] = STRUCT_COLLECTION_WITH_PREPARE % collection_args
+        args['value'] = STRUCT_COLLECTION_WITH_VALUE % collection_args
+    else:
+      args['param_type'] = field.ttype.name
+    code.add_accessor(WITH_METHOD_TEMPLATE % args)
+
 if __name__ == '__main__':
   parser = OptionParser()
   parser.add_option('-v', '--verbose',
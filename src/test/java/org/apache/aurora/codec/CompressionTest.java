@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressionTest {
+
+  private static byte[] compress(Compression compression, byte[] data) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = compression.compress(compressed)) {
+      out.write(data);
+    }
+    return compressed.toByteArray();
+  }
+
+  private static byte[] decompress(Compression compression, byte[] data) throws IOException {
+    try (InputStream in = compression.decompress(new ByteArrayInputStream(data))) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  private static void assertRoundTrip(byte[] data) throws IOException {
+    for (Compression compression : Compression.values()) {
+      assertArrayEquals(
+          compression.name(),
+          data,
+          decompress(compression, compress(compression, data)));
+    }
+  }
+
+  private static byte[] compressibleData(int length) {
+    StringBuilder text = new StringBuilder();
+    Random random = new Random(0);
+    while (text.length() < length) {
+      text.append("task_id_").append(random.nextInt(10000)).append(" host_")
+          .append(random.nextInt(100)).append(' ');
+    }
+    return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), length);
+  }
+
+  private static byte[] randomData(int length) {
+    byte[] data = new byte[length];
+    new Random(0).nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testRoundTripEmpty() throws IOException {
+    assertRoundTrip(new byte[0]);
+  }
+
+  @Test
+  public void testRoundTripSmall() throws IOException {
+    assertRoundTrip("aurora".getBytes(StandardCharsets.UTF_8));
+    assertRoundTrip(new byte[] {0});
+  }
+
+  @Test
+  public void testRoundTripCompressible() throws IOException {
+    // Spans several LZ4 blocks.
+    byte[] data = compressibleData(Lz4OutputStream.BLOCK_SIZE * 3 + 17);
+    assertRoundTrip(data);
+    for (Compression compression : Compression.values()) {
+      assertTrue(compression.name(), compress(compression, data).length < data.length / 2);
+    }
+  }
+
+  @Test
+  public void testRoundTripRandom() throws IOException {
+    assertRoundTrip(randomData(Lz4OutputStream.BLOCK_SIZE + 1));
+  }
+
+  @Test
+  public void testRoundTripRepeated() throws IOException {
+    assertRoundTrip(new byte[Lz4OutputStream.BLOCK_SIZE * 2]);
+  }
+
+  @Test
+  public void testLz4StoresUncompressibleBlocks() throws IOException {
+    byte[] data = randomData(1000);
+    byte[] compressed = compress(Compression.LZ4, data);
+    assertEquals(Lz4OutputStream.HEADER_SIZE + data.length, compressed.length);
+    assertArrayEquals(data, decompress(Compression.LZ4, compressed));
+  }
+
+  @Test
+  public void testLz4TruncatedStream() throws IOException {
+    byte[] compressed = compress(Compression.LZ4, compressibleData(10000));
+    for (int length : new int[] {1, Lz4OutputStream.HEADER_SIZE, compressed.length - 1}) {
+      try {
+        decompress(Compression.LZ4, Arrays.copyOf(compressed, length));
+        fail("Expected truncated stream of length " + length + " to be rejected.");
+      } catch (IOException e) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test
+  public void testLz4MalformedBlocks() throws IOException {
+    byte[] data = compressibleData(10000);
+    byte[] block = new byte[Lz4.maxCompressedLength(data.length)];
+    int length = new Lz4().compress(data, 0, data.length, block, 0);
+
+    Random random = new Random(0);
+    byte[] decompressed = new byte[data.length];
+    for (int i = 0; i < 1000; i++) {
+      byte[] corrupted = Arrays.copyOf(block, length);
+      corrupted[random.nextInt(length)] = (byte) random.nextInt();
+      try {
+        // Corruption must never escape as anything but an IOException.
+        Lz4.decompress(corrupted, 0, length, decompressed, 0, decompressed.length);
+      } catch (IOException e) {
+        // Expected.
+      }
+    }
+
+    try {
+      Lz4.decompress(block, 0, length, decompressed, 0, decompressed.length - 1);
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+}
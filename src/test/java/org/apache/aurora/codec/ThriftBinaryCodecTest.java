@@ -13,12 +13,24 @@
  */
 package org.apache.aurora.codec;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.Identity;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class ThriftBinaryCodecTest {
 
@@ -51,6 +63,50 @@ public class ThriftBinaryCodecTest {
     ThriftBinaryCodec.decodeNonNull(Identity.class, null);
   }
 
+  @Test
+  public void testEncodingRoundTrip() throws CodingException {
+    Identity original = new Identity("mesos", "jill");
+
+    for (Encoding encoding : Encoding.values()) {
+      byte[] encoded = ThriftBinaryCodec.encodeNonNull(original, encoding);
+      assertEquals(Encoding.BINARY != encoding, encoded[0] == (byte) 0x82);
+      assertEquals(original, ThriftBinaryCodec.decodeNonNull(Identity.class, encoded));
+    }
+  }
+
+  @Test
+  public void testBinaryEncodingUnchanged() throws CodingException, TException {
+    Identity original = new Identity("mesos", "jill");
+    assertArrayEquals(
+        new TSerializer(new TBinaryProtocol.Factory()).serialize(original),
+        ThriftBinaryCodec.encodeNonNull(original, Encoding.BINARY));
+  }
+
+  @Test
+  public void testCompactEncodingSmaller() throws CodingException {
+    Identity original = new Identity("mesos", "jill");
+    assertTrue(ThriftBinaryCodec.encodeNonNull(original, Encoding.COMPACT).length
+        < ThriftBinaryCodec.encodeNonNull(original, Encoding.BINARY).length);
+  }
+
+  @Test
+  public void testCompressedEncodingRoundTrip() throws CodingException {
+    Identity original = new Identity("aurora", "jsmith");
+
+    for (Compression compression : Compression.values()) {
+      for (Encoding encoding : Encoding.values()) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ThriftBinaryCodec.compressNonNull(original, compressed, compression, encoding);
+        assertEquals(
+            original,
+            ThriftBinaryCodec.decompressNonNull(
+                Identity.class,
+                compressed.toByteArray(),
+                compression));
+      }
+    }
+  }
+
   @Test
   public void testInflateDeflateRoundTrip() throws CodingException {
     Identity original = new Identity("aurora", "jsmith");
@@ -61,4 +117,67 @@ public class ThriftBinaryCodecTest {
 
     assertEquals(original, inflated);
   }
+
+  @Test
+  public void testCompressDecompressRoundTrip() throws CodingException {
+    Identity original = new Identity("aurora", "jsmith");
+
+    for (Compression compression : Compression.values()) {
+      byte[] compressed = ThriftBinaryCodec.compressNonNull(original, compression);
+      assertEquals(
+          original,
+          ThriftBinaryCodec.decompressNonNull(Identity.class, compressed, compression));
+    }
+  }
+
+  @Test
+  public void testParallelDeflateRoundTrip() throws CodingException {
+    // Large enough to span several compression blocks.
+    StringBuilder role = new StringBuilder();
+    Random random = new Random(0);
+    while (role.length() < ParallelDeflaterOutputStream.BLOCK_SIZE * 3) {
+      role.append(random.nextInt(1000));
+    }
+    Identity original = new Identity(role.toString(), "jsmith");
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+      ThriftBinaryCodec.deflateNonNull(original, deflated, executor, 2);
+      assertEquals(
+          original,
+          ThriftBinaryCodec.inflateNonNull(Identity.class, deflated.toByteArray()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testParallelDeflateCompact() throws CodingException {
+    Identity original = new Identity("aurora", "jsmith");
+
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    ThriftBinaryCodec.deflateNonNull(
+        original,
+        deflated,
+        MoreExecutors.sameThreadExecutor(),
+        1,
+        Encoding.COMPACT);
+
+    assertEquals(
+        original,
+        ThriftBinaryCodec.inflateNonNull(Identity.class, deflated.toByteArray()));
+  }
+
+  @Test
+  public void testParallelDeflateSmallObject() throws CodingException {
+    Identity original = new Identity("aurora", "jsmith");
+
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    ThriftBinaryCodec.deflateNonNull(original, deflated, MoreExecutors.sameThreadExecutor(), 1);
+
+    assertEquals(
+        original,
+        ThriftBinaryCodec.inflateNonNull(Identity.class, deflated.toByteArray()));
+  }
 }
@@ -34,6 +34,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
 import com.google.common.testing.TearDown;
 import com.google.common.util.concurrent.Atomics;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -279,6 +280,11 @@ public class SchedulerIT extends BaseZooKeeperTest {
       this.pos = pos;
     }
 
+    @Override
+    public byte[] identity() {
+      return Ints.toByteArray(pos);
+    }
+
     @Override
     public int compareTo(Position position) {
       return pos - ((IntPosition) position).pos;
@@ -293,6 +299,7 @@ public class SchedulerIT extends BaseZooKeeperTest {
         new Function<LogEntry, Entry>() {
           @Override
           public Entry apply(final LogEntry entry) {
+            final Position position = nextPosition();
             return new Entry() {
               @Override
               public byte[] contents() {
@@ -302,6 +309,11 @@ public class SchedulerIT extends BaseZooKeeperTest {
                   throw Throwables.propagate(e);
                 }
               }
+
+              @Override
+              public Position position() {
+                return position;
+              }
             };
           }
         });
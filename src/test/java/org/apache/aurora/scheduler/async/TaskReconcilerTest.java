@@ -23,9 +23,7 @@ import com.twitter.common.stats.StatsProvider;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import org.apache.aurora.scheduler.base.Query;
-import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.mesos.Driver;
-import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
 import org.apache.aurora.scheduler.testing.FakeScheduledExecutor;
 import org.junit.Before;
@@ -33,7 +31,7 @@ import org.junit.Test;
 
 import static org.apache.aurora.scheduler.async.TaskReconciler.EXPLICIT_STAT_NAME;
 import static org.apache.aurora.scheduler.async.TaskReconciler.IMPLICIT_STAT_NAME;
-import static org.apache.aurora.scheduler.async.TaskReconciler.TASK_TO_PROTO;
+import static org.apache.aurora.scheduler.async.TaskReconciler.TASK_ID_TO_PROTO;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.junit.Assert.assertEquals;
@@ -61,11 +59,12 @@ public class TaskReconcilerTest extends EasyMockTest {
     expect(statsProvider.makeCounter(EXPLICIT_STAT_NAME)).andReturn(explicitRuns);
     expect(statsProvider.makeCounter(IMPLICIT_STAT_NAME)).andReturn(implicitRuns);
 
-    IScheduledTask task = TaskTestUtil.makeTask("id1", TaskTestUtil.JOB);
     storageUtil.expectOperations();
-    storageUtil.expectTaskFetch(Query.unscoped().active(), task).times(5);
+    expect(storageUtil.taskStore.fetchTaskIds(Query.unscoped().active()))
+        .andReturn(ImmutableSet.of("id1"))
+        .times(5);
 
-    driver.reconcileTasks(ImmutableSet.of(TASK_TO_PROTO.apply(task)));
+    driver.reconcileTasks(ImmutableSet.of(TASK_ID_TO_PROTO.apply("id1")));
     expectLastCall().times(5);
 
     driver.reconcileTasks(ImmutableSet.of());
@@ -24,8 +24,10 @@ import com.twitter.common.testing.easymock.EasyMockTest;
 import com.twitter.common.util.testing.FakeClock;
 
 import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
@@ -141,6 +143,8 @@ public class TaskThrottlerTest extends EasyMockTest {
                 .setStatus(status)
                 .setTimestamp(clock.nowMillis())))
         .setStatus(status)
-        .setAssignedTask(new AssignedTask().setTaskId(id)));
+        .setAssignedTask(new AssignedTask()
+            .setTaskId(id)
+            .setTask(new TaskConfig().setJob(new JobKey("role", "env", "job")))));
   }
 }
@@ -26,6 +26,7 @@ import com.twitter.common.testing.easymock.EasyMockTest;
 import com.twitter.common.util.testing.FakeClock;
 
 import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
@@ -58,6 +59,7 @@ import static org.junit.Assert.assertEquals;
 public class TaskTimeoutTest extends EasyMockTest {
 
   private static final String TASK_ID = "task_id";
+  private static final JobKey JOB = new JobKey("role", "env", "job");
   private static final Amount<Long, Time> TIMEOUT = Amount.of(1L, Time.MINUTES);
 
   private AtomicLong timedOutTaskCounter;
@@ -111,7 +113,9 @@ public class TaskTimeoutTest extends EasyMockTest {
   private void changeState(String taskId, ScheduleStatus from, ScheduleStatus to) {
     IScheduledTask task = IScheduledTask.build(new ScheduledTask()
         .setStatus(to)
-        .setAssignedTask(new AssignedTask().setTaskId(taskId)));
+        .setAssignedTask(new AssignedTask()
+            .setTaskId(taskId)
+            .setTask(new TaskConfig().setJob(JOB))));
     timeout.recordStateChange(TaskStateChange.transition(task, from));
   }
 
@@ -201,7 +205,7 @@ public class TaskTimeoutTest extends EasyMockTest {
         .setTaskEvents(ImmutableList.of(new TaskEvent(stateEnteredMs, status)))
         .setAssignedTask(new AssignedTask()
             .setTaskId(taskId)
-            .setTask(new TaskConfig())));
+            .setTask(new TaskConfig().setJob(JOB))));
   }
 
   @Test
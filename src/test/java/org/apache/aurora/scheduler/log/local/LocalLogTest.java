@@ -0,0 +1,313 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.log.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+
+import org.apache.aurora.scheduler.log.Log.Entry;
+import org.apache.aurora.scheduler.log.Log.Position;
+import org.apache.aurora.scheduler.log.Log.Stream;
+import org.apache.aurora.scheduler.log.Log.Stream.InvalidPositionException;
+import org.apache.aurora.scheduler.log.local.LocalLog.LocalPosition;
+import org.apache.aurora.scheduler.log.local.LocalLog.LocalStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalLogTest {
+
+  private static final Amount<Integer, Data> SEGMENT_SIZE = Amount.of(1, Data.KB);
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private LocalStream open() throws IOException {
+    return new LocalLog(directory, SEGMENT_SIZE, true).open();
+  }
+
+  private static byte[] entry(String contents) {
+    return contents.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> read(Iterator<Entry> entries) {
+    return ImmutableList.copyOf(Iterators.transform(entries, new Function<Entry, String>() {
+      @Override
+      public String apply(Entry entry) {
+        return new String(entry.contents(), StandardCharsets.UTF_8);
+      }
+    }));
+  }
+
+  private static List<String> readAll(Stream stream) {
+    return read(stream.readAll());
+  }
+
+  private static List<String> appendAll(Stream stream, int count) {
+    ImmutableList.Builder<String> appended = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      String contents = "entry " + i;
+      stream.append(entry(contents));
+      appended.add(contents);
+    }
+    return appended.build();
+  }
+
+  private List<File> segmentFiles() {
+    List<File> files = Lists.newArrayList();
+    for (File file : directory.listFiles()) {
+      if (Segment.parseFirstPosition(file).isPresent()) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  @Test
+  public void testAppendAndRead() throws IOException {
+    LocalStream stream = open();
+    assertEquals(ImmutableList.<String>of(), readAll(stream));
+
+    Position a = stream.append(entry("a"));
+    Position b = stream.append(entry("b"));
+    Position empty = stream.append(new byte[0]);
+    assertTrue(a.compareTo(b) < 0);
+    assertTrue(b.compareTo(empty) < 0);
+    assertEquals(ImmutableList.of("a", "b", ""), readAll(stream));
+    assertEquals(ImmutableList.of("b", ""), read(stream.read(b, empty)));
+    assertEquals(ImmutableList.of("a"), read(stream.read(a, a)));
+  }
+
+  @Test
+  public void testReadFrom() throws IOException {
+    LocalStream stream = open();
+    stream.append(entry("a"));
+    Position b = stream.append(entry("b"));
+    stream.append(entry("c"));
+    assertEquals(ImmutableList.of("b", "c"), read(stream.readFrom(b)));
+
+    // Positions may be looked up by their identity after the log is re-opened.
+    LocalStream recovered = open();
+    assertEquals(
+        ImmutableList.of("b", "c"),
+        read(recovered.readFrom(recovered.position(b.identity()))));
+
+    recovered.truncateBefore(recovered.position(new LocalPosition(2).identity()));
+    try {
+      recovered.readFrom(b);
+      fail();
+    } catch (InvalidPositionException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testTail() throws IOException {
+    LocalStream stream = open();
+    assertFalse(stream.tail(Optional.<Position>absent()).hasNext());
+    Position a = stream.append(entry("a"));
+    Position b = stream.append(entry("b"));
+    assertEquals(ImmutableList.of("a", "b"), read(stream.tail(Optional.<Position>absent())));
+    assertEquals(ImmutableList.of("b"), read(stream.tail(Optional.of(a))));
+    assertFalse(stream.tail(Optional.of(b)).hasNext());
+
+    // Entries report their positions, from which the log may be tailed.
+    Position c = stream.append(entry("c"));
+    Entry entry = stream.tail(Optional.of(b)).next();
+    assertEquals(0, c.compareTo(entry.position()));
+    assertEquals(ImmutableList.of("c"), read(stream.tail(Optional.of(b))));
+
+    stream.truncateBefore(c);
+    assertEquals(ImmutableList.of("c"), read(stream.tail(Optional.of(b))));
+    try {
+      stream.tail(Optional.of(a));
+      fail();
+    } catch (InvalidPositionException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testOpenReturnsSameStream() throws IOException {
+    LocalLog log = new LocalLog(directory, SEGMENT_SIZE, false);
+    assertSame(log.open(), log.open());
+  }
+
+  @Test
+  public void testRecover() throws IOException {
+    LocalStream stream = open();
+    List<String> appended = appendAll(stream, 100);
+    assertTrue(segmentFiles().size() > 1);
+
+    LocalStream recovered = open();
+    assertEquals(appended, readAll(recovered));
+
+    // Appends continue from the last recovered position.
+    Position position = recovered.append(entry("next"));
+    assertEquals(100, ((LocalPosition) position).getPosition());
+    assertEquals(
+        ImmutableList.builder().addAll(appended).add("next").build(),
+        readAll(open()));
+  }
+
+  @Test
+  public void testLargeEntry() throws IOException {
+    LocalStream stream = open();
+    stream.append(entry("small"));
+    byte[] large = new byte[SEGMENT_SIZE.as(Data.BYTES) * 3];
+    large[large.length - 1] = 1;
+    stream.append(large);
+    stream.append(entry("after"));
+
+    List<Entry> entries = ImmutableList.copyOf(open().readAll());
+    assertEquals(3, entries.size());
+    assertEquals(large.length, entries.get(1).contents().length);
+    assertEquals(1, entries.get(1).contents()[large.length - 1]);
+    assertEquals("after", new String(entries.get(2).contents(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testTruncate() throws IOException {
+    LocalStream stream = open();
+    List<Position> positions = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      positions.add(stream.append(entry("entry " + i)));
+    }
+    int segments = segmentFiles().size();
+
+    stream.truncateBefore(positions.get(90));
+    assertTrue(segmentFiles().size() < segments);
+    assertEquals(
+        ImmutableList.of("entry 90", "entry 91", "entry 92", "entry 93", "entry 94", "entry 95",
+            "entry 96", "entry 97", "entry 98", "entry 99"),
+        readAll(stream));
+    try {
+      stream.read(positions.get(89), positions.get(95));
+      fail();
+    } catch (InvalidPositionException e) {
+      // Expected.
+    }
+
+    // The truncation survives recovery, even for entries in segments that were not deleted.
+    assertEquals(readAll(stream), readAll(open()));
+
+    // Truncating before the last entry leaves only that entry.
+    stream.truncateBefore(positions.get(99));
+    assertEquals(ImmutableList.of("entry 99"), readAll(stream));
+  }
+
+  @Test(expected = InvalidPositionException.class)
+  public void testTruncateInvalidPosition() throws IOException {
+    LocalStream stream = open();
+    stream.append(entry("a"));
+    stream.truncateBefore(new LocalPosition(5));
+  }
+
+  @Test
+  public void testRecoverTornWrite() throws IOException {
+    LocalStream stream = open();
+    stream.append(entry("a"));
+    stream.append(entry("b"));
+
+    // Corrupt the contents of the last entry, as though the write of it was interrupted.
+    File segment = Iterators.getOnlyElement(segmentFiles().iterator());
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(Segment.recordSize(1) + Segment.HEADER_SIZE);
+      file.write('x');
+    }
+
+    LocalStream recovered = open();
+    assertEquals(ImmutableList.of("a"), readAll(recovered));
+    recovered.append(entry("c"));
+    assertEquals(ImmutableList.of("a", "c"), readAll(open()));
+  }
+
+  @Test
+  public void testRecoverEmptySegment() throws IOException {
+    LocalStream stream = open();
+    appendAll(stream, 10);
+    long next = ((LocalPosition) stream.append(entry("last"))).getPosition() + 1;
+
+    // A segment that was created, but never appended to.
+    Segment.create(directory, next, SEGMENT_SIZE.as(Data.BYTES));
+
+    LocalStream recovered = open();
+    assertEquals(11, readAll(recovered).size());
+    assertEquals(next, ((LocalPosition) recovered.append(entry("next"))).getPosition());
+  }
+
+  @Test
+  public void testConcurrentAppends() throws Exception {
+    final LocalStream stream = open();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Position>> futures = Lists.newArrayList();
+      for (int i = 0; i < 200; i++) {
+        final String contents = "entry " + i;
+        futures.add(executor.submit(new Callable<Position>() {
+          @Override
+          public Position call() {
+            return stream.append(entry(contents));
+          }
+        }));
+      }
+      ImmutableSet.Builder<Position> positions = ImmutableSet.builder();
+      for (Future<Position> future : futures) {
+        positions.add(future.get());
+      }
+      assertEquals(200, positions.build().size());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<String> read = readAll(open());
+    assertEquals(200, read.size());
+    assertEquals(200, ImmutableSet.copyOf(read).size());
+    assertFalse(read.contains(null));
+  }
+}
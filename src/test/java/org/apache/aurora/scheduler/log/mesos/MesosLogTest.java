@@ -15,11 +15,13 @@ package org.apache.aurora.scheduler.log.mesos;
 
 import java.lang.reflect.Constructor;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeoutException;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedSet;
@@ -33,6 +35,7 @@ import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
+import org.apache.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import org.apache.aurora.scheduler.log.mesos.LogInterface.ReaderInterface;
 import org.apache.aurora.scheduler.log.mesos.LogInterface.WriterInterface;
@@ -46,6 +49,7 @@ import static org.apache.aurora.scheduler.log.mesos.MesosLog.LogStream.LogPositi
 import static org.apache.mesos.Log.Position;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 public class MesosLogTest extends EasyMockTest {
@@ -66,7 +70,10 @@ public class MesosLogTest extends EasyMockTest {
     backingLog = createMock(LogInterface.class);
     logReader = createMock(ReaderInterface.class);
     logWriter = createMock(WriterInterface.class);
+    logStream = openStream(1);
+  }
 
+  private org.apache.aurora.scheduler.log.Log.Stream openStream(final int readBatchSize) {
     Injector injector = Guice.createInjector(new AbstractModule() {
       @Override
       protected void configure() {
@@ -74,6 +81,7 @@ public class MesosLogTest extends EasyMockTest {
         bind(ReaderInterface.class).toInstance(logReader);
         bind(new TypeLiteral<Amount<Long, Time>>() { }).annotatedWith(MesosLog.ReadTimeout.class)
             .toInstance(READ_TIMEOUT);
+        bindConstant().annotatedWith(MesosLog.ReadBatchSize.class).to(readBatchSize);
         bind(WriterInterface.class).toInstance(logWriter);
         bind(new TypeLiteral<Amount<Long, Time>>() { }).annotatedWith(MesosLog.WriteTimeout.class)
             .toInstance(WRITE_TIMEOUT);
@@ -83,8 +91,7 @@ public class MesosLogTest extends EasyMockTest {
       }
     });
 
-    MesosLog log = injector.getInstance(MesosLog.class);
-    logStream = log.open();
+    return injector.getInstance(MesosLog.class).open();
   }
 
   @Test
@@ -168,10 +175,19 @@ public class MesosLogTest extends EasyMockTest {
   }
 
   private IExpectationSetters<List<Log.Entry>> expectRead(Position position) throws Exception {
-    expectSetPosition(position);
+    return expectRead(position, position);
+  }
+
+  private IExpectationSetters<List<Log.Entry>> expectRead(Position from, Position to)
+      throws Exception {
+
+    expectSetPosition(from);
+    if (to != from) {
+      expectSetPosition(to);
+    }
     return expect(logReader.read(
-        position,
-        position,
+        from,
+        to,
         READ_TIMEOUT.getValue(),
         READ_TIMEOUT.getUnit().getTimeUnit()));
   }
@@ -220,6 +236,133 @@ public class MesosLogTest extends EasyMockTest {
 
   }
 
+  @Test
+  public void testLogReadFrom() throws Exception {
+    Position beginning = makePosition(1);
+    Position middle = makePosition(2);
+    Position end = expectWrite(DUMMY_CONTENT, 3);
+    expectDiscoverEntryRange(beginning, end);
+    expectRead(middle, "middleData");
+    expectRead(end, DUMMY_CONTENT);
+
+    control.replay();
+
+    Iterator<org.apache.aurora.scheduler.log.Log.Entry> entries =
+        logStream.readFrom(new LogPosition(middle));
+    assertEquals("middleData", new String(entries.next().contents(), StandardCharsets.UTF_8));
+    assertEquals(DUMMY_CONTENT, new String(entries.next().contents(), StandardCharsets.UTF_8));
+    assertFalse(entries.hasNext());
+  }
+
+  @Test(expected = InvalidPositionException.class)
+  public void testLogReadFromTruncated() throws Exception {
+    Position truncated = makePosition(1);
+    Position beginning = makePosition(2);
+    Position end = expectWrite(DUMMY_CONTENT, 3);
+    expectDiscoverEntryRange(beginning, end);
+
+    control.replay();
+
+    logStream.readFrom(new LogPosition(truncated));
+  }
+
+  @Test
+  public void testLogTail() throws Exception {
+    Position beginning = makePosition(1);
+    Position middle = makePosition(2);
+    Position end = makePosition(3);
+    // Nothing is appended to the log.
+    expectDiscoverEntryRange(beginning, end);
+    expectRead(middle, "middleData");
+    expectRead(end, "endData");
+
+    control.replay();
+
+    Iterator<org.apache.aurora.scheduler.log.Log.Entry> entries =
+        logStream.tail(Optional.<org.apache.aurora.scheduler.log.Log.Position>of(
+            new LogPosition(beginning)));
+    org.apache.aurora.scheduler.log.Log.Entry entry = entries.next();
+    assertEquals("middleData", new String(entry.contents(), StandardCharsets.UTF_8));
+    assertEquals(0, entry.position().compareTo(new LogPosition(middle)));
+    assertEquals("endData", new String(entries.next().contents(), StandardCharsets.UTF_8));
+    assertFalse(entries.hasNext());
+  }
+
+  @Test(expected = InvalidPositionException.class)
+  public void testLogTailTruncated() throws Exception {
+    Position truncated = makePosition(1);
+    Position beginning = makePosition(3);
+    Position end = makePosition(4);
+    expectDiscoverEntryRange(beginning, end);
+
+    control.replay();
+
+    logStream.tail(
+        Optional.<org.apache.aurora.scheduler.log.Log.Position>of(new LogPosition(truncated)));
+  }
+
+  @Test
+  public void testPositionIdentity() throws Exception {
+    Position position = makePosition(5);
+    expectSetPosition(position);
+
+    control.replay();
+
+    LogPosition wrapped = new LogPosition(position);
+    assertEquals(0, wrapped.compareTo(logStream.position(wrapped.identity())));
+  }
+
+  @Test
+  public void testLogReadBatches() throws Exception {
+    logStream = openStream(2);
+
+    Position first = makePosition(1);
+    Position second = makePosition(2);
+    Position third = makePosition(3);
+    Position fourth = makePosition(4);
+    Position end = expectWrite(DUMMY_CONTENT, 5);
+    expectDiscoverEntryRange(first, end);
+    expectRead(first, second).andReturn(ImmutableList.of(
+        makeEntry(first, "firstData"),
+        makeEntry(second, "secondData")));
+    // The third position is not an append, and is skipped.
+    expectRead(third, fourth).andReturn(ImmutableList.of(makeEntry(fourth, "fourthData")));
+    expectRead(end, DUMMY_CONTENT);
+
+    control.replay();
+
+    assertEquals(
+        ImmutableList.of("firstData", "secondData", "fourthData", DUMMY_CONTENT),
+        readAll());
+  }
+
+  @Test
+  public void testPrefetchFails() throws Exception {
+    logStream = openStream(2);
+
+    Position first = makePosition(1);
+    Position second = makePosition(2);
+    Position third = makePosition(3);
+    Position end = expectWrite(DUMMY_CONTENT, 4);
+    expectDiscoverEntryRange(first, end);
+    expectRead(first, second).andReturn(ImmutableList.of(
+        makeEntry(first, "firstData"),
+        makeEntry(second, "secondData")));
+    expectRead(third, end).andThrow(new TimeoutException("injected"));
+
+    control.replay();
+
+    Iterator<org.apache.aurora.scheduler.log.Log.Entry> entries = logStream.readAll();
+    assertEquals("firstData", new String(entries.next().contents(), StandardCharsets.UTF_8));
+    assertEquals("secondData", new String(entries.next().contents(), StandardCharsets.UTF_8));
+    try {
+      entries.hasNext();
+      fail();
+    } catch (StreamAccessException e) {
+      // Expected.
+    }
+  }
+
   @Test(expected = StreamAccessException.class)
   public void testInitialAppendFails() throws Exception {
     expectWrite(DUMMY_CONTENT).andThrow(new Log.WriterFailedException("injected"));
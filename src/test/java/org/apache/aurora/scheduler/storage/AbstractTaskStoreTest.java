@@ -13,13 +13,16 @@
  */
 package org.apache.aurora.scheduler.storage;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -28,6 +31,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.twitter.common.base.Closure;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
@@ -41,11 +45,13 @@ import org.apache.aurora.gen.MesosContainer;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskQuery;
+import org.apache.aurora.gen.TaskSortKey;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.TaskStore.Mutable.TaskMutation;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.apache.aurora.scheduler.storage.testing.StorageEntityUtil;
@@ -54,6 +60,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.apache.aurora.gen.ScheduleStatus.RUNNING;
+import static org.apache.aurora.scheduler.base.TaskTestUtil.addStateTransition;
 import static org.apache.aurora.scheduler.base.TaskTestUtil.makeTask;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -100,7 +107,7 @@ public abstract class AbstractTaskStoreTest {
     });
   }
 
-  private Iterable<IScheduledTask> fetchTasks(final Query.Builder query) {
+  protected Iterable<IScheduledTask> fetchTasks(final Query.Builder query) {
     return storage.read(new Storage.Work.Quiet<Iterable<IScheduledTask>>() {
       @Override
       public Iterable<IScheduledTask> apply(Storage.StoreProvider storeProvider) {
@@ -109,6 +116,41 @@ public abstract class AbstractTaskStoreTest {
     });
   }
 
+  private List<IScheduledTask> visitTasks(final Query.Builder query) {
+    final ImmutableList.Builder<IScheduledTask> visited = ImmutableList.builder();
+    storage.read(new Storage.Work.Quiet<Void>() {
+      @Override
+      public Void apply(Storage.StoreProvider storeProvider) {
+        storeProvider.getTaskStore().forEach(query, new Closure<IScheduledTask>() {
+          @Override
+          public void execute(IScheduledTask task) {
+            visited.add(task);
+          }
+        });
+        return null;
+      }
+    });
+    return visited.build();
+  }
+
+  private Set<String> fetchTaskIds(final Query.Builder query) {
+    return storage.read(new Storage.Work.Quiet<Set<String>>() {
+      @Override
+      public Set<String> apply(Storage.StoreProvider storeProvider) {
+        return storeProvider.getTaskStore().fetchTaskIds(query);
+      }
+    });
+  }
+
+  private Set<IJobKey> fetchJobKeys(final Query.Builder query) {
+    return storage.read(new Storage.Work.Quiet<Set<IJobKey>>() {
+      @Override
+      public Set<IJobKey> apply(Storage.StoreProvider storeProvider) {
+        return storeProvider.getTaskStore().fetchJobKeys(query);
+      }
+    });
+  }
+
   protected void saveTasks(final IScheduledTask... tasks) {
     saveTasks(ImmutableSet.copyOf(tasks));
   }
@@ -208,6 +250,24 @@ public abstract class AbstractTaskStoreTest {
         TASK_A, TASK_B, TASK_C, TASK_D);
   }
 
+  @Test
+  public void testCaptureTasks() {
+    saveTasks(TASK_A, TASK_B);
+
+    Supplier<ImmutableSet<IScheduledTask>> captured =
+        storage.read(new Storage.Work.Quiet<Supplier<ImmutableSet<IScheduledTask>>>() {
+          @Override
+          public Supplier<ImmutableSet<IScheduledTask>> apply(Storage.StoreProvider storeProvider) {
+            return storeProvider.getTaskStore().captureTasks();
+          }
+        });
+
+    saveTasks(TASK_C);
+    deleteTasks("a");
+    assertStoreContents(TASK_B, TASK_C);
+    assertEquals(ImmutableSet.of(TASK_A, TASK_B), captured.get());
+  }
+
   @Test
   public void testQueryMultipleInstances() {
     ImmutableSet.Builder<IScheduledTask> tasksBuilder = ImmutableSet.builder();
@@ -223,6 +283,32 @@ public abstract class AbstractTaskStoreTest {
     assertQueryResults(Query.unscoped(), tasks);
   }
 
+  @Test
+  public void testQueryPagination() {
+    IJobKey job = JobKeys.from("role", "env", "job");
+    IScheduledTask a = makePageTask("a", job, 2, 300L);
+    IScheduledTask b = makePageTask("b", job, 0, 100L);
+    IScheduledTask c = makePageTask("c", job, 1, 500L);
+    IScheduledTask d = makePageTask("d", job, 3, 200L);
+    saveTasks(a, b, c, d);
+
+    TaskQuery query = Query.jobScoped(job).get();
+    assertPage(query.deepCopy().setLimit(2), a, b);
+    assertPage(query.deepCopy().setOffset(1).setLimit(2), b, c);
+    assertPage(query.deepCopy().setOffset(3), d);
+    assertPage(query.deepCopy().setOffset(5));
+    assertPage(query.deepCopy().setLimit(3).setSortDescending(true), d, c, b);
+    assertPage(query.deepCopy().setLimit(2).setSortKey(TaskSortKey.INSTANCE_ID), b, c);
+    assertPage(query.deepCopy().setOffset(2).setSortKey(TaskSortKey.INSTANCE_ID), a, d);
+    assertPage(query.deepCopy().setLimit(3).setSortKey(TaskSortKey.LATEST_EVENT_TIME), b, d, a);
+    assertPage(
+        query.deepCopy()
+            .setLimit(1)
+            .setSortKey(TaskSortKey.LATEST_EVENT_TIME)
+            .setSortDescending(true),
+        c);
+  }
+
   @Test
   public void testQueryBySlaveHost() {
     IScheduledTask a = setHost(makeTask("a", JobKeys.from("role", "env", "job")), HOST_A);
@@ -563,6 +649,36 @@ public abstract class AbstractTaskStoreTest {
 
   private void assertQueryResults(Query.Builder query, Set<IScheduledTask> tasks) {
     assertEquals(tasks, fetchTasks(query));
+
+    List<IScheduledTask> visited = visitTasks(query);
+    assertEquals(tasks.size(), visited.size());
+    assertEquals(tasks, ImmutableSet.copyOf(visited));
+
+    assertEquals(Tasks.ids(tasks), fetchTaskIds(query));
+    assertEquals(
+        FluentIterable.from(tasks).transform(Tasks.SCHEDULED_TO_JOB_KEY).toSet(),
+        fetchJobKeys(query));
+  }
+
+  private void assertPage(TaskQuery query, IScheduledTask... tasks) {
+    Query.Builder builder = Query.arbitrary(query);
+    assertEquals(ImmutableList.copyOf(tasks), ImmutableList.copyOf(fetchTasks(builder)));
+    assertEquals(ImmutableList.copyOf(tasks), visitTasks(builder));
+    assertEquals(
+        FluentIterable.from(ImmutableList.copyOf(tasks)).transform(Tasks.SCHEDULED_TO_ID).toList(),
+        ImmutableList.copyOf(fetchTaskIds(builder)));
+  }
+
+  private static IScheduledTask makePageTask(
+      String id,
+      IJobKey job,
+      int instanceId,
+      long latestEventTimestamp) {
+
+    ScheduledTask builder =
+        addStateTransition(makeTask(id, job), RUNNING, latestEventTimestamp).newBuilder();
+    builder.getAssignedTask().setInstanceId(instanceId);
+    return IScheduledTask.build(builder);
   }
 
   private static IScheduledTask createTask(String id) {
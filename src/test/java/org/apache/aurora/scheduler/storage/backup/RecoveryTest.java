@@ -25,6 +25,7 @@ import com.twitter.common.quantity.Time;
 import com.twitter.common.testing.easymock.EasyMockTest;
 import com.twitter.common.util.testing.FakeClock;
 
+import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.Lock;
 import org.apache.aurora.gen.storage.QuotaConfiguration;
@@ -46,6 +47,8 @@ import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImp
 import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl.BackupConfig;
 import org.apache.aurora.scheduler.storage.backup.TemporaryStorage.TemporaryStorageFactory;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator.SnapshotDeduplicatorImpl;
 import org.apache.aurora.scheduler.testing.FakeScheduledExecutor;
 import org.easymock.Capture;
 import org.junit.Before;
@@ -70,11 +73,12 @@ public class RecoveryTest extends EasyMockTest {
   private Command shutDownNow;
   private FakeClock clock;
   private StorageBackupImpl storageBackup;
+  private File backupDir;
   private RecoveryImpl recovery;
 
   @Before
   public void setUp() {
-    final File backupDir = Files.createTempDir();
+    backupDir = Files.createTempDir();
     addTearDown(new TearDown() {
       @Override
       public void tearDown() throws Exception {
@@ -89,13 +93,21 @@ public class RecoveryTest extends EasyMockTest {
     ScheduledExecutorService executor = createMock(ScheduledExecutorService.class);
     clock = FakeScheduledExecutor.scheduleExecutor(executor);
     TemporaryStorageFactory factory = new TemporaryStorageFactory();
+    SnapshotDeduplicator deduplicator = new SnapshotDeduplicatorImpl();
     storageBackup = new StorageBackupImpl(
         snapshotStore,
         clock,
         new BackupConfig(backupDir, 5, INTERVAL),
-        executor);
-
-    recovery = new RecoveryImpl(backupDir, factory, primaryStorage, distributedStore, shutDownNow);
+        executor,
+        deduplicator);
+
+    recovery = new RecoveryImpl(
+        backupDir,
+        factory,
+        primaryStorage,
+        distributedStore,
+        shutDownNow,
+        deduplicator);
   }
 
   @Test
@@ -149,6 +161,19 @@ public class RecoveryTest extends EasyMockTest {
     transaction.getValue().apply(storeProvider);
   }
 
+  @Test
+  public void testRecoverLegacyBackup() throws Exception {
+    control.replay();
+
+    // Backups were formerly written as binary-encoded snapshots.
+    Files.write(ThriftBinaryCodec.encodeNonNull(SNAPSHOT1), new File(backupDir, "legacy"));
+
+    recovery.stage("legacy");
+    assertEquals(
+        IScheduledTask.setFromBuilders(SNAPSHOT1.getTasks()),
+        recovery.query(Query.unscoped()));
+  }
+
   @Test(expected = RecoveryException.class)
   public void testLoadUnknownBackup() throws Exception {
     control.replay();
@@ -19,6 +19,8 @@ import java.util.concurrent.ScheduledExecutorService;
 
 import javax.annotation.Nullable;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -35,14 +37,15 @@ import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.JobConfiguration;
 import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.ResourceAggregate;
-import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.storage.QuotaConfiguration;
 import org.apache.aurora.gen.storage.SchedulerMetadata;
 import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.gen.storage.StoredCronJob;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.storage.SnapshotStore;
 import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl;
 import org.apache.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl.BackupConfig;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator.SnapshotDeduplicatorImpl;
 import org.apache.aurora.scheduler.testing.FakeScheduledExecutor;
 import org.junit.Before;
 import org.junit.Test;
@@ -75,7 +78,12 @@ public class StorageBackupTest extends EasyMockTest {
     });
     config = new BackupConfig(backupDir, MAX_BACKUPS, INTERVAL);
     clock.advance(Amount.of(365 * 30L, Time.DAYS));
-    storageBackup = new StorageBackupImpl(delegate, clock, config, executor);
+    storageBackup = new StorageBackupImpl(
+        delegate,
+        clock,
+        config,
+        executor,
+        new SnapshotDeduplicatorImpl());
   }
 
   @Test
@@ -99,10 +107,53 @@ public class StorageBackupTest extends EasyMockTest {
     File[] files = config.getDir().listFiles();
     assertNotNull(files);
 
+    // Backups are written in the legacy format by default.
     Snapshot restored = ThriftBinaryCodec.decode(Snapshot.class, Files.toByteArray(files[0]));
     assertEquals(snapshot, restored);
   }
 
+  @Test
+  public void testBackupCompactFormat() throws Exception {
+    Snapshot snapshot = makeSnapshot();
+    expect(delegate.createSnapshot()).andReturn(snapshot);
+    config = new BackupConfig(config.getDir(), MAX_BACKUPS, INTERVAL, true);
+    storageBackup = new StorageBackupImpl(
+        delegate,
+        clock,
+        config,
+        createMock(ScheduledExecutorService.class),
+        new SnapshotDeduplicatorImpl());
+
+    control.replay();
+
+    storageBackup.backupNow();
+    assertBackupCount(1);
+    assertEquals(1, storageBackup.getSuccesses().get());
+
+    @Nullable
+    File[] files = config.getDir().listFiles();
+    assertNotNull(files);
+
+    Snapshot restored = BackupFormat.read(files[0], new SnapshotDeduplicatorImpl());
+    assertEquals(snapshot, restored);
+  }
+
+  @Test
+  public void testBackupCapturedSnapshot() {
+    Snapshot snapshot = makeSnapshot();
+    expect(delegate.captureSnapshot()).andReturn(Suppliers.ofInstance(snapshot));
+
+    control.replay();
+
+    clock.advance(INTERVAL);
+    Supplier<Snapshot> captured = storageBackup.captureSnapshot();
+    // The backup is only saved once the captured snapshot is built.
+    assertBackupCount(0);
+    assertEquals(snapshot, captured.get());
+    assertBackupCount(1);
+    assertEquals(1, storageBackup.getSuccesses().get());
+  }
+
   @Test
   public void testDirectoryMissing() {
     Snapshot snapshot = makeSnapshot();
@@ -183,7 +234,8 @@ public class StorageBackupTest extends EasyMockTest {
     snapshot.setQuotaConfigurations(
         ImmutableSet.of(new QuotaConfiguration("roleA", new ResourceAggregate(10, 1024, 1024))));
     snapshot.setSchedulerMetadata(new SchedulerMetadata().setFrameworkId("frameworkId"));
-    snapshot.setTasks(ImmutableSet.of(new ScheduledTask()));
+    snapshot.setTasks(
+        ImmutableSet.of(TaskTestUtil.makeTask("task", TaskTestUtil.JOB).newBuilder()));
     return snapshot;
   }
 }
@@ -13,22 +13,36 @@
  */
 package org.apache.aurora.scheduler.storage.db;
 
+import java.util.Set;
+
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.util.Modules;
+import com.twitter.common.inject.Bindings.KeyFactory;
 import com.twitter.common.stats.StatsProvider;
 import com.twitter.common.util.Clock;
 import com.twitter.common.util.testing.FakeClock;
 
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.AbstractTaskStoreTest;
+import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.db.views.TaskConfigRow;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class DbTaskStoreTest extends AbstractTaskStoreTest {
 
@@ -41,8 +55,12 @@ public class DbTaskStoreTest extends AbstractTaskStoreTest {
 
   @Override
   protected Module getStorageModule() {
+    return getStorageModule(DbModule.testModule());
+  }
+
+  private static Module getStorageModule(Module dbModule) {
     return Modules.combine(
-        DbModule.testModule(),
+        dbModule,
         new AbstractModule() {
           @Override
           protected void configure() {
@@ -63,4 +81,48 @@ public class DbTaskStoreTest extends AbstractTaskStoreTest {
 
     // TODO(wfarner): Check that the job key was removed.
   }
+
+  @Test
+  public void testSaveTasksInBatches() {
+    Injector batchInjector = Guice.createInjector(getStorageModule(
+        DbModule.testModule(new DbModule.TaskStoreModule(KeyFactory.PLAIN), KeyFactory.PLAIN, 2)));
+    Storage batchStorage = batchInjector.getInstance(Storage.class);
+    batchStorage.prepare();
+
+    // One task has more events than are inserted with a single statement.
+    final Set<IScheduledTask> tasks = ImmutableSet.of(
+        TASK_A,
+        TASK_B,
+        TASK_C,
+        TaskTestUtil.addStateTransition(TASK_D, ScheduleStatus.RUNNING, 102L));
+    batchStorage.write(new Storage.MutateWork.NoResult.Quiet() {
+      @Override
+      protected void execute(Storage.MutableStoreProvider storeProvider) {
+        storeProvider.getUnsafeTaskStore().saveTasks(tasks);
+      }
+    });
+
+    assertEquals(
+        tasks,
+        batchStorage.read(new Storage.Work.Quiet<Set<IScheduledTask>>() {
+          @Override
+          public Set<IScheduledTask> apply(Storage.StoreProvider storeProvider) {
+            return storeProvider.getTaskStore().fetchTasks(Query.unscoped());
+          }
+        }));
+  }
+
+  @Test
+  public void testMaterializedTasksCached() {
+    saveTasks(TASK_A);
+    IScheduledTask fetched = Iterables.getOnlyElement(fetchTasks(Query.taskScoped("a")));
+    assertEquals(TASK_A, fetched);
+    assertSame(fetched, Iterables.getOnlyElement(fetchTasks(Query.unscoped())));
+
+    // Saving a task replaces its row, which must not be served from the cache.
+    ScheduledTask builder = TASK_A.newBuilder().setStatus(ScheduleStatus.RUNNING);
+    IScheduledTask updated = IScheduledTask.build(builder);
+    saveTasks(updated);
+    assertEquals(updated, Iterables.getOnlyElement(fetchTasks(Query.unscoped())));
+  }
 }
@@ -0,0 +1,91 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.entities;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class IScheduledTaskTest {
+
+  private static final ScheduledTask BUILDER = new ScheduledTask()
+      .setStatus(ScheduleStatus.PENDING)
+      .setAssignedTask(new AssignedTask()
+          .setTaskId("a")
+          .setInstanceId(1)
+          .setTask(new TaskConfig()
+              .setJob(new JobKey("role", "env", "job"))
+              .setNumCpus(1.0)))
+      .setTaskEvents(ImmutableList.of(new TaskEvent(1L, ScheduleStatus.PENDING)));
+
+  @Test
+  public void testWithMatchesBuilder() {
+    IScheduledTask original = IScheduledTask.build(BUILDER);
+    IScheduledTask modified = original
+        .withStatus(ScheduleStatus.ASSIGNED)
+        .withFailureCount(2)
+        .withAssignedTask(original.getAssignedTask()
+            .withSlaveHost("host")
+            .withAssignedPorts(ImmutableMap.of("http", 80)))
+        .withTaskEvents(ImmutableList.<ITaskEvent>builder()
+            .addAll(original.getTaskEvents())
+            .add(ITaskEvent.build(new TaskEvent(2L, ScheduleStatus.ASSIGNED)))
+            .build());
+
+    ScheduledTask expected = BUILDER.deepCopy()
+        .setStatus(ScheduleStatus.ASSIGNED)
+        .setFailureCount(2)
+        .setTaskEvents(ImmutableList.of(
+            new TaskEvent(1L, ScheduleStatus.PENDING),
+            new TaskEvent(2L, ScheduleStatus.ASSIGNED)));
+    expected.getAssignedTask()
+        .setSlaveHost("host")
+        .setAssignedPorts(ImmutableMap.of("http", 80));
+
+    assertEquals(IScheduledTask.build(expected), modified);
+    assertEquals(expected, modified.newBuilder());
+    assertEquals(IScheduledTask.build(BUILDER), original);
+  }
+
+  @Test
+  public void testWithSharesUnmodifiedFields() {
+    IScheduledTask original = IScheduledTask.build(BUILDER);
+    IScheduledTask modified = original.withStatus(ScheduleStatus.RUNNING);
+    assertSame(original.getAssignedTask(), modified.getAssignedTask());
+    assertSame(original.getTaskEvents(), modified.getTaskEvents());
+    assertSame(
+        original.getAssignedTask().getTask(),
+        original.getAssignedTask().withSlaveId("slave").getTask());
+  }
+
+  @Test
+  public void testWithUnsetsField() {
+    IScheduledTask original = IScheduledTask.build(BUILDER);
+    IScheduledTask modified = original.withTaskEvents(null);
+    assertFalse(modified.isSetTaskEvents());
+    assertEquals(ImmutableList.<ITaskEvent>of(), modified.getTaskEvents());
+    assertEquals(IScheduledTask.build(BUILDER.deepCopy().setTaskEvents(null)), modified);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointFileTest {
+
+  private static final byte[] POSITION = {0, 0, 0, 0, 0, 0, 0, 42};
+  private static final long ID = 0x1234567890abcdefL;
+
+  private File directory;
+  private File file;
+  private CheckpointFile checkpointFile;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+    file = new File(directory, "checkpoint");
+    checkpointFile = new CheckpointFile(file);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private static Snapshot createSnapshot(int tasks) {
+    ImmutableSet.Builder<ScheduledTask> builder = ImmutableSet.builder();
+    for (int i = 0; i < tasks; i++) {
+      builder.add(new ScheduledTask()
+          .setStatus(ScheduleStatus.RUNNING)
+          .setAssignedTask(new AssignedTask().setTaskId("task-" + i)));
+    }
+    return new Snapshot().setTimestamp(1L).setTasks(builder.build());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    assertFalse(checkpointFile.load().isPresent());
+
+    Snapshot snapshot = createSnapshot(1000);
+    checkpointFile.save(POSITION, ID, snapshot);
+    Optional<CheckpointFile.Checkpoint> checkpoint = checkpointFile.load();
+    assertTrue(checkpoint.isPresent());
+    assertArrayEquals(POSITION, checkpoint.get().getPosition());
+    assertEquals(ID, checkpoint.get().getId());
+    assertEquals(snapshot, checkpoint.get().getSnapshot());
+
+    // Saving replaces the previous checkpoint.
+    Snapshot next = createSnapshot(10);
+    byte[] nextPosition = {1};
+    checkpointFile.save(nextPosition, -1L, next);
+    checkpoint = checkpointFile.load();
+    assertArrayEquals(nextPosition, checkpoint.get().getPosition());
+    assertEquals(-1L, checkpoint.get().getId());
+    assertEquals(next, checkpoint.get().getSnapshot());
+  }
+
+  @Test
+  public void testCorruptCheckpoint() throws Exception {
+    checkpointFile.save(POSITION, ID, createSnapshot(100));
+    try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+      long offset = corrupt.length() / 2;
+      corrupt.seek(offset);
+      int value = corrupt.read();
+      corrupt.seek(offset);
+      corrupt.write(value ^ 0xff);
+    }
+    assertFalse(checkpointFile.load().isPresent());
+  }
+
+  @Test
+  public void testTruncatedCheckpoint() throws Exception {
+    checkpointFile.save(POSITION, ID, createSnapshot(100));
+    try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+      truncated.setLength(10);
+    }
+    assertFalse(checkpointFile.load().isPresent());
+  }
+}
@@ -0,0 +1,220 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.twitter.common.base.Closure;
+
+import org.apache.aurora.gen.storage.LogEntry;
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.SaveFrameworkId;
+import org.apache.aurora.gen.storage.Transaction;
+import org.apache.aurora.gen.storage.storageConstants;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeferredReplayTest {
+
+  private static final LogEntry TXN_A = transaction("a");
+  private static final LogEntry TXN_B = transaction("b");
+  private static final LogEntry TXN_C = transaction("c");
+
+  private List<String> applied;
+  private DeferredReplay replay;
+
+  private static LogEntry transaction(String frameworkId) {
+    return LogEntry.transaction(new Transaction(
+        ImmutableList.of(Op.saveFrameworkId(new SaveFrameworkId(frameworkId))),
+        storageConstants.CURRENT_SCHEMA_VERSION));
+  }
+
+  @Before
+  public void setUp() {
+    applied = Lists.newArrayList();
+    replay = createReplay(10);
+  }
+
+  private DeferredReplay createReplay(int maxDeferredOps) {
+    return new DeferredReplay(
+        new Closure<LogEntry>() {
+          @Override
+          public void execute(LogEntry entry) {
+            applied.add(entry.getTransaction().getOps().get(0).getSaveFrameworkId().getId());
+          }
+        },
+        maxDeferredOps);
+  }
+
+  private Runnable record(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        applied.add(name);
+      }
+    };
+  }
+
+  @Test
+  public void testTransactionsOnly() {
+    replay.transaction(TXN_A);
+    replay.transaction(TXN_B);
+    assertEquals(ImmutableList.<String>of(), applied);
+    replay.finish();
+    assertEquals(ImmutableList.of("a", "b"), applied);
+  }
+
+  @Test
+  public void testLegacySnapshot() {
+    replay.transaction(TXN_A);
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_B);
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "b"), applied);
+  }
+
+  @Test
+  public void testMarkedSnapshot() {
+    replay.transaction(TXN_A);
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_C);
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "b", "c"), applied);
+  }
+
+  @Test
+  public void testDelta() {
+    replay.marker();
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_A);
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.delta(record("delta"));
+    replay.transaction(TXN_C);
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "delta", "b", "c"), applied);
+  }
+
+  @Test
+  public void testAbandonedMarker() {
+    replay.marker();
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_A);
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.marker();
+    replay.transaction(TXN_C);
+    replay.delta(record("delta"));
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "delta", "c"), applied);
+  }
+
+  @Test
+  public void testCatchUp() {
+    replay.marker();
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_A);
+    replay.catchUp();
+    assertEquals(ImmutableList.of("snapshot", "a"), applied);
+
+    // Transactions since the next marker are applied immediately, and again on top of its
+    // snapshot.
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.catchUp();
+    assertEquals(ImmutableList.of("snapshot", "a", "b"), applied);
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_C);
+    replay.catchUp();
+    assertEquals(ImmutableList.of("snapshot", "a", "b", "snapshot", "b", "c"), applied);
+
+    // Deltas are skipped since all transactions were already applied.
+    replay.marker();
+    replay.delta(record("delta"));
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "a", "b", "snapshot", "b", "c"), applied);
+  }
+
+  @Test
+  public void testCheckpoint() {
+    replay.checkpoint(record("checkpoint"));
+    replay.transaction(TXN_A);
+    assertEquals(ImmutableList.of("checkpoint", "a"), applied);
+
+    // The checkpoint may be ahead of the marker that a delta is based on.
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.delta(record("delta"));
+    replay.transaction(TXN_C);
+    replay.finish();
+    assertEquals(ImmutableList.of("checkpoint", "a", "b", "c"), applied);
+  }
+
+  @Test
+  public void testSnapshotAfterCheckpoint() {
+    replay.checkpoint(record("checkpoint"));
+    replay.transaction(TXN_A);
+    replay.marker();
+    replay.transaction(TXN_B);
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_C);
+    replay.finish();
+    assertEquals(ImmutableList.of("checkpoint", "a", "b", "snapshot", "b", "c"), applied);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCheckpointAfterEntries() {
+    replay.transaction(TXN_A);
+    replay.checkpoint(record("checkpoint"));
+  }
+
+  @Test
+  public void testDeltaSkippedAfterOverflow() {
+    replay = createReplay(1);
+    replay.marker();
+    replay.snapshot(record("snapshot"));
+    replay.transaction(TXN_A);
+    replay.marker();
+    replay.transaction(TXN_B);
+    assertEquals(ImmutableList.of("snapshot", "a", "b"), applied);
+    replay.delta(record("delta"));
+    replay.transaction(TXN_C);
+    assertEquals(ImmutableList.of("snapshot", "a", "b", "c"), applied);
+
+    // The next full snapshot resumes deferral.
+    replay.marker();
+    replay.snapshot(record("snapshot2"));
+    replay.finish();
+    assertEquals(ImmutableList.of("snapshot", "a", "b", "c", "snapshot2"), applied);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDeltaWithoutSnapshot() {
+    replay.marker();
+    replay.delta(record("delta"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDeltaWithoutMarker() {
+    replay.marker();
+    replay.snapshot(record("snapshot"));
+    replay.delta(record("delta"));
+  }
+}
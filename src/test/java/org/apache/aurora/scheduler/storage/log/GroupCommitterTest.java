@@ -0,0 +1,121 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.io.IOException;
+
+import com.google.common.collect.ImmutableSet;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.RemoveTasks;
+import org.apache.aurora.gen.storage.SaveFrameworkId;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
+import org.apache.aurora.scheduler.storage.Storage.StorageException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GroupCommitterTest extends EasyMockTest {
+
+  private static final Op OP_A = Op.saveFrameworkId(new SaveFrameworkId("a"));
+  private static final Op OP_B = Op.removeTasks(new RemoveTasks(ImmutableSet.of("b")));
+
+  private StreamManager streamManager;
+  private StreamTransaction group;
+  private GroupCommitter committer;
+
+  @Before
+  public void setUp() {
+    streamManager = createMock(StreamManager.class);
+    group = createMock(StreamTransaction.class);
+    committer = new GroupCommitter(streamManager, Amount.of(0L, Time.MILLISECONDS));
+  }
+
+  private void commit(Op op) throws Exception {
+    StreamTransaction transaction = committer.startTransaction();
+    transaction.add(op);
+    transaction.commit();
+  }
+
+  @Test
+  public void testTransactionsGrouped() throws Exception {
+    expect(streamManager.startTransaction()).andReturn(group);
+    group.add(OP_A);
+    group.add(OP_B);
+    expect(group.commit()).andReturn(null);
+
+    control.replay();
+
+    commit(OP_A);
+    commit(OP_B);
+    assertEquals(2, committer.lastCommitted());
+    committer.awaitDurable(1);
+
+    // Both transactions were appended in the first group.
+    committer.awaitDurable(2);
+  }
+
+  @Test
+  public void testEmptyTransaction() throws Exception {
+    control.replay();
+
+    committer.startTransaction().commit();
+    assertEquals(0, committer.lastCommitted());
+    committer.awaitDurable(0);
+    committer.flush();
+  }
+
+  @Test
+  public void testFlush() throws Exception {
+    expect(streamManager.startTransaction()).andReturn(group);
+    group.add(OP_A);
+    expect(group.commit()).andReturn(null);
+
+    control.replay();
+
+    commit(OP_A);
+    committer.flush();
+    committer.awaitDurable(1);
+  }
+
+  @Test
+  public void testAppendFailure() throws Exception {
+    expect(streamManager.startTransaction()).andReturn(group);
+    group.add(OP_A);
+    expect(group.commit()).andThrow(new StreamAccessException("Failed", new IOException()));
+
+    control.replay();
+
+    commit(OP_A);
+    try {
+      committer.awaitDurable(1);
+      fail();
+    } catch (StorageException e) {
+      // Expected.
+    }
+
+    try {
+      commit(OP_B);
+      fail();
+    } catch (StorageException e) {
+      // Expected.
+    }
+  }
+}
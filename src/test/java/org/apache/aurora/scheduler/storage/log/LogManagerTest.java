@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.Deque;
@@ -22,6 +23,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -34,6 +36,8 @@ import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
+import org.apache.aurora.codec.Compression;
+import org.apache.aurora.codec.Encoding;
 import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.AssignedTask;
@@ -42,6 +46,7 @@ import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.Frame;
 import org.apache.aurora.gen.storage.FrameChunk;
 import org.apache.aurora.gen.storage.FrameHeader;
@@ -52,6 +57,7 @@ import org.apache.aurora.gen.storage.RemoveTasks;
 import org.apache.aurora.gen.storage.SaveFrameworkId;
 import org.apache.aurora.gen.storage.SaveTasks;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
 import org.apache.aurora.gen.storage.Transaction;
 import org.apache.aurora.gen.storage.storageConstants;
 import org.apache.aurora.scheduler.base.JobKeys;
@@ -71,12 +77,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class LogManagerTest extends EasyMockTest {
 
   private static final Amount<Integer, Data> NO_FRAMES_EVER_SIZE =
       Amount.of(Integer.MAX_VALUE, Data.GB);
 
+  private static final int RECOVERY_THREADS = 2;
+
   private static final Function<LogEntry, byte[]> ENCODE = new Function<LogEntry, byte[]>() {
     @Override
     public byte[] apply(LogEntry entry) {
@@ -110,7 +120,8 @@ public class LogManagerTest extends EasyMockTest {
         false,
         Hashing.md5(),
         new SnapshotDeduplicatorImpl(),
-        false);
+        false,
+        RECOVERY_THREADS);
   }
 
   @Test
@@ -140,6 +151,68 @@ public class LogManagerTest extends EasyMockTest {
     createNoMessagesStreamManager().readFromBeginning(reader);
   }
 
+  @Test
+  public void testStreamManagerReadDecodeFailure() throws CodingException {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("role", "env", "job").newBuilder())));
+    Entry entry1 = createMock(Entry.class);
+    expect(entry1.contents()).andReturn(encode(transaction1));
+    Entry corruptEntry = createMock(Entry.class);
+    expect(corruptEntry.contents()).andReturn(new byte[] {1, 2, 3});
+    expect(stream.readAll()).andReturn(ImmutableList.of(entry1, corruptEntry).iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction1);
+
+    control.replay();
+
+    try {
+      createNoMessagesStreamManager().readFromBeginning(reader);
+      fail();
+    } catch (CodingException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testStreamManagerReadApplyFailure() throws CodingException {
+    // Enough entries to fill the recovery pipeline, so the read stage blocks when apply fails.
+    List<Entry> entries = Lists.newArrayList();
+    for (int i = 0; i < RECOVERY_THREADS * StreamManagerImpl.RECOVERY_BUFFER_PER_THREAD * 4; i++) {
+      final byte[] contents = encode(createLogEntry(
+          Op.removeJob(new RemoveJob(JobKeys.from("role", "env", "job" + i).newBuilder()))));
+      entries.add(new Entry() {
+        @Override
+        public byte[] contents() {
+          return contents;
+        }
+
+        @Override
+        public Position position() {
+          return position1;
+        }
+      });
+    }
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    final RuntimeException applyFailure = new IllegalStateException("Failed to apply.");
+    Closure<LogEntry> reader = new Closure<LogEntry>() {
+      @Override
+      public void execute(LogEntry entry) {
+        throw applyFailure;
+      }
+    };
+
+    control.replay();
+
+    try {
+      createNoMessagesStreamManager().readFromBeginning(reader);
+      fail();
+    } catch (IllegalStateException e) {
+      assertSame(applyFailure, e);
+    }
+  }
+
   @Test
   public void testStreamManagerTruncateBefore() {
     stream.truncateBefore(position2);
@@ -273,6 +346,35 @@ public class LogManagerTest extends EasyMockTest {
     createNoMessagesStreamManager().snapshot(snapshot);
   }
 
+  @Test
+  public void testMarkedSnapshot() throws CodingException {
+    Snapshot snapshot = createSnapshot();
+    expectAppend(position1, LogEntry.snapshotMarker(true));
+    expectAppend(position2, LogEntry.snapshot(snapshot));
+    stream.truncateBefore(position1);
+
+    control.replay();
+
+    StreamManager streamManager = createNoMessagesStreamManager();
+    streamManager.snapshot(snapshot, streamManager.markSnapshot());
+  }
+
+  @Test
+  public void testSnapshotDelta() throws CodingException {
+    SnapshotDelta delta = new SnapshotDelta()
+        .setChanged(createSnapshot())
+        .setRemovedTaskIds(ImmutableSet.of("removed"));
+    expectAppend(position1, LogEntry.snapshotMarker(true));
+    expectAppend(position2, LogEntry.snapshotDelta(delta));
+
+    control.replay();
+
+    // Deltas do not truncate the log.
+    StreamManager streamManager = createNoMessagesStreamManager();
+    streamManager.markSnapshot();
+    streamManager.snapshotDelta(delta);
+  }
+
   @Test
   public void testTransactionOps() throws CodingException {
     Op saveFrameworkId = Op.saveFrameworkId(new SaveFrameworkId("jake"));
@@ -290,6 +392,33 @@ public class LogManagerTest extends EasyMockTest {
     assertSame(position1, position);
   }
 
+  @Test
+  public void testUnSnapshottedVolume() throws CodingException {
+    Op saveFrameworkId = Op.saveFrameworkId(new SaveFrameworkId("jake"));
+    expectTransaction(position1, saveFrameworkId);
+    Snapshot snapshot = createSnapshot();
+    expectAppend(position2, LogEntry.snapshot(snapshot));
+    stream.truncateBefore(position2);
+
+    StreamManager streamManager = createNoMessagesStreamManager();
+    control.replay();
+
+    assertEquals(0, streamManager.getUnSnapshottedBytes());
+    assertEquals(0, streamManager.getUnSnapshottedTransactions());
+
+    StreamTransaction transaction = streamManager.startTransaction();
+    transaction.add(saveFrameworkId);
+    transaction.commit();
+    assertEquals(
+        encode(createLogEntry(saveFrameworkId)).length,
+        streamManager.getUnSnapshottedBytes());
+    assertEquals(1, streamManager.getUnSnapshottedTransactions());
+
+    streamManager.snapshot(snapshot);
+    assertEquals(0, streamManager.getUnSnapshottedBytes());
+    assertEquals(0, streamManager.getUnSnapshottedTransactions());
+  }
+
   static class Message {
     private final Amount<Integer, Data> chunkSize;
     private final LogEntry header;
@@ -405,7 +534,8 @@ public class LogManagerTest extends EasyMockTest {
         false,
         Hashing.md5(),
         new SnapshotDeduplicatorImpl(),
-        false);
+        false,
+        0);
     StreamTransaction tr1 = streamManager.startTransaction();
     tr1.add(op1);
 
@@ -490,6 +620,57 @@ public class LogManagerTest extends EasyMockTest {
     streamManager.readFromBeginning(reader);
   }
 
+  @Test
+  public void testStreamManagerTail() throws Exception {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+    LogEntry transaction2 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r2", "env", "name").newBuilder())));
+    Message message = frame(transaction2);
+
+    Entry standardEntry = createMock(Entry.class);
+    expect(standardEntry.contents()).andReturn(encode(transaction1));
+    expect(standardEntry.position()).andReturn(position1);
+    Entry headerEntry = createMock(Entry.class);
+    expect(headerEntry.contents()).andReturn(encode(message.header)).times(2);
+    expect(headerEntry.position()).andReturn(position2).times(2);
+    List<Entry> chunkEntries = Lists.newArrayList();
+    for (LogEntry chunk : message.chunks) {
+      Entry chunkEntry = createMock(Entry.class);
+      expect(chunkEntry.contents()).andReturn(encode(chunk)).atLeastOnce();
+      expect(chunkEntry.position()).andReturn(position2).atLeastOnce();
+      chunkEntries.add(chunkEntry);
+    }
+
+    // The last frame of the second entry has not been appended yet.
+    expect(stream.tail(Optional.<Position>absent())).andReturn(ImmutableList.<Entry>builder()
+        .add(standardEntry)
+        .add(headerEntry)
+        .addAll(chunkEntries.subList(0, chunkEntries.size() - 1))
+        .build()
+        .iterator());
+    // The incomplete entry is read again once all of its frames are appended.
+    expect(stream.tail(Optional.of(position1))).andReturn(ImmutableList.<Entry>builder()
+        .add(headerEntry)
+        .addAll(chunkEntries)
+        .build()
+        .iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction1);
+    reader.execute(transaction2);
+
+    StreamManager streamManager = createStreamManager(message.chunkSize);
+    control.replay();
+
+    assertEquals(
+        Optional.of(position1),
+        streamManager.tail(Optional.<Position>absent(), reader));
+    assertEquals(
+        Optional.of(position2),
+        streamManager.tail(Optional.of(position1), reader));
+  }
+
   @Test
   public void testWriteAndReadDeflatedEntry() throws Exception {
     Snapshot snapshot = createSnapshot();
@@ -516,11 +697,209 @@ public class LogManagerTest extends EasyMockTest {
         true,
         md5,
         new SnapshotDeduplicatorImpl(),
-        false);
+        false,
+        0);
     streamManager.snapshot(snapshot);
     streamManager.readFromBeginning(reader);
   }
 
+  @Test
+  public void testWriteAndReadFramedDeflatedSnapshot() throws Exception {
+    Snapshot snapshot = createLargeSnapshot();
+
+    InMemoryStream fakeStream = new InMemoryStream();
+
+    control.replay();
+
+    StreamManager streamManager = createInMemoryStreamManager(
+        fakeStream,
+        new EntrySerializer.EntrySerializerImpl(Amount.of(64, Data.KB), Hashing.md5(), 2));
+    streamManager.snapshot(snapshot);
+    List<LogEntry> read = readAll(streamManager);
+
+    assertTrue(fakeStream.appended.size() > 2);
+    assertEquals(ImmutableList.of(LogEntry.snapshot(snapshot)), read);
+  }
+
+  @Test
+  public void testWriteAndReadFramedLz4Snapshot() throws Exception {
+    Snapshot snapshot = createLargeSnapshot();
+
+    InMemoryStream fakeStream = new InMemoryStream();
+
+    control.replay();
+
+    StreamManager streamManager = createInMemoryStreamManager(
+        fakeStream,
+        new EntrySerializer.EntrySerializerImpl(
+            Amount.of(64, Data.KB),
+            Hashing.md5(),
+            0,
+            Compression.LZ4));
+    streamManager.snapshot(snapshot);
+    List<LogEntry> read = readAll(streamManager);
+
+    assertTrue(fakeStream.appended.size() > 2);
+    LogEntry compressed = reassembleFrames(fakeStream.appended);
+    assertEquals(CompressionCodec.LZ4, compressed.getCompressedEntry().getCodec());
+    assertEquals(ImmutableList.of(LogEntry.snapshot(snapshot)), read);
+  }
+
+  @Test
+  public void testWriteAndReadCompactEntries() throws Exception {
+    Snapshot snapshot = createLargeSnapshot();
+    InMemoryStream fakeStream = new InMemoryStream();
+
+    control.replay();
+
+    StreamManager streamManager = createInMemoryStreamManager(
+        fakeStream,
+        new EntrySerializer.EntrySerializerImpl(
+            Amount.of(64, Data.KB),
+            Hashing.md5(),
+            0,
+            Compression.DEFLATE,
+            Encoding.COMPACT));
+    streamManager.snapshot(snapshot);
+    StreamTransaction transaction = streamManager.startTransaction();
+    transaction.add(Op.saveFrameworkId(new SaveFrameworkId("jake")));
+    transaction.commit();
+    List<LogEntry> read = readAll(streamManager);
+
+    assertTrue(fakeStream.appended.size() > 2);
+    for (byte[] contents : fakeStream.appended) {
+      // Every entry written to the log is compact-encoded.
+      assertArrayEquals(
+          contents,
+          ThriftBinaryCodec.encodeNonNull(
+              ThriftBinaryCodec.decodeNonNull(LogEntry.class, contents),
+              Encoding.COMPACT));
+    }
+    assertEquals(
+        ImmutableList.of(
+            LogEntry.snapshot(snapshot),
+            LogEntry.transaction(new Transaction(
+                ImmutableList.of(Op.saveFrameworkId(new SaveFrameworkId("jake"))),
+                storageConstants.CURRENT_SCHEMA_VERSION))),
+        read);
+  }
+
+  @Test
+  public void testCompressedEntryRoundTrip() throws Exception {
+    LogEntry entry = LogEntry.snapshot(createSnapshot());
+
+    LogEntry deflated = Entries.compress(entry, Compression.DEFLATE);
+    assertTrue(deflated.isSet(LogEntry._Fields.DEFLATED_ENTRY));
+    assertEquals(entry, Entries.decompress(deflated));
+
+    LogEntry compressed = Entries.compress(entry, Compression.LZ4);
+    assertTrue(compressed.isSet(LogEntry._Fields.COMPRESSED_ENTRY));
+    assertEquals(CompressionCodec.LZ4, compressed.getCompressedEntry().getCodec());
+    assertEquals(entry, Entries.decompress(compressed));
+  }
+
+  /**
+   * A stream that retains appended entries in memory.
+   */
+  private class InMemoryStream implements Stream {
+    private final List<byte[]> appended = Lists.newArrayList();
+
+    @Override
+    public Position append(byte[] contents) throws StreamAccessException {
+      appended.add(contents);
+      return position1;
+    }
+
+    @Override
+    public Iterator<Entry> readAll() throws InvalidPositionException, StreamAccessException {
+      return Iterators.transform(appended.iterator(), new Function<byte[], Entry>() {
+        @Override
+        public Entry apply(final byte[] contents) {
+          return new Entry() {
+            @Override
+            public byte[] contents() {
+              return contents;
+            }
+
+            @Override
+            public Position position() {
+              return position1;
+            }
+          };
+        }
+      });
+    }
+
+    @Override
+    public Iterator<Entry> readFrom(Position position) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Entry> tail(Optional<Position> position) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Position position(byte[] identity) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void truncateBefore(Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      assertSame(position1, position);
+    }
+  }
+
+  private static StreamManager createInMemoryStreamManager(
+      InMemoryStream stream,
+      EntrySerializer entrySerializer) {
+
+    return new StreamManagerImpl(
+        stream,
+        entrySerializer,
+        true,
+        Hashing.md5(),
+        new SnapshotDeduplicatorImpl(),
+        false,
+        RECOVERY_THREADS);
+  }
+
+  // Decodes the entry split across a header frame and the chunk frames that follow it.
+  private static LogEntry reassembleFrames(List<byte[]> frames) throws Exception {
+    ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+    for (byte[] chunk : frames.subList(1, frames.size())) {
+      reassembled.write(ThriftBinaryCodec.decodeNonNull(LogEntry.class, chunk)
+          .getFrame().getChunk().getData());
+    }
+    return ThriftBinaryCodec.decodeNonNull(LogEntry.class, reassembled.toByteArray());
+  }
+
+  private static List<LogEntry> readAll(StreamManager streamManager) throws Exception {
+    final List<LogEntry> read = Lists.newArrayList();
+    streamManager.readFromBeginning(new Closure<LogEntry>() {
+      @Override
+      public void execute(LogEntry entry) {
+        read.add(entry);
+      }
+    });
+    return read;
+  }
+
+  private Snapshot createLargeSnapshot() {
+    // Large enough to be compressed in several blocks, and framed into many entries.
+    ImmutableSet.Builder<ScheduledTask> tasks = ImmutableSet.builder();
+    for (int i = 0; i < 20000; i++) {
+      tasks.add(new ScheduledTask().setStatus(ScheduleStatus.RUNNING)
+          .setAssignedTask(new AssignedTask().setTaskId("task_id_" + i)
+              .setSlaveHost("host_" + (i % 100))
+              .setTask(new TaskConfig().setJobName("job_name_" + (i % 500)))));
+    }
+    return createSnapshot().setTasks(tasks.build());
+  }
+
   private Snapshot createSnapshot() {
     return new Snapshot()
         .setTimestamp(1L)
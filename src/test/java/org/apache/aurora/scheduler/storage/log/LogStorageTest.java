@@ -13,20 +13,25 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.google.common.testing.TearDown;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
@@ -41,6 +46,7 @@ import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.InstanceTaskConfig;
 import org.apache.aurora.gen.JobConfiguration;
 import org.apache.aurora.gen.JobInstanceUpdateEvent;
+import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.JobUpdate;
 import org.apache.aurora.gen.JobUpdateAction;
 import org.apache.aurora.gen.JobUpdateEvent;
@@ -57,9 +63,11 @@ import org.apache.aurora.gen.ResourceAggregate;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Op;
 import org.apache.aurora.gen.storage.PruneJobUpdateHistory;
+import org.apache.aurora.gen.storage.QuotaConfiguration;
 import org.apache.aurora.gen.storage.RemoveJob;
 import org.apache.aurora.gen.storage.RemoveLock;
 import org.apache.aurora.gen.storage.RemoveQuota;
@@ -74,8 +82,13 @@ import org.apache.aurora.gen.storage.SaveJobUpdateEvent;
 import org.apache.aurora.gen.storage.SaveLock;
 import org.apache.aurora.gen.storage.SaveQuota;
 import org.apache.aurora.gen.storage.SaveTasks;
+import org.apache.aurora.gen.storage.SchedulerMetadata;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
+import org.apache.aurora.gen.storage.StoredCronJob;
+import org.apache.aurora.gen.storage.TaskTransition;
 import org.apache.aurora.gen.storage.Transaction;
+import org.apache.aurora.gen.storage.TransitionTasks;
 import org.apache.aurora.gen.storage.storageConstants;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
@@ -86,6 +99,8 @@ import org.apache.aurora.scheduler.log.Log;
 import org.apache.aurora.scheduler.log.Log.Entry;
 import org.apache.aurora.scheduler.log.Log.Position;
 import org.apache.aurora.scheduler.log.Log.Stream;
+import org.apache.aurora.scheduler.log.Log.Stream.InvalidPositionException;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import org.apache.aurora.scheduler.storage.AttributeStore;
 import org.apache.aurora.scheduler.storage.SnapshotStore;
 import org.apache.aurora.scheduler.storage.Storage;
@@ -104,10 +119,12 @@ import org.apache.aurora.scheduler.storage.entities.ILockKey;
 import org.apache.aurora.scheduler.storage.entities.IResourceAggregate;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
 import org.apache.aurora.scheduler.storage.log.LogStorage.SchedulingService;
 import org.apache.aurora.scheduler.storage.log.testing.LogOpMatcher;
 import org.apache.aurora.scheduler.storage.log.testing.LogOpMatcher.StreamMatcher;
 import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
+import org.apache.commons.io.FileUtils;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
@@ -119,6 +136,7 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.notNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -130,8 +148,11 @@ public class LogStorageTest extends EasyMockTest {
   private static final IJobUpdateKey UPDATE_ID =
       IJobUpdateKey.build(new JobUpdateKey(JOB_KEY.newBuilder(), "testUpdateId"));
   private static final long NOW = 42L;
+  private static final long CHECKPOINT_ID = 7L;
 
   private LogStorage logStorage;
+  private LogManager logManager;
+  private PostCommitQueue postCommitQueue;
   private Log log;
   private Stream stream;
   private Position position;
@@ -159,21 +180,78 @@ public class LogStorageTest extends EasyMockTest {
             false,
             md5,
             snapshotDeduplicator,
-            false);
+            false,
+            0);
       }
     };
-    LogManager logManager = new LogManager(log, streamManagerFactory);
+    logManager = new LogManager(log, streamManagerFactory);
 
     schedulingService = createMock(SchedulingService.class);
     snapshotStore = createMock(new Clazz<SnapshotStore<Snapshot>>() { });
     storageUtil = new StorageTestUtil(this);
     eventSink = createMock(EventSink.class);
+    postCommitQueue = new PostCommitQueue();
+
+    logStorage = createLogStorage(Optional.<Amount<Long, Time>>absent(), 1);
+
+    stream = createMock(Stream.class);
+    streamMatcher = LogOpMatcher.matcherFor(stream);
+    position = createMock(Position.class);
+
+    storageUtil.storage.prepare();
+  }
+
+  private LogStorage createLogStorage(
+      Optional<Amount<Long, Time>> groupCommitWindow,
+      int fullSnapshotInterval) {
+
+    return createLogStorage(
+        groupCommitWindow,
+        fullSnapshotInterval,
+        Optional.<CheckpointFile>absent());
+  }
+
+  private LogStorage createLogStorage(
+      Optional<Amount<Long, Time>> groupCommitWindow,
+      int fullSnapshotInterval,
+      Optional<CheckpointFile> checkpointFile) {
+
+    return createLogStorage(
+        groupCommitWindow,
+        fullSnapshotInterval,
+        checkpointFile,
+        Optional.<Amount<Long, Time>>absent());
+  }
 
-    logStorage = new LogStorage(
+  private LogStorage createLogStorage(
+      Optional<Amount<Long, Time>> groupCommitWindow,
+      int fullSnapshotInterval,
+      Optional<CheckpointFile> checkpointFile,
+      Optional<Amount<Long, Time>> standbyPollInterval) {
+
+    return createLogStorage(
+        groupCommitWindow,
+        fullSnapshotInterval,
+        checkpointFile,
+        standbyPollInterval,
+        false);
+  }
+
+  private LogStorage createLogStorage(
+      Optional<Amount<Long, Time>> groupCommitWindow,
+      int fullSnapshotInterval,
+      Optional<CheckpointFile> checkpointFile,
+      Optional<Amount<Long, Time>> standbyPollInterval,
+      boolean taskTransitionOps) {
+
+    return new LogStorage(
         logManager,
         schedulingService,
         snapshotStore,
-        SNAPSHOT_INTERVAL,
+        SnapshotPolicy.fixed(SNAPSHOT_INTERVAL),
+        fullSnapshotInterval,
+        groupCommitWindow,
+        standbyPollInterval,
         storageUtil.storage,
         storageUtil.schedulerStore,
         storageUtil.jobStore,
@@ -183,13 +261,10 @@ public class LogStorageTest extends EasyMockTest {
         storageUtil.attributeStore,
         storageUtil.jobUpdateStore,
         eventSink,
-        new ReentrantLock());
-
-    stream = createMock(Stream.class);
-    streamMatcher = LogOpMatcher.matcherFor(stream);
-    position = createMock(Position.class);
-
-    storageUtil.storage.prepare();
+        new StorageWriteLock(0),
+        postCommitQueue,
+        checkpointFile,
+        taskTransitionOps);
   }
 
   @Test
@@ -248,18 +323,12 @@ public class LogStorageTest extends EasyMockTest {
             new ScheduledTask()
                 .setStatus(ScheduleStatus.RUNNING)
                 .setAssignedTask(new AssignedTask().setTaskId("task_id"))));
-    expect(snapshotStore.createSnapshot()).andReturn(snapshotContents);
+    Position marker = createMock(Position.class);
+    streamMatcher.expectSnapshotMarker().andReturn(marker);
+    expect(snapshotStore.captureSnapshot()).andReturn(Suppliers.ofInstance(snapshotContents));
     streamMatcher.expectSnapshot(snapshotContents).andReturn(position);
-    stream.truncateBefore(position);
-    final Capture<MutateWork<Void, RuntimeException>> snapshotWork = createCapture();
-    expect(storageUtil.storage.write(capture(snapshotWork))).andAnswer(
-        new IAnswer<Void>() {
-          @Override
-          public Void answer() {
-            snapshotWork.getValue().apply(storageUtil.mutableStoreProvider);
-            return null;
-          }
-        }).anyTimes();
+    stream.truncateBefore(marker);
+    storageUtil.expectWrite().anyTimes();
 
     // Populate all LogEntry types.
     buildReplayLogEntries();
@@ -280,7 +349,8 @@ public class LogStorageTest extends EasyMockTest {
         Sets.complementOf(EnumSet.of(
             LogEntry._Fields.FRAME,
             LogEntry._Fields.DEDUPLICATED_SNAPSHOT,
-            LogEntry._Fields.DEFLATED_ENTRY)),
+            LogEntry._Fields.DEFLATED_ENTRY,
+            LogEntry._Fields.COMPRESSED_ENTRY)),
         EnumSet.copyOf(logStorage.buildLogEntryReplayActions().keySet()));
 
     // Assert all Transaction types have handlers defined.
@@ -292,6 +362,31 @@ public class LogStorageTest extends EasyMockTest {
   private void buildReplayLogEntries() throws Exception {
     ImmutableSet.Builder<LogEntry> builder = ImmutableSet.builder();
 
+    // Transactions preceding a snapshot marker are covered by the snapshot, and are not replayed.
+    builder.add(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("skipped"))));
+    builder.add(LogEntry.snapshotMarker(true));
+
+    // Snapshot LogEntry
+    Snapshot snapshot = new Snapshot();
+    builder.add(LogEntry.snapshot(snapshot));
+    snapshotStore.applySnapshot(snapshot);
+
+    // Transactions preceding the marker of a snapshot delta are covered by the delta.
+    builder.add(LogEntry.snapshotMarker(true));
+    builder.add(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("covered"))));
+
+    // SnapshotDelta LogEntry
+    SnapshotDelta delta = new SnapshotDelta()
+        .setChanged(new Snapshot()
+            .setSchedulerMetadata(new SchedulerMetadata().setFrameworkId("delta")))
+        .setRemovedTaskIds(ImmutableSet.of("removed"))
+        .setOps(ImmutableList.of(Op.removeQuota(new RemoveQuota("deltaRole"))));
+    builder.add(LogEntry.snapshotDelta(delta));
+    storageUtil.taskStore.deleteTasks(ImmutableSet.of("removed"));
+    storageUtil.schedulerStore.saveFrameworkId("delta");
+    storageUtil.quotaStore.removeQuota("deltaRole");
+
+    // Transactions following the last marker are applied on top of the snapshot and delta.
     builder.add(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("bob"))));
     storageUtil.schedulerStore.saveFrameworkId("bob");
 
@@ -317,6 +412,20 @@ public class LogStorageTest extends EasyMockTest {
     builder.add(createTransaction(Op.removeTasks(removeTasks)));
     storageUtil.taskStore.deleteTasks(removeTasks.getTaskIds());
 
+    IScheduledTask transitioned = task("taskId2", ScheduleStatus.PENDING);
+    TaskTransition transition = new TaskTransition()
+        .setTaskId("taskId2")
+        .setStatus(ScheduleStatus.ASSIGNED)
+        .setNewEvents(ImmutableList.of(new TaskEvent(100L, ScheduleStatus.ASSIGNED)))
+        .setSlaveId("slave")
+        .setSlaveHost("host");
+    builder.add(createTransaction(Op.transitionTasks(
+        new TransitionTasks(ImmutableList.of(transition)))));
+    expect(storageUtil.taskStore.fetchTasks(Query.taskScoped(ImmutableSet.of("taskId2"))))
+        .andReturn(ImmutableSet.of(transitioned));
+    storageUtil.taskStore.saveTasks(
+        ImmutableSet.of(TaskTransitions.apply(transitioned, transition)));
+
     SaveQuota saveQuota = new SaveQuota(JOB_KEY.getRole(), new ResourceAggregate());
     builder.add(createTransaction(Op.saveQuota(saveQuota)));
     storageUtil.quotaStore.saveQuota(
@@ -411,11 +520,6 @@ public class LogStorageTest extends EasyMockTest {
     // NOOP LogEntry
     builder.add(LogEntry.noop(true));
 
-    // Snapshot LogEntry
-    Snapshot snapshot = new Snapshot();
-    builder.add(LogEntry.snapshot(snapshot));
-    snapshotStore.applySnapshot(snapshot);
-
     ImmutableSet.Builder<Entry> entryBuilder = ImmutableSet.builder();
     for (LogEntry logEntry : builder.build()) {
       Entry entry = createMock(Entry.class);
@@ -486,7 +590,7 @@ public class LogStorageTest extends EasyMockTest {
           return null;
         }
       });
-      expect(stream.readAll()).andReturn(Iterators.<Entry>emptyIterator());
+      expectRecovery();
       final Capture<MutateWork<Void, RuntimeException>> recoveryWork = createCapture();
       expect(storageUtil.storage.write(capture(recoveryWork))).andAnswer(
           new IAnswer<Void>() {
@@ -513,6 +617,10 @@ public class LogStorageTest extends EasyMockTest {
       runTest();
     }
 
+    protected void expectRecovery() throws Exception {
+      expect(stream.readAll()).andReturn(Iterators.<Entry>emptyIterator());
+    }
+
     protected void setupExpectations() throws Exception {
       // Default to no expectations.
     }
@@ -553,6 +661,434 @@ public class LogStorageTest extends EasyMockTest {
     }.run();
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    final String frameworkId = "bob";
+    final AtomicBoolean sideEffectRun = new AtomicBoolean(false);
+    logStorage = createLogStorage(Optional.of(Amount.of(0L, Time.MILLISECONDS)), 1);
+    new MutationFixture() {
+      @Override
+      protected void runTest() {
+        super.runTest();
+        assertTrue(sideEffectRun.get());
+      }
+
+      @Override
+      protected void setupExpectations() throws CodingException {
+        storageUtil.expectWrite();
+        storageUtil.schedulerStore.saveFrameworkId(frameworkId);
+        streamMatcher.expectTransaction(Op.saveFrameworkId(new SaveFrameworkId(frameworkId)))
+            .andReturn(position);
+      }
+
+      @Override
+      protected void performMutations(MutableStoreProvider storeProvider) {
+        storeProvider.getSchedulerStore().saveFrameworkId(frameworkId);
+        postCommitQueue.execute(new Runnable() {
+          @Override
+          public void run() {
+            sideEffectRun.set(true);
+          }
+        });
+        // Side-effects are held until the write is durable.
+        assertFalse(sideEffectRun.get());
+      }
+    }.run();
+  }
+
+  @Test
+  public void testSnapshotDoesNotBlockWrites() throws Exception {
+    final String frameworkId = "bob";
+    final Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    new StorageTestFixture() {
+      @Override
+      protected void setupExpectations() throws Exception {
+        storageUtil.expectWrite().anyTimes();
+        Position marker = createMock(Position.class);
+        streamMatcher.expectSnapshotMarker().andReturn(marker);
+        expect(snapshotStore.captureSnapshot()).andReturn(new Supplier<Snapshot>() {
+          @Override
+          public Snapshot get() {
+            // The write lock is no longer held while the captured snapshot is built.
+            Thread writer = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                logStorage.write(new MutateWork.NoResult.Quiet() {
+                  @Override
+                  protected void execute(MutableStoreProvider storeProvider) {
+                    storeProvider.getSchedulerStore().saveFrameworkId(frameworkId);
+                  }
+                });
+              }
+            });
+            writer.start();
+            try {
+              writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            assertFalse(writer.isAlive());
+            return snapshot;
+          }
+        });
+        storageUtil.schedulerStore.saveFrameworkId(frameworkId);
+        streamMatcher.expectTransaction(Op.saveFrameworkId(new SaveFrameworkId(frameworkId)))
+            .andReturn(position);
+        streamMatcher.expectSnapshot(snapshot).andReturn(position);
+        stream.truncateBefore(marker);
+      }
+
+      @Override
+      protected void runTest() {
+        logStorage.snapshot();
+      }
+    }.run();
+  }
+
+  @Test
+  public void testSnapshotDelta() throws Exception {
+    final String frameworkId = "bob";
+    final Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    logStorage = createLogStorage(Optional.<Amount<Long, Time>>absent(), 2);
+    new StorageTestFixture() {
+      @Override
+      protected void setupExpectations() throws Exception {
+        storageUtil.expectWrite().anyTimes();
+        Position marker = createMock(Position.class);
+        streamMatcher.expectSnapshotMarker().andReturn(marker).times(3);
+
+        // The first snapshot is always a full snapshot.
+        expect(snapshotStore.captureSnapshot())
+            .andReturn(Suppliers.ofInstance(snapshot))
+            .times(2);
+        streamMatcher.expectSnapshot(snapshot).andReturn(position).times(2);
+        stream.truncateBefore(marker);
+        expectLastCall().times(2);
+
+        storageUtil.schedulerStore.saveFrameworkId(frameworkId);
+        streamMatcher.expectTransaction(Op.saveFrameworkId(new SaveFrameworkId(frameworkId)))
+            .andReturn(position);
+
+        // The second snapshot only contains the entities changed since the first.
+        expect(storageUtil.schedulerStore.fetchFrameworkId()).andReturn(Optional.of(frameworkId));
+        streamMatcher.expectSnapshotDelta(new SnapshotDelta()
+            .setChanged(new Snapshot()
+                .setTasks(ImmutableSet.<ScheduledTask>of())
+                .setCronJobs(ImmutableSet.<StoredCronJob>of())
+                .setQuotaConfigurations(ImmutableSet.<QuotaConfiguration>of())
+                .setHostAttributes(ImmutableSet.<HostAttributes>of())
+                .setSchedulerMetadata(new SchedulerMetadata().setFrameworkId(frameworkId)))
+            .setRemovedTaskIds(ImmutableSet.<String>of())
+            .setRemovedCronJobs(ImmutableSet.<JobKey>of())
+            .setRemovedQuotaRoles(ImmutableSet.<String>of())
+            .setOps(ImmutableList.<Op>of()))
+            .andReturn(position);
+      }
+
+      @Override
+      protected void runTest() {
+        logStorage.snapshot();
+        logStorage.write(new MutateWork.NoResult.Quiet() {
+          @Override
+          protected void execute(MutableStoreProvider storeProvider) {
+            storeProvider.getSchedulerStore().saveFrameworkId(frameworkId);
+          }
+        });
+        logStorage.snapshot();
+
+        // The delta reached the full snapshot interval.
+        logStorage.snapshot();
+      }
+    }.run();
+  }
+
+  private CheckpointFile createCheckpointFile() {
+    final File directory = Files.createTempDir();
+    addTearDown(new TearDown() {
+      @Override
+      public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+      }
+    });
+    return new CheckpointFile(new File(directory, "checkpoint"));
+  }
+
+  private Entry entry(LogEntry logEntry) throws CodingException {
+    return entry(logEntry, position);
+  }
+
+  private static Entry entry(LogEntry logEntry, final Position position) throws CodingException {
+    final byte[] contents = ThriftBinaryCodec.encodeNonNull(logEntry);
+    return new Entry() {
+      @Override
+      public byte[] contents() {
+        return contents;
+      }
+
+      @Override
+      public Position position() {
+        return position;
+      }
+    };
+  }
+
+  @Test
+  public void testSnapshotSavesCheckpoint() throws Exception {
+    final CheckpointFile checkpointFile = createCheckpointFile();
+    final Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    final byte[] identity = {1, 2, 3};
+    final Capture<Long> checkpointId = createCapture();
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.of(checkpointFile));
+    new StorageTestFixture() {
+      @Override
+      protected void setupExpectations() throws Exception {
+        storageUtil.expectWrite().anyTimes();
+        Position marker = createMock(Position.class);
+        streamMatcher.expectSnapshotMarker().andReturn(marker);
+        expect(snapshotStore.captureSnapshot())
+            .andReturn(Suppliers.ofInstance(snapshot))
+            .times(2);
+        streamMatcher.expectSnapshot(snapshot).andReturn(position);
+        stream.truncateBefore(marker);
+
+        Position checkpoint = createMock(Position.class);
+        streamMatcher.expectCheckpoint(checkpointId).andReturn(checkpoint);
+        expect(checkpoint.identity()).andReturn(identity);
+      }
+
+      @Override
+      protected void runTest() {
+        logStorage.snapshot();
+        Optional<CheckpointFile.Checkpoint> saved = checkpointFile.load();
+        assertTrue(saved.isPresent());
+        assertArrayEquals(identity, saved.get().getPosition());
+        assertEquals(checkpointId.getValue().longValue(), saved.get().getId());
+        assertEquals(snapshot, saved.get().getSnapshot());
+      }
+    }.run();
+  }
+
+  @Test
+  public void testRecoverFromCheckpoint() throws Exception {
+    final CheckpointFile checkpointFile = createCheckpointFile();
+    final Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    final byte[] identity = {1, 2, 3};
+    checkpointFile.save(identity, CHECKPOINT_ID, snapshot);
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.of(checkpointFile));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        // Only the entries from the checkpoint onwards are read.
+        Position checkpoint = createMock(Position.class);
+        expect(stream.position(EasyMock.aryEq(identity))).andReturn(checkpoint);
+        expect(stream.readFrom(checkpoint)).andReturn(ImmutableList.of(
+            entry(createCheckpoint(CHECKPOINT_ID)),
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("bob")))))
+            .iterator());
+        snapshotStore.applySnapshot(snapshot);
+        storageUtil.schedulerStore.saveFrameworkId("bob");
+      }
+
+      @Override
+      protected void setupExpectations() {
+        storageUtil.expectWrite().anyTimes();
+      }
+
+      @Override
+      protected void runTest() {
+        // Recovery is verified by expectations.
+      }
+    }.run();
+  }
+
+  @Test
+  public void testCheckpointNotInLog() throws Exception {
+    final CheckpointFile checkpointFile = createCheckpointFile();
+    final byte[] identity = {1, 2, 3};
+    checkpointFile.save(identity, CHECKPOINT_ID, new Snapshot().setTimestamp(NOW));
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.of(checkpointFile));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        Position checkpoint = createMock(Position.class);
+        expect(stream.position(EasyMock.aryEq(identity))).andReturn(checkpoint);
+        expect(stream.readFrom(checkpoint)).andThrow(new InvalidPositionException("Truncated"));
+        super.expectRecovery();
+      }
+
+      @Override
+      protected void runTest() {
+        // The whole log is read instead, and the checkpoint is not applied.
+      }
+    }.run();
+  }
+
+  @Test
+  public void testCheckpointMismatch() throws Exception {
+    final CheckpointFile checkpointFile = createCheckpointFile();
+    final byte[] identity = {1, 2, 3};
+    checkpointFile.save(identity, CHECKPOINT_ID, new Snapshot().setTimestamp(NOW));
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.of(checkpointFile));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        // The checkpoint position holds an entry that is not a checkpoint entry, such as a noop
+        // appended by the log itself.
+        Position checkpoint = createMock(Position.class);
+        expect(stream.position(EasyMock.aryEq(identity))).andReturn(checkpoint);
+        expect(stream.readFrom(checkpoint)).andReturn(ImmutableList.of(
+            entry(LogEntry.noop(true)),
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("bob")))))
+            .iterator());
+        super.expectRecovery();
+      }
+
+      @Override
+      protected void runTest() {
+        // The whole log is read instead, and the checkpoint is not applied.
+      }
+    }.run();
+  }
+
+  @Test
+  public void testCheckpointIdMismatch() throws Exception {
+    final CheckpointFile checkpointFile = createCheckpointFile();
+    final byte[] identity = {1, 2, 3};
+    checkpointFile.save(identity, CHECKPOINT_ID, new Snapshot().setTimestamp(NOW));
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.of(checkpointFile));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        // The checkpoint position holds the entry of another checkpoint.
+        Position checkpoint = createMock(Position.class);
+        expect(stream.position(EasyMock.aryEq(identity))).andReturn(checkpoint);
+        expect(stream.readFrom(checkpoint)).andReturn(ImmutableList.of(
+            entry(createCheckpoint(CHECKPOINT_ID + 1)),
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("bob")))))
+            .iterator());
+        super.expectRecovery();
+      }
+
+      @Override
+      protected void runTest() {
+        // The whole log is read instead, and the checkpoint is not applied.
+      }
+    }.run();
+  }
+
+  private void expectStandbyReplays(Amount<Long, Time> pollInterval, final int replays) {
+    // Replay the log as a standby as soon as the log is opened.
+    schedulingService.doEvery(eq(pollInterval), notNull(Runnable.class));
+    expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        Runnable replay = (Runnable) EasyMock.getCurrentArguments()[1];
+        for (int i = 0; i < replays; i++) {
+          replay.run();
+        }
+        return null;
+      }
+    });
+  }
+
+  @Test
+  public void testWarmStandby() throws Exception {
+    final Amount<Long, Time> pollInterval = Amount.of(1L, Time.SECONDS);
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.<CheckpointFile>absent(),
+        Optional.of(pollInterval));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        Position first = createMock(Position.class);
+        Position second = createMock(Position.class);
+        LogEntry transactionB = createTransaction(Op.saveFrameworkId(new SaveFrameworkId("b")));
+        expect(stream.tail(Optional.<Position>absent())).andReturn(ImmutableList.of(
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("a"))), first))
+            .iterator());
+        storageUtil.schedulerStore.saveFrameworkId("a");
+        expect(stream.tail(Optional.of(first)))
+            .andReturn(ImmutableList.of(entry(transactionB, second)).iterator());
+        storageUtil.schedulerStore.saveFrameworkId("b");
+
+        // When elected, only the entries following the last one replayed are applied.
+        expect(stream.readFrom(second)).andReturn(ImmutableList.of(
+            entry(transactionB, second),
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("c"))))).iterator());
+        storageUtil.schedulerStore.saveFrameworkId("c");
+      }
+
+      @Override
+      protected void setupExpectations() {
+        expectStandbyReplays(pollInterval, 2);
+        storageUtil.expectWrite().anyTimes();
+      }
+
+      @Override
+      protected void runTest() {
+        // Replays are verified by expectations.
+      }
+    }.run();
+  }
+
+  @Test
+  public void testWarmStandbyReset() throws Exception {
+    final Amount<Long, Time> pollInterval = Amount.of(1L, Time.SECONDS);
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.<CheckpointFile>absent(),
+        Optional.of(pollInterval));
+    new StorageTestFixture() {
+      @Override
+      protected void expectRecovery() throws Exception {
+        Position first = createMock(Position.class);
+        expect(stream.tail(Optional.<Position>absent()))
+            .andThrow(new StreamAccessException("Failed", new IOException()));
+
+        // State replayed by a failed replay is discarded before replaying from the beginning.
+        snapshotStore.applySnapshot(new Snapshot());
+        expect(stream.tail(Optional.<Position>absent())).andReturn(ImmutableList.of(
+            entry(createTransaction(Op.saveFrameworkId(new SaveFrameworkId("a"))), first))
+            .iterator());
+        storageUtil.schedulerStore.saveFrameworkId("a");
+
+        // The replayed entries were truncated from the log by the time of election.
+        expect(stream.readFrom(first)).andThrow(new InvalidPositionException("Truncated"));
+        snapshotStore.applySnapshot(new Snapshot());
+        super.expectRecovery();
+      }
+
+      @Override
+      protected void setupExpectations() {
+        expectStandbyReplays(pollInterval, 2);
+        storageUtil.expectWrite().anyTimes();
+      }
+
+      @Override
+      protected void runTest() {
+        // Replays are verified by expectations.
+      }
+    }.run();
+  }
+
   @Test
   public void testSaveAcceptedJob() throws Exception {
     final IJobConfiguration jobConfig =
@@ -623,7 +1159,7 @@ public class LogStorageTest extends EasyMockTest {
       @Override
       protected void setupExpectations() throws Exception {
         storageUtil.expectWrite();
-        expect(storageUtil.taskStore.mutateTasks(query, mutation)).andReturn(mutated);
+        expect(storageUtil.taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
         streamMatcher.expectTransaction(
             Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))))
             .andReturn(null);
@@ -636,6 +1172,56 @@ public class LogStorageTest extends EasyMockTest {
     }.run();
   }
 
+  @Test
+  public void testMutateTasksTransition() throws Exception {
+    logStorage = createLogStorage(
+        Optional.<Amount<Long, Time>>absent(),
+        1,
+        Optional.<CheckpointFile>absent(),
+        Optional.<Amount<Long, Time>>absent(),
+        true);
+    final Query.Builder query = Query.taskScoped("a");
+    final IScheduledTask original = task("a", ScheduleStatus.PENDING);
+    final Function<IScheduledTask, IScheduledTask> mutation =
+        new Function<IScheduledTask, IScheduledTask>() {
+          @Override
+          public IScheduledTask apply(IScheduledTask task) {
+            return task.withStatus(ScheduleStatus.ASSIGNED)
+                .withAssignedTask(task.getAssignedTask().withSlaveHost("host"))
+                .withTaskEvents(ImmutableList.of(
+                    ITaskEvent.build(new TaskEvent(100L, ScheduleStatus.ASSIGNED))));
+          }
+        };
+    final ImmutableSet<IScheduledTask> mutated = ImmutableSet.of(mutation.apply(original));
+    new MutationFixture() {
+      @Override
+      protected void setupExpectations() throws Exception {
+        storageUtil.expectWrite();
+        final Capture<Function<IScheduledTask, IScheduledTask>> wrapped = createCapture();
+        expect(storageUtil.taskStore.mutateTasks(eq(query), capture(wrapped))).andAnswer(
+            new IAnswer<ImmutableSet<IScheduledTask>>() {
+              @Override
+              public ImmutableSet<IScheduledTask> answer() {
+                return ImmutableSet.of(wrapped.getValue().apply(original));
+              }
+            });
+        streamMatcher.expectTransaction(
+            Op.transitionTasks(new TransitionTasks(ImmutableList.of(new TaskTransition()
+                .setTaskId("a")
+                .setStatus(ScheduleStatus.ASSIGNED)
+                .setNewEvents(ImmutableList.of(new TaskEvent(100L, ScheduleStatus.ASSIGNED)))
+                .setFailureCount(0)
+                .setSlaveHost("host")))))
+            .andReturn(position);
+      }
+
+      @Override
+      protected void performMutations(MutableStoreProvider storeProvider) {
+        assertEquals(mutated, storeProvider.getUnsafeTaskStore().mutateTasks(query, mutation));
+      }
+    }.run();
+  }
+
   @Test
   public void testUnsafeModifyInPlace() throws Exception {
     final String taskId = "wilma";
@@ -673,7 +1259,7 @@ public class LogStorageTest extends EasyMockTest {
       @Override
       protected void setupExpectations() throws Exception {
         storageUtil.expectWrite();
-        expect(storageUtil.taskStore.mutateTasks(query, mutation)).andReturn(mutated);
+        expect(storageUtil.taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
 
         storageUtil.taskStore.deleteTasks(tasksToRemove);
 
@@ -711,7 +1297,7 @@ public class LogStorageTest extends EasyMockTest {
         storageUtil.taskStore.saveTasks(saved);
 
         // Nested transaction with result.
-        expect(storageUtil.taskStore.mutateTasks(query, mutation)).andReturn(mutated);
+        expect(storageUtil.taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
 
         // Resulting stream operation.
         streamMatcher.expectTransaction(Op.saveTasks(
@@ -741,7 +1327,7 @@ public class LogStorageTest extends EasyMockTest {
         storageUtil.taskStore.saveTasks(saved);
 
         // Nested transaction with result.
-        expect(storageUtil.taskStore.mutateTasks(query, mutation)).andReturn(mutated);
+        expect(storageUtil.taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
 
         // Resulting stream operation.
         streamMatcher.expectTransaction(
@@ -1063,11 +1649,22 @@ public class LogStorageTest extends EasyMockTest {
     logStorage.bulkLoad(load);
   }
 
+  private static LogEntry createCheckpoint(long checkpointId) {
+    return LogEntry.transaction(
+        new Transaction(ImmutableList.<Op>of(), storageConstants.CURRENT_SCHEMA_VERSION)
+            .setCheckpointId(checkpointId));
+  }
+
   private LogEntry createTransaction(Op... ops) {
     return LogEntry.transaction(
         new Transaction(ImmutableList.copyOf(ops), storageConstants.CURRENT_SCHEMA_VERSION));
   }
 
+  // Mutations are wrapped to observe the original tasks they are applied to.
+  private static Function<IScheduledTask, IScheduledTask> anyMutation() {
+    return EasyMock.anyObject();
+  }
+
   private static IScheduledTask task(String id, ScheduleStatus status) {
     return IScheduledTask.build(new ScheduledTask()
         .setStatus(status)
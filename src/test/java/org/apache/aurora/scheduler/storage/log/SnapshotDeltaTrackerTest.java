@@ -0,0 +1,172 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.io.IOException;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.HostAttributes;
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.Lock;
+import org.apache.aurora.gen.LockKey;
+import org.apache.aurora.gen.ResourceAggregate;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.QuotaConfiguration;
+import org.apache.aurora.gen.storage.RemoveTasks;
+import org.apache.aurora.gen.storage.SaveLock;
+import org.apache.aurora.gen.storage.SaveQuota;
+import org.apache.aurora.gen.storage.SaveTasks;
+import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
+import org.apache.aurora.gen.storage.StoredCronJob;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
+import org.apache.aurora.scheduler.storage.entities.IResourceAggregate;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SnapshotDeltaTrackerTest extends EasyMockTest {
+
+  private static final ScheduledTask TASK =
+      new ScheduledTask().setAssignedTask(new AssignedTask().setTaskId("a"));
+  private static final ResourceAggregate QUOTA = new ResourceAggregate(1.0, 2, 3);
+  private static final Op SAVE_LOCK = Op.saveLock(new SaveLock(
+      new Lock().setKey(LockKey.job(new JobKey("role", "env", "job")))));
+
+  private StorageTestUtil storageUtil;
+  private StreamTransaction delegate;
+  private SnapshotDeltaTracker tracker;
+
+  @Before
+  public void setUp() {
+    storageUtil = new StorageTestUtil(this);
+    storageUtil.expectOperations();
+    delegate = createMock(StreamTransaction.class);
+    tracker = new SnapshotDeltaTracker();
+  }
+
+  private static SnapshotDelta delta(
+      ImmutableSet<ScheduledTask> tasks,
+      ImmutableSet<QuotaConfiguration> quotas,
+      ImmutableSet<String> removedTaskIds,
+      ImmutableList<Op> ops) {
+
+    return new SnapshotDelta()
+        .setChanged(new Snapshot()
+            .setTasks(tasks)
+            .setCronJobs(ImmutableSet.<StoredCronJob>of())
+            .setQuotaConfigurations(quotas)
+            .setHostAttributes(ImmutableSet.<HostAttributes>of()))
+        .setRemovedTaskIds(removedTaskIds)
+        .setRemovedCronJobs(ImmutableSet.<JobKey>of())
+        .setRemovedQuotaRoles(ImmutableSet.<String>of())
+        .setOps(ops);
+  }
+
+  @Test
+  public void testCaptureChanges() throws Exception {
+    storageUtil.expectTaskFetch(
+        Query.taskScoped(ImmutableSet.of("a", "b")),
+        IScheduledTask.build(TASK));
+    expect(storageUtil.quotaStore.fetchQuota("role"))
+        .andReturn(Optional.of(IResourceAggregate.build(QUOTA)));
+
+    control.replay();
+
+    tracker.record(ImmutableList.of(
+        Op.saveTasks(new SaveTasks(ImmutableSet.of(TASK))),
+        Op.removeTasks(new RemoveTasks(ImmutableSet.of("b"))),
+        Op.saveQuota(new SaveQuota("role", QUOTA)),
+        SAVE_LOCK));
+
+    assertEquals(
+        delta(
+            ImmutableSet.of(TASK),
+            ImmutableSet.of(new QuotaConfiguration("role", QUOTA)),
+            ImmutableSet.of("b"),
+            ImmutableList.of(SAVE_LOCK)),
+        tracker.capture(storageUtil.storeProvider).get());
+
+    // Capturing resets the tracker.
+    assertEquals(
+        delta(
+            ImmutableSet.<ScheduledTask>of(),
+            ImmutableSet.<QuotaConfiguration>of(),
+            ImmutableSet.<String>of(),
+            ImmutableList.<Op>of()),
+        tracker.capture(storageUtil.storeProvider).get());
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    control.replay();
+
+    tracker.record(ImmutableList.of(Op.saveQuota(new SaveQuota("role", QUOTA)), SAVE_LOCK));
+    tracker.reset();
+    assertEquals(
+        delta(
+            ImmutableSet.<ScheduledTask>of(),
+            ImmutableSet.<QuotaConfiguration>of(),
+            ImmutableSet.<String>of(),
+            ImmutableList.<Op>of()),
+        tracker.capture(storageUtil.storeProvider).get());
+  }
+
+  @Test
+  public void testTrackCommitted() throws Exception {
+    delegate.add(SAVE_LOCK);
+    expect(delegate.commit()).andReturn(null);
+
+    control.replay();
+
+    StreamTransaction transaction = tracker.track(delegate);
+    transaction.add(SAVE_LOCK);
+    transaction.commit();
+    assertEquals(
+        ImmutableList.of(SAVE_LOCK),
+        tracker.capture(storageUtil.storeProvider).get().getOps());
+  }
+
+  @Test
+  public void testTrackFailedCommit() throws Exception {
+    delegate.add(SAVE_LOCK);
+    expect(delegate.commit()).andThrow(new StreamAccessException("Failed", new IOException()));
+
+    control.replay();
+
+    StreamTransaction transaction = tracker.track(delegate);
+    transaction.add(SAVE_LOCK);
+    try {
+      transaction.commit();
+      fail();
+    } catch (StreamAccessException e) {
+      // Expected.
+    }
+    assertEquals(
+        ImmutableList.<Op>of(),
+        tracker.capture(storageUtil.storeProvider).get().getOps());
+  }
+}
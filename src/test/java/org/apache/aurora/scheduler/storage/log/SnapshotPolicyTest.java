@@ -0,0 +1,112 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import com.google.common.base.Optional;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotPolicyTest {
+
+  private static final long MINUTE_NANOS = Amount.of(1L, Time.MINUTES).as(Time.NANOSECONDS);
+  private static final Optional<Double> UNKNOWN_RATE = Optional.absent();
+
+  private static SnapshotPolicy adaptive(
+      Optional<Amount<Long, Data>> maxBytes,
+      Optional<Integer> maxTransactions,
+      Optional<Amount<Long, Time>> maxReplayTime) {
+
+    return new SnapshotPolicy(
+        Amount.of(1L, Time.MINUTES),
+        Amount.of(1L, Time.HOURS),
+        maxBytes,
+        maxTransactions,
+        maxReplayTime);
+  }
+
+  @Test
+  public void testFixed() {
+    SnapshotPolicy policy = SnapshotPolicy.fixed(Amount.of(1L, Time.HOURS));
+    assertTrue(policy.isEnabled());
+    assertFalse(policy.isAdaptive());
+    assertFalse(SnapshotPolicy.fixed(Amount.of(0L, Time.HOURS)).isEnabled());
+  }
+
+  @Test
+  public void testMaxBytes() {
+    SnapshotPolicy policy = adaptive(
+        Optional.of(Amount.of(1L, Data.MB)),
+        Optional.<Integer>absent(),
+        Optional.<Amount<Long, Time>>absent());
+    assertTrue(policy.isAdaptive());
+
+    long bytes = Amount.of(1L, Data.MB).as(Data.BYTES);
+    assertFalse(policy.isDue(2 * MINUTE_NANOS, bytes - 1, 10, UNKNOWN_RATE));
+    assertTrue(policy.isDue(2 * MINUTE_NANOS, bytes, 10, UNKNOWN_RATE));
+  }
+
+  @Test
+  public void testMaxTransactions() {
+    SnapshotPolicy policy = adaptive(
+        Optional.<Amount<Long, Data>>absent(),
+        Optional.of(100),
+        Optional.<Amount<Long, Time>>absent());
+
+    assertFalse(policy.isDue(2 * MINUTE_NANOS, 1000, 99, UNKNOWN_RATE));
+    assertTrue(policy.isDue(2 * MINUTE_NANOS, 1000, 100, UNKNOWN_RATE));
+  }
+
+  @Test
+  public void testMaxReplayTime() {
+    SnapshotPolicy policy = adaptive(
+        Optional.<Amount<Long, Data>>absent(),
+        Optional.<Integer>absent(),
+        Optional.of(Amount.of(1L, Time.SECONDS)));
+
+    // 1000 bytes at 1ms per byte take one second to replay.
+    Optional<Double> rate = Optional.of(1000000.0);
+    assertFalse(policy.isDue(2 * MINUTE_NANOS, 999, 10, rate));
+    assertTrue(policy.isDue(2 * MINUTE_NANOS, 1000, 10, rate));
+
+    // The replay time can not be estimated until the log has been read.
+    assertFalse(policy.isDue(2 * MINUTE_NANOS, 1000, 10, UNKNOWN_RATE));
+  }
+
+  @Test
+  public void testIntervalBounds() {
+    SnapshotPolicy policy = adaptive(
+        Optional.<Amount<Long, Data>>absent(),
+        Optional.of(1),
+        Optional.<Amount<Long, Time>>absent());
+
+    // Not more often than the minimum interval.
+    assertFalse(policy.isDue(MINUTE_NANOS - 1, 1000, 10, UNKNOWN_RATE));
+    assertTrue(policy.isDue(MINUTE_NANOS, 1000, 10, UNKNOWN_RATE));
+
+    // At least every maximum interval, unless nothing was written.
+    SnapshotPolicy quiet = adaptive(
+        Optional.<Amount<Long, Data>>absent(),
+        Optional.of(100),
+        Optional.<Amount<Long, Time>>absent());
+    assertFalse(quiet.isDue(60 * MINUTE_NANOS - 1, 100, 1, UNKNOWN_RATE));
+    assertTrue(quiet.isDue(60 * MINUTE_NANOS, 100, 1, UNKNOWN_RATE));
+    assertFalse(quiet.isDue(120 * MINUTE_NANOS, 100, 0, UNKNOWN_RATE));
+  }
+}
@@ -16,6 +16,7 @@ package org.apache.aurora.scheduler.storage.log;
 import java.util.Set;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -44,7 +45,6 @@ import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.gen.storage.StoredCronJob;
 import org.apache.aurora.gen.storage.StoredJobUpdateDetails;
 import org.apache.aurora.scheduler.base.JobKeys;
-import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.ResourceAggregates;
 import org.apache.aurora.scheduler.storage.SnapshotStore;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
@@ -127,7 +127,7 @@ public class SnapshotStoreImplTest extends EasyMockTest {
                 .setJobKey(updateId2.getJob().newBuilder()))));
 
     storageUtil.expectOperations();
-    expect(storageUtil.taskStore.fetchTasks(Query.unscoped())).andReturn(tasks);
+    expect(storageUtil.taskStore.captureTasks()).andReturn(Suppliers.ofInstance(tasks));
     expect(storageUtil.quotaStore.fetchQuotas())
         .andReturn(ImmutableMap.of("steve", ResourceAggregates.none()));
     expect(storageUtil.attributeStore.getHostAttributes())
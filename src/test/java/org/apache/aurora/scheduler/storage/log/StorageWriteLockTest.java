@@ -0,0 +1,135 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StorageWriteLockTest {
+
+  private static final Optional<ImmutableSet<IJobKey>> JOB_A =
+      Optional.of(ImmutableSet.of(JobKeys.from("role", "env", "a")));
+  private static final Optional<ImmutableSet<IJobKey>> JOB_B =
+      Optional.of(ImmutableSet.of(JobKeys.from("role", "env", "b")));
+  private static final Optional<ImmutableSet<IJobKey>> UNSCOPED = Optional.absent();
+
+  private StorageWriteLock lock;
+
+  @Before
+  public void setUp() {
+    // Use enough stripes to make it unlikely that the test jobs share a stripe.
+    lock = new StorageWriteLock(1024);
+  }
+
+  private CountDownLatch lockInBackground(
+      final StorageWriteLock writeLock,
+      final Optional<ImmutableSet<IJobKey>> jobScope) {
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeLock.lock(jobScope);
+        acquired.countDown();
+        writeLock.unlock();
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return acquired;
+  }
+
+  @Test
+  public void testDisjointJobsConcurrent() throws Exception {
+    assertTrue(lock.lock(JOB_A));
+    assertTrue(lockInBackground(lock, JOB_B).await(10, TimeUnit.SECONDS));
+    lock.unlock();
+  }
+
+  @Test
+  public void testSameJobExclusive() throws Exception {
+    assertTrue(lock.lock(JOB_A));
+    CountDownLatch acquired = lockInBackground(lock, JOB_A);
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    lock.unlock();
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testUnscopedExclusive() throws Exception {
+    assertTrue(lock.lock(UNSCOPED));
+    CountDownLatch acquired = lockInBackground(lock, JOB_A);
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    lock.unlock();
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testStripingDisabled() throws Exception {
+    StorageWriteLock serialized = new StorageWriteLock(0);
+    assertTrue(serialized.lock(JOB_A));
+    CountDownLatch acquired = lockInBackground(serialized, JOB_B);
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    serialized.unlock();
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testNestedWrites() throws Exception {
+    assertTrue(lock.lock(JOB_A));
+    assertFalse(lock.lock(JOB_A));
+    lock.unlock();
+    lock.unlock();
+    assertTrue(lockInBackground(lock, UNSCOPED).await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testNestedWritesUnscoped() throws Exception {
+    assertTrue(lock.lock(UNSCOPED));
+    assertFalse(lock.lock(JOB_A));
+    assertFalse(lock.lock(UNSCOPED));
+    lock.unlock();
+    lock.unlock();
+    lock.unlock();
+    assertTrue(lockInBackground(lock, JOB_A).await(10, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnscopedNestedWrite() {
+    lock.lock(JOB_A);
+    lock.lock(UNSCOPED);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNestedWriteOutsideScope() {
+    lock.lock(JOB_A);
+    lock.lock(JOB_B);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnlockNotHeld() {
+    lock.unlock();
+  }
+}
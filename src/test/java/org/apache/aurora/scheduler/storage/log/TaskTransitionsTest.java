@@ -0,0 +1,112 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
+import org.apache.aurora.gen.storage.TaskTransition;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TaskTransitionsTest {
+
+  private static final IScheduledTask TASK = IScheduledTask.build(new ScheduledTask()
+      .setStatus(ScheduleStatus.PENDING)
+      .setFailureCount(1)
+      .setAncestorId("ancestor")
+      .setTaskEvents(ImmutableList.of(new TaskEvent(1L, ScheduleStatus.PENDING)))
+      .setAssignedTask(new AssignedTask()
+          .setTaskId("a")
+          .setInstanceId(2)
+          .setTask(new TaskConfig().setNumCpus(1.0))));
+
+  private static IScheduledTask addEvent(IScheduledTask task, ScheduleStatus status) {
+    return task.withStatus(status).withTaskEvents(ImmutableList.<ITaskEvent>builder()
+        .addAll(task.getTaskEvents())
+        .add(ITaskEvent.build(new TaskEvent(2L, status)))
+        .build());
+  }
+
+  private static void assertRoundTrip(IScheduledTask original, IScheduledTask mutated) {
+    Optional<TaskTransition> transition = TaskTransitions.diff(original, mutated);
+    assertEquals(mutated, TaskTransitions.apply(original, transition.get()));
+  }
+
+  private static void assertNoTransition(IScheduledTask original, IScheduledTask mutated) {
+    assertFalse(TaskTransitions.diff(original, mutated).isPresent());
+  }
+
+  @Test
+  public void testStateChange() {
+    assertRoundTrip(TASK, addEvent(TASK, ScheduleStatus.KILLED));
+    assertRoundTrip(TASK, TASK.withFailureCount(2));
+    assertRoundTrip(TASK, TASK.withStatus(ScheduleStatus.THROTTLED));
+  }
+
+  @Test
+  public void testAssignment() {
+    IScheduledTask assigned = addEvent(
+        TASK.withAssignedTask(TASK.getAssignedTask()
+            .withSlaveId("slave")
+            .withSlaveHost("host")
+            .withAssignedPorts(ImmutableMap.of("http", 80))),
+        ScheduleStatus.ASSIGNED);
+    assertRoundTrip(TASK, assigned);
+
+    TaskTransition transition = TaskTransitions.diff(TASK, assigned).get();
+    assertEquals(
+        new TaskTransition()
+            .setTaskId("a")
+            .setStatus(ScheduleStatus.ASSIGNED)
+            .setNewEvents(ImmutableList.of(new TaskEvent(2L, ScheduleStatus.ASSIGNED)))
+            .setFailureCount(1)
+            .setSlaveId("slave")
+            .setSlaveHost("host")
+            .setAssignedPorts(ImmutableMap.of("http", 80)),
+        transition);
+
+    // Unchanged assignment details are omitted.
+    assertFalse(TaskTransitions.diff(assigned, addEvent(assigned, ScheduleStatus.RUNNING))
+        .get()
+        .isSetSlaveHost());
+  }
+
+  @Test
+  public void testUnsupportedChanges() {
+    assertNoTransition(TASK, TASK.withAncestorId("other"));
+    assertNoTransition(TASK, TASK.withTaskEvents(ImmutableList.<ITaskEvent>of()));
+    assertNoTransition(TASK, TASK.withAssignedTask(TASK.getAssignedTask().withInstanceId(3)));
+    assertNoTransition(
+        TASK,
+        TASK.withAssignedTask(TASK.getAssignedTask()
+            .withTask(TASK.getAssignedTask().getTask().withNumCpus(2.0))));
+
+    IScheduledTask assigned =
+        TASK.withAssignedTask(TASK.getAssignedTask().withSlaveHost("host"));
+    assertNoTransition(
+        assigned,
+        assigned.withAssignedTask(assigned.getAssignedTask().withSlaveHost(null)));
+  }
+}
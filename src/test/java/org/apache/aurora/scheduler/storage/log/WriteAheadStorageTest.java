@@ -18,6 +18,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
@@ -26,13 +27,19 @@ import org.apache.aurora.gen.Attribute;
 import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.JobUpdateKey;
 import org.apache.aurora.gen.MaintenanceMode;
+import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.gen.storage.Op;
 import org.apache.aurora.gen.storage.PruneJobUpdateHistory;
 import org.apache.aurora.gen.storage.SaveHostAttributes;
 import org.apache.aurora.gen.storage.SaveTasks;
+import org.apache.aurora.gen.storage.TaskTransition;
+import org.apache.aurora.gen.storage.TransitionTasks;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.EventSink;
 import org.apache.aurora.scheduler.events.PubsubEvent;
 import org.apache.aurora.scheduler.storage.AttributeStore;
@@ -45,10 +52,14 @@ import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -81,7 +92,11 @@ public class WriteAheadStorageTest extends EasyMockTest {
     log = createMock(Logger.class);
     eventSink = createMock(EventSink.class);
 
-    storage = new WriteAheadStorage(
+    storage = createStorage(false);
+  }
+
+  private WriteAheadStorage createStorage(boolean taskTransitionOps) {
+    return new WriteAheadStorage(
         transactionManager,
         schedulerStore,
         jobStore,
@@ -91,7 +106,8 @@ public class WriteAheadStorageTest extends EasyMockTest {
         attributeStore,
         jobUpdateStore,
         log,
-        eventSink);
+        eventSink,
+        taskTransitionOps);
   }
 
   private void expectOp(Op op) {
@@ -130,12 +146,12 @@ public class WriteAheadStorageTest extends EasyMockTest {
     ImmutableSet<IScheduledTask> mutated = ImmutableSet.of(IScheduledTask.build(
             new ScheduledTask().setAssignedTask(new AssignedTask().setTaskId("a"))));
 
-    expect(taskStore.mutateTasks(query, mutator)).andReturn(mutated);
+    expect(taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
     expect(log.isLoggable(Level.FINE)).andReturn(false);
     expectOp(Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))));
 
     // With increased logging.
-    expect(taskStore.mutateTasks(query, mutator)).andReturn(mutated);
+    expect(taskStore.mutateTasks(eq(query), anyMutation())).andReturn(mutated);
     expect(log.isLoggable(Level.FINE)).andReturn(true);
     expectOp(Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))));
     log.fine(EasyMock.anyString());
@@ -146,6 +162,76 @@ public class WriteAheadStorageTest extends EasyMockTest {
     assertEquals(mutated, storage.mutateTasks(query, mutator));
   }
 
+  @Test
+  public void testMutateTransitions() {
+    storage = createStorage(true);
+    Query.Builder query = Query.unscoped();
+    final IScheduledTask a = IScheduledTask.build(new ScheduledTask()
+        .setStatus(ScheduleStatus.PENDING)
+        .setAssignedTask(new AssignedTask().setTaskId("a").setTask(new TaskConfig())));
+    final IScheduledTask b = IScheduledTask.build(new ScheduledTask()
+        .setStatus(ScheduleStatus.PENDING)
+        .setAssignedTask(new AssignedTask().setTaskId("b").setTask(new TaskConfig())));
+    Function<IScheduledTask, IScheduledTask> mutator =
+        new Function<IScheduledTask, IScheduledTask>() {
+          @Override
+          public IScheduledTask apply(IScheduledTask task) {
+            if (Tasks.id(task).equals("a")) {
+              return task.withStatus(ScheduleStatus.KILLING);
+            } else {
+              // Configuration changes can not be logged as transitions.
+              return task.withAssignedTask(task.getAssignedTask()
+                  .withTask(task.getAssignedTask().getTask().withNumCpus(2.0)));
+            }
+          }
+        };
+    ImmutableSet<IScheduledTask> mutated = ImmutableSet.of(mutator.apply(a), mutator.apply(b));
+
+    final Capture<Function<IScheduledTask, IScheduledTask>> wrapped = createCapture();
+    expect(taskStore.mutateTasks(eq(query), capture(wrapped))).andAnswer(
+        new IAnswer<ImmutableSet<IScheduledTask>>() {
+          @Override
+          public ImmutableSet<IScheduledTask> answer() {
+            return ImmutableSet.of(wrapped.getValue().apply(a), wrapped.getValue().apply(b));
+          }
+        });
+    expect(log.isLoggable(Level.FINE)).andReturn(false);
+    expectOp(Op.saveTasks(new SaveTasks(ImmutableSet.of(mutator.apply(b).newBuilder()))));
+    expectOp(Op.transitionTasks(new TransitionTasks(ImmutableList.of(new TaskTransition()
+        .setTaskId("a")
+        .setStatus(ScheduleStatus.KILLING)
+        .setNewEvents(ImmutableList.<TaskEvent>of())
+        .setFailureCount(0)))));
+
+    control.replay();
+
+    assertEquals(mutated, storage.mutateTasks(query, mutator));
+  }
+
+  @Test
+  public void testMutateTransitionsDisabled() {
+    Query.Builder query = Query.unscoped();
+    IScheduledTask a = IScheduledTask.build(new ScheduledTask()
+        .setStatus(ScheduleStatus.PENDING)
+        .setAssignedTask(new AssignedTask().setTaskId("a").setTask(new TaskConfig())));
+    Function<IScheduledTask, IScheduledTask> mutator =
+        new Function<IScheduledTask, IScheduledTask>() {
+          @Override
+          public IScheduledTask apply(IScheduledTask task) {
+            return task.withStatus(ScheduleStatus.KILLING);
+          }
+        };
+    ImmutableSet<IScheduledTask> mutated = ImmutableSet.of(mutator.apply(a));
+
+    expect(taskStore.mutateTasks(query, mutator)).andReturn(mutated);
+    expect(log.isLoggable(Level.FINE)).andReturn(false);
+    expectOp(Op.saveTasks(new SaveTasks(IScheduledTask.toBuildersSet(mutated))));
+
+    control.replay();
+
+    assertEquals(mutated, storage.mutateTasks(query, mutator));
+  }
+
   @Test
   public void testSaveHostAttributes() {
     IHostAttributes attributes = IHostAttributes.build(
@@ -169,6 +255,11 @@ public class WriteAheadStorageTest extends EasyMockTest {
     assertFalse(storage.saveHostAttributes(attributes));
   }
 
+  // Mutators are wrapped to observe the original tasks they are applied to.
+  private static Function<IScheduledTask, IScheduledTask> anyMutation() {
+    return EasyMock.anyObject();
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void testDeleteAllTasks() {
     control.replay();
@@ -22,10 +22,12 @@ import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Op;
 import org.apache.aurora.gen.storage.Snapshot;
+import org.apache.aurora.gen.storage.SnapshotDelta;
 import org.apache.aurora.gen.storage.Transaction;
 import org.apache.aurora.gen.storage.storageConstants;
 import org.apache.aurora.scheduler.log.Log.Position;
 import org.apache.aurora.scheduler.log.Log.Stream;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IArgumentMatcher;
 import org.easymock.IExpectationSetters;
@@ -96,6 +98,61 @@ public class LogOpMatcher implements IArgumentMatcher {
       LogEntry entry = LogEntry.snapshot(snapshot);
       return expect(stream.append(sameEntry(entry)));
     }
+
+    /**
+     * Sets an expectation for a snapshot delta.
+     *
+     * @param delta Expected snapshot delta.
+     * @return An expectation setter.
+     */
+    public IExpectationSetters<Position> expectSnapshotDelta(SnapshotDelta delta) {
+      LogEntry entry = LogEntry.snapshotDelta(delta);
+      return expect(stream.append(sameEntry(entry)));
+    }
+
+    /**
+     * Sets an expectation for a snapshot marker.
+     *
+     * @return An expectation setter.
+     */
+    public IExpectationSetters<Position> expectSnapshotMarker() {
+      LogEntry entry = LogEntry.snapshotMarker(true);
+      return expect(stream.append(sameEntry(entry)));
+    }
+
+    /**
+     * Sets an expectation for a checkpoint entry with any ID.
+     *
+     * @param checkpointId Captures the ID of the checkpoint entry.
+     * @return An expectation setter.
+     */
+    public IExpectationSetters<Position> expectCheckpoint(final Capture<Long> checkpointId) {
+      EasyMock.reportMatcher(new IArgumentMatcher() {
+        @Override
+        public boolean matches(Object argument) {
+          LogEntry entry;
+          try {
+            entry = ThriftBinaryCodec.decodeNonNull(LogEntry.class, (byte[]) argument);
+          } catch (CodingException e) {
+            return false;
+          }
+          if (!entry.isSetTransaction()
+              || !entry.getTransaction().isSetCheckpointId()
+              || entry.getTransaction().getOpsSize() != 0) {
+
+            return false;
+          }
+          checkpointId.setValue(entry.getTransaction().getCheckpointId());
+          return true;
+        }
+
+        @Override
+        public void appendTo(StringBuffer buffer) {
+          buffer.append("checkpoint entry");
+        }
+      });
+      return expect(stream.append(new byte[] {}));
+    }
   }
 
   /**
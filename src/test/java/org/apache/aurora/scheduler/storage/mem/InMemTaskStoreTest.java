@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.storage.mem;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
@@ -20,11 +21,14 @@ import com.google.inject.util.Modules;
 import com.twitter.common.inject.Bindings.KeyFactory;
 import com.twitter.common.stats.StatsProvider;
 
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.AbstractTaskStoreTest;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
 import org.junit.Test;
 
@@ -60,4 +64,61 @@ public class InMemTaskStoreTest extends AbstractTaskStoreTest {
       }
     });
   }
+
+  @Test
+  public void testSecondaryIndicesBuiltForEmptyStore() {
+    FakeStatsProvider stats = new FakeStatsProvider();
+    MemTaskStore store = new MemTaskStore(stats);
+    store.saveTasks(ImmutableSet.of(TASK_A, TASK_B));
+    assertEquals(2L, stats.getLongValue(MemTaskStore.getIndexSizeStatName("job")));
+    assertEquals(
+        ImmutableSet.of(TASK_A),
+        store.fetchTasks(Query.jobScoped(Tasks.SCHEDULED_TO_JOB_KEY.apply(TASK_A))));
+
+    // Tasks saved to a populated store are applied as changes to the indices built above.
+    store.saveTasks(ImmutableSet.of(TASK_C));
+    assertEquals(3L, stats.getLongValue(MemTaskStore.getIndexSizeStatName("job")));
+    assertEquals(
+        ImmutableSet.of(TASK_C),
+        store.fetchTasks(Query.jobScoped(Tasks.SCHEDULED_TO_JOB_KEY.apply(TASK_C))));
+  }
+
+  @Test
+  public void testSnapshotIsolation() {
+    MemTaskStore store = new MemTaskStore(new FakeStatsProvider());
+    store.saveTasks(ImmutableSet.of(TASK_A, TASK_B));
+    TaskStore snapshot = store.snapshot();
+    Query.Builder jobA = Query.jobScoped(Tasks.SCHEDULED_TO_JOB_KEY.apply(TASK_A));
+
+    store.deleteTasks(Tasks.ids(TASK_A));
+    store.saveTasks(ImmutableSet.of(TASK_C));
+    store.mutateTasks(
+        Query.taskScoped(Tasks.id(TASK_B)),
+        new Function<IScheduledTask, IScheduledTask>() {
+          @Override
+          public IScheduledTask apply(IScheduledTask task) {
+            return task.withStatus(ScheduleStatus.RUNNING);
+          }
+        });
+
+    assertEquals(
+        ImmutableSet.of(TASK_A, TASK_B),
+        ImmutableSet.copyOf(snapshot.fetchTasks(Query.unscoped())));
+    assertEquals(
+        ImmutableSet.of(TASK_A),
+        ImmutableSet.copyOf(snapshot.fetchTasks(jobA)));
+    assertEquals(
+        ImmutableSet.of(Tasks.id(TASK_A), Tasks.id(TASK_B)),
+        snapshot.fetchTaskIds(Query.unscoped()));
+
+    assertEquals(
+        ImmutableSet.of(Tasks.id(TASK_B), Tasks.id(TASK_C)),
+        store.fetchTaskIds(Query.unscoped()));
+    assertEquals(
+        ImmutableSet.of(TASK_B.withStatus(ScheduleStatus.RUNNING)),
+        store.fetchTasks(Query.taskScoped(Tasks.id(TASK_B))));
+    assertEquals(
+        ImmutableSet.of(),
+        store.fetchTasks(jobA));
+  }
 }
@@ -0,0 +1,94 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedMapTest {
+
+  @Test
+  public void testEditDoesNotModifyBase() {
+    SegmentedMap<String, Integer> empty = SegmentedMap.empty(4);
+    SegmentedMap.Editor<String, Integer> editor = empty.edit();
+    for (int i = 0; i < 100; i++) {
+      assertNull(editor.put("key" + i, i));
+    }
+    SegmentedMap<String, Integer> populated = editor.build();
+
+    assertTrue(empty.isEmpty());
+    assertEquals(100, populated.size());
+    assertEquals(Integer.valueOf(42), populated.get("key42"));
+    assertNull(populated.get("key100"));
+
+    SegmentedMap.Editor<String, Integer> modifier = populated.edit();
+    assertEquals(Integer.valueOf(1), modifier.put("key1", -1));
+    assertEquals(Integer.valueOf(2), modifier.remove("key2"));
+    assertNull(modifier.remove("missing"));
+    assertEquals(Integer.valueOf(-1), modifier.get("key1"));
+    assertNull(modifier.get("key2"));
+    SegmentedMap<String, Integer> modified = modifier.build();
+
+    assertEquals(99, modified.size());
+    assertEquals(Integer.valueOf(-1), modified.get("key1"));
+    assertNull(modified.get("key2"));
+    assertEquals(100, populated.size());
+    assertEquals(Integer.valueOf(1), populated.get("key1"));
+    assertEquals(Integer.valueOf(2), populated.get("key2"));
+    assertEquals(100, ImmutableSet.copyOf(populated.values()).size());
+    assertEquals(99, ImmutableSet.copyOf(modified.values()).size());
+  }
+
+  @Test
+  public void testNoopEdit() {
+    SegmentedMap<String, Integer> map = SegmentedMap.empty(4);
+    SegmentedMap.Editor<String, Integer> editor = map.edit();
+    assertNull(editor.remove("a"));
+    assertSame(map, editor.build());
+  }
+
+  @Test
+  public void testPresizedEdit() {
+    SegmentedMap.Editor<String, Integer> seed = SegmentedMap.<String, Integer>empty(4).edit();
+    seed.put("a", 1);
+    SegmentedMap<String, Integer> base = seed.build();
+
+    SegmentedMap.Editor<String, Integer> editor = base.edit(100);
+    for (int i = 0; i < 100; i++) {
+      assertNull(editor.put("key" + i, i));
+    }
+    SegmentedMap<String, Integer> populated = editor.build();
+
+    assertEquals(1, base.size());
+    assertEquals(101, populated.size());
+    assertEquals(Integer.valueOf(1), populated.get("a"));
+    assertEquals(Integer.valueOf(99), populated.get("key99"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeExpectedPuts() {
+    SegmentedMap.empty(4).edit(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSegmentCount() {
+    SegmentedMap.empty(3);
+  }
+}
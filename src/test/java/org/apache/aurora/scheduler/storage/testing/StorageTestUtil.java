@@ -14,6 +14,7 @@
 package org.apache.aurora.scheduler.storage.testing;
 
 import com.google.common.collect.ImmutableSet;
+import com.twitter.common.base.Closure;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import org.apache.aurora.scheduler.base.Query;
@@ -35,7 +36,9 @@ import org.easymock.IAnswer;
 import org.easymock.IExpectationSetters;
 
 import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 
 /**
  * Auxiliary class to simplify testing against a mocked storage.  This allows callers to directly
@@ -127,4 +130,28 @@ public class StorageTestUtil {
   public IExpectationSetters<?> expectTaskFetch(Query.Builder query, IScheduledTask... result) {
     return expectTaskFetch(query, ImmutableSet.<IScheduledTask>builder().add(result).build());
   }
+
+  /**
+   * Expects a visit over the tasks matching a query, and supplies {@code result} to the visitor.
+   *
+   * @param query Query expected to be visited.
+   * @param result Tasks to pass to the visitor.
+   * @return Expectation setters for the visit.
+   */
+  public IExpectationSetters<?> expectTaskVisit(
+      Query.Builder query,
+      final IScheduledTask... result) {
+
+    final Capture<Closure<IScheduledTask>> visitor = EasyMockTest.createCapture();
+    taskStore.forEach(eq(query), capture(visitor));
+    return expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() {
+        for (IScheduledTask task : result) {
+          visitor.getValue().execute(task);
+        }
+        return null;
+      }
+    });
+  }
 }
@@ -21,6 +21,7 @@ import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -57,6 +58,7 @@ import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Query.Builder;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.configuration.SanitizedConfiguration;
 import org.apache.aurora.scheduler.cron.CronPredictor;
 import org.apache.aurora.scheduler.cron.CrontabEntry;
@@ -472,7 +474,10 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
   private TaskQuery setupPaginatedQuery(Iterable<IScheduledTask> tasks, int offset, int limit) {
     TaskQuery query = new TaskQuery().setOffset(offset).setLimit(limit);
     Builder builder = Query.arbitrary(query);
-    storageUtil.expectTaskFetch(builder, ImmutableSet.copyOf(tasks));
+    // Pagination is applied by the task store.
+    storageUtil.expectTaskFetch(
+        builder,
+        ImmutableSet.copyOf(Iterables.limit(Iterables.skip(tasks, offset), limit)));
     return query;
   }
 
@@ -634,7 +639,10 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     IScheduledTask task4 = IScheduledTask.build(new ScheduledTask()
         .setAssignedTask(new AssignedTask().setTask(immediateTaskConfigThree)));
 
-    storageUtil.expectTaskFetch(Query.unscoped(), task1, task2, task3, task4);
+    expect(storageUtil.taskStore.fetchJobKeys(Query.unscoped())).andReturn(
+        FluentIterable.from(ImmutableSet.of(task1, task2, task3, task4))
+            .transform(Tasks.SCHEDULED_TO_JOB_KEY)
+            .toSet());
 
     expect(storageUtil.jobStore.fetchJobs()).andReturn(IJobConfiguration.setFromBuilders(crons));
 